@@ -20,24 +20,39 @@ import co.cask.cdap.api.annotation.Beta;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 /**
- * Instance of a record structured by a {@link Schema}. Fields are accessible by name.
+ * Instance of a record structured by a {@link Schema}. Fields are accessible by name, or by the position of the
+ * field in {@link Schema#getFields()}, which avoids the lookup of the field name.
  */
 @Beta
 public class StructuredRecord implements Serializable {
-  private final Schema schema;
-  private final Map<String, Object> fields;
+  // Fields are not final only for readObject. The serialized form is the schema and a map from field name to value,
+  // which is the same as in earlier versions, hence records serialized by earlier versions can still be read.
+  private transient Schema schema;
+  // Field values in the same order as the schema fields
+  private transient Object[] values;
 
   private static final long serialVersionUID = -4648752378975451591L;
+  private static final ObjectStreamField[] serialPersistentFields = {
+    new ObjectStreamField("schema", Schema.class),
+    new ObjectStreamField("fields", Map.class)
+  };
 
-  private StructuredRecord(Schema schema, Map<String, Object> fields) {
+  private StructuredRecord(Schema schema, Object[] values) {
     this.schema = schema;
-    this.fields = fields;
+    this.values = values;
   }
 
   /**
@@ -58,7 +73,21 @@ public class StructuredRecord implements Serializable {
    */
   @SuppressWarnings("unchecked")
   public <T> T get(String fieldName) {
-    return (T) fields.get(fieldName);
+    int idx = schema.getFieldIndex(fieldName);
+    return idx < 0 ? null : (T) values[idx];
+  }
+
+  /**
+   * Get the value of a field in the record by the position of the field in the schema.
+   *
+   * @param fieldIndex the 0-base index of the field in {@link Schema#getFields()}.
+   * @param <T> type of object of the field value.
+   * @return value of the field.
+   * @throws IndexOutOfBoundsException if the index is not valid for the schema.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(int fieldIndex) {
+    return (T) values[fieldIndex];
   }
 
   /**
@@ -81,11 +110,15 @@ public class StructuredRecord implements Serializable {
    */
   public static class Builder {
     private final Schema schema;
-    private Map<String, Object> fields;
+    private final List<Schema.Field> fields;
+    private Object[] values;
+    // Whether the values array is used by a record built by this builder
+    private boolean built;
 
     private Builder(Schema schema) {
       this.schema = schema;
-      this.fields = new HashMap<>();
+      this.fields = schema.getFields();
+      this.values = new Object[fields.size()];
     }
 
     /**
@@ -98,8 +131,26 @@ public class StructuredRecord implements Serializable {
      *                                   value is given.
      */
     public Builder set(String fieldName, Object value) {
-      validateAndGetField(fieldName, value);
-      fields.put(fieldName, value);
+      int idx = validateAndGetFieldIndex(fieldName, value);
+      getValues()[idx] = value;
+      return this;
+    }
+
+    /**
+     * Set the field at the given position of the schema to the given value.
+     *
+     * @param fieldIndex The 0-base index of the field in {@link Schema#getFields()}.
+     * @param value Value for the field.
+     * @return This builder.
+     * @throws UnexpectedFormatException if the index is not valid for the schema, or the field is not nullable but
+     *                                   a null value is given.
+     */
+    public Builder set(int fieldIndex, Object value) {
+      if (fieldIndex < 0 || fieldIndex >= fields.size()) {
+        throw new UnexpectedFormatException("field index " + fieldIndex + " is not in the schema.");
+      }
+      validateValue(fields.get(fieldIndex), value);
+      getValues()[fieldIndex] = value;
       return this;
     }
 
@@ -114,8 +165,9 @@ public class StructuredRecord implements Serializable {
      *                                   value is given, or the string cannot be converted to the type for the field.
      */
     public Builder convertAndSet(String fieldName, String strVal) throws UnexpectedFormatException {
-      Schema.Field field = validateAndGetField(fieldName, strVal);
-      fields.put(fieldName, convertString(field.getSchema(), strVal));
+      int idx = validateAndGetFieldIndex(fieldName, strVal);
+      Object value = convertString(fields.get(idx).getSchema(), strVal);
+      getValues()[idx] = value;
       return this;
     }
 
@@ -127,19 +179,27 @@ public class StructuredRecord implements Serializable {
      */
     public StructuredRecord build() throws UnexpectedFormatException {
       // check that all non-nullable fields have a value.
-      for (Schema.Field field : schema.getFields()) {
-        String fieldName = field.getName();
-        if (!fields.containsKey(fieldName)) {
+      // A non-nullable field cannot be set to null, hence a null value means the field is not set.
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] == null) {
+          Schema fieldSchema = fields.get(i).getSchema();
           // if the field is not nullable and there is no value set for the field, this is invalid.
-          if (!field.getSchema().isNullable()) {
-            throw new UnexpectedFormatException("Field " + fieldName + " must contain a value.");
-          } else {
-            // otherwise, set the value for the field to null
-            fields.put(fieldName, null);
+          if (!fieldSchema.isNullable() && fieldSchema.getType() != Schema.Type.NULL) {
+            throw new UnexpectedFormatException("Field " + fields.get(i).getName() + " must contain a value.");
           }
         }
       }
-      return new StructuredRecord(schema, fields);
+      // The values array is shared with the record, copy it if the builder is used again.
+      built = true;
+      return new StructuredRecord(schema, values);
+    }
+
+    private Object[] getValues() {
+      if (built) {
+        values = Arrays.copyOf(values, values.length);
+        built = false;
+      }
+      return values;
     }
 
     private Object convertString(Schema schema, String strVal) throws UnexpectedFormatException {
@@ -181,15 +241,19 @@ public class StructuredRecord implements Serializable {
       }
     }
 
-    private Schema.Field validateAndGetField(String fieldName, Object val) {
-      Schema.Field field = schema.getField(fieldName);
-      if (field == null) {
+    private int validateAndGetFieldIndex(String fieldName, Object val) {
+      int idx = schema.getFieldIndex(fieldName);
+      if (idx < 0) {
         throw new UnexpectedFormatException("field " + fieldName + " is not in the schema.");
       }
+      validateValue(fields.get(idx), val);
+      return idx;
+    }
+
+    private void validateValue(Schema.Field field, Object val) {
       if (!field.getSchema().isNullable() && val == null) {
-        throw new UnexpectedFormatException("field " + fieldName + " cannot be set to a null value.");
+        throw new UnexpectedFormatException("field " + field.getName() + " cannot be set to a null value.");
       }
-      return field;
     }
   }
 
@@ -204,12 +268,42 @@ public class StructuredRecord implements Serializable {
 
     StructuredRecord that = (StructuredRecord) o;
 
-    return Objects.equals(schema, that.schema) && Objects.equals(fields, that.fields);
+    return Objects.equals(schema, that.schema) && Arrays.equals(values, that.values);
 
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema, fields);
+    return Objects.hash(schema, Arrays.hashCode(values));
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    List<Schema.Field> schemaFields = schema.getFields();
+    Map<String, Object> fields = new HashMap<>();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        fields.put(schemaFields.get(i).getName(), values[i]);
+      }
+    }
+    ObjectOutputStream.PutField putField = out.putFields();
+    putField.put("schema", schema);
+    putField.put("fields", fields);
+    out.writeFields();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField getField = in.readFields();
+    Schema schema = (Schema) getField.get("schema", null);
+    Map<?, ?> fields = (Map<?, ?>) getField.get("fields", null);
+    if (schema == null || fields == null) {
+      throw new InvalidObjectException("Schema and fields must be present in a serialized record.");
+    }
+    List<Schema.Field> schemaFields = schema.getFields();
+    Object[] values = new Object[schemaFields.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = fields.get(schemaFields.get(i).getName());
+    }
+    this.schema = schema;
+    this.values = values;
   }
 }
@@ -23,7 +23,6 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.lang.FilterClassLoader;
 import co.cask.cdap.common.lang.jar.BundleJarUtil;
-import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.internal.app.deploy.pipeline.NamespacedImpersonator;
 import co.cask.cdap.internal.app.runtime.ProgramClassLoader;
 import co.cask.cdap.proto.ProgramType;
@@ -36,24 +35,50 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Given an artifact, creates a {@link CloseableClassLoader} from it. Takes care of unpacking the artifact and
- * cleaning up the directory when the classloader is closed.
+ * cleaning up the directory when the classloader is no longer needed.
+ *
+ * Classloaders created from artifact locations are shared by all callers that ask for an artifact with the same
+ * content. A shared classloader is reference counted and is kept in a bounded cache after the last caller closed it,
+ * so that it can be reused by later calls. Unpacked artifacts are kept in an {@link ArtifactUnpackCache}.
+ * Closing the factory closes the idle classloaders and deletes the unpacked artifacts once they are not in use.
  */
-final class ArtifactClassLoaderFactory {
+final class ArtifactClassLoaderFactory implements Closeable {
   private static final Logger LOG = LoggerFactory.getLogger(ArtifactClassLoaderFactory.class);
 
   private final CConfiguration cConf;
   private final ProgramRunnerFactory programRunnerFactory;
-  private final File tmpDir;
+  private final ArtifactUnpackCache unpackCache;
+  private final int maxIdleClassLoaders;
+  // Shared classloaders keyed by artifact content hash
+  private final Map<String, SharedClassLoader> classLoaders;
+  // Shared classloaders that are not in use, in least recently used order
+  private final Map<String, SharedClassLoader> idleClassLoaders;
+  // Guarded by this
+  private boolean closed;
 
   ArtifactClassLoaderFactory(CConfiguration cConf, ProgramRunnerFactory programRunnerFactory) {
     this.cConf = cConf;
     this.programRunnerFactory = programRunnerFactory;
-    this.tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
+    File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
                            cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
+    this.unpackCache = new ArtifactUnpackCache(new File(tmpDir, "artifacts-" + UUID.randomUUID()),
+                                               cConf.getLong(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_SIZE_BYTES));
+    this.maxIdleClassLoaders = cConf.getInt(Constants.AppFabric.ARTIFACT_CLASSLOADER_CACHE_SIZE);
+    this.classLoaders = new HashMap<>();
+    this.idleClassLoaders = new LinkedHashMap<>(16, 0.75f, true);
   }
 
   /**
@@ -103,38 +128,187 @@ final class ArtifactClassLoaderFactory {
 
   /**
    * Unpack the given {@code artifactLocation} to a temporary directory and call
-   * {@link #createClassLoader(File)} to create the {@link ClassLoader}.
+   * {@link #createClassLoader(File)} to create the {@link ClassLoader}. If there is already a classloader created
+   * for an artifact with the same content, it is shared instead.
    *
    * @param artifactLocation the location of the artifact to create the classloader from
    * @return a closeable classloader based off the specified artifact; on closing the returned {@link ClassLoader},
-   *         all temporary resources created for the classloader will be removed
+   *         the shared classloader is released and will be cleaned up once it is evicted from the cache
    * @throws IOException if there was an error copying or unpacking the artifact
    * @see #createClassLoader(File)
    */
   CloseableClassLoader createClassLoader(final Location artifactLocation,
-                                         NamespacedImpersonator namespacedImpersonator) throws IOException {
+                                         final NamespacedImpersonator namespacedImpersonator) throws IOException {
     try {
-      final File unpackDir = namespacedImpersonator.impersonate(new Callable<File>() {
+      String contentHash = namespacedImpersonator.impersonate(new Callable<String>() {
         @Override
-        public File call() throws IOException {
-          return BundleJarUtil.unJar(artifactLocation, DirUtils.createTempDir(tmpDir));
+        public String call() throws IOException {
+          return unpackCache.getContentHash(artifactLocation);
         }
       });
-
-      final CloseableClassLoader classLoader = createClassLoader(unpackDir);
-      return new CloseableClassLoader(classLoader, new Closeable() {
+      return createSharedClassLoader(contentHash, new ArtifactUnpackCache.Unpacker() {
         @Override
-        public void close() throws IOException {
+        public void unpack(final File dir) throws IOException {
           try {
-            Closeables.closeQuietly(classLoader);
-            DirUtils.deleteDirectoryContents(unpackDir);
+            namespacedImpersonator.impersonate(new Callable<File>() {
+              @Override
+              public File call() throws IOException {
+                return BundleJarUtil.unJar(artifactLocation, dir);
+              }
+            });
           } catch (IOException e) {
-            LOG.warn("Failed to delete directory {}", unpackDir, e);
+            throw e;
+          } catch (Exception e) {
+            throw Throwables.propagate(e);
           }
         }
       });
+    } catch (IOException e) {
+      throw e;
     } catch (Exception e) {
       throw Throwables.propagate(e);
     }
   }
+
+  /**
+   * Same as {@link #createClassLoader(Location, NamespacedImpersonator)}, except that the artifact is read as the
+   * current user. It is used for artifacts on the local file system.
+   */
+  CloseableClassLoader createClassLoader(final Location artifactLocation) throws IOException {
+    return createSharedClassLoader(unpackCache.getContentHash(artifactLocation), new ArtifactUnpackCache.Unpacker() {
+      @Override
+      public void unpack(File dir) throws IOException {
+        BundleJarUtil.unJar(artifactLocation, dir);
+      }
+    });
+  }
+
+  private CloseableClassLoader createSharedClassLoader(String contentHash,
+                                                       ArtifactUnpackCache.Unpacker unpacker) throws IOException {
+    SharedClassLoader shared = acquireClassLoader(contentHash);
+    if (shared == null) {
+      File unpackDir = unpackCache.acquire(contentHash, unpacker);
+      CloseableClassLoader classLoader;
+      try {
+        classLoader = createClassLoader(unpackDir);
+      } catch (IOException | RuntimeException e) {
+        unpackCache.release(contentHash);
+        throw e;
+      }
+      shared = addClassLoader(new SharedClassLoader(contentHash, classLoader));
+    }
+
+    final SharedClassLoader finalShared = shared;
+    final AtomicBoolean closed = new AtomicBoolean();
+    return new CloseableClassLoader(shared.classLoader, new Closeable() {
+      @Override
+      public void close() {
+        if (closed.compareAndSet(false, true)) {
+          releaseClassLoader(finalShared);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the shared classloader for the given artifact content hash with its reference count incremented,
+   * or {@code null} if there is none.
+   */
+  @Nullable
+  private synchronized SharedClassLoader acquireClassLoader(String contentHash) {
+    SharedClassLoader shared = classLoaders.get(contentHash);
+    if (shared != null) {
+      shared.references++;
+      idleClassLoaders.remove(contentHash);
+    }
+    return shared;
+  }
+
+  /**
+   * Adds a newly created classloader as a shared classloader. If another one was added concurrently for the same
+   * artifact content, the existing one is used and the given one is closed.
+   */
+  private SharedClassLoader addClassLoader(SharedClassLoader shared) {
+    SharedClassLoader existing;
+    synchronized (this) {
+      existing = acquireClassLoader(shared.contentHash);
+      if (existing == null) {
+        shared.references++;
+        classLoaders.put(shared.contentHash, shared);
+        return shared;
+      }
+    }
+    shared.destroy();
+    return existing;
+  }
+
+  /**
+   * Decrements the reference count of the given shared classloader. Once it is not used, it is kept in the idle
+   * cache and the least recently used idle classloaders beyond the cache size are closed.
+   */
+  private void releaseClassLoader(SharedClassLoader shared) {
+    List<SharedClassLoader> evicted = new ArrayList<>();
+    synchronized (this) {
+      if (--shared.references > 0) {
+        return;
+      }
+      idleClassLoaders.put(shared.contentHash, shared);
+      // After the factory is closed, classloaders are closed as soon as they are not used
+      int maxIdle = closed ? 0 : maxIdleClassLoaders;
+      Iterator<SharedClassLoader> iterator = idleClassLoaders.values().iterator();
+      while (idleClassLoaders.size() > maxIdle && iterator.hasNext()) {
+        SharedClassLoader idle = iterator.next();
+        iterator.remove();
+        classLoaders.remove(idle.contentHash);
+        evicted.add(idle);
+      }
+    }
+    for (SharedClassLoader idle : evicted) {
+      idle.destroy();
+    }
+  }
+
+  /**
+   * Closes all shared classloaders that are not in use. Classloaders that are still in use are closed when they are
+   * released. The unpacked artifacts are deleted when their classloaders are closed.
+   */
+  @Override
+  public void close() {
+    List<SharedClassLoader> idle;
+    synchronized (this) {
+      closed = true;
+      idle = new ArrayList<>(idleClassLoaders.values());
+      for (SharedClassLoader shared : idle) {
+        classLoaders.remove(shared.contentHash);
+      }
+      idleClassLoaders.clear();
+    }
+    for (SharedClassLoader shared : idle) {
+      shared.destroy();
+    }
+    unpackCache.close();
+  }
+
+  /**
+   * A classloader created for an artifact that can be shared by multiple callers.
+   */
+  private final class SharedClassLoader {
+    private final String contentHash;
+    private final CloseableClassLoader classLoader;
+    // Guarded by the enclosing factory
+    private int references;
+
+    SharedClassLoader(String contentHash, CloseableClassLoader classLoader) {
+      this.contentHash = contentHash;
+      this.classLoader = classLoader;
+    }
+
+    /**
+     * Closes the classloader and releases the unpacked artifact directory.
+     */
+    void destroy() {
+      Closeables.closeQuietly(classLoader);
+      unpackCache.release(contentHash);
+    }
+  }
 }
@@ -62,6 +62,7 @@ import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import com.google.common.io.Files;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -83,6 +84,7 @@ import javax.annotation.Nullable;
  * This class manages artifact and artifact metadata. It is mainly responsible for inspecting artifacts to determine
  * metadata for the artifact.
  */
+@Singleton
 public class ArtifactRepository {
   private static final Logger LOG = LoggerFactory.getLogger(ArtifactRepository.class);
   private final ArtifactStore artifactStore;
@@ -122,6 +124,14 @@ public class ArtifactRepository {
     this.authenticationContext = authenticationContext;
   }
 
+  /**
+   * Closes the artifact classloaders that are cached for reuse and deletes the unpacked artifacts. Classloaders that
+   * are still in use are closed when they are released.
+   */
+  public void close() {
+    artifactClassLoaderFactory.close();
+  }
+
   /**
    * Create a classloader that uses the artifact at the specified location to load classes, with access to
    * packages that all program type has access to.
@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A cache of unpacked artifact jars on local disk, keyed by the hash of the artifact content. Directories that are
+ * in use are pinned by the caller through {@link #acquire(String, Unpacker)} and {@link #release(String)}. When the
+ * total size of the directories exceeds the maximum size, the least recently used directories that are not pinned
+ * are deleted. Closing the cache deletes all directories once they are released, as well as the base directory.
+ */
+@ThreadSafe
+final class ArtifactUnpackCache implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ArtifactUnpackCache.class);
+
+  /**
+   * Unpacks an artifact into a directory.
+   */
+  interface Unpacker {
+
+    /**
+     * Unpacks the artifact into the given directory, which is already created.
+     */
+    void unpack(File dir) throws IOException;
+  }
+
+  private final File baseDir;
+  private final long maxSizeBytes;
+  // Content hashes of artifacts, keyed by location, modification time and length
+  private final Cache<String, String> contentHashes;
+  // Entries in least recently used order
+  private final Map<String, Entry> entries;
+  private long totalSizeBytes;
+  private boolean closed;
+
+  /**
+   * Creates a cache.
+   *
+   * @param baseDir the directory for storing the unpacked artifacts; it is created lazily
+   * @param maxSizeBytes maximum total size in bytes of the unpacked artifacts that are not in use
+   */
+  ArtifactUnpackCache(File baseDir, long maxSizeBytes) {
+    this.baseDir = baseDir;
+    this.maxSizeBytes = maxSizeBytes;
+    this.contentHashes = CacheBuilder.newBuilder().maximumSize(1000).build();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Returns the hash of the content of the given artifact. The hash is only computed if the artifact was not seen
+   * before or was modified since it was last seen.
+   *
+   * @param artifactLocation location of the artifact jar
+   * @return the hash as a hex string
+   * @throws IOException if failed to read the artifact
+   */
+  String getContentHash(Location artifactLocation) throws IOException {
+    String locationKey = artifactLocation.toURI() + ":" + artifactLocation.lastModified() + ":"
+      + artifactLocation.length();
+    String hash = contentHashes.getIfPresent(locationKey);
+    if (hash == null) {
+      hash = ByteStreams.hash(Locations.newInputSupplier(artifactLocation), Hashing.sha256()).toString();
+      contentHashes.put(locationKey, hash);
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the directory that contains the unpacked artifact of the given content hash, unpacking it if it is not
+   * in the cache. The directory is pinned in the cache until {@link #release(String)} is called.
+   *
+   * @param contentHash hash of the artifact content
+   * @param unpacker for unpacking the artifact if it is not in the cache
+   * @return the directory containing the unpacked artifact
+   * @throws IOException if failed to unpack the artifact
+   */
+  File acquire(String contentHash, Unpacker unpacker) throws IOException {
+    Entry entry;
+    synchronized (this) {
+      Preconditions.checkState(!closed, "Artifact unpack cache in %s is already closed", baseDir);
+      entry = entries.get(contentHash);
+      if (entry == null) {
+        entry = new Entry(new File(baseDir, contentHash));
+        entries.put(contentHash, entry);
+      }
+      entry.pins++;
+    }
+
+    long unpackedSize;
+    try {
+      unpackedSize = entry.unpack(unpacker);
+    } catch (IOException | RuntimeException e) {
+      release(contentHash);
+      throw e;
+    }
+
+    synchronized (this) {
+      totalSizeBytes += unpackedSize;
+      evict();
+    }
+    return entry.dir;
+  }
+
+  /**
+   * Unpins the directory of the given content hash, which makes it eligible for eviction.
+   */
+  synchronized void release(String contentHash) {
+    Entry entry = entries.get(contentHash);
+    if (entry == null || entry.pins <= 0) {
+      LOG.warn("Releasing artifact directory for {} that is not acquired", contentHash);
+      return;
+    }
+    entry.pins--;
+    evict();
+  }
+
+  /**
+   * Closes the cache. Directories that are not in use are deleted immediately, while the ones in use are deleted
+   * when they are released. The base directory is deleted after all directories are deleted.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    evict();
+  }
+
+  /**
+   * Deletes least recently used directories that are not pinned until the total size is within the limit.
+   * Entries that failed to unpack are removed as well. After the cache is closed, all directories that are not
+   * pinned are deleted.
+   */
+  private void evict() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.pins > 0) {
+        continue;
+      }
+      if (!closed && entry.sizeBytes.get() >= 0 && totalSizeBytes <= maxSizeBytes) {
+        continue;
+      }
+      iterator.remove();
+      if (entry.sizeBytes.get() >= 0) {
+        totalSizeBytes -= entry.sizeBytes.get();
+        try {
+          DirUtils.deleteDirectoryContents(entry.dir);
+        } catch (IOException e) {
+          LOG.warn("Failed to delete unpacked artifact directory {}", entry.dir, e);
+        }
+      }
+    }
+
+    if (closed && entries.isEmpty() && baseDir.isDirectory()) {
+      try {
+        DirUtils.deleteDirectoryContents(baseDir);
+      } catch (IOException e) {
+        LOG.warn("Failed to delete artifact unpack directory {}", baseDir, e);
+      }
+    }
+  }
+
+  private static long getSize(File dir) throws IOException {
+    final AtomicLong size = new AtomicLong();
+    Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        size.addAndGet(attrs.size());
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return size.get();
+  }
+
+  /**
+   * A directory in the cache.
+   */
+  private static final class Entry {
+    private final File dir;
+    // Size of the directory or -1 if it is not yet unpacked
+    private final AtomicLong sizeBytes = new AtomicLong(-1L);
+    // Guarded by the enclosing cache
+    private int pins;
+
+    Entry(File dir) {
+      this.dir = dir;
+    }
+
+    /**
+     * Unpacks the artifact if it is not yet unpacked. Concurrent calls for the same entry are serialized.
+     *
+     * @return the size of the directory if it is unpacked by this call, otherwise {@code 0}
+     */
+    synchronized long unpack(Unpacker unpacker) throws IOException {
+      if (sizeBytes.get() >= 0) {
+        return 0L;
+      }
+      if (dir.exists()) {
+        DirUtils.deleteDirectoryContents(dir);
+      }
+      if (!DirUtils.mkdirs(dir)) {
+        throw new IOException("Failed to create directory " + dir);
+      }
+      try {
+        unpacker.unpack(dir);
+      } catch (IOException | RuntimeException e) {
+        DirUtils.deleteDirectoryContents(dir);
+        throw e;
+      }
+      long size = getSize(dir);
+      sizeBytes.set(size);
+      return size;
+    }
+  }
+}
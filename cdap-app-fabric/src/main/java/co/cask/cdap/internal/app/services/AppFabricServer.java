@@ -30,6 +30,7 @@ import co.cask.cdap.common.metrics.MetricsReporterHook;
 import co.cask.cdap.common.namespace.NamespaceAdmin;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
 import co.cask.cdap.internal.app.namespace.DefaultNamespaceEnsurer;
+import co.cask.cdap.internal.app.runtime.artifact.ArtifactRepository;
 import co.cask.cdap.internal.app.runtime.artifact.SystemArtifactLoader;
 import co.cask.cdap.internal.app.runtime.plugin.PluginService;
 import co.cask.cdap.internal.app.runtime.schedule.SchedulerService;
@@ -86,6 +87,7 @@ public class AppFabricServer extends AbstractIdleService {
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final ProgramLifecycleService programLifecycleService;
   private final SystemArtifactLoader systemArtifactLoader;
+  private final ArtifactRepository artifactRepository;
   private final PluginService pluginService;
   private final PrivilegesFetcherProxyService privilegesFetcherProxyService;
   private final RouteStore routeStore;
@@ -117,6 +119,7 @@ public class AppFabricServer extends AbstractIdleService {
                          @Named("appfabric.handler.hooks") Set<String> handlerHookNames,
                          NamespaceAdmin namespaceAdmin,
                          SystemArtifactLoader systemArtifactLoader,
+                         ArtifactRepository artifactRepository,
                          PluginService pluginService,
                          PrivilegesFetcherProxyService privilegesFetcherProxyService,
                          RouteStore routeStore) {
@@ -135,6 +138,7 @@ public class AppFabricServer extends AbstractIdleService {
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.programLifecycleService = programLifecycleService;
     this.systemArtifactLoader = systemArtifactLoader;
+    this.artifactRepository = artifactRepository;
     this.pluginService = pluginService;
     this.privilegesFetcherProxyService = privilegesFetcherProxyService;
     this.routeStore = routeStore;
@@ -276,6 +280,7 @@ public class AppFabricServer extends AbstractIdleService {
     programLifecycleService.stopAndWait();
     pluginService.stopAndWait();
     privilegesFetcherProxyService.stopAndWait();
+    artifactRepository.close();
   }
 
   private static String generateRandomPassword() {
@@ -87,6 +87,14 @@ public class AppMetadataStore extends MetadataStoreDataset {
   private static final String TYPE_WORKFLOW_NODE_STATE = "wns";
   private static final String TYPE_WORKFLOW_TOKEN = "wft";
   private static final String TYPE_NAMESPACE = "namespace";
+  private static final String TYPE_RUN_TIME_INDEX = "runTimeIdx";
+  private static final String TYPE_RUN_TIME_INDEX_LONG = "runTimeIdxLong";
+  private static final String TYPE_RUN_TIME_INDEX_START = "runTimeIdxStart";
+
+  // Completed runs are indexed in each of the hourly buckets that they were running in
+  private static final long RUN_TIME_BUCKET_SECS = TimeUnit.HOURS.toSeconds(1);
+  // Runs that span more buckets than this are kept in a separate list that is always scanned
+  private static final long MAX_RUN_TIME_BUCKETS = 168;
 
   private final CConfiguration cConf;
 
@@ -98,6 +106,14 @@ public class AppMetadataStore extends MetadataStoreDataset {
       }
     };
 
+  private static final Function<RunTimeRange, RunId> RUN_TIME_RANGE_TO_RUN_ID_FUNCTION =
+    new Function<RunTimeRange, RunId>() {
+      @Override
+      public RunId apply(RunTimeRange runTimeRange) {
+        return RunIds.fromString(runTimeRange.pid);
+      }
+    };
+
   public AppMetadataStore(Table table, CConfiguration cConf) {
     super(table);
     this.cConf = cConf;
@@ -316,6 +332,42 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .add(pid).build();
 
     write(key, new RunRecordMeta(started, stopTs, runStatus));
+    addToRunTimeIndex(programId, pid, started.getStartTs(), stopTs);
+  }
+
+  /**
+   * Adds a completed run to the run time index. The run is added to every time bucket that it was running in,
+   * unless it spans too many buckets, in which case it is added to the list of long runs.
+   */
+  private void addToRunTimeIndex(ProgramId programId, String pid, long startTs, long stopTs) {
+    MDSKey indexStartKey = new MDSKey.Builder().add(TYPE_RUN_TIME_INDEX_START).build();
+    if (!exists(indexStartKey)) {
+      // Runs completed before the index was introduced are not in the index. Remember from when the index is complete.
+      write(indexStartKey, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+    }
+
+    RunTimeRange range = new RunTimeRange(pid, startTs, stopTs);
+    long startBucket = startTs / RUN_TIME_BUCKET_SECS;
+    long stopBucket = Math.max(startTs, stopTs) / RUN_TIME_BUCKET_SECS;
+    if (stopBucket - startBucket >= MAX_RUN_TIME_BUCKETS) {
+      write(getProgramKeyBuilder(TYPE_RUN_TIME_INDEX_LONG, programId).add(pid).build(), range);
+      return;
+    }
+    for (long bucket = startBucket; bucket <= stopBucket; bucket++) {
+      write(getRunTimeIndexKey(bucket, programId.getNamespace(), programId.getApplication(), programId.getVersion(),
+                               programId.getType().name(), programId.getProgram(), pid), range);
+    }
+  }
+
+  /**
+   * Returns the key of a run time index entry, which is
+   * [runTimeIdx][bucket][namespace][app][version][programType][program][pid].
+   */
+  private static MDSKey getRunTimeIndexKey(long bucket, String namespace, String app, String version,
+                                           String programType, String program, String pid) {
+    return new MDSKey.Builder().add(TYPE_RUN_TIME_INDEX).add(bucket)
+      .add(namespace, app, version, programType, program)
+      .add(pid).build();
   }
 
   public Map<ProgramRunId, RunRecordMeta> getRuns(ProgramRunStatus status, Predicate<RunRecordMeta> filter) {
@@ -561,17 +613,63 @@ public class AppMetadataStore extends MetadataStoreDataset {
   }
 
   public void deleteProgramHistory(String namespaceId, String appId) {
+    // Index entries are found through the completed run records, hence they need to be deleted first
+    deleteFromRunTimeIndex(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId, appId).build());
+    deleteAll(new MDSKey.Builder().add(TYPE_RUN_TIME_INDEX_LONG, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_STARTED, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId, appId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_SUSPENDED, namespaceId, appId).build());
   }
 
   public void deleteProgramHistory(String namespaceId) {
+    // Index entries are found through the completed run records, hence they need to be deleted first
+    deleteFromRunTimeIndex(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId).build());
+    deleteAll(new MDSKey.Builder().add(TYPE_RUN_TIME_INDEX_LONG, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_STARTED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_SUSPENDED, namespaceId).build());
   }
 
+  /**
+   * Deletes the run time index entries of the completed runs under the given prefix of completed run records.
+   * Since the time buckets of a run can be computed from its record, only the entries of those runs are touched.
+   */
+  private void deleteFromRunTimeIndex(MDSKey completedPrefix) {
+    final List<MDSKey> keys = new ArrayList<>();
+    scan(completedPrefix, null, RunRecordMeta.class,
+         new Function<MetadataStoreDataset.KeyValue<RunRecordMeta>, Boolean>() {
+           @Override
+           public Boolean apply(MetadataStoreDataset.KeyValue<RunRecordMeta> input) {
+             RunRecordMeta record = input.getValue();
+             if (record.getStopTs() == null) {
+               return true;
+             }
+             // Key is [runRecordCompleted][namespace][app][version][programType][program][invertedStart][pid]
+             MDSKey.Splitter splitter = input.getKey().split();
+             splitter.skipString(); // skip recordType
+             String namespace = splitter.getString();
+             String app = splitter.getString();
+             String version = splitter.getString();
+             String programType = splitter.getString();
+             String program = splitter.getString();
+
+             long startBucket = record.getStartTs() / RUN_TIME_BUCKET_SECS;
+             long stopBucket = Math.max(record.getStartTs(), record.getStopTs()) / RUN_TIME_BUCKET_SECS;
+             // Runs spanning too many buckets are in the list of long runs, which is deleted by prefix
+             if (stopBucket - startBucket < MAX_RUN_TIME_BUCKETS) {
+               for (long bucket = startBucket; bucket <= stopBucket; bucket++) {
+                 keys.add(getRunTimeIndexKey(bucket, namespace, app, version, programType, program,
+                                             record.getPid()));
+               }
+             }
+             return true;
+           }
+         });
+    for (MDSKey key : keys) {
+      deleteAll(key);
+    }
+  }
+
   public void createNamespace(NamespaceMeta metadata) {
     write(getNamespaceKey(metadata.getName()), metadata);
   }
@@ -630,8 +728,15 @@ public class AppMetadataStore extends MetadataStoreDataset {
     LOG.trace("Scan timeout = {}ms", scanTimeoutMills);
 
     Set<RunId> runIds = new HashSet<>();
-    Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs,
-                                                        scanTimeoutMills));
+    // Completed runs can be looked up from the run time index if all runs completed after the start time are indexed
+    Long indexStartTime = get(new MDSKey.Builder().add(TYPE_RUN_TIME_INDEX_START).build(), Long.class);
+    if (indexStartTime != null && startTimeInSecs >= indexStartTime) {
+      Iterables.addAll(runIds, Iterables.concat(
+        getCompletedInRangeFromIndex(startTimeInSecs, endTimeInSecs, scanTimeoutMills, Ticker.systemTicker())));
+    } else {
+      Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs,
+                                                          scanTimeoutMills));
+    }
     Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_SUSPENDED, startTimeInSecs, endTimeInSecs,
                                                         scanTimeoutMills));
     Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_STARTED, startTimeInSecs, endTimeInSecs,
@@ -646,6 +751,37 @@ public class AppMetadataStore extends MetadataStoreDataset {
     return Iterables.concat(batches);
   }
 
+  /**
+   * Returns the completed runs that were running between given start and end time by reading the time buckets
+   * of the run time index that overlap with the time range, as well as the list of long runs. A run can appear
+   * in more than one batch if it was running in multiple buckets.
+   */
+  @VisibleForTesting
+  List<Iterable<RunId>> getCompletedInRangeFromIndex(final long startTimeInSecs, final long endTimeInSecs,
+                                                     long maxScanTimeMillis, Ticker ticker) {
+    // Same condition as the time filter used by getRunningInRangeForStatus
+    Predicate<RunTimeRange> timeFilter = new Predicate<RunTimeRange>() {
+      @Override
+      public boolean apply(RunTimeRange range) {
+        return range.startTs < endTimeInSecs && range.stopTs >= startTimeInSecs;
+      }
+    };
+
+    List<Iterable<RunId>> batches = new ArrayList<>();
+    if (startTimeInSecs < endTimeInSecs) {
+      MDSKey startKey = new MDSKey.Builder().add(TYPE_RUN_TIME_INDEX)
+        .add(startTimeInSecs / RUN_TIME_BUCKET_SECS).build();
+      MDSKey stopKey = new MDSKey.Builder().add(TYPE_RUN_TIME_INDEX)
+        .add((endTimeInSecs - 1) / RUN_TIME_BUCKET_SECS + 1).build();
+      scanInBatches(startKey, stopKey, RunTimeRange.class, timeFilter, RUN_TIME_RANGE_TO_RUN_ID_FUNCTION,
+                    maxScanTimeMillis, ticker, batches);
+    }
+    MDSKey longRunsKey = new MDSKey.Builder().add(TYPE_RUN_TIME_INDEX_LONG).build();
+    scanInBatches(longRunsKey, new MDSKey(Bytes.stopKeyForPrefix(longRunsKey.getKey())), RunTimeRange.class,
+                  timeFilter, RUN_TIME_RANGE_TO_RUN_ID_FUNCTION, maxScanTimeMillis, ticker, batches);
+    return batches;
+  }
+
   @VisibleForTesting
   List<Iterable<RunId>> getRunningInRangeForStatus(String statusKey, final long startTimeInSecs,
                                                    final long endTimeInSecs, long maxScanTimeMillis, Ticker ticker) {
@@ -660,23 +796,33 @@ public class AppMetadataStore extends MetadataStoreDataset {
       }
     };
 
-    // Break up scans into smaller batches to prevent transaction timeout
     List<Iterable<RunId>> batches = new ArrayList<>();
     MDSKey startKey = new MDSKey.Builder().add(statusKey).build();
     MDSKey endKey = new MDSKey(Bytes.stopKeyForPrefix(startKey.getKey()));
+    scanInBatches(startKey, endKey, RunRecordMeta.class, timeFilter, RUN_RECORD_META_TO_RUN_ID_FUNCTION,
+                  maxScanTimeMillis, ticker, batches);
+    return batches;
+  }
+
+  /**
+   * Scans the given key range and adds the run ids of the values accepted by the filter to the given batches.
+   */
+  private <T> void scanInBatches(MDSKey startKey, MDSKey endKey, Class<T> valueType, Predicate<T> filter,
+                                 Function<T, RunId> runIdFunction, long maxScanTimeMillis, Ticker ticker,
+                                 List<Iterable<RunId>> batches) {
+    // Break up scans into smaller batches to prevent transaction timeout
     while (true) {
-      ScanFunction scanFunction = new ScanFunction(timeFilter, ticker, maxScanTimeMillis);
+      ScanFunction<T> scanFunction = new ScanFunction<>(filter, ticker, maxScanTimeMillis);
       scanFunction.start();
-      scan(startKey, endKey, RunRecordMeta.class, scanFunction);
+      scan(startKey, endKey, valueType, scanFunction);
       // stop when scan returns zero elements
       if (scanFunction.getNumProcessed() == 0) {
         break;
       }
-      batches.add(Iterables.transform(scanFunction.getValues(), RUN_RECORD_META_TO_RUN_ID_FUNCTION));
+      batches.add(Iterables.transform(scanFunction.getValues(), runIdFunction));
       // key for next scan is the last key + 1 from the previous scan
       startKey = new MDSKey(Bytes.stopKeyForPrefix(scanFunction.getLastKey().getKey()));
     }
-    return batches;
   }
 
   public void upgradeVersionKeys() {
@@ -719,15 +865,30 @@ public class AppMetadataStore extends MetadataStoreDataset {
     return new MDSKey.Builder(oldKey).add(ApplicationId.DEFAULT_VERSION).build();
   }
 
-  private static class ScanFunction implements Function<MetadataStoreDataset.KeyValue<RunRecordMeta>, Boolean> {
-    private final Predicate<RunRecordMeta> filter;
+  /**
+   * Value of a run time index entry.
+   */
+  private static final class RunTimeRange {
+    private final String pid;
+    private final long startTs;
+    private final long stopTs;
+
+    RunTimeRange(String pid, long startTs, long stopTs) {
+      this.pid = pid;
+      this.startTs = startTs;
+      this.stopTs = stopTs;
+    }
+  }
+
+  private static class ScanFunction<T> implements Function<MetadataStoreDataset.KeyValue<T>, Boolean> {
+    private final Predicate<T> filter;
     private final Stopwatch stopwatch;
     private final long maxScanTimeMillis;
-    private final List<RunRecordMeta> values = new ArrayList<>();
+    private final List<T> values = new ArrayList<>();
     private int numProcessed = 0;
     private MDSKey lastKey;
 
-    ScanFunction(Predicate<RunRecordMeta> filter, Ticker ticker, long maxScanTimeMillis) {
+    ScanFunction(Predicate<T> filter, Ticker ticker, long maxScanTimeMillis) {
       this.filter = filter;
       this.maxScanTimeMillis = maxScanTimeMillis;
       this.stopwatch = new Stopwatch(ticker);
@@ -737,7 +898,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
       stopwatch.start();
     }
 
-    public List<RunRecordMeta> getValues() {
+    public List<T> getValues() {
       return Collections.unmodifiableList(values);
     }
 
@@ -750,7 +911,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
     }
 
     @Override
-    public Boolean apply(MetadataStoreDataset.KeyValue<RunRecordMeta> input) {
+    public Boolean apply(MetadataStoreDataset.KeyValue<T> input) {
       long elapsedMillis = stopwatch.elapsedMillis();
       if (elapsedMillis > maxScanTimeMillis) {
         return false;
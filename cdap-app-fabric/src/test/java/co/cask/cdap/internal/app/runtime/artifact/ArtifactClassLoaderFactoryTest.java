@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.app.runtime.DummyProgramRunnerFactory;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.test.AppJarHelper;
+import co.cask.cdap.internal.app.runtime.artifact.app.InvalidConfigApp;
+import co.cask.cdap.internal.app.runtime.artifact.app.inspection.InspectionApp;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.jar.Manifest;
+
+/**
+ * Unit test for {@link ArtifactClassLoaderFactory}.
+ */
+public class ArtifactClassLoaderFactoryTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testShareAndClose() throws Exception {
+    File localDataDir = TMP_FOLDER.newFolder();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, localDataDir.getAbsolutePath());
+    cConf.setInt(Constants.AppFabric.ARTIFACT_CLASSLOADER_CACHE_SIZE, 1);
+    File tmpDir = new File(localDataDir, cConf.get(Constants.AppFabric.TEMP_DIR));
+
+    Location appArtifact = createJar(InspectionApp.class);
+    Location otherArtifact = createJar(InvalidConfigApp.class);
+
+    ArtifactClassLoaderFactory factory = new ArtifactClassLoaderFactory(cConf, new DummyProgramRunnerFactory());
+    CloseableClassLoader otherClassLoader = factory.createClassLoader(otherArtifact);
+    try (CloseableClassLoader classLoader = factory.createClassLoader(appArtifact)) {
+      // Classloaders of the same artifact are shared
+      try (CloseableClassLoader sharedClassLoader = factory.createClassLoader(appArtifact)) {
+        Assert.assertSame(classLoader.loadClass(InspectionApp.class.getName()),
+                          sharedClassLoader.loadClass(InspectionApp.class.getName()));
+      }
+    }
+    Assert.assertEquals(1, listUnpackDirs(tmpDir).length);
+
+    // Closing the factory should keep the unpacked artifact that is still in use
+    factory.close();
+    Assert.assertEquals(1, listUnpackDirs(tmpDir).length);
+    Assert.assertNotNull(otherClassLoader.loadClass(InvalidConfigApp.class.getName()));
+
+    // Once the last classloader is closed, the unpack directory should be gone
+    otherClassLoader.close();
+    Assert.assertEquals(0, listUnpackDirs(tmpDir).length);
+
+    // The factory cannot be used after it is closed
+    try {
+      factory.createClassLoader(appArtifact).close();
+      Assert.fail("Expected failure when creating classloader from a closed factory");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+  }
+
+  private static File[] listUnpackDirs(File tmpDir) {
+    File[] files = tmpDir.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.getName().startsWith("artifacts-");
+      }
+    });
+    return files == null ? new File[0] : files;
+  }
+
+  private static Location createJar(Class<?> cls) throws IOException {
+    return AppJarHelper.createDeploymentJar(new LocalLocationFactory(TMP_FOLDER.newFolder()), cls, new Manifest());
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for {@link ArtifactUnpackCache}.
+ */
+public class ArtifactUnpackCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testContentHash() throws IOException {
+    ArtifactUnpackCache cache = new ArtifactUnpackCache(TEMP_FOLDER.newFolder(), 1024L);
+
+    File file1 = TEMP_FOLDER.newFile();
+    File file2 = TEMP_FOLDER.newFile();
+    File file3 = TEMP_FOLDER.newFile();
+    Files.write("content", file1, Charsets.UTF_8);
+    Files.write("content", file2, Charsets.UTF_8);
+    Files.write("other", file3, Charsets.UTF_8);
+
+    String hash = cache.getContentHash(Locations.toLocation(file1));
+    Assert.assertEquals(hash, cache.getContentHash(Locations.toLocation(file2)));
+    Assert.assertNotEquals(hash, cache.getContentHash(Locations.toLocation(file3)));
+  }
+
+  @Test
+  public void testReuseAndEviction() throws IOException {
+    ArtifactUnpackCache cache = new ArtifactUnpackCache(TEMP_FOLDER.newFolder(), 10L);
+    CountingUnpacker unpacker = new CountingUnpacker(8);
+
+    // Acquire the same content twice should only unpack once
+    File dir = cache.acquire("a", unpacker);
+    Assert.assertEquals(dir, cache.acquire("a", unpacker));
+    Assert.assertEquals(1, unpacker.count.get());
+
+    // Pinned directory is not evicted even if the cache is over the limit
+    File dirB = cache.acquire("b", unpacker);
+    Assert.assertEquals(2, unpacker.count.get());
+    Assert.assertTrue(dir.isDirectory());
+
+    // Release "a" once, it is still pinned
+    cache.release("a");
+    Assert.assertTrue(dir.isDirectory());
+
+    // Release it completely. It becomes the least recently used, hence evicted.
+    cache.release("a");
+    Assert.assertFalse(dir.exists());
+    Assert.assertTrue(dirB.isDirectory());
+
+    // Released "b" stays as it is within the limit
+    cache.release("b");
+    Assert.assertTrue(dirB.isDirectory());
+    Assert.assertEquals(dirB, cache.acquire("b", unpacker));
+    Assert.assertEquals(2, unpacker.count.get());
+    cache.release("b");
+
+    // Acquiring "a" again needs to unpack it again, and "b" is evicted
+    Assert.assertEquals(dir, cache.acquire("a", unpacker));
+    Assert.assertEquals(3, unpacker.count.get());
+    Assert.assertFalse(dirB.exists());
+    cache.release("a");
+  }
+
+  @Test
+  public void testUnpackFailure() throws IOException {
+    ArtifactUnpackCache cache = new ArtifactUnpackCache(TEMP_FOLDER.newFolder(), 10L);
+    try {
+      cache.acquire("a", new ArtifactUnpackCache.Unpacker() {
+        @Override
+        public void unpack(File dir) throws IOException {
+          throw new IOException("Failed");
+        }
+      });
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      // Expected
+    }
+
+    // The failed entry should be retried
+    CountingUnpacker unpacker = new CountingUnpacker(1);
+    File dir = cache.acquire("a", unpacker);
+    Assert.assertEquals(1, unpacker.count.get());
+    Assert.assertTrue(new File(dir, "file").isFile());
+    cache.release("a");
+  }
+
+  @Test
+  public void testClose() throws IOException {
+    File baseDir = new File(TEMP_FOLDER.newFolder(), "unpack");
+    ArtifactUnpackCache cache = new ArtifactUnpackCache(baseDir, 1024L);
+    CountingUnpacker unpacker = new CountingUnpacker(1);
+
+    File dirA = cache.acquire("a", unpacker);
+    File dirB = cache.acquire("b", unpacker);
+    cache.release("a");
+
+    // Unused directory is deleted on close, while the one in use is kept until it is released
+    cache.close();
+    Assert.assertFalse(dirA.exists());
+    Assert.assertTrue(dirB.isDirectory());
+
+    try {
+      cache.acquire("a", unpacker);
+      Assert.fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+
+    cache.release("b");
+    Assert.assertFalse(dirB.exists());
+    Assert.assertFalse(baseDir.exists());
+  }
+
+  /**
+   * An {@link ArtifactUnpackCache.Unpacker} that writes a file of the given size and counts the number of calls.
+   */
+  private static final class CountingUnpacker implements ArtifactUnpackCache.Unpacker {
+    private final int size;
+    private final AtomicInteger count = new AtomicInteger();
+
+    CountingUnpacker(int size) {
+      this.size = size;
+    }
+
+    @Override
+    public void unpack(File dir) throws IOException {
+      count.incrementAndGet();
+      Files.write(new byte[size], new File(dir, "file"));
+    }
+  }
+}
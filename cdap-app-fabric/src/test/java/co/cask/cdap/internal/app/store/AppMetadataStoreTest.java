@@ -44,7 +44,9 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -238,6 +240,108 @@ public class AppMetadataStoreTest {
     });
   }
 
+  @Test
+  public void testRunningInRangeWithIndex() throws Exception {
+    DatasetId storeTable = NamespaceId.DEFAULT.dataset("testRunningInRangeWithIndex");
+    datasetFramework.addInstance(Table.class.getName(), storeTable, DatasetProperties.EMPTY);
+
+    Table table = datasetFramework.getDataset(storeTable, ImmutableMap.<String, String>of(), null);
+    Assert.assertNotNull(table);
+    final AppMetadataStore metadataStoreDataset = new AppMetadataStore(table, cConf);
+    TransactionExecutor txnl = txExecutorFactory.createExecutor(
+      Collections.singleton((TransactionAware) metadataStoreDataset));
+
+    // Runs start after the current time, hence they are all after the time that the index starts
+    final long baseTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + TimeUnit.HOURS.toSeconds(1);
+    final Map<String, long[]> runTimes = new HashMap<>();
+    final List<String> runIdsOfApp3 = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      long startTime = baseTime + i * 1800;
+      // The last run spans more than the maximum number of buckets
+      long stopTime = i == 19 ? startTime + TimeUnit.DAYS.toSeconds(10) : startTime + (i % 4) * 2000;
+      final ProgramId program = NamespaceId.DEFAULT.app("app" + i).program(ProgramType.WORKFLOW, "program" + i);
+      final RunId runId = RunIds.generate(TimeUnit.SECONDS.toMillis(startTime));
+      final long startTs = startTime;
+      final long stopTs = stopTime;
+      runTimes.put(runId.getId(), new long[] { startTs, stopTs });
+      if (i == 3) {
+        // The run of app3 spans multiple buckets
+        runIdsOfApp3.add(runId.getId());
+      }
+      txnl.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          metadataStoreDataset.recordProgramStart(program, runId.getId(), startTs, null, null, null);
+          metadataStoreDataset.recordProgramStop(program, runId.getId(), stopTs, ProgramRunStatus.COMPLETED, null);
+        }
+      });
+    }
+
+    long[][] ranges = {
+      { baseTime, baseTime + 1 },
+      { baseTime + 1000, baseTime + 5000 },
+      { baseTime + 3 * 3600, baseTime + 3 * 3600 + 1 },
+      { baseTime + 3600, baseTime + 6 * 3600 },
+      { baseTime + 9 * 3600, baseTime + 20 * 3600 },
+      { baseTime + 5 * 3600, baseTime + 5 * 3600 },
+      { baseTime, Long.MAX_VALUE },
+    };
+    for (final long[] range : ranges) {
+      final Set<String> expected = new HashSet<>();
+      for (Map.Entry<String, long[]> entry : runTimes.entrySet()) {
+        if (entry.getValue()[0] < range[1] && entry.getValue()[1] >= range[0]) {
+          expected.add(entry.getKey());
+        }
+      }
+      txnl.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Set<String> actual = new HashSet<>();
+          for (RunId runId : metadataStoreDataset.getRunningInRange(range[0], range[1])) {
+            actual.add(runId.getId());
+          }
+          Assert.assertEquals(expected, actual);
+
+          // Index lookup is broken up into batches with the scan timeout
+          int maxScanTimeMillis = 5;
+          List<Iterable<RunId>> batches =
+            metadataStoreDataset.getCompletedInRangeFromIndex(range[0], range[1], maxScanTimeMillis,
+                                                              new CountingTicker(1));
+          actual.clear();
+          for (Iterable<RunId> batch : batches) {
+            Assert.assertTrue(Iterables.size(batch) <= maxScanTimeMillis);
+            for (RunId runId : batch) {
+              actual.add(runId.getId());
+            }
+          }
+          Assert.assertEquals(expected, actual);
+        }
+      });
+    }
+
+    // Deleting program history should remove the runs from the index
+    final String app3RunId = Iterables.getOnlyElement(runIdsOfApp3);
+    txnl.execute(new TransactionExecutor.Subroutine() {
+      @Override
+      public void apply() throws Exception {
+        metadataStoreDataset.deleteProgramHistory(NamespaceId.DEFAULT.getNamespace(), "app3");
+        Set<String> indexed = new HashSet<>();
+        for (RunId runId : Iterables.concat(metadataStoreDataset.getCompletedInRangeFromIndex(
+          baseTime, Long.MAX_VALUE, Long.MAX_VALUE, Ticker.systemTicker()))) {
+          indexed.add(runId.getId());
+        }
+        Assert.assertFalse(indexed.contains(app3RunId));
+        Assert.assertEquals(runTimes.size() - 1, indexed.size());
+
+        metadataStoreDataset.deleteProgramHistory(NamespaceId.DEFAULT.getNamespace(), "app19");
+        Assert.assertEquals(runTimes.size() - 2,
+                            metadataStoreDataset.getRunningInRange(baseTime, Long.MAX_VALUE).size());
+        metadataStoreDataset.deleteProgramHistory(NamespaceId.DEFAULT.getNamespace());
+        Assert.assertTrue(metadataStoreDataset.getRunningInRange(baseTime, Long.MAX_VALUE).isEmpty());
+      }
+    });
+  }
+
   private static class CountingTicker extends Ticker {
     private final long elementsPerMillis;
     private int numProcessed = 0;
@@ -19,6 +19,8 @@ package co.cask.cdap.datapipeline;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.WritableComparator;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -29,6 +31,14 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  */
@@ -52,4 +62,193 @@ public class StructuredRecordWritableTest {
 
     Assert.assertEquals(writableIn.get(), record);
   }
+
+  @Test
+  public void testComplexTypes() throws IOException {
+    Schema innerSchema = Schema.recordOf("inner", Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)));
+    Schema schema = Schema.recordOf(
+      "rec",
+      Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+      Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+      Schema.Field.of("e", Schema.enumWith("x", "y")),
+      Schema.Field.of("arr", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("inner", innerSchema),
+      Schema.Field.of("n1", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("n2", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("i", -5)
+      .set("l", Long.MAX_VALUE)
+      .set("f", 1.5f)
+      .set("d", -2.25d)
+      .set("bytes", new byte[] { 1, 2, 3 })
+      .set("e", "y")
+      .set("arr", Arrays.asList("a", "b"))
+      .set("map", Collections.singletonMap("k", 10L))
+      .set("inner", StructuredRecord.builder(innerSchema).set("b", true).build())
+      .set("n1", "v")
+      .build();
+
+    StructuredRecord copy = readWritable(writeWritable(record)).get();
+    Assert.assertEquals(schema, copy.getSchema());
+    Assert.assertEquals(-5, copy.get("i"));
+    Assert.assertEquals(Long.MAX_VALUE, copy.get("l"));
+    Assert.assertEquals(1.5f, copy.get("f"));
+    Assert.assertEquals(-2.25d, copy.get("d"));
+    Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) copy.get("bytes"));
+    Assert.assertEquals("y", copy.get("e"));
+    Assert.assertEquals(Arrays.asList("a", "b"), copy.get("arr"));
+    Assert.assertEquals(Collections.singletonMap("k", 10L), copy.get("map"));
+    Assert.assertEquals(record.get("inner"), copy.get("inner"));
+    Assert.assertEquals("v", copy.get("n1"));
+    Assert.assertNull(copy.get("n2"));
+
+    // ByteBuffer is serialized the same as byte[]
+    StructuredRecord bufferRecord = StructuredRecord.builder(schema)
+      .set("i", -5)
+      .set("l", Long.MAX_VALUE)
+      .set("f", 1.5f)
+      .set("d", -2.25d)
+      .set("bytes", ByteBuffer.wrap(new byte[] { 1, 2, 3 }))
+      .set("e", "y")
+      .set("arr", Arrays.asList("a", "b"))
+      .set("map", Collections.singletonMap("k", 10L))
+      .set("inner", StructuredRecord.builder(innerSchema).set("b", true).build())
+      .set("n1", "v")
+      .build();
+    Assert.assertArrayEquals(writeWritable(record), writeWritable(bufferRecord));
+  }
+
+  @Test
+  public void testRegisteredSchema() throws IOException {
+    Schema schema = Schema.recordOf("registered", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record = StructuredRecord.builder(schema).set("x", "value").build();
+    byte[] inlineBytes = writeWritable(record);
+
+    Configuration conf = new Configuration();
+    StructuredRecordWritable.setSchemas(conf, Collections.singleton(schema));
+    StructuredRecordWritable.registerSchemas(conf);
+
+    // Registered schema is not written with the record
+    byte[] bytes = writeWritable(record);
+    Assert.assertTrue(bytes.length < inlineBytes.length);
+    Assert.assertEquals(record, readWritable(bytes).get());
+    // Records written before registration can still be read
+    Assert.assertEquals(record, readWritable(inlineBytes).get());
+    // Raw comparison ignores whether the schema is inline
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    Assert.assertEquals(0, comparator.compare(bytes, 0, bytes.length, inlineBytes, 0, inlineBytes.length));
+  }
+
+  @Test
+  public void testRegistrationReplaced() throws IOException {
+    Schema schema1 = Schema.recordOf("job1", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
+    Schema schema2 = Schema.recordOf("job2", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record1 = StructuredRecord.builder(schema1).set("x", "value").build();
+    StructuredRecord record2 = StructuredRecord.builder(schema2).set("x", "value").build();
+    byte[] inlineBytes1 = writeWritable(record1);
+    byte[] inlineBytes2 = writeWritable(record2);
+
+    Configuration conf1 = new Configuration();
+    StructuredRecordWritable.setSchemas(conf1, Collections.singleton(schema1));
+    Configuration conf2 = new Configuration();
+    StructuredRecordWritable.setSchemas(conf2, Collections.singleton(schema2));
+
+    try {
+      // Simulate tasks of two jobs running one after the other in the same JVM
+      StructuredRecordWritable.registerSchemas(conf1);
+      byte[] referenceBytes1 = writeWritable(record1);
+      Assert.assertTrue(referenceBytes1.length < inlineBytes1.length);
+
+      // Schemas of the first job are not used after the second job registers its schemas
+      StructuredRecordWritable.registerSchemas(conf2);
+      Assert.assertArrayEquals(inlineBytes1, writeWritable(record1));
+      Assert.assertTrue(writeWritable(record2).length < inlineBytes2.length);
+
+      // Instances configured for the first job can still read references of the first job
+      StructuredRecordWritable writable = new StructuredRecordWritable();
+      writable.setConf(conf1);
+      writable.readFields(new DataInputStream(new ByteArrayInputStream(referenceBytes1)));
+      Assert.assertEquals(record1, writable.get());
+
+      // A job without schemas writes all schemas inline
+      StructuredRecordWritable.registerSchemas(new Configuration());
+      Assert.assertArrayEquals(inlineBytes1, writeWritable(record1));
+      Assert.assertArrayEquals(inlineBytes2, writeWritable(record2));
+    } finally {
+      StructuredRecordWritable.registerSchemas(new Configuration());
+    }
+  }
+
+  @Test
+  public void testRawComparator() throws IOException {
+    Schema schema = Schema.recordOf("rec", Schema.Field.of("x", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("y", Schema.of(Schema.Type.INT)));
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    Assert.assertTrue(comparator instanceof StructuredRecordWritable.Comparator);
+
+    StructuredRecord[] records = new StructuredRecord[] {
+      StructuredRecord.builder(schema).set("x", "a").set("y", 1).build(),
+      StructuredRecord.builder(schema).set("x", "a").set("y", 1).build(),
+      StructuredRecord.builder(schema).set("x", "a").set("y", 2).build(),
+      StructuredRecord.builder(schema).set("x", "b").set("y", 1).build(),
+      StructuredRecord.builder(Schema.recordOf("other", Schema.Field.of("x", Schema.of(Schema.Type.STRING))))
+        .set("x", "a").build()
+    };
+
+    for (StructuredRecord r1 : records) {
+      for (StructuredRecord r2 : records) {
+        byte[] b1 = writeWritable(r1);
+        byte[] b2 = writeWritable(r2);
+        int rawCmp = Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length));
+        int objCmp = Integer.signum(new StructuredRecordWritable(r1).compareTo(new StructuredRecordWritable(r2)));
+        Assert.assertEquals(objCmp, rawCmp);
+        Assert.assertEquals(r1.equals(r2), rawCmp == 0);
+      }
+    }
+  }
+
+  @Test
+  public void testMapEncoding() throws IOException {
+    Schema schema = Schema.recordOf("rec", Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                                               Schema.of(Schema.Type.INT))));
+    // Equal maps with different iteration orders
+    Map<String, Integer> map1 = new LinkedHashMap<>();
+    Map<String, Integer> map2 = new LinkedHashMap<>();
+    Map<String, Integer> map3 = new HashMap<>(2);
+    Map<String, Integer> map4 = new HashMap<>(1024);
+    for (int i = 0; i < 100; i++) {
+      map1.put("key" + i, i);
+      map2.put("key" + (99 - i), 99 - i);
+      map3.put("key" + i, i);
+      map4.put("key" + (99 - i), 99 - i);
+    }
+    Assert.assertNotEquals(new ArrayList<>(map1.keySet()), new ArrayList<>(map2.keySet()));
+
+    byte[] expected = writeWritable(StructuredRecord.builder(schema).set("map", map1).build());
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    for (Map<String, Integer> map : Arrays.asList(map2, map3, map4, new TreeMap<>(map2))) {
+      StructuredRecord record = StructuredRecord.builder(schema).set("map", map).build();
+      byte[] bytes = writeWritable(record);
+      Assert.assertArrayEquals(expected, bytes);
+      Assert.assertEquals(0, comparator.compare(expected, 0, expected.length, bytes, 0, bytes.length));
+      Assert.assertEquals(map1, readWritable(bytes).get().get("map"));
+    }
+  }
+
+  private byte[] writeWritable(StructuredRecord record) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DataOutput output = new DataOutputStream(os);
+    new StructuredRecordWritable(record).write(output);
+    return os.toByteArray();
+  }
+
+  private StructuredRecordWritable readWritable(byte[] bytes) throws IOException {
+    StructuredRecordWritable writable = new StructuredRecordWritable();
+    writable.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+    return writable;
+  }
 }
@@ -56,7 +56,7 @@ public class PipelinePluginInstantiator {
   public <T> T newPluginInstance(String stageName, MacroEvaluator macroEvaluator) throws InstantiationException {
     if (connectorSources.contains(stageName)) {
       String datasetName = phaseSpec.getConnectorDatasets().get(stageName);
-      return (T) new ConnectorSource(datasetName, null);
+      return (T) new ConnectorSource(datasetName);
     } else if (connectorSinks.contains(stageName)) {
       String datasetName = phaseSpec.getConnectorDatasets().get(stageName);
       return (T) new ConnectorSink(datasetName, phaseSpec.getPhaseName());
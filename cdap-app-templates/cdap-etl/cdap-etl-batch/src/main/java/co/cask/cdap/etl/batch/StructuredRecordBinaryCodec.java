@@ -0,0 +1,325 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.batch;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes and decodes {@link StructuredRecord} in a compact binary format, similar to the Avro binary encoding.
+ * The schema is not part of the encoded data, hence the same schema must be used for decoding.
+ *
+ * Values are encoded as follows:
+ * <ul>
+ *   <li>int and long as variable length integers, float and double as fixed length values</li>
+ *   <li>bytes and string as length followed by the content; strings are encoded in UTF-8</li>
+ *   <li>enum as the index of the value in the enum schema</li>
+ *   <li>array and map as number of entries followed by the entries; map entries are sorted by the encoded key</li>
+ *   <li>record as the values of the fields in the order of the schema</li>
+ *   <li>union as the index of the schema in the union followed by the value</li>
+ * </ul>
+ */
+public final class StructuredRecordBinaryCodec {
+
+  // Orders encoded map entries by the encoded key, then by the encoded value
+  private static final Comparator<byte[][]> ENCODED_ENTRY_COMPARATOR = new Comparator<byte[][]>() {
+    @Override
+    public int compare(byte[][] entry1, byte[][] entry2) {
+      int cmp = Bytes.compareTo(entry1[0], entry2[0]);
+      return cmp != 0 ? cmp : Bytes.compareTo(entry1[1], entry2[1]);
+    }
+  };
+
+  /**
+   * Encodes the given record to the given output.
+   */
+  public static void encode(StructuredRecord record, DataOutput out) throws IOException {
+    encode(out, record.getSchema(), record);
+  }
+
+  /**
+   * Decodes a record of the given schema from the given input.
+   */
+  public static StructuredRecord decode(Schema schema, DataInput in) throws IOException {
+    return decodeRecord(in, schema);
+  }
+
+  private static void encode(DataOutput out, Schema schema, @Nullable Object value) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        out.writeBoolean((Boolean) value);
+        break;
+      case INT:
+        WritableUtils.writeVInt(out, ((Number) value).intValue());
+        break;
+      case LONG:
+        WritableUtils.writeVLong(out, ((Number) value).longValue());
+        break;
+      case FLOAT:
+        out.writeFloat(((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(((Number) value).doubleValue());
+        break;
+      case BYTES:
+        encodeBytes(out, value);
+        break;
+      case STRING:
+        byte[] bytes = Bytes.toBytes((String) value);
+        WritableUtils.writeVInt(out, bytes.length);
+        out.write(bytes);
+        break;
+      case ENUM:
+        String name = value instanceof Enum ? ((Enum) value).name() : value.toString();
+        int idx = schema.getEnumIndex(name);
+        if (idx < 0) {
+          throw new IOException("Value '" + name + "' is not valid for enum: " + schema);
+        }
+        WritableUtils.writeVInt(out, idx);
+        break;
+      case ARRAY:
+        encodeArray(out, schema.getComponentSchema(), value);
+        break;
+      case MAP:
+        encodeMap(out, schema.getMapSchema(), value);
+        break;
+      case RECORD:
+        encodeRecord(out, schema, value);
+        break;
+      case UNION:
+        int unionIdx = findUnionIndex(schema, value);
+        WritableUtils.writeVInt(out, unionIdx);
+        encode(out, schema.getUnionSchema(unionIdx), value);
+        break;
+      default:
+        throw new IOException("Unsupported schema: " + schema);
+    }
+  }
+
+  private static void encodeBytes(DataOutput out, Object value) throws IOException {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = (ByteBuffer) value;
+      WritableUtils.writeVInt(out, buffer.remaining());
+      if (buffer.hasArray()) {
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      } else {
+        out.write(Bytes.toBytes(buffer));
+      }
+    } else if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      WritableUtils.writeVInt(out, bytes.length);
+      out.write(bytes);
+    } else {
+      throw new IOException("Expects either ByteBuffer or byte[]. Got " + value.getClass());
+    }
+  }
+
+  private static void encodeArray(DataOutput out, Schema elementSchema, Object value) throws IOException {
+    if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      WritableUtils.writeVInt(out, collection.size());
+      for (Object element : collection) {
+        encode(out, elementSchema, element);
+      }
+    } else if (value.getClass().isArray()) {
+      int length = Array.getLength(value);
+      WritableUtils.writeVInt(out, length);
+      for (int i = 0; i < length; i++) {
+        encode(out, elementSchema, Array.get(value, i));
+      }
+    } else {
+      throw new IOException("Expects either Collection or array. Got: " + value.getClass());
+    }
+  }
+
+  private static void encodeMap(DataOutput out, Map.Entry<Schema, Schema> entrySchema,
+                                Object value) throws IOException {
+    if (!(value instanceof Map)) {
+      throw new IOException("Expects Map. Got: " + value.getClass());
+    }
+    Map<?, ?> map = (Map<?, ?>) value;
+
+    // Entries are written in the order of the encoded keys, so that equal maps always have the same encoding
+    // regardless of the iteration order of the map, which is needed for comparing encoded records.
+    List<byte[][]> entries = new ArrayList<>(map.size());
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      entries.add(new byte[][] {
+        encodeToBytes(entrySchema.getKey(), entry.getKey()),
+        encodeToBytes(entrySchema.getValue(), entry.getValue())
+      });
+    }
+    Collections.sort(entries, ENCODED_ENTRY_COMPARATOR);
+
+    WritableUtils.writeVInt(out, entries.size());
+    for (byte[][] entry : entries) {
+      out.write(entry[0]);
+      out.write(entry[1]);
+    }
+  }
+
+  private static byte[] encodeToBytes(Schema schema, @Nullable Object value) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    encode(new DataOutputStream(os), schema, value);
+    return os.toByteArray();
+  }
+
+  private static void encodeRecord(DataOutput out, Schema schema, Object value) throws IOException {
+    if (!(value instanceof StructuredRecord)) {
+      throw new IOException("Expects StructuredRecord. Got: " + value.getClass());
+    }
+    StructuredRecord record = (StructuredRecord) value;
+    for (Schema.Field field : schema.getFields()) {
+      encode(out, field.getSchema(), record.get(field.getName()));
+    }
+  }
+
+  private static Object decode(DataInput in, Schema schema) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return in.readBoolean();
+      case INT:
+        return WritableUtils.readVInt(in);
+      case LONG:
+        return WritableUtils.readVLong(in);
+      case FLOAT:
+        return in.readFloat();
+      case DOUBLE:
+        return in.readDouble();
+      case BYTES:
+        return readBytes(in);
+      case STRING:
+        return Bytes.toString(readBytes(in));
+      case ENUM:
+        // Same as StructuredRecordStringConverter, enum value is represented by the name
+        return schema.getEnumValue(WritableUtils.readVInt(in));
+      case ARRAY:
+        Schema elementSchema = schema.getComponentSchema();
+        int size = WritableUtils.readVInt(in);
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(decode(in, elementSchema));
+        }
+        return list;
+      case MAP:
+        Map.Entry<Schema, Schema> entrySchema = schema.getMapSchema();
+        int entries = WritableUtils.readVInt(in);
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+          Object key = decode(in, entrySchema.getKey());
+          map.put(key, decode(in, entrySchema.getValue()));
+        }
+        return map;
+      case RECORD:
+        return decodeRecord(in, schema);
+      case UNION:
+        return decode(in, schema.getUnionSchema(WritableUtils.readVInt(in)));
+    }
+    throw new IOException("Unsupported schema: " + schema);
+  }
+
+  private static StructuredRecord decodeRecord(DataInput in, Schema schema) throws IOException {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      Object value = decode(in, field.getSchema());
+      if (value != null) {
+        builder.set(field.getName(), value);
+      }
+    }
+    return builder.build();
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[WritableUtils.readVInt(in)];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * Finds the index of the schema in the union that the given value is of. Only the type of the value is matched,
+   * except for records, which are also matched by the record name.
+   */
+  private static int findUnionIndex(Schema unionSchema, @Nullable Object value) throws IOException {
+    List<Schema> schemas = unionSchema.getUnionSchemas();
+    for (int i = 0; i < schemas.size(); i++) {
+      if (isOfType(schemas.get(i), value)) {
+        return i;
+      }
+    }
+    throw new IOException("Value of " + (value == null ? null : value.getClass())
+                            + " not valid in union: " + unionSchema);
+  }
+
+  private static boolean isOfType(Schema schema, @Nullable Object value) {
+    switch (schema.getType()) {
+      case NULL:
+        return value == null;
+      case BOOLEAN:
+        return value instanceof Boolean;
+      case INT:
+        return value instanceof Integer || value instanceof Short || value instanceof Byte;
+      case LONG:
+        return value instanceof Long;
+      case FLOAT:
+        return value instanceof Float;
+      case DOUBLE:
+        return value instanceof Double;
+      case BYTES:
+        return value instanceof ByteBuffer || value instanceof byte[];
+      case STRING:
+        return value instanceof String;
+      case ENUM:
+        return (value instanceof Enum && schema.getEnumIndex(((Enum) value).name()) >= 0)
+          || (value instanceof String && schema.getEnumIndex((String) value) >= 0);
+      case ARRAY:
+        return value instanceof Collection || (value != null && value.getClass().isArray());
+      case MAP:
+        return value instanceof Map;
+      case RECORD:
+        return value instanceof StructuredRecord
+          && schema.getRecordName().equals(((StructuredRecord) value).getSchema().getRecordName());
+      default:
+        return false;
+    }
+  }
+
+  private StructuredRecordBinaryCodec() {
+    // no-op to prevent instantiation of a helper class
+  }
+}
@@ -16,23 +16,122 @@
 
 package co.cask.cdap.etl.batch;
 
-import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Wrapper around a {@link StructuredRecord} so that it can be used as the output key and/or value of a mapper.
- * This is not very performant and must be improved soon (CDAP-5347).
+ *
+ * The record is serialized as the {@link SchemaHash} of its schema, followed by the record in the binary format of
+ * {@link StructuredRecordBinaryCodec}. Schemas registered for the job through {@link #setSchemas} are referred to by
+ * the hash only. Other schemas are also written inline, but are parsed only once per JVM when reading. Instances
+ * created by Hadoop use the schemas of the job they are configured for, others use the schemas registered through
+ * {@link #registerSchemas}.
+ * A {@link Comparator} is registered, so that serialized records are sorted without being deserialized.
  */
-public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable> {
+public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable>, Configurable {
+
+  private static final String SCHEMAS_KEY = "cdap.etl.record.writable.schemas";
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .create();
+  private static final Type SCHEMAS_TYPE = new TypeToken<Set<Schema>>() { }.getType();
+  private static final byte SCHEMA_REFERENCE = 0;
+  private static final byte SCHEMA_INLINE = 1;
+  private static final int HASH_SIZE = 16;
+
+  // Decoded schemas keyed by the value of the schemas configuration, to avoid decoding it for every instance
+  private static final Cache<String, Map<SchemaHash, Schema>> SCHEMA_REGISTRIES =
+    CacheBuilder.newBuilder().maximumSize(100).build();
+  // Schemas that were read inline, so that the same schema is not parsed again
+  private static final Cache<SchemaHash, Schema> PARSED_SCHEMAS = CacheBuilder.newBuilder().maximumSize(1000).build();
+  // Schemas registered for the task running in this JVM, which are written by hash only
+  private static volatile Map<SchemaHash, Schema> registeredSchemas = Collections.emptyMap();
+
+  static {
+    WritableComparator.define(StructuredRecordWritable.class, new Comparator());
+  }
+
   private StructuredRecord record;
+  private Configuration conf;
+  // Schemas of the job this instance is configured for, or null to use the registered schemas
+  private Map<SchemaHash, Schema> schemas;
+
+  /**
+   * Sets the schemas of the records that are known before the job starts into the given job configuration.
+   * Records of these schemas are serialized with the schema hash only.
+   */
+  public static void setSchemas(Configuration conf, Iterable<Schema> schemas) {
+    Set<Schema> schemaSet = Sets.newLinkedHashSet();
+    for (Schema schema : schemas) {
+      if (schema != null) {
+        schemaSet.add(schema);
+      }
+    }
+    conf.set(SCHEMAS_KEY, GSON.toJson(schemaSet, SCHEMAS_TYPE));
+  }
+
+  /**
+   * Registers the schemas set through {@link #setSchemas} in the given configuration. It must be called in the
+   * task before any record is written. The registered schemas replace the ones registered by earlier tasks that
+   * ran in the same JVM, hence records written by a task don't depend on jobs that ran before it.
+   */
+  public static void registerSchemas(Configuration conf) {
+    registeredSchemas = getSchemas(conf);
+  }
+
+  /**
+   * Returns the schemas set through {@link #setSchemas} in the given configuration, keyed by the schema hash.
+   */
+  private static Map<SchemaHash, Schema> getSchemas(Configuration conf) {
+    final String schemas = conf.get(SCHEMAS_KEY);
+    if (schemas == null) {
+      return Collections.emptyMap();
+    }
+    try {
+      return SCHEMA_REGISTRIES.get(schemas, new Callable<Map<SchemaHash, Schema>>() {
+        @Override
+        public Map<SchemaHash, Schema> call() throws Exception {
+          Map<SchemaHash, Schema> schemaMap = new HashMap<>();
+          for (Schema schema : GSON.<Set<Schema>>fromJson(schemas, SCHEMAS_TYPE)) {
+            schemaMap.put(schema.getSchemaHash(), schema);
+          }
+          return Collections.unmodifiableMap(schemaMap);
+        }
+      });
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
 
   // required by Hadoop
   @SuppressWarnings("unused")
@@ -54,33 +153,80 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   @SuppressWarnings("ConstantConditions")
   @Override
   public void write(DataOutput out) throws IOException {
-    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
-    out.writeInt(schemaBytes.length);
-    out.write(schemaBytes);
-
-    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
-    out.writeInt(recordBytes.length);
-    out.write(recordBytes);
+    Schema schema = record.getSchema();
+    SchemaHash schemaHash = schema.getSchemaHash();
+    if (getSchemas().containsKey(schemaHash)) {
+      out.writeByte(SCHEMA_REFERENCE);
+      out.write(schemaHash.toByteArray());
+    } else {
+      out.writeByte(SCHEMA_INLINE);
+      out.write(schemaHash.toByteArray());
+      Text.writeString(out, schema.toString());
+    }
+    StructuredRecordBinaryCodec.encode(record, out);
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
-    int schemaLen = in.readInt();
-    byte[] schemaBytes = new byte[schemaLen];
-    in.readFully(schemaBytes, 0, schemaLen);
-    String schemaStr = Bytes.toString(schemaBytes);
-    Schema schema = Schema.parseJson(schemaStr);
+    byte schemaType = in.readByte();
+    byte[] hashBytes = new byte[HASH_SIZE];
+    in.readFully(hashBytes);
+    SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(hashBytes));
+
+    Schema schema;
+    if (schemaType == SCHEMA_INLINE) {
+      schema = PARSED_SCHEMAS.getIfPresent(schemaHash);
+      if (schema == null) {
+        schema = Schema.parseJson(Text.readString(in));
+        PARSED_SCHEMAS.put(schemaHash, schema);
+      } else {
+        WritableUtils.skipFully(in, WritableUtils.readVInt(in));
+      }
+    } else {
+      schema = getSchemas().get(schemaHash);
+      if (schema == null) {
+        throw new IOException("Schema with hash " + schemaHash + " is not registered");
+      }
+    }
+    this.record = StructuredRecordBinaryCodec.decode(schema, in);
+  }
 
-    int recordLen = in.readInt();
-    byte[] recordBytes = new byte[recordLen];
-    in.readFully(recordBytes, 0, recordLen);
-    String recordStr = Bytes.toString(recordBytes);
-    this.record = StructuredRecordStringConverter.fromJsonString(recordStr, schema);
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+    this.schemas = getSchemas(conf);
   }
 
+  @Override
+  public Configuration getConf() {
+    return conf;
+  }
+
+  private Map<SchemaHash, Schema> getSchemas() {
+    return schemas == null ? registeredSchemas : schemas;
+  }
+
+  /**
+   * Compares by the schema hash first, then by the serialized record. It is consistent with {@link Comparator}.
+   */
   @Override
   public int compareTo(StructuredRecordWritable o) {
-    return Integer.compare(hashCode(), o.hashCode());
+    byte[] hash = record.getSchema().getSchemaHash().toByteArray();
+    byte[] otherHash = o.record.getSchema().getSchemaHash().toByteArray();
+    int cmp = WritableComparator.compareBytes(hash, 0, hash.length, otherHash, 0, otherHash.length);
+    if (cmp != 0) {
+      return cmp;
+    }
+    try {
+      DataOutputBuffer buffer = new DataOutputBuffer();
+      StructuredRecordBinaryCodec.encode(record, buffer);
+      DataOutputBuffer otherBuffer = new DataOutputBuffer();
+      StructuredRecordBinaryCodec.encode(o.record, otherBuffer);
+      return WritableComparator.compareBytes(buffer.getData(), 0, buffer.getLength(),
+                                             otherBuffer.getData(), 0, otherBuffer.getLength());
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
   }
 
   @Override
@@ -101,4 +247,38 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   public int hashCode() {
     return record != null ? record.hashCode() : 0;
   }
+
+  /**
+   * A {@link WritableComparator} that compares serialized {@link StructuredRecordWritable} without deserializing.
+   * Records are compared by the schema hash first, then by the binary encoded record, ignoring the inline schema.
+   */
+  public static final class Comparator extends WritableComparator {
+
+    public Comparator() {
+      super(StructuredRecordWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      int cmp = compareBytes(b1, s1 + 1, HASH_SIZE, b2, s2 + 1, HASH_SIZE);
+      if (cmp != 0) {
+        return cmp;
+      }
+      int offset1 = getRecordOffset(b1, s1);
+      int offset2 = getRecordOffset(b2, s2);
+      return compareBytes(b1, offset1, l1 - (offset1 - s1), b2, offset2, l2 - (offset2 - s2));
+    }
+
+    private int getRecordOffset(byte[] bytes, int start) {
+      int offset = start + 1 + HASH_SIZE;
+      if (bytes[start] != SCHEMA_INLINE) {
+        return offset;
+      }
+      try {
+        return offset + WritableUtils.decodeVIntSize(bytes[offset]) + readVInt(bytes, offset);
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+  }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.etl.batch.StructuredRecordBinaryCodec;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileRecordReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Input format for reading data written by {@link ConnectorOutputFormat}. The files are split the same way as
+ * {@link SequenceFileInputFormat} does.
+ */
+public class ConnectorInputFormat extends SequenceFileInputFormat<Text, StructuredRecordWritable> {
+
+  @Override
+  public RecordReader<Text, StructuredRecordWritable> createRecordReader(InputSplit split,
+                                                                          TaskAttemptContext context) {
+    return new ConnectorRecordReader();
+  }
+
+  /**
+   * The {@link RecordReader} for decoding records from a sequence file, using the schemas written for the file.
+   */
+  private static final class ConnectorRecordReader extends RecordReader<Text, StructuredRecordWritable> {
+
+    private final SequenceFileRecordReader<Text, BytesWritable> reader = new SequenceFileRecordReader<>();
+    private final DataInputBuffer input = new DataInputBuffer();
+    private final byte[] hashBytes = new byte[16];
+    private Map<SchemaHash, Schema> schemas;
+    private StructuredRecordWritable value;
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+      reader.initialize(split, context);
+      schemas = ConnectorOutputFormat.readSchemas(((FileSplit) split).getPath(), context.getConfiguration());
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+      if (!reader.nextKeyValue()) {
+        return false;
+      }
+      BytesWritable bytes = reader.getCurrentValue();
+      input.reset(bytes.getBytes(), bytes.getLength());
+      input.readFully(hashBytes);
+      SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(hashBytes));
+      Schema schema = schemas.get(schemaHash);
+      if (schema == null) {
+        throw new IOException("Schema with hash " + schemaHash + " is missing for connector data");
+      }
+      value = new StructuredRecordWritable(StructuredRecordBinaryCodec.decode(schema, input));
+      return true;
+    }
+
+    @Override
+    public Text getCurrentKey() throws IOException, InterruptedException {
+      return reader.getCurrentKey();
+    }
+
+    @Override
+    public StructuredRecordWritable getCurrentValue() throws IOException, InterruptedException {
+      return value;
+    }
+
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+      return reader.getProgress();
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
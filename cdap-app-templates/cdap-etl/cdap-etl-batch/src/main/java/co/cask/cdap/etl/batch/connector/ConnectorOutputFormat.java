@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.etl.batch.StructuredRecordBinaryCodec;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
+import com.google.common.base.Charsets;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Output format for the data written by {@link ConnectorSink}. Records are written to a {@link SequenceFile},
+ * keyed by the stage name. Each value is the {@link SchemaHash} of the record schema followed by the record in the
+ * binary format of {@link StructuredRecordBinaryCodec}. The schemas of all records in a file are written once to a
+ * hidden file next to it, which is read by {@link ConnectorInputFormat}.
+ */
+public class ConnectorOutputFormat extends FileOutputFormat<Text, StructuredRecordWritable> {
+
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .create();
+  private static final Type SCHEMAS_TYPE = new TypeToken<List<Schema>>() { }.getType();
+
+  @Override
+  public RecordWriter<Text, StructuredRecordWritable> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+
+    // Same as SequenceFileOutputFormat
+    CompressionCodec codec = null;
+    SequenceFile.CompressionType compressionType = SequenceFile.CompressionType.NONE;
+    if (getCompressOutput(context)) {
+      compressionType = SequenceFileOutputFormat.getOutputCompressionType(context);
+      Class<?> codecClass = getOutputCompressorClass(context, DefaultCodec.class);
+      codec = (CompressionCodec) ReflectionUtils.newInstance(codecClass, conf);
+    }
+    Path file = getDefaultWorkFile(context, "");
+    FileSystem fs = file.getFileSystem(conf);
+    SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf, file, Text.class, BytesWritable.class,
+                                                           compressionType, codec, context);
+    return new ConnectorRecordWriter(writer, fs, getSchemasPath(file));
+  }
+
+  /**
+   * Returns the path of the file that contains the schemas of the given data file. The file name starts with '_',
+   * hence it is ignored by {@link org.apache.hadoop.mapreduce.lib.input.FileInputFormat}.
+   */
+  static Path getSchemasPath(Path file) {
+    return new Path(file.getParent(), "_" + file.getName() + ".schemas");
+  }
+
+  /**
+   * Reads the schemas of the given data file.
+   */
+  static Map<SchemaHash, Schema> readSchemas(Path file, Configuration conf) throws IOException {
+    Path schemasPath = getSchemasPath(file);
+    Map<SchemaHash, Schema> schemas = new HashMap<>();
+    try (Reader reader = new InputStreamReader(schemasPath.getFileSystem(conf).open(schemasPath), Charsets.UTF_8)) {
+      List<Schema> schemaList = GSON.fromJson(reader, SCHEMAS_TYPE);
+      for (Schema schema : schemaList) {
+        schemas.put(schema.getSchemaHash(), schema);
+      }
+    }
+    return schemas;
+  }
+
+  /**
+   * The {@link RecordWriter} for writing records to a sequence file and the schemas on close.
+   */
+  private static final class ConnectorRecordWriter extends RecordWriter<Text, StructuredRecordWritable> {
+
+    private final SequenceFile.Writer writer;
+    private final FileSystem fs;
+    private final Path schemasPath;
+    private final Map<SchemaHash, Schema> schemas;
+    private final DataOutputBuffer buffer;
+    private final BytesWritable value;
+
+    ConnectorRecordWriter(SequenceFile.Writer writer, FileSystem fs, Path schemasPath) {
+      this.writer = writer;
+      this.fs = fs;
+      this.schemasPath = schemasPath;
+      this.schemas = new LinkedHashMap<>();
+      this.buffer = new DataOutputBuffer();
+      this.value = new BytesWritable();
+    }
+
+    @Override
+    public void write(Text stageName, StructuredRecordWritable recordWritable) throws IOException {
+      StructuredRecord record = recordWritable.get();
+      Schema schema = record.getSchema();
+      SchemaHash schemaHash = schema.getSchemaHash();
+      if (!schemas.containsKey(schemaHash)) {
+        schemas.put(schemaHash, schema);
+      }
+
+      buffer.reset();
+      buffer.write(schemaHash.toByteArray());
+      StructuredRecordBinaryCodec.encode(record, buffer);
+      value.set(buffer.getData(), 0, buffer.getLength());
+      writer.append(stageName, value);
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      writer.close();
+      List<Schema> schemaList = new ArrayList<>(schemas.values());
+      try (Writer schemasWriter = new OutputStreamWriter(fs.create(schemasPath), Charsets.UTF_8)) {
+        GSON.toJson(schemaList, SCHEMAS_TYPE, schemasWriter);
+      }
+    }
+  }
+}
@@ -21,6 +21,7 @@ import co.cask.cdap.api.ProgramStatus;
 import co.cask.cdap.api.data.batch.Output;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.FileSetProperties;
+import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.TimePartitionedFileSetArguments;
 import co.cask.cdap.api.macro.MacroEvaluator;
 import co.cask.cdap.api.mapreduce.AbstractMapReduce;
@@ -37,6 +38,7 @@ import co.cask.cdap.etl.api.batch.BatchSourceContext;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.LoggedBatchConfigurable;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
 import co.cask.cdap.etl.batch.conversion.WritableConversion;
 import co.cask.cdap.etl.batch.conversion.WritableConversions;
 import co.cask.cdap.etl.common.CompositeFinisher;
@@ -52,6 +54,7 @@ import co.cask.cdap.etl.planner.StageInfo;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
 import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
@@ -63,6 +66,7 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.ReduceContext;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -231,7 +235,10 @@ public class ETLMapReduce extends AbstractMapReduce {
                                                                    BatchJoiner.PLUGIN_TYPE);
     if (!reducers.isEmpty()) {
       job.setReducerClass(ETLReducer.class);
-      String reducerName = reducers.iterator().next().getName();
+      StageInfo reducerInfo = reducers.iterator().next();
+      String reducerName = reducerInfo.getName();
+      // records going into the reducer stage are shuffled, register their schemas for compact serialization
+      StructuredRecordWritable.setSchemas(hConf, reducerInfo.getInputSchemas().values());
       Class<?> outputKeyClass;
       Class<?> outputValClass;
       if (!phaseSpec.getPhase().getStagesOfType(BatchAggregator.PLUGIN_TYPE).isEmpty()) {
@@ -353,11 +360,27 @@ public class ETLMapReduce extends AbstractMapReduce {
     }
 
     @Override
-    public void map(Object key, Object value, Mapper.Context context) throws IOException, InterruptedException {
+    public void run(final Mapper.Context context) throws IOException, InterruptedException {
+      setup(context);
       try {
-        transformRunner.transform(key, value);
+        // run all records of the split through the transforms as one batch
+        transformRunner.transform(new AbstractIterator<KeyValue<Object, Object>>() {
+          @Override
+          protected KeyValue<Object, Object> computeNext() {
+            try {
+              if (!context.nextKeyValue()) {
+                return endOfData();
+              }
+              return new KeyValue<>(context.getCurrentKey(), context.getCurrentValue());
+            } catch (IOException | InterruptedException e) {
+              throw Throwables.propagate(e);
+            }
+          }
+        });
       } catch (Exception e) {
         Throwables.propagate(e);
+      } finally {
+        cleanup(context);
       }
     }
 
@@ -388,11 +411,37 @@ public class ETLMapReduce extends AbstractMapReduce {
     }
 
     @Override
-    protected void reduce(Object key, Iterable values, Context context) throws IOException, InterruptedException {
+    public void run(final Context context) throws IOException, InterruptedException {
+      setup(context);
       try {
-        transformRunner.transform(key, values.iterator());
+        // run all groups of the partition through the transforms as one batch
+        transformRunner.transform(new AbstractIterator<KeyValue<Object, Iterator>>() {
+          private boolean started;
+
+          @Override
+          protected KeyValue<Object, Iterator> computeNext() {
+            try {
+              if (started) {
+                // If a back up store is used for the previous group, reset it, the same as Reducer.run() does
+                Iterator iter = context.getValues().iterator();
+                if (iter instanceof ReduceContext.ValueIterator) {
+                  ((ReduceContext.ValueIterator) iter).resetBackupStore();
+                }
+              }
+              started = true;
+              if (!context.nextKey()) {
+                return endOfData();
+              }
+              return new KeyValue<Object, Iterator>(context.getCurrentKey(), context.getValues().iterator());
+            } catch (IOException | InterruptedException e) {
+              throw Throwables.propagate(e);
+            }
+          }
+        });
       } catch (Exception e) {
         Throwables.propagate(e);
+      } finally {
+        cleanup(context);
       }
     }
 
@@ -20,6 +20,7 @@ import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.etl.api.Destroyable;
 import co.cask.cdap.etl.batch.PipeTransformDetail;
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,16 +31,32 @@ import java.util.Set;
 public class PipeTransformExecutor<IN> implements Destroyable {
   private final Set<String> startingPoints;
   private final Map<String, PipeTransformDetail> transformDetailMap;
+  // Starting stages resolved from the transformDetailMap, in parallel arrays
+  private final String[] startingStageNames;
+  private final PipeTransformDetail[] startingDetails;
 
   public PipeTransformExecutor(Map<String, PipeTransformDetail> transformDetailMap, Set<String> startingPoints) {
     this.transformDetailMap = transformDetailMap;
     this.startingPoints = startingPoints;
+    this.startingStageNames = startingPoints.toArray(new String[startingPoints.size()]);
+    this.startingDetails = new PipeTransformDetail[startingStageNames.length];
+    for (int i = 0; i < startingStageNames.length; i++) {
+      startingDetails[i] = transformDetailMap.get(startingStageNames[i]);
+    }
   }
 
   public void runOneIteration(IN input) throws Exception {
-    for (String stageName : startingPoints) {
-      PipeTransformDetail transformDetail = transformDetailMap.get(stageName);
-        transformDetail.process(new KeyValue<String, Object>(stageName, input));
+    for (int i = 0; i < startingDetails.length; i++) {
+      startingDetails[i].process(new KeyValue<String, Object>(startingStageNames[i], input));
+    }
+  }
+
+  /**
+   * Runs every input from the given {@link Iterator} through the chain of transforms.
+   */
+  public void runBatch(Iterator<? extends IN> inputs) throws Exception {
+    while (inputs.hasNext()) {
+      runOneIteration(inputs.next());
     }
   }
 
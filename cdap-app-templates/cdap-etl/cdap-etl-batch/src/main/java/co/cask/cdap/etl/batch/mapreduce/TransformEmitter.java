@@ -22,7 +22,9 @@ import co.cask.cdap.etl.batch.PipeTransformDetail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -35,18 +37,23 @@ public class TransformEmitter implements PipeEmitter<PipeTransformDetail> {
 
   private final String stageName;
   private final Map<String, PipeTransformDetail> nextStages;
+  // Values of nextStages, for iterating without creating an iterator for every record
+  private final List<PipeTransformDetail> nextStageDetails;
   private final ErrorOutputWriter<Object, Object> errorOutputWriter;
 
   public TransformEmitter(String stageName, @Nullable ErrorOutputWriter<Object, Object> errorOutputWriter) {
     this.stageName = stageName;
     this.nextStages = new HashMap<>();
+    this.nextStageDetails = new ArrayList<>();
     this.errorOutputWriter = errorOutputWriter;
   }
 
   @Override
   public void emit(Object value) {
-    for (PipeTransformDetail pipeTransformDetail : nextStages.values()) {
-      pipeTransformDetail.process(new KeyValue<>(stageName, value));
+    // KeyValue is immutable, hence it can be shared by all next stages
+    KeyValue<String, Object> keyValue = new KeyValue<>(stageName, value);
+    for (int i = 0; i < nextStageDetails.size(); i++) {
+      nextStageDetails.get(i).process(keyValue);
     }
   }
 
@@ -66,5 +73,7 @@ public class TransformEmitter implements PipeEmitter<PipeTransformDetail> {
   @Override
   public void addTransformDetail(String stageName, PipeTransformDetail pipeTransformDetail) {
     nextStages.put(stageName, pipeTransformDetail);
+    nextStageDetails.clear();
+    nextStageDetails.addAll(nextStages.values());
   }
 }
@@ -26,6 +26,7 @@ import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
 import co.cask.cdap.etl.batch.TransformExecutorFactory;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.Destroyables;
@@ -44,6 +45,7 @@ import org.apache.hadoop.mapreduce.Mapper;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -68,6 +70,7 @@ public class TransformRunner<KEY, VALUE> {
                          Metrics metrics) throws Exception {
     JobContext jobContext = context.getHadoopContext();
     Configuration hConf = jobContext.getConfiguration();
+    StructuredRecordWritable.registerSchemas(hConf);
 
     // figure out whether we are writing to a single output or to multiple outputs
     Map<String, String> properties = context.getSpecification().getProperties();
@@ -158,6 +161,13 @@ public class TransformRunner<KEY, VALUE> {
     transformExecutor.runOneIteration(input);
   }
 
+  /**
+   * Runs every key value pair from the given {@link Iterator} through the transforms.
+   */
+  public void transform(Iterator<KeyValue<KEY, VALUE>> inputs) throws Exception {
+    transformExecutor.runBatch(inputs);
+  }
+
   public void destroy() {
     Destroyables.destroyQuietly(transformExecutor);
   }
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link ConnectorOutputFormat} and {@link ConnectorInputFormat}.
+ */
+public class ConnectorFormatTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static final Schema SCHEMA1 = Schema.recordOf(
+    "rec1",
+    Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA2 = Schema.recordOf(
+    "rec2",
+    Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("arr", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA3 = Schema.recordOf(
+    "rec3",
+    Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("inner", SCHEMA1));
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    List<StructuredRecord> records = createRecords(0, 300);
+    Job job = createJob();
+    runJob(job, Collections.singletonList(records));
+
+    Path outputDir = FileOutputFormat.getOutputPath(job);
+    FileSystem fs = outputDir.getFileSystem(job.getConfiguration());
+
+    // Each committed data file has its schemas file next to it
+    List<Path> dataFiles = new ArrayList<>();
+    for (FileStatus status : fs.listStatus(outputDir)) {
+      String name = status.getPath().getName();
+      if (!name.startsWith("_")) {
+        dataFiles.add(status.getPath());
+      }
+    }
+    Assert.assertEquals(1, dataFiles.size());
+    Path dataFile = dataFiles.get(0);
+    Assert.assertTrue(fs.exists(ConnectorOutputFormat.getSchemasPath(dataFile)));
+    Assert.assertEquals(3, ConnectorOutputFormat.readSchemas(dataFile, job.getConfiguration()).size());
+
+    // The schemas file is not listed as input
+    List<InputSplit> splits = new ConnectorInputFormat().getSplits(job);
+    Assert.assertFalse(splits.isEmpty());
+    for (InputSplit split : splits) {
+      Assert.assertEquals(dataFile.getName(), ((FileSplit) split).getPath().getName());
+    }
+
+    List<StructuredRecord> actual = new ArrayList<>();
+    for (InputSplit split : splits) {
+      actual.addAll(readSplit(job, split));
+    }
+    Assert.assertEquals(records, actual);
+  }
+
+  @Test
+  public void testSplits() throws Exception {
+    List<StructuredRecord> records = createRecords(0, 5000);
+    Job job = createJob();
+    runJob(job, Collections.singletonList(records));
+
+    // Use small splits so that most splits start and end in the middle of sync intervals
+    FileInputFormat.setMaxInputSplitSize(job, SequenceFile.SYNC_INTERVAL + 17);
+    List<InputSplit> splits = new ConnectorInputFormat().getSplits(job);
+    Assert.assertTrue(splits.size() > 10);
+
+    // Every record is read from exactly one split, in the order written
+    List<StructuredRecord> actual = new ArrayList<>();
+    for (InputSplit split : splits) {
+      actual.addAll(readSplit(job, split));
+    }
+    Assert.assertEquals(records, actual);
+  }
+
+  @Test
+  public void testEmptyTaskOutput() throws Exception {
+    List<StructuredRecord> records = createRecords(0, 10);
+    Job job = createJob();
+    runJob(job, Arrays.asList(Collections.<StructuredRecord>emptyList(), records,
+                              Collections.<StructuredRecord>emptyList()));
+
+    // Files written by tasks without output are readable and have no records
+    List<InputSplit> splits = new ConnectorInputFormat().getSplits(job);
+    Set<Path> files = new HashSet<>();
+    List<StructuredRecord> actual = new ArrayList<>();
+    for (InputSplit split : splits) {
+      Path path = ((FileSplit) split).getPath();
+      files.add(path);
+      Assert.assertTrue(ConnectorOutputFormat.getSchemasPath(path).getFileSystem(job.getConfiguration())
+                          .exists(ConnectorOutputFormat.getSchemasPath(path)));
+      actual.addAll(readSplit(job, split));
+    }
+    Assert.assertEquals(3, files.size());
+    Assert.assertEquals(records, actual);
+  }
+
+  /**
+   * Creates records that cycle through all the test schemas.
+   */
+  private List<StructuredRecord> createRecords(int start, int end) {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = start; i < end; i++) {
+      StructuredRecord rec1 = StructuredRecord.builder(SCHEMA1)
+        .set("i", i)
+        .set("s", i % 2 == 0 ? null : "value" + i)
+        .build();
+      switch (i % 3) {
+        case 0:
+          records.add(rec1);
+          break;
+        case 1:
+          records.add(StructuredRecord.builder(SCHEMA2)
+                        .set("l", (long) i * i)
+                        .set("arr", Arrays.asList("a" + i, "b" + i))
+                        .build());
+          break;
+        default:
+          records.add(StructuredRecord.builder(SCHEMA3).set("d", i / 3.0d).set("inner", rec1).build());
+      }
+    }
+    return records;
+  }
+
+  private Job createJob() throws IOException {
+    Job job = Job.getInstance(new Configuration());
+    Path dir = new Path(TMP_FOLDER.newFolder().toURI());
+    FileOutputFormat.setOutputPath(job, new Path(dir, "output"));
+    FileInputFormat.setInputPaths(job, new Path(dir, "output"));
+    return job;
+  }
+
+  /**
+   * Writes the given records through {@link ConnectorOutputFormat}, one task for each list of records, and commits
+   * the job the same way as a MapReduce job does.
+   */
+  private void runJob(Job job, List<List<StructuredRecord>> taskRecords) throws Exception {
+    ConnectorOutputFormat format = new ConnectorOutputFormat();
+    OutputCommitter committer = format.getOutputCommitter(createTaskContext(job, 0));
+    committer.setupJob(job);
+
+    for (int i = 0; i < taskRecords.size(); i++) {
+      TaskAttemptContext context = createTaskContext(job, i);
+      committer.setupTask(context);
+      RecordWriter<Text, StructuredRecordWritable> writer = format.getRecordWriter(context);
+      for (StructuredRecord record : taskRecords.get(i)) {
+        writer.write(new Text(record.getSchema().getRecordName()), new StructuredRecordWritable(record));
+      }
+      writer.close(context);
+      if (committer.needsTaskCommit(context)) {
+        committer.commitTask(context);
+      }
+    }
+    committer.commitJob(job);
+  }
+
+  private List<StructuredRecord> readSplit(Job job, InputSplit split) throws Exception {
+    TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+    List<StructuredRecord> records = new ArrayList<>();
+    try (RecordReader<Text, StructuredRecordWritable> reader =
+           new ConnectorInputFormat().createRecordReader(split, context)) {
+      reader.initialize(split, context);
+      while (reader.nextKeyValue()) {
+        StructuredRecord record = reader.getCurrentValue().get();
+        Assert.assertEquals(record.getSchema().getRecordName(), reader.getCurrentKey().toString());
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  private TaskAttemptContext createTaskContext(Job job, int taskId) {
+    return new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID("test", 1, TaskType.MAP, taskId, 0));
+  }
+}
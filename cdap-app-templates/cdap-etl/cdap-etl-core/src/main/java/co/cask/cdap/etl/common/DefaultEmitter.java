@@ -59,4 +59,15 @@ public class DefaultEmitter<T> implements Emitter<T> {
     entryList.clear();
     errorList.clear();
   }
+
+  /**
+   * Removes all entries and errors emitted after the given number of entries and errors.
+   *
+   * @param numEntries the number of entries to keep
+   * @param numErrors the number of errors to keep
+   */
+  public void truncate(int numEntries, int numErrors) {
+    entryList.subList(numEntries, entryList.size()).clear();
+    errorList.subList(numErrors, errorList.size()).clear();
+  }
 }
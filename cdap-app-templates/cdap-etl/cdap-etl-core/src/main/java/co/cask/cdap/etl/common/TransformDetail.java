@@ -60,6 +60,13 @@ public class TransformDetail implements Emitter<Object> {
     defaultEmitter.reset();
   }
 
+  /**
+   * Removes all entries and errors emitted after the given number of entries and errors.
+   */
+  public void truncateEmitter(int numEntries, int numErrors) {
+    defaultEmitter.truncate(numEntries, numErrors);
+  }
+
   public void destroy() {
     if (transformation instanceof Destroyable) {
       Destroyables.destroyQuietly((Destroyable) transformation);
@@ -17,12 +17,14 @@
 package co.cask.cdap.etl.common;
 
 import co.cask.cdap.etl.api.Destroyable;
+import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.Transformation;
-import com.google.common.collect.ImmutableList;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -31,74 +33,153 @@ import java.util.Set;
  * Executes Transforms one iteration at a time, tracking how many records were input into and output from
  * each transform.
  *
+ * The stages are linked into an execution plan when the executor is created. Each stage is the emitter of its own
+ * transformation and pushes every emitted record straight into the next stages, so that a linear chain of
+ * transforms runs as a single fused call chain without buffering intermediate records. Only the outputs of terminal
+ * stages and the errors of every stage are collected, in the corresponding {@link TransformDetail}, until
+ * {@link #resetEmitter()} is called.
+ *
+ * Each iteration is atomic. If any stage fails, the outputs and errors collected during that iteration are removed.
+ * Since a record is pushed into the next stages while the previous stage is still transforming its input, the
+ * exception thrown by a stage is propagated, as an unchecked exception, through the {@link Emitter#emit(Object)}
+ * calls of the previous stages before it is rethrown as is by this executor.
+ *
  * @param <IN> the type of input object to the first transform
  *
  */
 public class TransformExecutor<IN> implements Destroyable {
 
-  private final Set<String> startingPoints;
   private final Map<String, TransformDetail> transformDetailMap;
+  private final StageNode[] startingNodes;
+  // All stages reachable from the starting points
+  private final StageNode[] nodes;
+  // All stages, in parallel arrays, for refreshing the errors map after each run
+  private final String[] stageNames;
+  private final TransformDetail[] stageDetails;
+  private final Map<String, Collection<InvalidEntry<Object>>> errors;
+  private final TransformResponse response;
 
   public TransformExecutor(Map<String, TransformDetail> transformDetailMap, Set<String> startingPoints) {
     this.transformDetailMap = transformDetailMap;
-    this.startingPoints = startingPoints;
-  }
 
-  public TransformResponse runOneIteration(IN input) throws Exception {
+    Map<String, StageNode> nodeMap = new HashMap<>();
+    this.startingNodes = new StageNode[startingPoints.size()];
+    int idx = 0;
     for (String stageName : startingPoints) {
-      // no prevStage for starting points
-      executeTransformation(stageName, ImmutableList.of(input));
+      startingNodes[idx++] = createNode(stageName, nodeMap);
     }
+    this.nodes = nodeMap.values().toArray(new StageNode[nodeMap.size()]);
 
     Map<String, Collection<Object>> terminalNodeEntriesMap = new HashMap<>();
-    Map<String, Collection<InvalidEntry<Object>>> errors = new HashMap<>();
-
+    this.stageNames = new String[transformDetailMap.size()];
+    this.stageDetails = new TransformDetail[transformDetailMap.size()];
+    idx = 0;
     for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetailMap.entrySet()) {
       if (transformDetailEntry.getValue().getNextStages().isEmpty()) {
-        // terminal node
-        Collection<Object> entries = transformDetailEntry.getValue().getEntries();
-        if (entries != null) {
-          terminalNodeEntriesMap.put(transformDetailEntry.getKey(), entries);
-        }
-      }
-
-      if (!transformDetailEntry.getValue().getErrors().isEmpty()) {
-        errors.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getErrors());
+        // terminal node. The entries collection is live, hence it only needs to be added once.
+        terminalNodeEntriesMap.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getEntries());
       }
+      stageNames[idx] = transformDetailEntry.getKey();
+      stageDetails[idx] = transformDetailEntry.getValue();
+      idx++;
     }
-    return new TransformResponse(terminalNodeEntriesMap, errors);
+
+    this.errors = new HashMap<>();
+    this.response = new TransformResponse(Collections.unmodifiableMap(terminalNodeEntriesMap),
+                                          Collections.unmodifiableMap(errors));
   }
 
-  private <T> void executeTransformation(final String stageName,
-                                         Collection<T> input) throws Exception {
-    if (input == null) {
-      return;
-    }
+  /**
+   * Runs the given input through all the transforms.
+   *
+   * @param input the input to the starting transforms
+   * @return a {@link TransformResponse} containing the entries emitted by terminal transforms and the errors emitted
+   *         by all transforms since the last {@link #resetEmitter()}. The response is updated by subsequent runs.
+   * @throws Exception if any of the transforms failed. Outputs and errors of the given input are discarded.
+   */
+  public TransformResponse runOneIteration(IN input) throws Exception {
+    process(input);
+    return createResponse();
+  }
 
-    TransformDetail transformDetail = transformDetailMap.get(stageName);
-    Transformation<T, Object> transformation = transformDetail.getTransformation();
+  /**
+   * Runs every input from the given {@link Iterator} through all the transforms. It is the same as calling
+   * {@link #runOneIteration(Object)} for each input, except that the response is only computed once at the end.
+   *
+   * @param inputs the inputs to the starting transforms
+   * @return a {@link TransformResponse} containing the entries emitted by terminal transforms and the errors emitted
+   *         by all transforms since the last {@link #resetEmitter()}. The response is updated by subsequent runs.
+   * @throws Exception if any of the transforms failed. Outputs and errors of the failed input are discarded,
+   *         while the ones of the inputs before it are kept.
+   */
+  public TransformResponse runBatch(Iterator<? extends IN> inputs) throws Exception {
+    while (inputs.hasNext()) {
+      process(inputs.next());
+    }
+    return createResponse();
+  }
 
+  private void process(IN input) throws Exception {
+    for (StageNode node : nodes) {
+      node.mark();
+    }
+    boolean succeeded = false;
+    try {
+      for (StageNode node : startingNodes) {
+        // no prevStage for starting points
+        node.process(input);
+      }
+      succeeded = true;
+    } catch (StageException e) {
+      throw e.getCause();
+    } finally {
+      if (!succeeded) {
+        for (StageNode node : nodes) {
+          node.rollback();
+        }
+      }
+    }
+  }
 
-    // clear old data for this stageName if its not a terminal node
-    if (!transformDetail.getNextStages().isEmpty()) {
-      transformDetail.getEntries().clear();
+  private TransformResponse createResponse() {
+    for (int i = 0; i < stageNames.length; i++) {
+      Collection<InvalidEntry<Object>> stageErrors = stageDetails[i].getErrors();
+      if (stageErrors.isEmpty()) {
+        errors.remove(stageNames[i]);
+      } else {
+        errors.put(stageNames[i], stageErrors);
+      }
     }
+    return response;
+  }
 
-    for (T inputEntry : input) {
-      transformation.transform(inputEntry, transformDetail);
+  /**
+   * Creates the {@link StageNode} for the given stage and all the stages reachable from it.
+   */
+  private StageNode createNode(String stageName, Map<String, StageNode> nodeMap) {
+    StageNode node = nodeMap.get(stageName);
+    if (node != null) {
+      return node;
     }
 
+    TransformDetail transformDetail = transformDetailMap.get(stageName);
     Collection<String> nextStages = transformDetail.getNextStages();
+    StageNode[] nextNodes = new StageNode[nextStages.size()];
+    int idx = 0;
     for (String nextStage : nextStages) {
-      executeTransformation(nextStage, transformDetail.getEntries());
+      nextNodes[idx++] = createNode(nextStage, nodeMap);
     }
 
+    node = new StageNode(transformDetail, nextNodes);
+    nodeMap.put(stageName, node);
+    return node;
   }
 
   public void resetEmitter() {
     for (TransformDetail transformDetailEntry : transformDetailMap.values()) {
       transformDetailEntry.resetEmitter();
     }
+    errors.clear();
   }
 
   @Override
@@ -107,4 +188,80 @@ public class TransformExecutor<IN> implements Destroyable {
       transformDetailEntry.destroy();
     }
   }
+
+  /**
+   * A stage in the execution plan. It is the {@link Emitter} of its own transformation, pushing emitted records
+   * to the next stages, or collecting them in the {@link TransformDetail} if it is a terminal stage.
+   */
+  private static final class StageNode implements Emitter<Object> {
+
+    private final TransformDetail transformDetail;
+    private final Transformation<Object, Object> transformation;
+    private final StageNode[] nextNodes;
+    // Set if there is exactly one next stage, which is the common case of a linear chain of transforms
+    private final StageNode singleNext;
+    // Number of entries and errors in the TransformDetail when the current iteration started
+    private int entriesMark;
+    private int errorsMark;
+
+    @SuppressWarnings("unchecked")
+    StageNode(TransformDetail transformDetail, StageNode[] nextNodes) {
+      this.transformDetail = transformDetail;
+      this.transformation = transformDetail.getTransformation();
+      this.nextNodes = nextNodes;
+      this.singleNext = nextNodes.length == 1 ? nextNodes[0] : null;
+    }
+
+    void process(Object input) throws Exception {
+      transformation.transform(input, this);
+    }
+
+    void mark() {
+      entriesMark = transformDetail.getEntries().size();
+      errorsMark = transformDetail.getErrors().size();
+    }
+
+    void rollback() {
+      transformDetail.truncateEmitter(entriesMark, errorsMark);
+    }
+
+    @Override
+    public void emit(Object value) {
+      try {
+        if (singleNext != null) {
+          singleNext.process(value);
+        } else if (nextNodes.length == 0) {
+          transformDetail.emit(value);
+        } else {
+          for (StageNode nextNode : nextNodes) {
+            nextNode.process(value);
+          }
+        }
+      } catch (StageException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new StageException(e);
+      }
+    }
+
+    @Override
+    public void emitError(InvalidEntry<Object> invalidEntry) {
+      transformDetail.emitError(invalidEntry);
+    }
+  }
+
+  /**
+   * Carries the exception thrown by a transform through the {@link Emitter} of the previous stage,
+   * which cannot throw checked exceptions.
+   */
+  private static final class StageException extends RuntimeException {
+    StageException(Exception cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized Exception getCause() {
+      return (Exception) super.getCause();
+    }
+  }
 }
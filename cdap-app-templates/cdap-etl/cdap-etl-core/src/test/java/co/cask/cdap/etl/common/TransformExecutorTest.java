@@ -27,6 +27,7 @@ import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -292,6 +293,119 @@ public class TransformExecutorTest {
     Assert.assertEquals(3, mockMetrics.getCount("sink3.records.out"));
   }
 
+  @Test
+  public void testLinearChain() throws Exception {
+    MockMetrics mockMetrics = new MockMetrics();
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+
+    transformationMap.put("conversion",
+                          new TransformDetail(
+                            new TrackedTransform<>(new IntToDouble(),
+                                                   new DefaultStageMetrics(mockMetrics, "conversion"),
+                                                   dataTracerFactory.getDataTracer(null, "conversion")),
+                            ImmutableList.of("filter")));
+
+    transformationMap.put("filter",
+                          new TransformDetail(
+                            new TrackedTransform<>(new Filter(100d, Threshold.LOWER),
+                                                   new DefaultStageMetrics(mockMetrics, "filter"),
+                                                   dataTracerFactory.getDataTracer(null, "filter")),
+                            ImmutableList.of("sink")));
+
+    transformationMap.put("sink",
+                          new TransformDetail(
+                            new TrackedTransform<>(new DoubleToString(),
+                                                   new DefaultStageMetrics(mockMetrics, "sink"),
+                                                   dataTracerFactory.getDataTracer(null, "sink")),
+                            ImmutableList.<String>of()));
+
+    TransformExecutor<Integer> executor = new TransformExecutor<>(transformationMap, ImmutableSet.of("conversion"));
+
+    // 1 -> (1, 10, 100) all filtered out; 10 -> (10, 100, 1000) one passes; 100 -> (100, 1000, 10000) two pass
+    executor.runOneIteration(1);
+    executor.runOneIteration(10);
+    TransformResponse transformResponse = executor.runOneIteration(100);
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink", 3));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("filter", 6));
+    Assert.assertEquals(ImmutableList.of("1000.0", "1000.0", "10000.0"),
+                        ImmutableList.copyOf(transformResponse.getSinksResults().get("sink")));
+    Assert.assertEquals(9, mockMetrics.getCount("filter.records.in"));
+    Assert.assertEquals(3, mockMetrics.getCount("sink.records.out"));
+  }
+
+  @Test
+  public void testFailedIterationDiscarded() throws Exception {
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+    transformationMap.put("conversion", new TransformDetail(new IntToDouble(), ImmutableList.of("sink1", "filter")));
+    transformationMap.put("filter", new TransformDetail(new Filter(5d, Threshold.LOWER),
+                                                        ImmutableList.of("failing")));
+    transformationMap.put("sink1", new TransformDetail(new DoubleToString(), ImmutableList.<String>of()));
+    transformationMap.put("failing", new TransformDetail(new FailAbove(50d), ImmutableList.<String>of()));
+
+    TransformExecutor<Integer> executor = new TransformExecutor<>(transformationMap, ImmutableSet.of("conversion"));
+
+    // 0 -> (0, 0, 0) all filtered out, hence the failing stage is never called
+    TransformResponse transformResponse = executor.runOneIteration(0);
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink1", 3, "failing", 0));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("filter", 3));
+
+    // 1 -> (1, 10, 100). sink1 and filter get outputs and errors before the failing stage fails on 100.
+    try {
+      executor.runOneIteration(1);
+      Assert.fail("Expected the iteration to fail");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // Nothing from the failed iteration should be kept
+    Assert.assertEquals(3, transformationMap.get("sink1").getEntries().size());
+    Assert.assertTrue(transformationMap.get("failing").getEntries().isEmpty());
+    Assert.assertEquals(3, transformationMap.get("filter").getErrors().size());
+
+    transformResponse = executor.runOneIteration(0);
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink1", 6, "failing", 0));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("filter", 6));
+  }
+
+  @Test
+  public void testRunBatch() throws Exception {
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+    transformationMap.put("conversion", new TransformDetail(new IntToDouble(), ImmutableList.of("failing")));
+    transformationMap.put("failing", new TransformDetail(new FailAbove(500d), ImmutableList.<String>of()));
+
+    TransformExecutor<Integer> executor = new TransformExecutor<>(transformationMap, ImmutableSet.of("conversion"));
+
+    TransformResponse transformResponse = executor.runBatch(ImmutableList.<Integer>of().iterator());
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("failing", 0));
+
+    // 10 -> (10, 100, 1000) fails on 1000, after 10 and 100 were emitted to the failing stage
+    try {
+      executor.runBatch(ImmutableList.of(1, 2, 10, 3).iterator());
+      Assert.fail("Expected the batch to fail");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // Outputs of the inputs before the failed one are kept, the ones of the failed input are removed
+    Assert.assertEquals(ImmutableList.of(1d, 10d, 100d, 2d, 20d, 200d),
+                        ImmutableList.copyOf(transformationMap.get("failing").getEntries()));
+
+    transformResponse = executor.runBatch(ImmutableList.of(3).iterator());
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("failing", 9));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), new HashMap<String, Integer>());
+  }
+
+  @Test(expected = IOException.class)
+  public void testExceptionFromNextStage() throws Exception {
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+    transformationMap.put("conversion", new TransformDetail(new IntToDouble(), ImmutableList.of("failing")));
+    transformationMap.put("failing", new TransformDetail(new Failing(), ImmutableList.<String>of()));
+
+    TransformExecutor<Integer> executor = new TransformExecutor<>(transformationMap, ImmutableSet.of("conversion"));
+    // checked exceptions thrown by stages after the first one should be propagated as is
+    executor.runOneIteration(1);
+  }
+
   private <T> void assertResults(Map<String, Collection<T>> results, Map<String, Integer> expectedListsSize) {
     Assert.assertEquals(expectedListsSize.size(), results.size());
     for (Map.Entry<String, Integer> entry : expectedListsSize.entrySet()) {
@@ -344,6 +458,30 @@ public class TransformExecutorTest {
     }
   }
 
+  private static class FailAbove extends Transform<Double, Double> {
+    private final double limit;
+
+    public FailAbove(double limit) {
+      this.limit = limit;
+    }
+
+    @Override
+    public void transform(Double input, Emitter<Double> emitter) throws Exception {
+      if (input > limit) {
+        throw new IOException("Failed to transform " + input);
+      }
+      emitter.emit(input);
+    }
+  }
+
+  private static class Failing extends Transform<Double, String> {
+
+    @Override
+    public void transform(Double input, Emitter<String> emitter) throws Exception {
+      throw new IOException("Failed to transform " + input);
+    }
+  }
+
   private static class DoubleToString extends Transform<Double, String> {
 
     @Override
@@ -23,6 +23,7 @@ import co.cask.cdap.etl.planner.StageInfo;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.PairFlatMapFunction;
 
+import java.util.Iterator;
 import javax.annotation.Nullable;
 
 /**
@@ -43,7 +44,10 @@ public interface SparkCollection<T> {
 
   SparkCollection<T> union(SparkCollection<T> other);
 
-  <U> SparkCollection<U> flatMap(StageInfo stageInfo, FlatMapFunction<T, U> function);
+  /**
+   * Applies the given function to the records of each partition and flattens the results.
+   */
+  <U> SparkCollection<U> flatMap(StageInfo stageInfo, FlatMapFunction<Iterator<T>, U> function);
 
   <U> SparkCollection<U> aggregate(StageInfo stageInfo, @Nullable Integer partitions);
 
@@ -36,6 +36,7 @@ import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.PairFlatMapFunction;
 import scala.Tuple2;
 
+import java.util.Iterator;
 import javax.annotation.Nullable;
 
 
@@ -78,8 +79,8 @@ public class RDDCollection<T> implements SparkCollection<T> {
   }
 
   @Override
-  public <U> SparkCollection<U> flatMap(StageInfo stageInfo, FlatMapFunction<T, U> function) {
-    return wrap(rdd.flatMap(function));
+  public <U> SparkCollection<U> flatMap(StageInfo stageInfo, FlatMapFunction<Iterator<T>, U> function) {
+    return wrap(rdd.mapPartitions(function));
   }
 
   @Override
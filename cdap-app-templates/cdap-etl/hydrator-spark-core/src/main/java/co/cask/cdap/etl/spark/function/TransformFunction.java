@@ -17,37 +17,77 @@
 package co.cask.cdap.etl.spark.function;
 
 import co.cask.cdap.etl.api.Transform;
-import co.cask.cdap.etl.common.DefaultEmitter;
 import co.cask.cdap.etl.common.TrackedTransform;
+import co.cask.cdap.etl.common.TransformDetail;
+import co.cask.cdap.etl.common.TransformExecutor;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import org.apache.spark.api.java.function.FlatMapFunction;
 
+import java.util.Collection;
+import java.util.Iterator;
+
 /**
- * Function that uses a Transform to perform a flatmap.
+ * Function that uses a Transform to perform a flatmap over all the records of a partition.
+ * Records are run through the Transform in batches, so that only the outputs of one batch are held in memory.
  * Non-serializable fields are lazily created since this is used in a Spark closure.
  *
  * @param <T> type of input object
  * @param <U> type of output object
  */
-public class TransformFunction<T, U> implements FlatMapFunction<T, U> {
+public class TransformFunction<T, U> implements FlatMapFunction<Iterator<T>, U> {
+  private static final int BATCH_SIZE = 100;
   private final PluginFunctionContext pluginFunctionContext;
-  private transient TrackedTransform<T, U> transform;
-  private transient DefaultEmitter<U> emitter;
+  private transient TransformExecutor<T> executor;
 
   public TransformFunction(PluginFunctionContext pluginFunctionContext) {
     this.pluginFunctionContext = pluginFunctionContext;
   }
 
   @Override
-  public Iterable<U> call(T input) throws Exception {
-    if (transform == null) {
+  public Iterable<U> call(final Iterator<T> input) throws Exception {
+    if (executor == null) {
       Transform<T, U> plugin = pluginFunctionContext.createPlugin();
       plugin.initialize(pluginFunctionContext.createBatchRuntimeContext());
-      transform = new TrackedTransform<>(plugin, pluginFunctionContext.createStageMetrics(),
-                                         pluginFunctionContext.getDataTracer());
-      emitter = new DefaultEmitter<>();
+      TrackedTransform<T, U> transform = new TrackedTransform<>(plugin, pluginFunctionContext.createStageMetrics(),
+                                                                pluginFunctionContext.getDataTracer());
+      String stageName = pluginFunctionContext.getStageName();
+      executor = new TransformExecutor<>(
+        ImmutableMap.of(stageName, new TransformDetail(transform, ImmutableList.<String>of())),
+        ImmutableSet.of(stageName));
     }
-    emitter.reset();
-    transform.transform(input, emitter);
-    return emitter.getEntries();
+
+    final String stageName = pluginFunctionContext.getStageName();
+    return new Iterable<U>() {
+      @Override
+      public Iterator<U> iterator() {
+        return new AbstractIterator<U>() {
+          private Iterator<Object> outputs = Iterators.emptyIterator();
+
+          @SuppressWarnings("unchecked")
+          @Override
+          protected U computeNext() {
+            while (!outputs.hasNext()) {
+              if (!input.hasNext()) {
+                return endOfData();
+              }
+              executor.resetEmitter();
+              Collection<Object> entries;
+              try {
+                entries = executor.runBatch(Iterators.limit(input, BATCH_SIZE)).getSinksResults().get(stageName);
+              } catch (Exception e) {
+                throw Throwables.propagate(e);
+              }
+              outputs = entries.iterator();
+            }
+            return (U) outputs.next();
+          }
+        };
+      }
+    };
   }
 }
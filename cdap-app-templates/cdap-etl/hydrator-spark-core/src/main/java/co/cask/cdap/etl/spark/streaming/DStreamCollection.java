@@ -41,6 +41,7 @@ import org.apache.spark.streaming.Durations;
 import org.apache.spark.streaming.api.java.JavaDStream;
 import org.apache.spark.streaming.api.java.JavaPairDStream;
 
+import java.util.Iterator;
 import javax.annotation.Nullable;
 
 /**
@@ -76,7 +77,7 @@ public class DStreamCollection<T> implements SparkCollection<T> {
   }
 
   @Override
-  public <U> SparkCollection<U> flatMap(StageInfo stageInfo, FlatMapFunction<T, U> function) {
+  public <U> SparkCollection<U> flatMap(StageInfo stageInfo, FlatMapFunction<Iterator<T>, U> function) {
     return wrap(stream.transform(new DynamicTransform<T, U>(new DynamicDriverContext(stageInfo, sec))));
   }
 
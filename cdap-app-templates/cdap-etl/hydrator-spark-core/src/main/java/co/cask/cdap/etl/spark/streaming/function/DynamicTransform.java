@@ -43,6 +43,6 @@ public class DynamicTransform<T, U> implements Function2<JavaRDD<T>, Time, JavaR
     if (transformFunction == null) {
       transformFunction = new TransformFunction<>(dynamicDriverContext.getPluginFunctionContext());
     }
-    return input.flatMap(transformFunction);
+    return input.mapPartitions(transformFunction);
   }
 }
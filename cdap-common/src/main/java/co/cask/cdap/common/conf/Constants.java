@@ -146,6 +146,8 @@ public final class Constants {
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String PROGRAM_RUNID_CORRECTOR_INTERVAL_SECONDS = "app.program.runid.corrector.interval";
     public static final String SYSTEM_ARTIFACTS_DIR = "app.artifact.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_SIZE_BYTES = "app.artifact.unpack.cache.size.bytes";
+    public static final String ARTIFACT_CLASSLOADER_CACHE_SIZE = "app.artifact.classloader.cache.size";
     public static final String PROGRAM_EXTRA_CLASSPATH = "app.program.extra.classpath";
     public static final String SPARK_YARN_CLIENT_REWRITE = "app.program.spark.yarn.client.rewrite.enabled";
     public static final String RUNTIME_EXT_DIR = "app.program.runtime.extensions.dir";
@@ -379,6 +381,7 @@ public final class Constants {
     public static final String INDEX_INTERVAL = "stream.index.interval";
     public static final String FILE_PREFIX = "stream.file.prefix";
     public static final String INSTANCE_FILE_PREFIX = "stream.instance.file.prefix";
+    public static final String FILE_COMPRESSION_CODEC = "stream.file.compression.codec";
     public static final String CONSUMER_TABLE_PRESPLITS = "stream.consumer.table.presplits";
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
@@ -391,6 +394,9 @@ public final class Constants {
     public static final String WORKER_THREADS = "stream.worker.threads";
     public static final String ASYNC_WORKER_THREADS = "stream.async.worker.threads";
     public static final String ASYNC_QUEUE_SIZE = "stream.async.queue.size";
+    public static final String GROUP_COMMIT_WINDOW_US = "stream.group.commit.window.us";
+    public static final String FETCH_THREADS = "stream.fetch.threads";
+    public static final String FETCH_POOL_SIZE = "stream.fetch.pool.size";
 
     // YARN container configurations.
     public static final String CONTAINER_VIRTUAL_CORES = "stream.container.num.cores";
@@ -515,6 +521,13 @@ public final class Constants {
     public static final String SERVER_ADDRESS = "metrics.query.bind.address";
     public static final String SERVER_PORT = "metrics.query.bind.port";
 
+    // Maximum number of data points held by the query result cache, 0 disables the cache
+    public static final String QUERY_CACHE_MAX_DATA_POINTS = "metrics.query.cache.max.data.points";
+    // Seconds after the end of a resolution bucket until its value is considered final and can be cached
+    public static final String QUERY_CACHE_CLOSED_DELAY_SECONDS = "metrics.query.cache.closed.delay.seconds";
+    // Maximum number of seconds data points read from the store are served from the query result cache
+    public static final String QUERY_CACHE_TTL_SECONDS = "metrics.query.cache.ttl.seconds";
+
     public static final String KAFKA_TOPIC_PREFIX = "metrics.kafka.topic.prefix";
     public static final String KAFKA_PARTITION_SIZE = "metrics.kafka.partition.size";
     public static final String KAFKA_CONSUMER_PERSIST_THRESHOLD = "metrics.kafka.consumer.persist.threshold";
@@ -531,6 +544,9 @@ public final class Constants {
 
     public static final int DEFAULT_KAFKA_CONSUMER_PERSIST_THRESHOLD = 100;
     public static final int DEFAULT_KAFKA_PARTITION_SIZE = 1;
+    public static final long DEFAULT_QUERY_CACHE_MAX_DATA_POINTS = 1000000;
+    public static final long DEFAULT_QUERY_CACHE_CLOSED_DELAY_SECONDS = 120;
+    public static final long DEFAULT_QUERY_CACHE_TTL_SECONDS = 600;
 
     /**
      * Metric's dataset related constants.
@@ -960,6 +976,8 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
+  public static final String CFG_DATA_LEVELDB_COMMIT_BATCH_SIZE = "data.local.storage.commit.batch.size";
+  public static final String CFG_DATA_LEVELDB_COMMIT_MAX_DELAY_US = "data.local.storage.commit.max.delay.us";
 
   /**
    * Defaults for Data Fabric.
@@ -968,6 +986,8 @@ public final class Constants {
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
+  public static final int DEFAULT_DATA_LEVELDB_COMMIT_BATCH_SIZE = 128;
+  public static final long DEFAULT_DATA_LEVELDB_COMMIT_MAX_DELAY_US = 0L;
 
   /**
    * Config for Log Collection.
@@ -1083,11 +1103,14 @@ public final class Constants {
     public static final String PAYLOAD_TABLE_HBASE_SPLITS = "messaging.payload.table.hbase.splits";
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
     public static final String TOPIC_DEFAULT_TTL_SECONDS = "messaging.topic.default.ttl.seconds";
+    public static final String STORE_WRITER_MAX_BATCH_SIZE = "messaging.store.writer.max.batch.size";
+    public static final String STORE_WRITER_LINGER_MICROS = "messaging.store.writer.linger.us";
 
     public static final String HTTP_SERVER_WORKER_THREADS = "messaging.http.server.worker.threads";
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_MAX_POLL_WAIT_MS = "messaging.http.server.max.poll.wait.ms";
 
 
     public static final String CONTAINER_VIRTUAL_CORES = "messaging.container.num.cores";
@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.common.io;
+
+import com.google.common.base.Charsets;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Decoder} that decodes binary encoded data directly from a {@link ByteBuffer}, advancing the position of
+ * the buffer as it reads. Unlike {@link BinaryDecoder}, the {@link #readBytes()} method returns a slice of the
+ * buffer instead of a copy, hence the buffer content must not be modified while decoded values are still in use.
+ */
+public final class ByteBufferDecoder implements Decoder {
+
+  private ByteBuffer buffer;
+
+  public ByteBufferDecoder(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Sets the buffer to decode from.
+   *
+   * @return this decoder
+   */
+  public ByteBufferDecoder reset(ByteBuffer buffer) {
+    this.buffer = buffer;
+    return this;
+  }
+
+  @Override
+  public Object readNull() throws IOException {
+    // No-op
+    return null;
+  }
+
+  @Override
+  public boolean readBool() throws IOException {
+    return readByte() == 1;
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    int val = 0;
+    int shift = 0;
+    int b = readByte();
+    while (b > 0x7f) {
+      val ^= (b & 0x7f) << shift;
+      shift += 7;
+      b = readByte();
+    }
+    val ^= b << shift;
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    long val = 0;
+    int shift = 0;
+    int b = readByte();
+    while (b > 0x7f) {
+      val ^= (long) (b & 0x7f) << shift;
+      shift += 7;
+      b = readByte();
+    }
+    val ^= (long) b << shift;
+    return (val >>> 1) ^ -(val & 1);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    int bits = readByte() ^ (readByte() << 8) ^ (readByte() << 16) ^ (readByte() << 24);
+    return Float.intBitsToFloat(bits);
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    int low = readByte() ^ (readByte() << 8) ^ (readByte() << 16) ^ (readByte() << 24);
+    int high = readByte() ^ (readByte() << 8) ^ (readByte() << 16) ^ (readByte() << 24);
+    return Double.longBitsToDouble(((long) high << 32) | (low & 0xffffffffL));
+  }
+
+  @Override
+  public String readString() throws IOException {
+    ByteBuffer bytes = readBytes();
+    if (bytes.hasArray()) {
+      return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), Charsets.UTF_8);
+    }
+    return Charsets.UTF_8.decode(bytes).toString();
+  }
+
+  @Override
+  public ByteBuffer readBytes() throws IOException {
+    int len = readInt();
+    ensureRemaining(len);
+    ByteBuffer bytes = buffer.slice();
+    bytes.limit(len);
+    buffer.position(buffer.position() + len);
+    return bytes;
+  }
+
+  @Override
+  public void skipFloat() throws IOException {
+    skipBytes(4);
+  }
+
+  @Override
+  public void skipDouble() throws IOException {
+    skipBytes(8);
+  }
+
+  @Override
+  public void skipString() throws IOException {
+    skipBytes();
+  }
+
+  @Override
+  public void skipBytes() throws IOException {
+    skipBytes(readInt());
+  }
+
+  private void skipBytes(int len) throws IOException {
+    ensureRemaining(len);
+    buffer.position(buffer.position() + len);
+  }
+
+  private void ensureRemaining(int len) throws IOException {
+    if (len < 0) {
+      throw new IOException("Invalid length " + len);
+    }
+    if (buffer.remaining() < len) {
+      throw new EOFException();
+    }
+  }
+
+  /**
+   * Reads a byte value.
+   *
+   * @return The byte value read.
+   * @throws EOFException If end of buffer reached.
+   */
+  private int readByte() throws IOException {
+    if (!buffer.hasRemaining()) {
+      throw new EOFException();
+    }
+    return buffer.get() & 0xff;
+  }
+}
@@ -167,6 +167,33 @@ public final class Locations {
     };
   }
 
+  /**
+   * Creates a new {@link InputSupplier} that can provides {@link SeekableInputStream} from the given location.
+   * If the location is a local file, the {@link SeekableInputStream} reads through memory mapped regions of the
+   * file, which is suitable for files that are read repeatedly. Otherwise it is the same as
+   * {@link #newInputSupplier(Location)}.
+   *
+   * @param location Location for the input stream.
+   * @return A {@link InputSupplier}.
+   */
+  public static InputSupplier<? extends SeekableInputStream> newMappedInputSupplier(final Location location) {
+    if (!(location.getLocationFactory() instanceof LocalLocationFactory)) {
+      return newInputSupplier(location);
+    }
+    return new InputSupplier<SeekableInputStream>() {
+      @Override
+      public SeekableInputStream getInput() throws IOException {
+        FileInputStream input = new FileInputStream(new File(location.toURI()));
+        try {
+          return new MappedFileSeekableInputStream(input);
+        } catch (IOException e) {
+          Closeables.closeQuietly(input);
+          throw e;
+        }
+      }
+    };
+  }
+
   /**
    * Do some processing on the locations contained in the {@code startLocation}, using the {@code processor}. If this
    * location is a directory, all the locations contained in it will also be processed. If the {@code recursive} tag
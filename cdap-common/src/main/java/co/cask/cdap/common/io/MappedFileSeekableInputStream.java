@@ -0,0 +1,275 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.common.io;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Implements {@link SeekableInputStream} for local files by reading through memory mapped regions of the file.
+ * Regions are mapped lazily and never extend beyond the file size at the time of mapping, hence it can be used
+ * for reading files that are still being appended to. When tailing a file that grows slowly, new bytes are read
+ * through the file channel until enough bytes are available to be worth mapping a new region.
+ * <p>
+ * Besides the regular {@link java.io.InputStream} methods, it provides the {@link #readBuffer(int, boolean)} method
+ * for reading without copying the file content.
+ */
+public final class MappedFileSeekableInputStream extends SeekableInputStream {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MappedFileSeekableInputStream.class);
+
+  static final int DEFAULT_REGION_SIZE = 32 * 1024 * 1024;    // 32MB
+
+  // Results of preparing for a read
+  private static final int EOF = 0;
+  private static final int MAPPED = 1;
+  private static final int UNMAPPED = 2;
+
+  private final FileChannel fileChannel;
+  private final int regionSize;
+  // Minimum number of bytes available in the file for mapping a new region to replace the current one
+  private final int minRemapSize;
+  private MappedByteBuffer region;
+  private long regionStart;
+  // Whether buffers sharing the current region may be used after the region is replaced or the stream is closed
+  private boolean regionRetained;
+  private int mapCount;
+  private long position;
+
+  MappedFileSeekableInputStream(FileInputStream in) throws IOException {
+    this(in, DEFAULT_REGION_SIZE);
+  }
+
+  MappedFileSeekableInputStream(FileInputStream in, int regionSize) throws IOException {
+    super(in);
+    this.fileChannel = in.getChannel();
+    this.regionSize = regionSize;
+    this.minRemapSize = Math.max(1, regionSize / 32);
+    this.position = fileChannel.position();
+  }
+
+  @Override
+  public int read() throws IOException {
+    switch (prepareRead(1)) {
+      case MAPPED:
+        int b = region.get((int) (position - regionStart)) & 0xff;
+        position++;
+        return b;
+      case UNMAPPED:
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        if (fileChannel.read(buffer, position) <= 0) {
+          return -1;
+        }
+        position++;
+        return buffer.get(0) & 0xff;
+      default:
+        return -1;
+    }
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    switch (prepareRead(1)) {
+      case MAPPED:
+        int offset = (int) (position - regionStart);
+        int size = Math.min(len, region.limit() - offset);
+        region.position(offset);
+        region.get(b, off, size);
+        position += size;
+        return size;
+      case UNMAPPED:
+        int bytesRead = fileChannel.read(ByteBuffer.wrap(b, off, len), position);
+        if (bytesRead <= 0) {
+          return -1;
+        }
+        position += bytesRead;
+        return bytesRead;
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Reads the given number of bytes as a {@link ByteBuffer}, which shares content with the mapped file if the
+   * bytes are in a mapped region. The position of this stream is advanced by the given number of bytes.
+   * <p>
+   * A buffer that is not retained must not be used after the stream is closed or after a read from the stream
+   * that needs a new region, since the mapping is released explicitly at that time. A retained buffer can be used
+   * for as long as needed, in which case the mapping is only released when it is garbage collected.
+   *
+   * @param length number of bytes to read
+   * @param retain whether the returned buffer may be used after this stream is closed
+   * @return a read-only {@link ByteBuffer} with position {@code 0} and limit {@code length}
+   * @throws EOFException if there are less than the given number of bytes available in the file
+   * @throws IOException if failed to map or read the file
+   */
+  public ByteBuffer readBuffer(int length, boolean retain) throws IOException {
+    switch (prepareRead(length)) {
+      case MAPPED:
+        int offset = (int) (position - regionStart);
+        ByteBuffer buffer = region.duplicate();
+        buffer.position(offset);
+        buffer.limit(offset + length);
+        position += length;
+        regionRetained |= retain;
+        return buffer.slice();
+      case UNMAPPED:
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+          if (fileChannel.read(bytes, position + bytes.position()) < 0) {
+            throw new EOFException("Expected to read " + length + " bytes at position " + position
+                                     + ", but only " + bytes.position() + " bytes were read");
+          }
+        }
+        bytes.flip();
+        position += length;
+        return bytes.asReadOnlyBuffer();
+      default:
+        throw new EOFException("Expected to read " + length + " bytes at position " + position
+                                 + ", but the file size is only " + fileChannel.size());
+    }
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0L;
+    }
+    long skipped = Math.min(n, Math.max(0L, fileChannel.size() - position));
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(0L, fileChannel.size() - position));
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public void seek(long pos) throws IOException {
+    position = pos;
+  }
+
+  @Override
+  public long getPos() throws IOException {
+    return position;
+  }
+
+  @Override
+  public boolean seekToNewSource(long targetPos) throws IOException {
+    return false;
+  }
+
+  @Override
+  public long size() throws IOException {
+    return fileChannel.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    releaseRegion();
+    super.close();
+  }
+
+  /**
+   * Returns the number of regions mapped so far.
+   */
+  @VisibleForTesting
+  int getMapCount() {
+    return mapCount;
+  }
+
+  /**
+   * Prepares for reading the given number of bytes starting from the current position. A new region is mapped at
+   * the current position if the current region doesn't cover the bytes, unless there are too few bytes left in the
+   * file, which happens when tailing a file that is being appended to.
+   *
+   * @return {@link #MAPPED} if the current region covers the bytes, {@link #UNMAPPED} if the bytes are available but
+   *         should be read from the file channel, or {@link #EOF} if the file is not large enough
+   */
+  private int prepareRead(int length) throws IOException {
+    if (region != null && position >= regionStart && position + length <= regionStart + region.limit()) {
+      return MAPPED;
+    }
+    long fileSize = fileChannel.size();
+    long available = fileSize - position;
+    if (available < length) {
+      return EOF;
+    }
+    if (region != null && available < minRemapSize) {
+      // Avoid mapping a tiny region for every poll when tailing a file
+      return UNMAPPED;
+    }
+
+    releaseRegion();
+    long size = Math.min(Math.max(regionSize, length), available);
+    region = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    regionStart = position;
+    mapCount++;
+    return MAPPED;
+  }
+
+  /**
+   * Drops the current region, releasing the mapping explicitly unless buffers sharing it were retained.
+   */
+  private void releaseRegion() {
+    MappedByteBuffer buffer = region;
+    boolean retained = regionRetained;
+    region = null;
+    regionRetained = false;
+    if (buffer != null && !retained) {
+      unmap(buffer);
+    }
+  }
+
+  /**
+   * Releases the mapping of the given buffer without waiting for garbage collection. If it is not supported by the
+   * JVM, the mapping is released when the buffer is garbage collected.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        Method cleanMethod = cleaner.getClass().getMethod("clean");
+        cleanMethod.setAccessible(true);
+        cleanMethod.invoke(cleaner);
+      }
+    } catch (Exception e) {
+      LOG.trace("Failed to release memory mapped buffer explicitly", e);
+    }
+  }
+}
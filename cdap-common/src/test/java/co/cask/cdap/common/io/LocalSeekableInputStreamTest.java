@@ -17,10 +17,18 @@
 package co.cask.cdap.common.io;
 
 import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Unit test for {@link SeekableInputStream} with local location.
@@ -38,4 +46,126 @@ public class LocalSeekableInputStreamTest extends SeekableInputStreamTestBase {
   protected LocationFactory getLocationFactory() {
     return locationFactory;
   }
+
+  @Test
+  public void testMappedStream() throws IOException {
+    Location location = getLocationFactory().create("testMapped");
+
+    byte[] bytes = new byte[1024];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i & 0xff);
+    }
+
+    // Writes 1024 bytes to the output, and keep the output stream open
+    OutputStream output = Locations.newOutputSupplier(location).getOutput();
+    output.write(bytes);
+    output.flush();
+
+    SeekableInputStream mappedInput = Locations.newMappedInputSupplier(location).getInput();
+    Assert.assertTrue(mappedInput instanceof MappedFileSeekableInputStream);
+    mappedInput.close();
+
+    // Use a small region size to read across regions
+    MappedFileSeekableInputStream input =
+      new MappedFileSeekableInputStream(new FileInputStream(new File(location.toURI())), 100);
+    Assert.assertEquals(bytes.length, input.size());
+
+    byte[] readBytes = new byte[bytes.length];
+    int len = 0;
+    while (len < readBytes.length) {
+      int read = input.read(readBytes, len, 30);
+      Assert.assertTrue(read > 0);
+      len += read;
+    }
+    Assert.assertArrayEquals(bytes, readBytes);
+    Assert.assertEquals(-1, input.read());
+
+    // Read without copying, across region boundary
+    input.seek(90);
+    ByteBuffer buffer = input.readBuffer(20, false);
+    Assert.assertEquals(20, buffer.remaining());
+    for (int i = 0; i < 20; i++) {
+      Assert.assertEquals((90 + i) & 0xff, buffer.get() & 0xff);
+    }
+    Assert.assertEquals(110, input.getPos());
+
+    // Skip should stop at the end of file
+    input.seek(1000);
+    Assert.assertEquals(24, input.skip(100));
+
+    // Bytes appended after the stream is opened should be readable
+    output.write(bytes);
+    output.flush();
+    Assert.assertEquals(bytes.length * 2, input.size());
+    input.seek(bytes.length + 10);
+    Assert.assertEquals(10, input.read());
+    buffer = input.readBuffer(bytes.length - 11, false);
+    Assert.assertEquals(11, buffer.get() & 0xff);
+
+    try {
+      input.readBuffer(2, false);
+      Assert.fail("Expected EOFException");
+    } catch (EOFException e) {
+      // Expected
+    }
+
+    output.close();
+    input.close();
+  }
+
+  @Test
+  public void testMappedTail() throws IOException {
+    Location location = getLocationFactory().create("testMappedTail");
+    byte[] bytes = new byte[1024];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i & 0xff);
+    }
+
+    OutputStream output = Locations.newOutputSupplier(location).getOutput();
+    output.write(bytes);
+    output.flush();
+
+    // Region size is larger than the file, hence the first region only covers the current file size
+    MappedFileSeekableInputStream input =
+      new MappedFileSeekableInputStream(new FileInputStream(new File(location.toURI())), 4096);
+    byte[] readBytes = new byte[bytes.length];
+    Assert.assertEquals(bytes.length, input.read(readBytes, 0, readBytes.length));
+    Assert.assertEquals(1, input.getMapCount());
+
+    // Polling without the file growing should not map again
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(-1, input.read());
+      Assert.assertEquals(-1, input.read(readBytes, 0, 10));
+    }
+    Assert.assertEquals(1, input.getMapCount());
+
+    // Small appends are read without mapping new regions
+    long pos = bytes.length;
+    for (int i = 0; i < 10; i++) {
+      output.write(bytes, 0, 10);
+      output.flush();
+      Assert.assertEquals(0, input.read());
+      Assert.assertEquals(1, input.read());
+      ByteBuffer buffer = input.readBuffer(8, false);
+      for (int j = 2; j < 10; j++) {
+        Assert.assertEquals(j, buffer.get() & 0xff);
+      }
+      pos += 10;
+      Assert.assertEquals(pos, input.getPos());
+    }
+    Assert.assertEquals(1, input.getMapCount());
+
+    // Once enough bytes are appended, a new region is mapped
+    output.write(bytes);
+    output.flush();
+    ByteBuffer buffer = input.readBuffer(bytes.length, true);
+    Assert.assertEquals(2, input.getMapCount());
+    output.close();
+    input.close();
+
+    // A retained buffer is still readable after the stream is closed
+    for (int i = 0; i < bytes.length; i++) {
+      Assert.assertEquals(bytes[i], buffer.get());
+    }
+  }
 }
@@ -43,6 +43,7 @@ import com.google.common.io.Closeables;
 import com.google.common.io.Flushables;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.hadoop.hbase.util.Strings;
+import org.apache.twill.filesystem.LocalLocationFactory;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.junit.Assert;
@@ -315,6 +316,60 @@ public abstract class StreamDataFileTestBase {
     }
   }
 
+  @Test
+  public void testCachedIndex() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    // Write 1000 events with different timestamps, and create index for every 100 timestamps.
+    writeEvents(eventFile, indexFile, 100L, "Testing ");
+    // Read with time range filter through the index cache. Read twice so that the second time uses the block index.
+    readCached(eventFile, indexFile, "Testing ");
+
+    // Replace the files with new content at the same locations, as if the stream was dropped and created again.
+    // The cached indexes of the old files must not be used.
+    Locations.deleteQuietly(eventFile);
+    Locations.deleteQuietly(indexFile);
+    writeEvents(eventFile, indexFile, 50L, "Recreated stream event ");
+    readCached(eventFile, indexFile, "Recreated stream event ");
+  }
+
+  private void writeEvents(Location eventFile, Location indexFile, long indexInterval,
+                           String bodyPrefix) throws IOException {
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           indexInterval);
+    for (int i = 0; i < 1000; i++) {
+      writer.append(StreamFileTestUtils.createEvent(1000 + i, bodyPrefix + i));
+    }
+    writer.close();
+  }
+
+  private void readCached(Location eventFile, Location indexFile, String bodyPrefix) throws Exception {
+    String cacheKey = StreamDataFileIndexCache.createKey(eventFile, indexFile);
+    Assert.assertNotNull(cacheKey);
+    for (int i = 0; i < 2; i++) {
+      for (long ts : new long[] {1050, 1110, 1200, 1290, 1301, 1400, 1500, 1600, 1898, 1900, 1950, 1999}) {
+        StreamDataFileReader reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                                            Locations.newInputSupplier(indexFile),
+                                                                            0L, cacheKey);
+        TimeRangeReadFilter filter = new TimeRangeReadFilter(ts, ts + 10);
+        List<StreamEvent> events = Lists.newArrayList();
+        int eventsRead = reader.read(events, 1, 0, TimeUnit.SECONDS, filter);
+        while (eventsRead == 0 && filter.isActive()) {
+          filter.reset();
+          eventsRead = reader.read(events, 1, 0, TimeUnit.SECONDS, filter);
+        }
+        Assert.assertEquals(1, eventsRead);
+        Assert.assertEquals(ts, events.get(0).getTimestamp());
+        Assert.assertEquals(bodyPrefix + (ts - 1000), Charsets.UTF_8.decode(events.get(0).getBody()).toString());
+
+        reader.close();
+      }
+    }
+  }
+
   @Test
   public void testPosition() throws Exception {
     Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
@@ -423,6 +478,143 @@ public abstract class StreamDataFileTestBase {
     }
   }
 
+  @Test
+  public void testMappedRead() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           10L);
+    for (int i = 0; i < 100; i++) {
+      for (int j = 0; j < 10; j++) {
+        writer.append(new StreamEvent(ImmutableMap.of("key", "value" + j),
+                                      Charsets.UTF_8.encode("Mapped test " + i + " " + j), i));
+      }
+    }
+    writer.close();
+
+    // Read events in small batches, so that events read earlier are kept while later blocks are read
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newMappedInputSupplier(eventFile));
+    List<PositionStreamEvent> events = Lists.newArrayList();
+    while (reader.read(events, 7, 0, TimeUnit.SECONDS) >= 0) {
+      // Keep reading until end of file
+    }
+    reader.close();
+
+    Assert.assertEquals(1000, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      StreamEvent event = events.get(i);
+      Assert.assertEquals(i / 10, event.getTimestamp());
+      Assert.assertEquals("value" + (i % 10), event.getHeaders().get("key"));
+      Assert.assertEquals("Mapped test " + (i / 10) + " " + (i % 10),
+                          Charsets.UTF_8.decode(event.getBody()).toString());
+      // Bodies are copied by default, so that they are backed by arrays as user code may expect
+      Assert.assertTrue(event.getBody().hasArray());
+      Assert.assertFalse(event.getBody().isReadOnly());
+    }
+
+    // Reading from arbitrary offset should give the same events
+    for (int i = 0; i < events.size(); i += 13) {
+      reader = StreamDataFileReader.createWithOffset(Locations.newMappedInputSupplier(eventFile),
+                                                     Locations.newInputSupplier(indexFile), events.get(i).getStart());
+      List<PositionStreamEvent> readEvents = Lists.newArrayList();
+      Assert.assertEquals(1, reader.read(readEvents, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+      Assert.assertEquals(events.get(i).getStart(), readEvents.get(0).getStart());
+      Assert.assertEquals("Mapped test " + (i / 10) + " " + (i % 10),
+                          Charsets.UTF_8.decode(readEvents.get(0).getBody()).toString());
+    }
+
+    // Reading with shared bodies should give the same events, with bodies sharing content with the mapped file
+    reader = StreamDataFileReader.createWithOffset(Locations.newMappedInputSupplier(eventFile),
+                                                   Locations.newInputSupplier(indexFile), 0L, null, true);
+    List<PositionStreamEvent> sharedEvents = Lists.newArrayList();
+    while (reader.read(sharedEvents, 7, 0, TimeUnit.SECONDS) >= 0) {
+      // Keep reading until end of file
+    }
+    reader.close();
+
+    Assert.assertEquals(events.size(), sharedEvents.size());
+    for (int i = 0; i < sharedEvents.size(); i++) {
+      StreamEvent event = sharedEvents.get(i);
+      Assert.assertEquals(events.get(i).getStart(), sharedEvents.get(i).getStart());
+      Assert.assertEquals("Mapped test " + (i / 10) + " " + (i % 10),
+                          Charsets.UTF_8.decode(event.getBody()).toString());
+      // Bodies can only be shared if the file is memory mapped
+      Assert.assertEquals(eventFile.getLocationFactory() instanceof LocalLocationFactory,
+                          event.getBody().isReadOnly());
+    }
+  }
+
+  @Test
+  public void testCompressedDataBlock() throws Exception {
+    for (String codec : ImmutableList.of("snappy", "deflate")) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+      Location plainEventFile = dir.getTempFile(".dat");
+      Location plainIndexFile = dir.getTempFile(".idx");
+
+      // Write the same events to a compressed and an uncompressed file, with 200 events per timestamp
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, codec));
+      StreamDataFileWriter plainWriter = new StreamDataFileWriter(Locations.newOutputSupplier(plainEventFile),
+                                                                  Locations.newOutputSupplier(plainIndexFile), 10L);
+      for (int i = 0; i < 20; i++) {
+        for (int j = 0; j < 200; j++) {
+          StreamEvent event = StreamFileTestUtils.createEvent(i, "Compression test " + (j % 10));
+          writer.append(event);
+          plainWriter.append(event);
+        }
+      }
+      writer.close();
+      plainWriter.close();
+
+      Assert.assertTrue(eventFile.length() < plainEventFile.length());
+
+      // Read all events from the compressed file
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(4000, reader.read(events, 4000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(-1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      long lastPosition = -1L;
+      for (int i = 0; i < events.size(); i++) {
+        PositionStreamEvent event = events.get(i);
+        Assert.assertEquals(i / 200, event.getTimestamp());
+        Assert.assertEquals("Compression test " + (i % 200 % 10), Charsets.UTF_8.decode(event.getBody()).toString());
+        // Event positions must be strictly increasing
+        Assert.assertTrue(event.getStart() > lastPosition);
+        lastPosition = event.getStart();
+      }
+
+      // Reading from the position of an event should start from that event
+      for (int i = 0; i < events.size(); i += 37) {
+        PositionStreamEvent event = events.get(i);
+        reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                       Locations.newInputSupplier(indexFile), event.getStart());
+        List<PositionStreamEvent> readEvents = Lists.newArrayList();
+        Assert.assertEquals(1, reader.read(readEvents, 1, 0, TimeUnit.SECONDS));
+        reader.close();
+        Assert.assertEquals(event.getStart(), readEvents.get(0).getStart());
+        Assert.assertEquals(event.getTimestamp(), readEvents.get(0).getTimestamp());
+        Assert.assertEquals(event.getBody(), readEvents.get(0).getBody());
+      }
+
+      // Reading by time should work with the index
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), 15L);
+      events.clear();
+      Assert.assertEquals(1000, reader.read(events, 4000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(15L, events.get(0).getTimestamp());
+      reader.close();
+    }
+  }
+
   @Test
   public void testEndOfFile() throws Exception {
     // This test is for opening a reader with start time beyond the last event in the file.
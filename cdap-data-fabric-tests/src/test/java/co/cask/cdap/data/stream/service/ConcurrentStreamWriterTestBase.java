@@ -138,6 +138,54 @@ public abstract class ConcurrentStreamWriterTestBase {
     streamWriter.close();
   }
 
+  @Test
+  public void testGroupCommit() throws Exception {
+    final String streamName = "testGroupCommit";
+    NamespaceId namespace = new NamespaceId("namespace");
+    StreamId streamId = namespace.stream(streamName);
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
+    int threads = Runtime.getRuntime().availableProcessors() * 4;
+
+    StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+    streamConfig.getLocation().mkdirs();
+
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    TestMetricsCollectorFactory metricsCollectorFactory = new TestMetricsCollectorFactory();
+    ConcurrentStreamWriter streamWriter = new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
+                                                                     fileWriterFactory, threads, 5000L,
+                                                                     metricsCollectorFactory, impersonator);
+
+    // Starts n threads to write events one by one through the stream writer
+    int msgPerThread = 200;
+    CountDownLatch startLatch = new CountDownLatch(1);
+    CountDownLatch completion = new CountDownLatch(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(createWriterTask(streamId, streamWriter, i, msgPerThread, 1, startLatch, completion));
+    }
+    startLatch.countDown();
+    Assert.assertTrue(completion.await(120, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    // Requests from concurrent threads should be committed together
+    Assert.assertEquals(threads * msgPerThread, metricsCollectorFactory.requests.get());
+    Assert.assertTrue(metricsCollectorFactory.commits.get() < metricsCollectorFactory.requests.get());
+    Assert.assertEquals(threads * msgPerThread, metricsCollectorFactory.latencies.get());
+
+    // Verify all events are written
+    Location partitionLocation = streamConfig.getLocation().list().get(0);
+    Location streamLocation = StreamUtils.createStreamLocation(partitionLocation,
+                                                               fileWriterFactory.getFileNamePrefix(),
+                                                               0, StreamFileType.EVENT);
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(streamLocation));
+    List<StreamEvent> events = Lists.newArrayListWithCapacity(threads * msgPerThread);
+    Assert.assertEquals(threads * msgPerThread, reader.read(events, Integer.MAX_VALUE, 0, TimeUnit.SECONDS));
+    Assert.assertTrue(verifyEvents(threads, msgPerThread, events));
+
+    reader.close();
+    streamWriter.close();
+  }
+
   @Test
   public void testConcurrentAppendFile() throws Exception {
     final String streamName = "testConcurrentFile";
@@ -346,6 +394,11 @@ public abstract class ConcurrentStreamWriterTestBase {
   }
 
   private static final class TestMetricsCollectorFactory implements StreamMetricsCollectorFactory {
+
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger latencies = new AtomicInteger();
+
     @Override
     public StreamMetricsCollector createMetricsCollector(StreamId streamId) {
       return new StreamMetricsCollector() {
@@ -353,6 +406,15 @@ public abstract class ConcurrentStreamWriterTestBase {
         public void emitMetrics(long bytesWritten, long eventsWritten) {
           // No-op
         }
+
+        @Override
+        public void emitCommitMetrics(int requestCount, long flushMicros, long[] latencyHistogram) {
+          commits.incrementAndGet();
+          requests.addAndGet(requestCount);
+          for (long count : latencyHistogram) {
+            latencies.addAndGet((int) count);
+          }
+        }
       };
     }
   }
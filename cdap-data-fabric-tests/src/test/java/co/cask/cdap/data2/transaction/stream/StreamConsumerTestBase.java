@@ -218,6 +218,56 @@ public abstract class StreamConsumerTestBase {
     consumer1.close();
   }
 
+  @Test
+  public void testFIFOBatchClaim() throws Exception {
+    String stream = "testFIFOBatchClaim";
+    StreamId streamId = TEST_NAMESPACE.stream(stream);
+    StreamAdmin streamAdmin = getStreamAdmin();
+    streamAdmin.create(streamId);
+    StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+
+    // Writes 100 events
+    writeEvents(streamConfig, "Testing ", 100);
+
+    streamAdmin.configureInstances(streamId, 0L, 3);
+
+    // Starts three consumers, each claiming multiple entries per poll
+    StreamConsumerFactory consumerFactory = getConsumerFactory();
+    List<StreamConsumer> consumers = Lists.newArrayList();
+    List<TransactionContext> txContexts = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      StreamConsumer consumer = consumerFactory.create(streamId, "fifo.batch",
+                                                       new ConsumerConfig(0L, i, 3, DequeueStrategy.FIFO, null));
+      consumers.add(consumer);
+      txContexts.add(createTxContext(consumer));
+    }
+
+    // Each event should be consumed by exactly one consumer
+    Set<String> messages = Sets.newHashSet();
+    boolean done;
+    do {
+      done = true;
+      for (int i = 0; i < consumers.size(); i++) {
+        txContexts.get(i).start();
+        DequeueResult<StreamEvent> result = consumers.get(i).poll(10, 1, TimeUnit.SECONDS);
+        for (StreamEvent event : result) {
+          Assert.assertTrue(messages.add(Charsets.UTF_8.decode(event.getBody()).toString()));
+        }
+        done = done && result.isEmpty();
+        txContexts.get(i).finish();
+      }
+    } while (!done);
+
+    Assert.assertEquals(100, messages.size());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(messages.contains("Testing " + i));
+    }
+
+    for (StreamConsumer consumer : consumers) {
+      consumer.close();
+    }
+  }
+
   @Test
   public void testFIFOReconfigure() throws Exception {
     String stream = "testReconfigure";
@@ -560,7 +610,8 @@ public abstract class StreamConsumerTestBase {
     return result;
   }
 
-  private List<StreamEvent> writeEvents(StreamConfig streamConfig, String msgPrefix, int count) throws IOException {
+  protected List<StreamEvent> writeEvents(StreamConfig streamConfig,
+                                          String msgPrefix, int count) throws IOException {
     return writeEvents(streamConfig, msgPrefix, count, new Clock());
   }
 
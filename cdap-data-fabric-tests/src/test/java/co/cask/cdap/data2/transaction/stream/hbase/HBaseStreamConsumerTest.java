@@ -16,6 +16,8 @@
 
 package co.cask.cdap.data2.transaction.stream.hbase;
 
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
@@ -37,40 +39,60 @@ import co.cask.cdap.data.stream.StreamFileWriterFactory;
 import co.cask.cdap.data.stream.service.InMemoryStreamMetaStore;
 import co.cask.cdap.data.stream.service.StreamMetaStore;
 import co.cask.cdap.data.view.ViewAdminModules;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueResult;
+import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueClientFactory;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
+import co.cask.cdap.data2.transaction.stream.StreamConsumer;
 import co.cask.cdap.data2.transaction.stream.StreamConsumerFactory;
+import co.cask.cdap.data2.transaction.stream.StreamConsumerStateStoreFactory;
 import co.cask.cdap.data2.transaction.stream.StreamConsumerTestBase;
+import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.explore.guice.ExploreClientModule;
 import co.cask.cdap.notifications.feeds.NotificationFeedManager;
 import co.cask.cdap.notifications.feeds.service.NoOpNotificationFeedManager;
 import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
 import co.cask.cdap.test.SlowTests;
+import com.google.common.collect.Iterables;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
+import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import com.google.inject.util.Modules;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.tephra.TransactionContext;
 import org.apache.tephra.TransactionManager;
 import org.apache.tephra.TransactionSystemClient;
 import org.apache.tephra.inmemory.InMemoryTxSystemClient;
 import org.apache.tephra.inmemory.TxInMemory;
 import org.apache.tephra.persist.NoOpTransactionStateStorage;
 import org.apache.tephra.persist.TransactionStateStorage;
+import org.apache.twill.filesystem.LocationFactory;
 import org.apache.twill.internal.zookeeper.InMemoryZKServer;
 import org.apache.twill.zookeeper.ZKClientService;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -84,6 +106,7 @@ public class HBaseStreamConsumerTest extends StreamConsumerTestBase {
   public static final HBaseTestBase TEST_HBASE = new HBaseTestFactory().get();
 
   private static StreamConsumerFactory consumerFactory;
+  private static CountingConsumerFactory countingConsumerFactory;
   private static StreamAdmin streamAdmin;
   private static TransactionSystemClient txClient;
   private static TransactionManager txManager;
@@ -136,6 +159,7 @@ public class HBaseStreamConsumerTest extends StreamConsumerTestBase {
 
     streamAdmin = injector.getInstance(StreamAdmin.class);
     consumerFactory = injector.getInstance(StreamConsumerFactory.class);
+    countingConsumerFactory = injector.getInstance(CountingConsumerFactory.class);
     txClient = injector.getInstance(TransactionSystemClient.class);
     txManager = TxInMemory.getTransactionManager(txClient);
     queueClientFactory = injector.getInstance(QueueClientFactory.class);
@@ -167,6 +191,39 @@ public class HBaseStreamConsumerTest extends StreamConsumerTestBase {
     tableUtil.deleteNamespaceIfExists(TEST_HBASE.getHBaseAdmin(), tableUtil.getHBaseNamespace(namespace));
   }
 
+  @Test
+  public void testFIFOClaimWrites() throws Exception {
+    String stream = "testFIFOClaimWrites";
+    StreamId streamId = TEST_NAMESPACE.stream(stream);
+    streamAdmin.create(streamId);
+    writeEvents(streamAdmin.getConfig(streamId), "Testing ", 100);
+    streamAdmin.configureInstances(streamId, 0L, 2);
+
+    // A FIFO consumer in a group of more than one instance claims every entry it consumes
+    try (StreamConsumer consumer = countingConsumerFactory.create(
+      streamId, "fifo.claim", new ConsumerConfig(0L, 0, 2, DequeueStrategy.FIFO, null))) {
+      TransactionContext txContext = new TransactionContext(txClient, consumer);
+      int events = 0;
+      int polls = 0;
+      DequeueResult<StreamEvent> result;
+      do {
+        txContext.start();
+        result = consumer.poll(10, 1, TimeUnit.SECONDS);
+        if (!result.isEmpty()) {
+          events += Iterables.size(result);
+          polls++;
+        }
+        txContext.finish();
+      } while (!result.isEmpty());
+
+      Assert.assertEquals(100, events);
+
+      // The entries of each poll should be claimed with one batch call instead of one call per entry
+      Assert.assertEquals(0, countingConsumerFactory.getCheckAndPutCalls());
+      Assert.assertEquals(polls, countingConsumerFactory.getBatchCalls());
+    }
+  }
+
   @Override
   protected QueueClientFactory getQueueClientFactory() {
     return queueClientFactory;
@@ -191,4 +248,52 @@ public class HBaseStreamConsumerTest extends StreamConsumerTestBase {
   protected StreamFileWriterFactory getFileWriterFactory() {
     return fileWriterFactory;
   }
+
+  /**
+   * A {@link HBaseStreamFileConsumerFactory} that counts the calls that claim entries.
+   */
+  static final class CountingConsumerFactory extends HBaseStreamFileConsumerFactory {
+
+    private final Configuration hConf;
+    private final AtomicInteger checkAndPutCalls = new AtomicInteger();
+    private final AtomicInteger batchCalls = new AtomicInteger();
+
+    @Inject
+    CountingConsumerFactory(StreamAdmin streamAdmin, StreamConsumerStateStoreFactory stateStoreFactory,
+                            CConfiguration cConf, Configuration hConf, HBaseTableUtil tableUtil,
+                            LocationFactory locationFactory) {
+      super(streamAdmin, stateStoreFactory, cConf, hConf, tableUtil, locationFactory);
+      this.hConf = hConf;
+    }
+
+    @Override
+    HTable createHTable(TableId hBaseTableId) throws IOException {
+      TableName tableName;
+      try (HTable hTable = super.createHTable(hBaseTableId)) {
+        tableName = hTable.getName();
+      }
+      return new HTable(hConf, tableName) {
+        @Override
+        public boolean checkAndPut(byte[] row, byte[] family, byte[] qualifier,
+                                   byte[] value, Put put) throws IOException {
+          checkAndPutCalls.incrementAndGet();
+          return super.checkAndPut(row, family, qualifier, value, put);
+        }
+
+        @Override
+        public void batch(List<? extends Row> actions, Object[] results) throws IOException, InterruptedException {
+          batchCalls.incrementAndGet();
+          super.batch(actions, results);
+        }
+      };
+    }
+
+    int getCheckAndPutCalls() {
+      return checkAndPutCalls.get();
+    }
+
+    int getBatchCalls() {
+      return batchCalls.get();
+    }
+  }
 }
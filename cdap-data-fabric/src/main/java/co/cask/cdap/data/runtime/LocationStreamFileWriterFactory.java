@@ -21,6 +21,7 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.data.file.FileWriter;
+import co.cask.cdap.data.stream.StreamDataFileConstants;
 import co.cask.cdap.data.stream.StreamFileWriterFactory;
 import co.cask.cdap.data.stream.StreamUtils;
 import co.cask.cdap.data.stream.TimePartitionedStreamFileWriter;
@@ -41,11 +42,14 @@ import java.util.concurrent.Callable;
 public final class LocationStreamFileWriterFactory implements StreamFileWriterFactory {
 
   private final String filePrefix;
+  private final String codec;
   private final Impersonator impersonator;
 
   @Inject
   public LocationStreamFileWriterFactory(CConfiguration cConf, Impersonator impersonator) {
     this.filePrefix = cConf.get(Constants.Stream.INSTANCE_FILE_PREFIX);
+    this.codec = cConf.get(Constants.Stream.FILE_COMPRESSION_CODEC,
+                           StreamDataFileConstants.Property.Value.CODEC_NONE);
     this.impersonator = impersonator;
   }
 
@@ -71,7 +75,7 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
 
       return new TimePartitionedStreamFileWriter(baseLocation, config.getPartitionDuration(),
                                                  filePrefix, config.getIndexInterval(),
-                                                 config.getStreamId(), impersonator);
+                                                 config.getStreamId(), impersonator, codec);
     } catch (Exception e) {
       Throwables.propagateIfPossible(e, IOException.class);
       throw new IOException(e);
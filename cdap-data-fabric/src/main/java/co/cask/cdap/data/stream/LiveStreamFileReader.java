@@ -41,6 +41,7 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
   private final StreamFileOffset beginOffset;
   private final StreamConfig streamConfig;
   private final long maxFileCheckInterval;
+  private final boolean shareMappedBodies;
   private StreamPositionTransformFileReader reader;
   private int retries;
   private long nextCheckTime = 0;
@@ -67,6 +68,22 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
    * @param maxFileCheckInterval maximum interval in milliseconds for checking for new stream file.
    */
   public LiveStreamFileReader(StreamConfig streamConfig, StreamFileOffset beginOffset, long maxFileCheckInterval) {
+    this(streamConfig, beginOffset, maxFileCheckInterval, false);
+  }
+
+  /**
+   * Creates a new file reader.
+   *
+   * @param streamConfig the stream configuration.
+   * @param beginOffset the offset information to begin with.
+   * @param maxFileCheckInterval maximum interval in milliseconds for checking for new stream file.
+   * @param shareMappedBodies if {@code true}, bodies of events read from local stream files are read-only buffers
+   *                          sharing content with the memory mapped file instead of copies. It should only be
+   *                          used if the events are not passed to user code.
+   */
+  public LiveStreamFileReader(StreamConfig streamConfig, StreamFileOffset beginOffset, long maxFileCheckInterval,
+                              boolean shareMappedBodies) {
+    this.shareMappedBodies = shareMappedBodies;
     this.streamConfig = streamConfig;
     this.beginOffset = beginOffset;
     this.maxFileCheckInterval = (maxFileCheckInterval <= 0) ? Constants.Stream.NEW_FILE_CHECK_INTERVAL
@@ -78,7 +95,7 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
   protected FileReader<PositionStreamEvent, StreamFileOffset> renewReader() throws IOException {
     // If no reader has yet opened, start with the beginning offset.
     if (reader == null) {
-      reader = new StreamPositionTransformFileReader(beginOffset);
+      reader = new StreamPositionTransformFileReader(beginOffset, shareMappedBodies);
       reader.initialize();
       return reader;
     }
@@ -141,7 +158,7 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
     }
 
     StreamPositionTransformFileReader reader =
-      new StreamPositionTransformFileReader(new StreamFileOffset(eventLocation, 0L, generation));
+      new StreamPositionTransformFileReader(new StreamFileOffset(eventLocation, 0L, generation), shareMappedBodies);
     reader.initialize();
     return reader;
   }
@@ -154,10 +171,15 @@ public final class LiveStreamFileReader extends LiveFileReader<PositionStreamEve
     private final Location partitionLocation;
     private StreamFileOffset offset;
 
-    private StreamPositionTransformFileReader(StreamFileOffset offset) throws IOException {
-      this.reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(offset.getEventLocation()),
-                                                          Locations.newInputSupplier(offset.getIndexLocation()),
-                                                          offset.getOffset());
+    private StreamPositionTransformFileReader(StreamFileOffset offset, boolean shareMappedBodies) throws IOException {
+      // Stream files are read repeatedly by consumers, hence use memory mapping if they are local
+      // and share the index across readers of the same file.
+      this.reader = StreamDataFileReader.createWithOffset(
+        Locations.newMappedInputSupplier(offset.getEventLocation()),
+        Locations.newInputSupplier(offset.getIndexLocation()),
+        offset.getOffset(),
+        StreamDataFileIndexCache.createKey(offset.getEventLocation(), offset.getIndexLocation()),
+        shareMappedBodies);
       this.offset = new StreamFileOffset(offset);
       this.partitionLocation = Locations.getParent(offset.getEventLocation());
 
@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.PositionReporter;
@@ -50,10 +51,24 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
   private final Iterable<StreamFileOffset> offsetsView;
 
   public MultiLiveStreamFileReader(StreamConfig streamConfig, Iterable<? extends StreamFileOffset> offsets) {
+    this(streamConfig, offsets, false);
+  }
+
+  /**
+   * Creates a reader that reads from the given offsets.
+   *
+   * @param streamConfig the stream configuration
+   * @param offsets the offsets to start reading from
+   * @param shareMappedBodies if {@code true}, bodies of events read from local stream files are read-only buffers
+   *                          sharing content with the memory mapped file instead of copies. It should only be
+   *                          used if the events are not passed to user code.
+   */
+  public MultiLiveStreamFileReader(StreamConfig streamConfig, Iterable<? extends StreamFileOffset> offsets,
+                                   boolean shareMappedBodies) {
     this.allSources = Sets.newTreeSet();
 
     for (StreamFileOffset source : offsets) {
-      StreamEventSource eventSource = new StreamEventSource(streamConfig, source);
+      StreamEventSource eventSource = new StreamEventSource(streamConfig, source, shareMappedBodies);
       allSources.add(eventSource);
     }
 
@@ -165,8 +180,9 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
     private StreamFileOffset currentOffset;
     private StreamFileOffset nextOffset;
 
-    private StreamEventSource(StreamConfig streamConfig, StreamFileOffset beginOffset) {
-      this.reader = new LiveStreamFileReader(streamConfig, beginOffset);
+    private StreamEventSource(StreamConfig streamConfig, StreamFileOffset beginOffset, boolean shareMappedBodies) {
+      this.reader = new LiveStreamFileReader(streamConfig, beginOffset, Constants.Stream.NEW_FILE_CHECK_INTERVAL,
+                                             shareMappedBodies);
       this.events = Lists.newArrayListWithCapacity(1);
       this.currentOffset = new StreamFileOffset(beginOffset);
       this.nextOffset = beginOffset;
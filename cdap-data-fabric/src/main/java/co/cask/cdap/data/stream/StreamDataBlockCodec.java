@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data.stream;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Compresses and decompresses data blocks of stream files. The codec of a file is recorded in the
+ * {@link StreamDataFileConstants.Property.Key#CODEC} property of the file header. Instances may keep
+ * state between calls, hence each reader and writer creates its own instance.
+ */
+@NotThreadSafe
+abstract class StreamDataBlockCodec implements Closeable {
+
+  static final String SNAPPY = "snappy";
+  static final String DEFLATE = "deflate";
+
+  /**
+   * Creates a new codec instance by name.
+   *
+   * @throws IOException if the codec is not supported
+   */
+  static StreamDataBlockCodec create(String name) throws IOException {
+    if (SNAPPY.equalsIgnoreCase(name)) {
+      return new SnappyCodec();
+    }
+    if (DEFLATE.equalsIgnoreCase(name)) {
+      return new DeflateCodec();
+    }
+    throw new IOException("Unsupported stream file codec '" + name + "'. Supported codecs are "
+                            + SNAPPY + " and " + DEFLATE);
+  }
+
+  /**
+   * Returns the name of the codec as recorded in the file header.
+   */
+  abstract String getName();
+
+  /**
+   * Returns the size of the buffer needed for compressing the given number of bytes.
+   */
+  abstract int maxCompressedLength(int length);
+
+  /**
+   * Compresses data into the given output buffer, which must be at least {@link #maxCompressedLength(int)} large.
+   *
+   * @return number of bytes written to the output buffer
+   */
+  abstract int compress(byte[] input, int offset, int length, byte[] output) throws IOException;
+
+  /**
+   * Decompresses data into the given output buffer.
+   *
+   * @param outputLength the exact length of the decompressed data
+   * @throws IOException if the data cannot be decompressed to the expected length
+   */
+  abstract void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException;
+
+  @Override
+  public void close() {
+    // no-op by default
+  }
+
+  /**
+   * Codec using Snappy compression.
+   */
+  private static final class SnappyCodec extends StreamDataBlockCodec {
+
+    @Override
+    String getName() {
+      return SNAPPY;
+    }
+
+    @Override
+    int maxCompressedLength(int length) {
+      return Snappy.maxCompressedLength(length);
+    }
+
+    @Override
+    int compress(byte[] input, int offset, int length, byte[] output) throws IOException {
+      return Snappy.compress(input, offset, length, output, 0);
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      int size = Snappy.uncompress(input, offset, length, output, 0);
+      if (size != outputLength) {
+        throw new IOException("Expected " + outputLength + " bytes after decompression, but got " + size);
+      }
+    }
+  }
+
+  /**
+   * Codec using raw Deflate compression.
+   */
+  private static final class DeflateCodec extends StreamDataBlockCodec {
+
+    private Deflater deflater;
+    private Inflater inflater;
+
+    @Override
+    String getName() {
+      return DEFLATE;
+    }
+
+    @Override
+    int maxCompressedLength(int length) {
+      // Same bound as zlib compressBound()
+      return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+    }
+
+    @Override
+    int compress(byte[] input, int offset, int length, byte[] output) throws IOException {
+      if (deflater == null) {
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      }
+      deflater.reset();
+      deflater.setInput(input, offset, length);
+      deflater.finish();
+      int size = 0;
+      while (!deflater.finished() && size < output.length) {
+        size += deflater.deflate(output, size, output.length - size);
+      }
+      if (!deflater.finished()) {
+        throw new IOException("Output buffer of size " + output.length + " too small for compressing "
+                                + length + " bytes");
+      }
+      return size;
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      if (inflater == null) {
+        inflater = new Inflater(true);
+      }
+      inflater.reset();
+      inflater.setInput(input, offset, length);
+      try {
+        int size = 0;
+        while (size < outputLength) {
+          int len = inflater.inflate(output, size, outputLength - size);
+          if (len == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          size += len;
+        }
+        if (size != outputLength) {
+          throw new IOException("Expected " + outputLength + " bytes after decompression, but got " + size);
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Failed to decompress data block", e);
+      }
+    }
+
+    @Override
+    public void close() {
+      if (deflater != null) {
+        deflater.end();
+      }
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+}
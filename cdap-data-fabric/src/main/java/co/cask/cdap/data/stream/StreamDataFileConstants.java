@@ -25,6 +25,11 @@ public final class StreamDataFileConstants {
   static final int MAGIC_HEADER_SIZE = 2;
   static final byte[] MAGIC_HEADER_V1 = {'E', '1'};
   static final byte[] MAGIC_HEADER_V2 = {'E', '2'};
+  static final byte[] MAGIC_HEADER_V3 = {'E', '3'};
+
+  // Flag written at the start of each data block in a V3 file to tell whether the block is compressed
+  static final byte BLOCK_UNCOMPRESSED = 0;
+  static final byte BLOCK_COMPRESSED = 1;
 
   static final byte[] INDEX_MAGIC_HEADER_V1 = {'I', '1'};
 
@@ -43,6 +48,9 @@ public final class StreamDataFileConstants {
       // Key to indicate all events in the file is of the same timestamp
       public static final String UNI_TIMESTAMP = "stream.uni.timestamp";
 
+      // Key for the codec used to compress data blocks. Presence of this key makes the writer use the V3 format.
+      public static final String CODEC = "stream.codec";
+
       // Key prefix for properties that will be defaulted to all events' header
       public static final String EVENT_HEADER_PREFIX = "event.";
     }
@@ -53,6 +61,9 @@ public final class StreamDataFileConstants {
     public static final class Value {
       // Special value for Key.UNI_TIMESTAMP to indicate using the file close time timestamp for all events
       public static final String CLOSE_TIMESTAMP = "close.timestamp";
+
+      // Value for Key.CODEC to indicate data blocks are not compressed
+      public static final String CODEC_NONE = "none";
     }
   }
 
@@ -116,6 +116,18 @@ final class StreamDataFileIndex {
     return idx == -1 ? 0 : positions.getLong(-idx - 2);
   }
 
+  /**
+   * Finds the event file position of the index entry that comes right after the entry of the given position.
+   *
+   * @param position event file position of an index entry
+   * @return the file position of the next index entry or {@code -1} if the given position is not in the index or
+   *         it is the last entry of the index.
+   */
+  long nextPosition(long position) {
+    int idx = binarySearch(positions, position);
+    return (idx >= 0 && idx + 1 < positions.size()) ? positions.getLong(idx + 1) : -1L;
+  }
+
   /**
    * Returns a {@link StreamDataFileIndexIterator} for iterating over all (timestamp, position) pairs.
    */
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data.stream;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.io.InputSupplier;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A process wide cache of stream file indexes, used by {@link StreamDataFileReader} for seeking by time.
+ * <p>
+ * Besides the {@link StreamDataFileIndex} of each stream file, it caches block indexes, each of them has the
+ * timestamp and position of every data block between two consecutive entries of a {@link StreamDataFileIndex}.
+ * With a block index, a reader can seek directly to the first data block of a given time instead of scanning
+ * from the closest index entry. Since stream files are append only, a block index never changes once built.
+ * <p>
+ * A stream file can be replaced by a new file with the same location when its stream is dropped or truncated and
+ * then written to again. Hence the cache key of a stream file, created by {@link #createKey(Location, Location)},
+ * includes the modification time and size of the index file, which differ for the new file.
+ */
+final class StreamDataFileIndexCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamDataFileIndexCache.class);
+
+  // The index of a live stream file keeps growing, hence it is only cached for a short time.
+  // A stale index is still correct, only coarser.
+  private static final long INDEX_EXPIRE_SECONDS = 30;
+  private static final int MAX_INDEXES = 1000;
+  // Maximum number of data blocks in all cached block indexes. Each block takes 16 bytes.
+  private static final long MAX_BLOCKS = 1024 * 1024;
+  // Block indexes of files no longer read are dropped after a while, even if the cache is not full
+  private static final long BLOCK_INDEX_EXPIRE_MINUTES = 60;
+
+  private static final Cache<String, StreamDataFileIndex> INDEXES = CacheBuilder.newBuilder()
+    .maximumSize(MAX_INDEXES)
+    .expireAfterWrite(INDEX_EXPIRE_SECONDS, TimeUnit.SECONDS)
+    .build();
+
+  private static final Cache<BlockIndexKey, BlockIndex> BLOCK_INDEXES = CacheBuilder.newBuilder()
+    .maximumWeight(MAX_BLOCKS)
+    .expireAfterAccess(BLOCK_INDEX_EXPIRE_MINUTES, TimeUnit.MINUTES)
+    .weigher(new Weigher<BlockIndexKey, BlockIndex>() {
+      @Override
+      public int weigh(BlockIndexKey key, BlockIndex value) {
+        return value.size() + 1;
+      }
+    })
+    .build();
+
+  /**
+   * Creates the cache key of a stream file. Since the index file of a live stream file is appended to,
+   * the key of such a file changes whenever a new index entry is written, making the cached indexes of
+   * the file stale and reloaded. This happens only once per index interval.
+   *
+   * @param eventLocation location of the stream event file
+   * @param indexLocation location of the stream index file
+   * @return the cache key, or {@code null} if the index file cannot be inspected, in which case the cache
+   *         should not be used
+   */
+  @Nullable
+  static String createKey(Location eventLocation, Location indexLocation) {
+    try {
+      return eventLocation.toURI() + "#" + indexLocation.lastModified() + ":" + indexLocation.length();
+    } catch (IOException e) {
+      LOG.debug("Failed to get the status of stream index file {}", indexLocation, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the {@link StreamDataFileIndex} of the given stream file, loading it if it is not in the cache.
+   *
+   * @param fileKey the key created by {@link #createKey(Location, Location)} for the stream file
+   * @param indexInputSupplier provides {@link InputStream} for reading the index file
+   */
+  static StreamDataFileIndex getIndex(String fileKey, final InputSupplier<? extends InputStream> indexInputSupplier) {
+    try {
+      return INDEXES.get(fileKey, new Callable<StreamDataFileIndex>() {
+        @Override
+        public StreamDataFileIndex call() {
+          return new StreamDataFileIndex(indexInputSupplier);
+        }
+      });
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the block index of the given stream file that starts at the given index entry position, or {@code null}
+   * if it is not in the cache.
+   */
+  @Nullable
+  static BlockIndex getBlockIndex(String fileKey, long startPosition) {
+    return BLOCK_INDEXES.getIfPresent(new BlockIndexKey(fileKey, startPosition));
+  }
+
+  /**
+   * Puts the block index of the given stream file that starts at the given index entry position to the cache.
+   */
+  static void putBlockIndex(String fileKey, long startPosition, BlockIndex blockIndex) {
+    BLOCK_INDEXES.put(new BlockIndexKey(fileKey, startPosition), blockIndex);
+  }
+
+  private StreamDataFileIndexCache() {
+  }
+
+  /**
+   * Timestamps and positions of the data blocks in a range of a stream file.
+   */
+  static final class BlockIndex {
+
+    private final long[] timestamps;
+    private final long[] positions;
+    private final long endPosition;
+
+    /**
+     * Creates a block index.
+     *
+     * @param timestamps timestamps of the data blocks, in non-decreasing order
+     * @param positions positions of the data blocks
+     * @param endPosition the position right after the last data block
+     */
+    BlockIndex(long[] timestamps, long[] positions, long endPosition) {
+      this.timestamps = timestamps;
+      this.positions = positions;
+      this.endPosition = endPosition;
+    }
+
+    /**
+     * Returns the position of the first data block that has timestamp larger than or equal to the given timestamp,
+     * or the end position if there is no such data block.
+     */
+    long ceilingPosition(long timestamp) {
+      int low = 0;
+      int high = timestamps.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (timestamps[mid] < timestamp) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low < positions.length ? positions[low] : endPosition;
+    }
+
+    /**
+     * Returns the number of data blocks in this index.
+     */
+    int size() {
+      return timestamps.length;
+    }
+  }
+
+  /**
+   * Cache key for {@link BlockIndex}.
+   */
+  private static final class BlockIndexKey {
+    private final String fileKey;
+    private final long startPosition;
+
+    BlockIndexKey(String fileKey, long startPosition) {
+      this.fileKey = fileKey;
+      this.startPosition = startPosition;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      BlockIndexKey other = (BlockIndexKey) o;
+      return startPosition == other.startPosition && fileKey.equals(other.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(fileKey, startPosition);
+    }
+  }
+}
@@ -32,6 +32,8 @@ import com.google.common.io.ByteStreams;
 import com.google.common.io.InputSupplier;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.stream.JsonReader;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
 
 import java.io.EOFException;
 import java.io.FileNotFoundException;
@@ -55,6 +57,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
   private final InputSupplier<? extends SeekableInputStream> eventInputSupplier;
   private final InputSupplier<? extends InputStream> indexInputSupplier;
+  private final String indexCacheKey;
   private final long startTime;
   private final long offset;
   private final byte[] timestampBuffer;
@@ -67,6 +70,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   private boolean eof;
   private Decoder decoder;
   private StreamEvent eventTemplate;
+  private StreamDataBlockCodec codec;
 
   /**
    * Opens a new {@link StreamDataFileReader} with the given inputs.
@@ -75,7 +79,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
    * @return A new instance of {@link StreamDataFileReader}.
    */
   public static StreamDataFileReader create(InputSupplier<? extends SeekableInputStream> eventInputSupplier) {
-    return new StreamDataFileReader(eventInputSupplier, null, 0L, 0L);
+    return new StreamDataFileReader(eventInputSupplier, null, null, 0L, 0L, false);
   }
 
   /**
@@ -90,7 +94,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   public static StreamDataFileReader createByStartTime(
     InputSupplier<? extends SeekableInputStream> eventInputSupplier,
     @Nullable InputSupplier<? extends InputStream> indexInputSupplier, long startTime) {
-    return new StreamDataFileReader(eventInputSupplier, indexInputSupplier, startTime, 0L);
+    return new StreamDataFileReader(eventInputSupplier, indexInputSupplier, null, startTime, 0L, false);
   }
 
   /**
@@ -105,15 +109,35 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   public static StreamDataFileReader createWithOffset(InputSupplier<? extends SeekableInputStream> eventInputSupplier,
                                                       @Nullable InputSupplier<? extends InputStream> indexInputSupplier,
                                                       long offset) {
-    return new StreamDataFileReader(eventInputSupplier, indexInputSupplier, 0L, offset);
+    return new StreamDataFileReader(eventInputSupplier, indexInputSupplier, null, 0L, offset, false);
+  }
+
+  /**
+   * Same as {@link #createWithOffset(InputSupplier, InputSupplier, long)}, except that the index of the stream file
+   * is shared through the {@link StreamDataFileIndexCache} under the given key. It also allows seeking by time
+   * to the exact data block through the block indexes in the cache.
+   *
+   * @param indexCacheKey the key created by {@link StreamDataFileIndexCache#createKey} for the stream file
+   *                      or {@code null} to not use the cache.
+   * @param shareMappedBodies if {@code true} and the event input is memory mapped, bodies of the events read are
+   *                          read-only buffers sharing content with the mapping instead of copies
+   */
+  static StreamDataFileReader createWithOffset(InputSupplier<? extends SeekableInputStream> eventInputSupplier,
+                                               @Nullable InputSupplier<? extends InputStream> indexInputSupplier,
+                                               long offset, @Nullable String indexCacheKey,
+                                               boolean shareMappedBodies) {
+    return new StreamDataFileReader(eventInputSupplier, indexInputSupplier, indexCacheKey, 0L, offset,
+                                    shareMappedBodies);
   }
 
   private StreamDataFileReader(InputSupplier<? extends SeekableInputStream> eventInputSupplier,
                                @Nullable InputSupplier<? extends InputStream> indexInputSupplier,
-                               long startTime, long offset) {
+                               @Nullable String indexCacheKey, long startTime, long offset,
+                               boolean shareMappedBodies) {
     this.eventInputSupplier = eventInputSupplier;
     this.indexInputSupplier = indexInputSupplier;
-    this.streamEventBuffer = new StreamEventBuffer();
+    this.indexCacheKey = indexInputSupplier == null ? null : indexCacheKey;
+    this.streamEventBuffer = new StreamEventBuffer(shareMappedBodies);
     this.startTime = startTime;
     this.offset = offset;
     this.timestampBuffer = new byte[8];
@@ -157,6 +181,9 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
       }
     } finally {
       closed = true;
+      if (codec != null) {
+        codec.close();
+      }
     }
   }
 
@@ -196,6 +223,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
         } catch (IOException e) {
           if (eventInput != null) {
+            streamEventBuffer.detach();
             eventInput.close();
             eventInput = null;
           }
@@ -234,7 +262,8 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
    */
   private StreamDataFileIndex getIndex() {
     if (index == null && indexInputSupplier != null) {
-      index = new StreamDataFileIndex(indexInputSupplier);
+      index = indexCacheKey == null ? new StreamDataFileIndex(indexInputSupplier)
+                                    : StreamDataFileIndexCache.getIndex(indexCacheKey, indexInputSupplier);
     }
     return index;
   }
@@ -264,6 +293,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
       }
     } catch (IOException e) {
       if (eventInput != null) {
+        streamEventBuffer.detach();
         eventInput.close();
         eventInput = null;
       }
@@ -300,6 +330,15 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
     verifySchema(properties);
 
+    // Data blocks in version 3 files are prefixed with a compression flag
+    if (fileVersion >= 3) {
+      String codecName = properties.get(StreamDataFileConstants.Property.Key.CODEC);
+      if (codecName == null) {
+        throw new IOException("Missing '" + StreamDataFileConstants.Property.Key.CODEC + "' property.");
+      }
+      codec = StreamDataBlockCodec.create(codecName);
+    }
+
     // Create event template
     if (fileVersion >= 2) {
       eventTemplate = createEventTemplate(properties);
@@ -323,10 +362,14 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V2)) {
       return 2;
     }
+    if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V3)) {
+      return 3;
+    }
     throw new IOException(
-      String.format("Unsupported stream file format. First two bytes must be %s or %s",
+      String.format("Unsupported stream file format. First two bytes must be %s, %s or %s",
                     Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V1),
-                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2))
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2),
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V3))
     );
   }
 
@@ -382,6 +425,9 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     StreamDataFileIndex index = getIndex();
     long offset = index == null ? 0 : index.floorPositionByTime(time);
     if (offset > 0) {
+      if (indexCacheKey != null) {
+        offset = findBlockByTime(index, offset, time);
+      }
       eventInput.seek(offset);
     }
 
@@ -393,6 +439,47 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     });
   }
 
+  /**
+   * Finds the position of the first data block that has timestamp larger than or equal to the given time, within
+   * the data blocks between the given index entry and the next one. The block index for the range is built by
+   * scanning the data block headers if it is not in the {@link StreamDataFileIndexCache}.
+   *
+   * @return the data block position, or the given position if there is no next index entry
+   */
+  private long findBlockByTime(StreamDataFileIndex index, long position, long time) throws IOException {
+    long endPosition = index.nextPosition(position);
+    if (endPosition < 0) {
+      // Data blocks after the last index entry could still be written, hence no block index for them.
+      return position;
+    }
+
+    StreamDataFileIndexCache.BlockIndex blockIndex = StreamDataFileIndexCache.getBlockIndex(indexCacheKey, position);
+    if (blockIndex == null) {
+      LongList timestamps = new LongArrayList();
+      LongList positions = new LongArrayList();
+
+      long blockPosition = position;
+      eventInput.seek(blockPosition);
+      while (blockPosition < endPosition) {
+        long timestamp = readTimestamp();
+        if (timestamp < 0) {
+          break;
+        }
+        timestamps.add(timestamp);
+        positions.add(blockPosition);
+
+        int len = readLength();
+        blockPosition = eventInput.getPos() + len;
+        eventInput.seek(blockPosition);
+      }
+
+      blockIndex = new StreamDataFileIndexCache.BlockIndex(timestamps.toLongArray(), positions.toLongArray(),
+                                                           endPosition);
+      StreamDataFileIndexCache.putBlockIndex(indexCacheKey, position, blockIndex);
+    }
+    return blockIndex.ceilingPosition(time);
+  }
+
   /**
    * Skips events until the given condition is true.
    */
@@ -485,7 +572,11 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     // Use the template timestamp if available
     timestamp = eventTemplate.getTimestamp() >= 0 ? eventTemplate.getTimestamp() : timestamp;
     if (acceptTimestamp(filter, timestamp)) {
-      streamEventBuffer.fillBuffer(eventInput, readLength());
+      if (codec == null) {
+        streamEventBuffer.fillBuffer(eventInput, readLength());
+      } else {
+        fillCodecBlock(readLength());
+      }
       this.timestamp = timestamp;
       return;
     }
@@ -511,6 +602,28 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     position = eventInput.getPos();
   }
 
+  /**
+   * Fills the event buffer with a version 3 data block, which is <flag> <stream_event>+ if uncompressed or
+   * <flag> <uncompressed_length> <compressed_events> if compressed.
+   *
+   * @param length size of the data block in bytes, including the flag
+   */
+  private void fillCodecBlock(int length) throws IOException {
+    int flag = eventInput.read();
+    if (flag < 0) {
+      throw new EOFException("Expected to read data block flag but reached end of stream.");
+    }
+    if (flag == StreamDataFileConstants.BLOCK_UNCOMPRESSED) {
+      streamEventBuffer.fillBuffer(eventInput, length - 1);
+    } else if (flag == StreamDataFileConstants.BLOCK_COMPRESSED) {
+      int uncompressedLength = readLength();
+      int compressedLength = length - 1 - StreamUtils.getVarIntSize(uncompressedLength);
+      streamEventBuffer.fillCompressedBuffer(eventInput, compressedLength, uncompressedLength, codec);
+    } else {
+      throw new IOException("Unsupported data block flag " + flag);
+    }
+  }
+
   /**
    * Reads or skips a {@link StreamEvent}.
    *
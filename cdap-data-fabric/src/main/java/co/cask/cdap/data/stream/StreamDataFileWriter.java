@@ -32,11 +32,13 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -48,12 +50,17 @@ import javax.annotation.concurrent.NotThreadSafe;
  * {@code
  *
  * event_file = <header> <data>* <end_marker>
- * header = "E" "1" <properties>
+ * header = "E" ("2" | "3") <properties>
  * properties = Avro encoded with the properties schema
- * data = <timestamp> <length> <stream_event>+
+ * data = <timestamp> <length> <block>
  * timestamp = 8 bytes int64 for timestamp in milliseconds
- * length = Avro encoded int32 for size in bytes for all <stream_event>s
+ * length = Avro encoded int32 for size in bytes of the <block>
+ * block = <stream_event>+                                  (version "2")
+ *       | 0x00 <stream_event>+                             (version "3", uncompressed)
+ *       | 0x01 <uncompressed_length> <compressed_events>   (version "3", compressed)
  * stream_event = Avro encoded bytes according to the StreamData schema
+ * uncompressed_length = Avro encoded int32 for size in bytes for all <stream_event>s before compression
+ * compressed_events = all <stream_event>s compressed with the codec named by the "stream.codec" property
  * end_marker = 8 bytes int64 with value == -(close_timestamp)
  *
  * }
@@ -84,6 +91,13 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final StreamDataBlockCodec codec;
+  private final BlockBuffer blockBuffer;
+
+  // Buffer for holding compressed data block
+  private byte[] compressedBuffer;
+  // Number of events in the current block
+  private int blockEvents;
 
   // Timestamp for the current block
   private long currentTimestamp;
@@ -132,6 +146,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     this.lengthEncoder = new BufferedEncoder(5, encoderFactory);
 
     try {
+      this.codec = createCodec(properties);
+      this.blockBuffer = codec == null ? null : new BlockBuffer(BUFFER_SIZE);
       init(properties);
     } catch (IOException e) {
       Closeables.closeQuietly(eventOutput);
@@ -175,6 +191,9 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       eventOutput.write(Longs.toByteArray(-closeTimestamp));
     } finally {
       closed = true;
+      if (codec != null) {
+        codec.close();
+      }
       try {
         eventOutput.close();
       } finally {
@@ -222,6 +241,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      blockEvents++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -235,9 +255,14 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
   private void init(Map<String, String> properties) throws IOException {
     // Writes the header for event file
-    encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
-
     Map<String, String> headers = Maps.newHashMap(properties);
+    if (codec == null) {
+      encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
+      headers.remove(StreamDataFileConstants.Property.Key.CODEC);
+    } else {
+      encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V3);
+      headers.put(StreamDataFileConstants.Property.Key.CODEC, codec.getName());
+    }
     headers.put(StreamDataFileConstants.Property.Key.SCHEMA, StreamEventDataCodec.STREAM_DATA_SCHEMA.toString());
     StreamUtils.encodeMap(headers, encoder);
 
@@ -278,16 +303,21 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
-
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
+    if (codec == null) {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    } else {
+      writeCodecBlock();
+    }
+    blockEvents = 0;
     if (sync) {
       sync(eventOutput);
     }
@@ -310,6 +340,43 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Writes the buffered events as a version 3 data block. The block is compressed only if it gets smaller and
+   * the compressed data has more bytes than the number of events in it, so that every event in a compressed
+   * block can still be given a distinct position inside the block (see {@link StreamEventBuffer}).
+   */
+  private void writeCodecBlock() throws IOException {
+    int rawSize = encoder.size();
+    blockBuffer.reset();
+    encoder.writeTo(blockBuffer);
+
+    int maxLength = codec.maxCompressedLength(rawSize);
+    if (compressedBuffer == null || compressedBuffer.length < maxLength) {
+      compressedBuffer = new byte[Math.max(maxLength, BUFFER_SIZE)];
+    }
+    int compressedSize = codec.compress(blockBuffer.getBuffer(), 0, rawSize, compressedBuffer);
+    int payloadSize = StreamUtils.getVarIntSize(rawSize) + compressedSize;
+    boolean compressed = payloadSize < rawSize && blockEvents < compressedSize;
+
+    // Writes the block size, which includes the flag byte
+    lengthEncoder.writeInt(1 + (compressed ? payloadSize : rawSize));
+    int size = lengthEncoder.size();
+    lengthEncoder.writeTo(eventOutput);
+    position += size;
+
+    if (compressed) {
+      eventOutput.write(StreamDataFileConstants.BLOCK_COMPRESSED);
+      lengthEncoder.writeInt(rawSize);
+      lengthEncoder.writeTo(eventOutput);
+      eventOutput.write(compressedBuffer, 0, compressedSize);
+      position += 1 + payloadSize;
+    } else {
+      eventOutput.write(StreamDataFileConstants.BLOCK_UNCOMPRESSED);
+      eventOutput.write(blockBuffer.getBuffer(), 0, rawSize);
+      position += 1 + rawSize;
+    }
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -329,6 +396,15 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     throw ex;
   }
 
+  @Nullable
+  private static StreamDataBlockCodec createCodec(Map<String, String> properties) throws IOException {
+    String codecName = properties.get(StreamDataFileConstants.Property.Key.CODEC);
+    if (codecName == null || StreamDataFileConstants.Property.Value.CODEC_NONE.equalsIgnoreCase(codecName)) {
+      return null;
+    }
+    return StreamDataBlockCodec.create(codecName);
+  }
+
   private static Function<OutputStream, Encoder> createEncoderFactory() {
     return new Function<OutputStream, Encoder>() {
       @Override
@@ -337,4 +413,18 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       }
     };
   }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its internal buffer to avoid copying before compression.
+   */
+  private static final class BlockBuffer extends ByteArrayOutputStream {
+
+    BlockBuffer(int size) {
+      super(size);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
 }
@@ -17,8 +17,10 @@
 package co.cask.cdap.data.stream;
 
 import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.ByteBufferDecoder;
 import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.MappedFileSeekableInputStream;
 import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.data.file.ReadFilter;
@@ -33,21 +35,58 @@ import javax.annotation.concurrent.NotThreadSafe;
 /**
  * A buffer for holding encoded stream events. It is used by {@link StreamDataFileReader} for holding
  * encoded stream events in each data block.
+ * <p>
+ * For a compressed data block, event positions cannot be mapped to file offsets. Instead, the i-th event in the
+ * block is given the position {@code (start of compressed data + i)}, which is unique and stays within the block,
+ * so that positions keep increasing across blocks and can be used for seeking and splitting just like
+ * positions of uncompressed events.
+ * <p>
+ * When reading from a {@link MappedFileSeekableInputStream}, an uncompressed data block is not copied. Instead,
+ * events are decoded directly from the mapped file region. Event bodies are copied to new arrays, unless the buffer
+ * is created to share mapped bodies, in which case they are read-only slices of the region. Sharing is only for
+ * internal readers that do not hand the events to user code, which may expect {@link ByteBuffer#array()} to work.
  */
 @NotThreadSafe
 final class StreamEventBuffer {
 
   private final ByteBufferInputStream bufferInput;
-  private final Decoder decoder;
+  private final Decoder copyingDecoder;
+  private final ByteBufferDecoder mappedDecoder;
+  private final boolean shareMappedBodies;
 
+  // The buffer to decode events from. It is either the heapBuffer or a region of a memory mapped file.
   private ByteBuffer buffer;
+  private ByteBuffer heapBuffer;
+  private Decoder decoder;
   private long basePosition;
 
+  // States for compressed data block
+  private byte[] compressedBuffer;
+  private boolean compressed;
+  private int eventIndex;
+  private long endPosition;
+
   StreamEventBuffer() {
+    this(false);
+  }
+
+  /**
+   * Creates a buffer.
+   *
+   * @param shareMappedBodies if {@code true}, bodies of events decoded from a memory mapped file region share
+   *                          content with the region instead of being copied
+   */
+  StreamEventBuffer(boolean shareMappedBodies) {
+    this.shareMappedBodies = shareMappedBodies;
     this.buffer = ByteBuffers.EMPTY_BUFFER;
+    this.heapBuffer = buffer;
     this.bufferInput = new ByteBufferInputStream(buffer);
-    this.decoder = new BinaryDecoder(bufferInput);
+    // The heap buffer is reused across data blocks, hence decoded event bodies must be copied
+    this.copyingDecoder = new BinaryDecoder(bufferInput);
+    this.mappedDecoder = new ByteBufferDecoder(buffer);
+    this.decoder = copyingDecoder;
     this.basePosition = -1L;
+    this.compressedBuffer = new byte[0];
   }
 
   /**
@@ -59,19 +98,16 @@ final class StreamEventBuffer {
    * @throws EOFException if failed to read the given number of bytes from the input
    */
   void fillBuffer(SeekableInputStream input, int size) throws IOException {
-    buffer.clear();
-    buffer = ensureCapacity(buffer, size);
+    compressed = false;
+    if (input instanceof MappedFileSeekableInputStream) {
+      fillMappedBuffer((MappedFileSeekableInputStream) input, size);
+      return;
+    }
 
+    buffer = useHeapBuffer(size);
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
-        }
-        bytesRead += len;
-      }
+      readFully(input, buffer.array(), size);
       buffer.limit(size);
       bufferInput.reset(buffer);
     } catch (IOException e) {
@@ -82,6 +118,94 @@ final class StreamEventBuffer {
     }
   }
 
+  /**
+   * Fills the internal buffer by reading compressed data from the given input stream and decompressing it.
+   *
+   * @param input input stream to read from
+   * @param size number of compressed bytes to read
+   * @param uncompressedSize number of bytes after decompression
+   * @param codec the codec for decompression
+   * @throws IOException if failed to read from the stream or to decompress
+   * @throws EOFException if failed to read the given number of bytes from the input
+   */
+  void fillCompressedBuffer(SeekableInputStream input, int size,
+                            int uncompressedSize, StreamDataBlockCodec codec) throws IOException {
+    buffer = useHeapBuffer(uncompressedSize);
+    if (compressedBuffer.length < size) {
+      compressedBuffer = new byte[size];
+    }
+    compressed = true;
+
+    try {
+      basePosition = input.getPos();
+      readFully(input, compressedBuffer, size);
+      codec.decompress(compressedBuffer, 0, size, buffer.array(), uncompressedSize);
+      buffer.limit(uncompressedSize);
+      bufferInput.reset(buffer);
+      eventIndex = 0;
+      endPosition = basePosition + size;
+    } catch (IOException e) {
+      // Make the buffer has nothing to read
+      buffer.position(buffer.limit());
+      basePosition = -1L;
+      throw e;
+    }
+  }
+
+  /**
+   * Sets the buffer to a region of the mapped file without copying the data block.
+   */
+  private void fillMappedBuffer(MappedFileSeekableInputStream input, int size) throws IOException {
+    try {
+      basePosition = input.getPos();
+      // Shared bodies can outlive the input stream, hence the mapping they share must not be released on close
+      buffer = input.readBuffer(size, shareMappedBodies);
+      if (shareMappedBodies) {
+        mappedDecoder.reset(buffer);
+        decoder = mappedDecoder;
+      } else {
+        // Only the event bodies are copied
+        bufferInput.reset(buffer);
+        decoder = copyingDecoder;
+      }
+    } catch (IOException e) {
+      // Make the buffer has nothing to read
+      buffer = ByteBuffers.EMPTY_BUFFER;
+      basePosition = -1L;
+      throw e;
+    }
+  }
+
+  /**
+   * Copies the remaining events to the heap buffer if they are in a memory mapped file region that is not shared
+   * with event bodies. It must be called before closing the input stream the buffer was filled from while there
+   * are still events in the buffer, since closing the stream releases the mapping.
+   */
+  void detach() {
+    if (shareMappedBodies || buffer == heapBuffer || !buffer.hasRemaining()) {
+      return;
+    }
+    // Copy the whole block so that the buffer position still maps to the stream position
+    int position = buffer.position();
+    ByteBuffer mapped = buffer.duplicate();
+    mapped.clear();
+    buffer = useHeapBuffer(mapped.remaining());
+    buffer.put(mapped);
+    buffer.flip();
+    buffer.position(position);
+    bufferInput.reset(buffer);
+  }
+
+  /**
+   * Prepares the heap buffer to hold the given number of bytes and makes it the current buffer.
+   */
+  private ByteBuffer useHeapBuffer(int size) {
+    heapBuffer.clear();
+    heapBuffer = ensureCapacity(heapBuffer, size);
+    decoder = copyingDecoder;
+    return heapBuffer;
+  }
+
   /**
    * Returns {@code true} if there are events in the buffer, {@code false} otherwise.
    */
@@ -94,7 +218,13 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (compressed) {
+      return hasEvent() ? basePosition + eventIndex : endPosition;
+    }
+    return basePosition + buffer.position();
   }
 
   /**
@@ -102,7 +232,10 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    return compressed ? endPosition : basePosition + buffer.limit();
   }
 
   /**
@@ -120,12 +253,29 @@ final class StreamEventBuffer {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
+    long eventPos = getPosition();
+    PositionStreamEvent event = null;
     if (filter.acceptOffset(eventPos)) {
-      return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
+      event = new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
+    } else {
+      StreamEventDataCodec.skip(decoder);
+    }
+    eventIndex++;
+    return event;
+  }
+
+  /**
+   * Reads exactly the given number of bytes from the input into the given array.
+   */
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
     }
-    StreamEventDataCodec.skip(decoder);
-    return null;
   }
 
   /**
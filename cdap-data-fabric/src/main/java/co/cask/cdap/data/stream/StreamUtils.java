@@ -86,6 +86,19 @@ public final class StreamUtils {
     }
   }
 
+  /**
+   * Returns the number of bytes needed to encode the given int with {@link Encoder#writeInt(int)}.
+   */
+  static int getVarIntSize(int value) {
+    int val = (value << 1) ^ (value >> 31);
+    int size = 1;
+    while ((val & ~0x7f) != 0) {
+      val >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
   /**
    * Finds the partition name from the given event file location.
    *
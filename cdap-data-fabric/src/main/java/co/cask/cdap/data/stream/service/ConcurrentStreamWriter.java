@@ -49,6 +49,7 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -60,7 +61,9 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -77,7 +80,8 @@ import javax.annotation.concurrent.ThreadSafe;
  * 1. Constructs a StreamEventData locally and enqueue it to a ConcurrentLinkedQueue.
  * 2. Use CAS to set an AtomicBoolean flag to true.
  * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
- * 4. Keep polling StreamEventData from the concurrent queue and write to FileWriter with the current timestamp until
+ * 4. Optionally waits up to the group commit window for more requests to be enqueued, then keep polling
+ *    StreamEventData from the concurrent queue and write to FileWriter with the current timestamp until
  *    the queue is empty.
  * 5. Perform a writer flush to make sure all data written are persisted.
  * 6. Set the state of each StreamEventData that are written to COMPLETED (succeed/failure).
@@ -88,6 +92,9 @@ import javax.annotation.concurrent.ThreadSafe;
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
  *
+ * The group commit window in step 4 trades latency for throughput. With small events arriving from many connections,
+ * it lets a single flush, which syncs the stream file, persist the requests of many threads instead of few.
+ *
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
@@ -97,6 +104,7 @@ public final class ConcurrentStreamWriter implements Closeable {
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final StreamAdmin streamAdmin;
   private final int workerThreads;
+  private final long groupCommitWindowNanos;
   private final StreamMetricsCollectorFactory metricsCollectorFactory;
   private final ConcurrentMap<StreamId, EventQueue> eventQueues;
   private final StreamFileFactory streamFileFactory;
@@ -108,9 +116,22 @@ public final class ConcurrentStreamWriter implements Closeable {
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
                          StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
+    this(streamCoordinatorClient, streamAdmin, writerFactory, workerThreads, 0L, metricsCollectorFactory, impersonator);
+  }
+
+  /**
+   * Creates an instance that waits up to the given group commit window for concurrent write requests to be batched
+   * together before writing and flushing them.
+   *
+   * @param groupCommitWindowMicros maximum time in microseconds to wait for more requests; {@code 0} to not wait
+   */
+  ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
+                         StreamFileWriterFactory writerFactory, int workerThreads, long groupCommitWindowMicros,
+                         StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
     this.workerThreads = workerThreads;
+    this.groupCommitWindowNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitWindowMicros);
     this.metricsCollectorFactory = metricsCollectorFactory;
     this.eventQueues = new MapMaker().concurrencyLevel(workerThreads).makeMap();
     this.streamFileFactory = new StreamFileFactory(writerFactory, impersonator);
@@ -435,6 +456,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     private final StreamId streamId;
     private final StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector;
     private final Queue<WriteRequest> queue;
+    private final AtomicInteger queueSize;
     private final AtomicBoolean writerFlag;
     private final WriteRequest.Metrics metrics;
     private final MutableStreamEvent streamEvent;
@@ -446,6 +468,7 @@ public final class ConcurrentStreamWriter implements Closeable {
       this.streamId = streamId;
       this.streamEvent = new MutableStreamEvent();
       this.queue = new ConcurrentLinkedQueue<>();
+      this.queueSize = new AtomicInteger();
       this.writerFlag = new AtomicBoolean(false);
       this.metrics = new WriteRequest.Metrics();
       this.metricsCollector = metricsCollector;
@@ -467,6 +490,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     WriteRequest append(Map<String, String> headers, ByteBuffer body) {
       WriteRequest request = new SingleWriteRequest(headers, body);
       queue.add(request);
+      queueSize.incrementAndGet();
       return request;
     }
 
@@ -480,6 +504,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     WriteRequest append(Iterator<? extends StreamEventData> events) {
       WriteRequest request = new BatchWriteRequest(events);
       queue.add(request);
+      queueSize.incrementAndGet();
       return request;
     }
 
@@ -529,6 +554,9 @@ public final class ConcurrentStreamWriter implements Closeable {
     boolean tryWrite() {
       int bytesWritten = 0;
       int eventsWritten = 0;
+      int requests = 0;
+      long flushMicros = 0L;
+      long[] latencyHistogram = null;
 
       if (!writerFlag.compareAndSet(false, true)) {
         return false;
@@ -542,19 +570,29 @@ public final class ConcurrentStreamWriter implements Closeable {
         List<WriteRequest> processQueue = Lists.newArrayListWithExpectedSize(workerThreads);
         try {
           FileWriter<StreamEventData> writer = getFileWriter();
+          awaitGroupCommit();
           WriteRequest request = queue.poll();
           streamEvent.setTimestamp(System.currentTimeMillis());
           while (request != null) {
+            queueSize.decrementAndGet();
             processQueue.add(request);
             request.write(writer, metrics);
             request = queue.poll();
           }
+          long flushStart = System.nanoTime();
           writer.flush();
+          long now = System.nanoTime();
           for (WriteRequest processed : processQueue) {
             processed.completed(null);
+            metrics.recordLatency(now - processed.getEnqueueTime());
           }
           bytesWritten = metrics.bytesWritten;
           eventsWritten = metrics.eventsWritten;
+          if (!processQueue.isEmpty()) {
+            requests = processQueue.size();
+            flushMicros = TimeUnit.NANOSECONDS.toMicros(now - flushStart);
+            latencyHistogram = metrics.latencyHistogram.clone();
+          }
         } catch (Throwable t) {
           // On exception, remove this EventQueue from the map and close this event queue
           eventQueues.remove(streamId, this);
@@ -569,9 +607,32 @@ public final class ConcurrentStreamWriter implements Closeable {
       }
 
       metricsCollector.emitMetrics(bytesWritten, eventsWritten);
+      if (latencyHistogram != null) {
+        metricsCollector.emitCommitMetrics(requests, flushMicros, latencyHistogram);
+      }
       return true;
     }
 
+    /**
+     * Waits until either the group commit window expired or there are as many pending requests as the number of
+     * worker threads, which is the most that can be expected from synchronous writers. This method should only be
+     * called from the writer leader thread.
+     */
+    private void awaitGroupCommit() {
+      if (groupCommitWindowNanos <= 0) {
+        return;
+      }
+      long deadline = System.nanoTime() + groupCommitWindowNanos;
+      long remaining = groupCommitWindowNanos;
+      int size = queueSize.get();
+      // No need to wait if there is nothing to write
+      while (size > 0 && size < workerThreads && remaining > 0) {
+        LockSupport.parkNanos(Math.min(remaining, TimeUnit.MICROSECONDS.toNanos(100)));
+        remaining = deadline - System.nanoTime();
+        size = queueSize.get();
+      }
+    }
+
     /**
      * Attempts to refresh the underlying FileWriter, if it is {@link Refreshable}.
      */
@@ -636,6 +697,7 @@ public final class ConcurrentStreamWriter implements Closeable {
       WriteRequest data = queue.poll();
       Throwable writerClosedException = new IOException("Stream writer closed").fillInStackTrace();
       while (data != null) {
+        queueSize.decrementAndGet();
         data.completed(writerClosedException);
         data = queue.poll();
       }
@@ -709,19 +771,43 @@ public final class ConcurrentStreamWriter implements Closeable {
      * A simple POJO for carrying metrics information.
      */
     static final class Metrics {
+      // Upper bounds of the write latency buckets in microseconds
+      private static final long[] LATENCY_BUCKETS_MICROS = createLatencyBuckets();
+
       int bytesWritten;
       int eventsWritten;
+      final long[] latencyHistogram = new long[LATENCY_BUCKETS_MICROS.length + 1];
 
       void reset() {
         bytesWritten = eventsWritten = 0;
+        Arrays.fill(latencyHistogram, 0L);
       }
 
       void increment(int bytesWritten) {
         this.bytesWritten += bytesWritten;
         eventsWritten++;
       }
+
+      void recordLatency(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int idx = 0;
+        while (idx < LATENCY_BUCKETS_MICROS.length && micros > LATENCY_BUCKETS_MICROS[idx]) {
+          idx++;
+        }
+        latencyHistogram[idx]++;
+      }
+
+      private static long[] createLatencyBuckets() {
+        List<Long> bucketsMillis = StreamMetricsCollectorFactory.StreamMetricsCollector.WRITE_LATENCY_BUCKETS_MS;
+        long[] buckets = new long[bucketsMillis.size()];
+        for (int i = 0; i < buckets.length; i++) {
+          buckets[i] = TimeUnit.MILLISECONDS.toMicros(bucketsMillis.get(i));
+        }
+        return buckets;
+      }
     }
 
+    private final long enqueueTime = System.nanoTime();
     private State state = State.PENDING;
     private Throwable failure;
 
@@ -742,6 +828,13 @@ public final class ConcurrentStreamWriter implements Closeable {
       return failure;
     }
 
+    /**
+     * Returns the {@link System#nanoTime()} when this request was created.
+     */
+    long getEnqueueTime() {
+      return enqueueTime;
+    }
+
     /**
      * Writes the data contained in this request to the given file writer.
      *
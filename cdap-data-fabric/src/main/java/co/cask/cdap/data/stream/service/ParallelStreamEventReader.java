@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data.stream.service;
+
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.security.Impersonator;
+import co.cask.cdap.data.file.FileReader;
+import co.cask.cdap.data.stream.StreamEventOffset;
+import co.cask.cdap.data.stream.StreamFileOffset;
+import co.cask.cdap.data.stream.StreamUtils;
+import co.cask.cdap.data.stream.TimeRangeReadFilter;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads stream events of a time range that spans multiple stream partitions. Partitions are read concurrently by
+ * a bounded number of tasks, each of them prefetches events of one partition into a bounded buffer. Since
+ * partitions cover disjoint time ranges, events are returned in time order by draining the buffers one partition
+ * after the other.
+ */
+final class ParallelStreamEventReader implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelStreamEventReader.class);
+
+  // Maximum number of event batches prefetched for each partition
+  private static final int MAX_PREFETCH_BATCHES = 4;
+  private static final long POLL_MILLIS = 100L;
+
+  // Marker for the end of events of a partition
+  private static final List<StreamEvent> END_OF_PARTITION = new ArrayList<>(0);
+
+  /**
+   * Factory for creating {@link FileReader} for reading events from one stream partition.
+   */
+  interface PartitionReaderFactory {
+
+    /**
+     * Creates a {@link FileReader} that starts reading from the given partition.
+     */
+    FileReader<StreamEventOffset, Iterable<StreamFileOffset>> create(Location partition) throws IOException;
+  }
+
+  private final Executor executor;
+  private final int parallelism;
+  private final Impersonator impersonator;
+  private final NamespaceId namespaceId;
+  private final List<PartitionFetch> fetches;
+  private int current;
+  private Iterator<StreamEvent> batch;
+
+  /**
+   * Creates a reader and starts prefetching events.
+   *
+   * @param executor {@link Executor} for running the prefetch tasks
+   * @param parallelism maximum number of partitions to be prefetched concurrently
+   * @param impersonator {@link Impersonator} for reading stream files as the namespace user
+   * @param namespaceId namespace of the stream
+   * @param readerFactory factory for creating partition reader
+   * @param partitions the partitions to read from, ordered by partition start time
+   * @param startTime start time of events to read, inclusive
+   * @param endTime end time of events to read, exclusive
+   * @param limit maximum number of events to read
+   */
+  ParallelStreamEventReader(Executor executor, int parallelism, Impersonator impersonator, NamespaceId namespaceId,
+                            PartitionReaderFactory readerFactory, List<Location> partitions,
+                            long startTime, long endTime, int limit) throws IOException {
+    this.executor = executor;
+    this.parallelism = Math.max(1, parallelism);
+    this.impersonator = impersonator;
+    this.namespaceId = namespaceId;
+    this.fetches = Lists.newArrayListWithCapacity(partitions.size());
+
+    for (Location partition : partitions) {
+      String name = partition.getName();
+      long partitionStart = Math.max(startTime, StreamUtils.getPartitionStartTime(name));
+      long partitionEnd = Math.min(endTime, StreamUtils.getPartitionEndTime(name));
+      fetches.add(new PartitionFetch(readerFactory, partition, partitionStart, partitionEnd, limit));
+    }
+    for (int i = 0; i < this.parallelism && i < fetches.size(); i++) {
+      executor.execute(fetches.get(i));
+    }
+  }
+
+  /**
+   * Reads events in time order.
+   *
+   * @param events collection for storing the events read
+   * @param maxEvents maximum number of events to read
+   * @return number of events read or {@code -1} if there is no more events
+   * @throws IOException if failed to read events from any of the partitions
+   * @throws InterruptedException if the caller thread is interrupted while waiting for events
+   */
+  int read(Collection<? super StreamEvent> events, int maxEvents) throws IOException, InterruptedException {
+    while (batch == null || !batch.hasNext()) {
+      if (current >= fetches.size()) {
+        return -1;
+      }
+      List<StreamEvent> next = fetches.get(current).take();
+      if (next == END_OF_PARTITION) {
+        current++;
+        // Start prefetching the next partition that is not yet started
+        int start = current + parallelism - 1;
+        if (start < fetches.size()) {
+          executor.execute(fetches.get(start));
+        }
+      } else {
+        batch = next.iterator();
+      }
+    }
+
+    int count = 0;
+    while (count < maxEvents && batch.hasNext()) {
+      events.add(batch.next());
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Prefetch tasks will stop and close their readers
+    for (PartitionFetch fetch : fetches) {
+      fetch.cancel();
+    }
+  }
+
+  /**
+   * Task for prefetching events from one partition.
+   */
+  private final class PartitionFetch implements Runnable {
+
+    private final PartitionReaderFactory readerFactory;
+    private final Location partition;
+    private final long startTime;
+    private final long endTime;
+    private final int limit;
+    private final BlockingQueue<List<StreamEvent>> batches;
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+
+    PartitionFetch(PartitionReaderFactory readerFactory, Location partition, long startTime, long endTime, int limit) {
+      this.readerFactory = readerFactory;
+      this.partition = partition;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.limit = limit;
+      this.batches = new ArrayBlockingQueue<>(MAX_PREFETCH_BATCHES);
+    }
+
+    @Override
+    public void run() {
+      try {
+        impersonator.doAs(namespaceId, new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            fetch();
+            return null;
+          }
+        });
+      } catch (Throwable t) {
+        LOG.debug("Failed to read stream events from partition {}", partition, t);
+        failure = t;
+      }
+      try {
+        put(END_OF_PARTITION);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void fetch() throws IOException, InterruptedException {
+      if (cancelled) {
+        return;
+      }
+      try (FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader = readerFactory.create(partition)) {
+        // The end time is bounded by the partition end time, so that the reader stops at the end of the partition.
+        TimeRangeReadFilter readFilter = new TimeRangeReadFilter(startTime, endTime);
+        int remaining = limit;
+        while (remaining > 0) {
+          List<StreamEvent> events = new ArrayList<>();
+          int eventsRead = StreamFetchHandler.readEvents(reader, events, remaining, readFilter);
+          if (eventsRead <= 0 || !put(events)) {
+            return;
+          }
+          remaining -= eventsRead;
+        }
+      }
+    }
+
+    /**
+     * Puts a batch of events to the buffer, waiting for space if necessary.
+     *
+     * @return {@code true} if the batch was added, {@code false} if this task is cancelled
+     */
+    private boolean put(List<StreamEvent> events) throws InterruptedException {
+      while (!batches.offer(events, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (cancelled) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Takes the next batch of events from the buffer, waiting for one if necessary.
+     */
+    List<StreamEvent> take() throws IOException, InterruptedException {
+      List<StreamEvent> events = batches.take();
+      if (events == END_OF_PARTITION && failure != null) {
+        Throwables.propagateIfInstanceOf(failure, IOException.class);
+        Throwables.propagateIfInstanceOf(failure, InterruptedException.class);
+        throw new IOException("Failed to read stream events from partition " + partition, failure);
+      }
+      return events;
+    }
+
+    void cancel() {
+      cancelled = true;
+      // Free up the buffer so that the task can find out about the cancellation sooner
+      batches.clear();
+    }
+  }
+}
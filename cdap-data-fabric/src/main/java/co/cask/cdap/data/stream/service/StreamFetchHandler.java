@@ -21,6 +21,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
+import co.cask.cdap.common.utils.Threads;
 import co.cask.cdap.common.utils.TimeMathParser;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.ReadFilter;
@@ -39,8 +40,10 @@ import co.cask.cdap.security.spi.authentication.AuthenticationContext;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.ChunkResponder;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
@@ -56,11 +59,17 @@ import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -84,6 +93,10 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
   private final Impersonator impersonator;
   private final AuthorizationEnforcer authorizationEnforcer;
   private final AuthenticationContext authenticationContext;
+  private final int fetchThreads;
+  private final int fetchPoolSize;
+  private final Semaphore fetchPermits;
+  private ThreadPoolExecutor fetchExecutor;
 
   @Inject
   StreamFetchHandler(CConfiguration cConf, StreamAdmin streamAdmin, StreamMetaStore streamMetaStore,
@@ -95,6 +108,25 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
     this.impersonator = impersonator;
     this.authorizationEnforcer = authorizationEnforcer;
     this.authenticationContext = authenticationContext;
+    this.fetchThreads = cConf.getInt(Constants.Stream.FETCH_THREADS);
+    this.fetchPoolSize = Math.max(1, cConf.getInt(Constants.Stream.FETCH_POOL_SIZE));
+    this.fetchPermits = new Semaphore(fetchPoolSize);
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    // The pool is shared by all requests. Each parallel read holds one permit per partition it reads concurrently,
+    // hence the number of running prefetch tasks never exceeds the pool size.
+    fetchExecutor = new ThreadPoolExecutor(fetchPoolSize, fetchPoolSize, 60L, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<Runnable>(),
+                                           Threads.createDaemonThreadFactory("stream-fetch-%d"));
+    fetchExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    fetchExecutor.shutdownNow();
   }
 
   /**
@@ -137,18 +169,17 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
     endTime = Math.min(endTime, now);
     final long streamStartTime = startTime;
     final long streamEndTime = endTime;
-    impersonator.doAs(new NamespaceId(namespaceId), new Callable<Void>() {
+    final NamespaceId namespace = new NamespaceId(namespaceId);
+    impersonator.doAs(namespace, new Callable<Void>() {
       @Override
       public Void call() throws Exception {
         int limit = limitEvents;
         // Create the stream event reader
-        try (FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader = createReader(streamConfig,
-                                                                                             streamStartTime)) {
-          TimeRangeReadFilter readFilter = new TimeRangeReadFilter(streamStartTime, streamEndTime);
+        try (EventReader reader = createEventReader(namespace, streamConfig, streamStartTime, streamEndTime, limit)) {
           List<StreamEvent> events = Lists.newArrayListWithCapacity(100);
 
           // Reads the first batch of events from the stream.
-          int eventsRead = readEvents(reader, events, limit, readFilter);
+          int eventsRead = reader.read(events, limit);
 
           // If empty already, return 204 no content
           if (eventsRead <= 0) {
@@ -185,7 +216,7 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
             events.clear();
 
             if (limit > 0) {
-              eventsRead = readEvents(reader, events, limit, readFilter);
+              eventsRead = reader.read(events, limit);
             }
           }
           jsonWriter.endArray();
@@ -204,12 +235,97 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
 
   }
 
+  /**
+   * Creates an {@link EventReader} for reading events in the given time range. If the time range spans multiple
+   * stream partitions, the partitions are read concurrently through {@link ParallelStreamEventReader}.
+   */
+  private EventReader createEventReader(NamespaceId namespace, final StreamConfig streamConfig, long startTime,
+                                        long endTime, int limit) throws IOException {
+    final int generation = StreamUtils.getGeneration(streamConfig);
+    List<Location> partitions = getPartitionLocations(streamConfig, startTime, endTime, generation);
+
+    // Only read partitions in parallel if there are free threads in the fetch pool
+    final int permits = fetchThreads > 1 && partitions.size() > 1
+      ? acquireFetchPermits(Math.min(fetchThreads, partitions.size())) : 0;
+    if (permits == 1) {
+      fetchPermits.release();
+    } else if (permits > 1) {
+      final ParallelStreamEventReader reader;
+      try {
+        reader = new ParallelStreamEventReader(
+          fetchExecutor, permits, impersonator, namespace,
+          new ParallelStreamEventReader.PartitionReaderFactory() {
+            @Override
+            public FileReader<StreamEventOffset, Iterable<StreamFileOffset>> create(Location partition)
+              throws IOException {
+              return createReader(streamConfig, partition, generation);
+            }
+          }, partitions, startTime, endTime, limit);
+      } catch (Throwable t) {
+        fetchPermits.release(permits);
+        Throwables.propagateIfInstanceOf(t, IOException.class);
+        throw Throwables.propagate(t);
+      }
+
+      return new EventReader() {
+        private boolean closed;
+
+        @Override
+        public int read(List<StreamEvent> events, int limit) throws IOException, InterruptedException {
+          return reader.read(events, getReadLimit(limit));
+        }
+
+        @Override
+        public void close() throws IOException {
+          if (closed) {
+            return;
+          }
+          closed = true;
+          try {
+            reader.close();
+          } finally {
+            fetchPermits.release(permits);
+          }
+        }
+      };
+    }
+
+    final FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader =
+      partitions.isEmpty() ? this.<StreamEventOffset, Iterable<StreamFileOffset>>createEmptyReader()
+                           : createReader(streamConfig, partitions.get(0), generation);
+    final TimeRangeReadFilter readFilter = new TimeRangeReadFilter(startTime, endTime);
+    return new EventReader() {
+      @Override
+      public int read(List<StreamEvent> events, int limit) throws IOException, InterruptedException {
+        return readEvents(reader, events, limit, readFilter);
+      }
+
+      @Override
+      public void close() throws IOException {
+        reader.close();
+      }
+    };
+  }
+
+  /**
+   * Acquires up to the given number of permits for running prefetch tasks in the fetch pool without blocking.
+   *
+   * @return the number of permits acquired
+   */
+  private int acquireFetchPermits(int maxPermits) {
+    int permits = 0;
+    while (permits < maxPermits && fetchPermits.tryAcquire()) {
+      permits++;
+    }
+    return permits;
+  }
+
   /**
    * Reads events from the given reader.
    */
-  private int readEvents(FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader,
-                         List<StreamEvent> events, int limit,
-                         TimeRangeReadFilter readFilter) throws IOException, InterruptedException {
+  static int readEvents(FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader,
+                        List<StreamEvent> events, int limit,
+                        TimeRangeReadFilter readFilter) throws IOException, InterruptedException {
     // Keeps reading as long as the filter is active.
     // This mean there are events in the stream, just that they are rejected by the filter.
     int eventsRead = reader.read(events, getReadLimit(limit), 0, TimeUnit.SECONDS, readFilter);
@@ -250,53 +366,39 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
   }
 
   /**
-   * Get the first partition location that contains events as specified in start time.
-   *
-   * @return the partition location if found, or {@code null} if not found.
+   * Get the partition locations that overlap with the given time range, ordered by partition start time.
    */
-  private Location getStartPartitionLocation(StreamConfig streamConfig,
-                                             long startTime, int generation) throws IOException {
+  private List<Location> getPartitionLocations(StreamConfig streamConfig, long startTime,
+                                               long endTime, int generation) throws IOException {
     Location baseLocation = StreamUtils.createGenerationLocation(streamConfig.getLocation(), generation);
 
-    // Find the partition location with the largest timestamp that is <= startTime
-    // Also find the partition location with the smallest timestamp that is >= startTime
-    long maxPartitionStartTime = 0L;
-    long minPartitionStartTime = Long.MAX_VALUE;
-
-    Location maxPartitionLocation = null;
-    Location minPartitionLocation = null;
-
+    List<Location> partitions = Lists.newArrayList();
     for (Location location : baseLocation.list()) {
       // Partition must be a directory
       if (!location.isDirectory() || !StreamUtils.isPartition(location.getName())) {
         continue;
       }
-      long partitionStartTime = StreamUtils.getPartitionStartTime(location.getName());
-
-      if (partitionStartTime > maxPartitionStartTime && partitionStartTime <= startTime) {
-        maxPartitionStartTime = partitionStartTime;
-        maxPartitionLocation = location;
-      }
-      if (partitionStartTime < minPartitionStartTime && partitionStartTime >= startTime) {
-        minPartitionStartTime = partitionStartTime;
-        minPartitionLocation = location;
+      String name = location.getName();
+      if (StreamUtils.getPartitionStartTime(name) < endTime && StreamUtils.getPartitionEndTime(name) > startTime) {
+        partitions.add(location);
       }
     }
-
-    return maxPartitionLocation == null ? minPartitionLocation : maxPartitionLocation;
+    Collections.sort(partitions, new Comparator<Location>() {
+      @Override
+      public int compare(Location first, Location second) {
+        return Long.compare(StreamUtils.getPartitionStartTime(first.getName()),
+                            StreamUtils.getPartitionStartTime(second.getName()));
+      }
+    });
+    return partitions;
   }
 
   /**
    * Creates a {@link FileReader} that starts reading stream event from the given partition.
    */
   private FileReader<StreamEventOffset, Iterable<StreamFileOffset>> createReader(StreamConfig streamConfig,
-                                                                                 long startTime) throws IOException {
-    int generation = StreamUtils.getGeneration(streamConfig);
-    Location startPartition = getStartPartitionLocation(streamConfig, startTime, generation);
-    if (startPartition == null) {
-      return createEmptyReader();
-    }
-
+                                                                                 Location startPartition,
+                                                                                 int generation) throws IOException {
     List<StreamFileOffset> fileOffsets = Lists.newArrayList();
     int instances = cConf.getInt(Constants.Stream.CONTAINER_INSTANCES);
     String filePrefix = cConf.get(Constants.Stream.FILE_PREFIX);
@@ -308,7 +410,8 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
       fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
     }
 
-    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets);
+    // Events are only serialized to the response, hence bodies don't need to be copied from memory mapped files
+    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets, true);
     reader.initialize();
     return reader;
   }
@@ -353,7 +456,20 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
    * @param count Number of events wanted to read.
    * @return The actual number of events to read.
    */
-  private int getReadLimit(int count) {
+  private static int getReadLimit(int count) {
     return (count > MAX_EVENTS_PER_READ) ? MAX_EVENTS_PER_READ : count;
   }
+
+  /**
+   * Reader for reading stream events of a fetch request.
+   */
+  private interface EventReader extends Closeable {
+
+    /**
+     * Reads events into the given list.
+     *
+     * @return number of events read; a value <= 0 means no more events
+     */
+    int read(List<StreamEvent> events, int limit) throws IOException, InterruptedException;
+  }
 }
@@ -107,6 +107,9 @@ public final class StreamHandler extends AbstractHttpHandler {
     .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
     .create();
 
+  // Metric names for the buckets of the write latency histogram
+  private static final String[] WRITE_LATENCY_METRICS = createWriteLatencyMetricNames();
+
   private final CConfiguration cConf;
   private final StreamAdmin streamAdmin;
   private final MetricsContext streamHandlerMetricsContext;
@@ -148,6 +151,7 @@ public final class StreamHandler extends AbstractHttpHandler {
     StreamMetricsCollectorFactory metricsCollectorFactory = createStreamMetricsCollectorFactory();
     this.streamWriter = new ConcurrentStreamWriter(streamCoordinatorClient, streamAdmin, writerFactory,
                                                    cConf.getInt(Constants.Stream.WORKER_THREADS),
+                                                   cConf.getLong(Constants.Stream.GROUP_COMMIT_WINDOW_US),
                                                    metricsCollectorFactory, impersonator);
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.impersonator = impersonator;
@@ -362,11 +366,33 @@ public final class StreamHandler extends AbstractHttpHandler {
               childCollector.increment("collect.events", eventsWritten);
             }
           }
+
+          @Override
+          public void emitCommitMetrics(int requests, long flushMicros, long[] latencyHistogram) {
+            childCollector.increment("collect.commits", 1);
+            childCollector.increment("collect.commit.requests", requests);
+            childCollector.increment("collect.commit.flush.us", flushMicros);
+            for (int i = 0; i < latencyHistogram.length; i++) {
+              if (latencyHistogram[i] > 0) {
+                childCollector.increment(WRITE_LATENCY_METRICS[i], latencyHistogram[i]);
+              }
+            }
+          }
         };
       }
     };
   }
 
+  private static String[] createWriteLatencyMetricNames() {
+    List<Long> buckets = StreamMetricsCollectorFactory.StreamMetricsCollector.WRITE_LATENCY_BUCKETS_MS;
+    String[] names = new String[buckets.size() + 1];
+    for (int i = 0; i < buckets.size(); i++) {
+      names[i] = "collect.latency.le." + buckets.get(i) + "ms";
+    }
+    names[buckets.size()] = "collect.latency.gt." + buckets.get(buckets.size() - 1) + "ms";
+    return names;
+  }
+
   private Map<String, String> getStreamHandlerMetricsContext() {
     return ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
                            Constants.Metrics.Tag.COMPONENT, Constants.Gateway.METRICS_CONTEXT,
@@ -17,6 +17,9 @@
 package co.cask.cdap.data.stream.service;
 
 import co.cask.cdap.proto.id.StreamId;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
 
 /**
  * Factory for creating {@link StreamMetricsCollector}s.
@@ -28,6 +31,13 @@ public interface StreamMetricsCollectorFactory {
    */
   public interface StreamMetricsCollector {
 
+    /**
+     * Upper bounds in milliseconds of the buckets of the write latency histogram passed to
+     * {@link #emitCommitMetrics(int, long, long[])}. The histogram has one extra bucket at the end for
+     * latencies above the last bound.
+     */
+    List<Long> WRITE_LATENCY_BUCKETS_MS = ImmutableList.of(1L, 2L, 5L, 10L, 20L, 50L, 100L, 200L, 500L, 1000L);
+
     /**
      * Emit stream metrics.
      *
@@ -35,6 +45,17 @@ public interface StreamMetricsCollectorFactory {
      * @param eventsWritten number of events written to the stream
      */
     void emitMetrics(long bytesWritten, long eventsWritten);
+
+    /**
+     * Emit metrics about one group commit, which writes a batch of write requests and then flushes the stream file.
+     *
+     * @param requests number of write requests in the batch
+     * @param flushMicros time in microseconds spent on flushing the stream file
+     * @param latencyHistogram number of requests in each latency bucket as defined by
+     *                         {@link #WRITE_LATENCY_BUCKETS_MS}, where the latency of a request is measured
+     *                         from the time it was enqueued until it was completed
+     */
+    void emitCommitMetrics(int requests, long flushMicros, long[] latencyHistogram);
   }
 
   /**
@@ -33,21 +33,17 @@ import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -210,7 +206,7 @@ public class DefaultCube implements Cube, MeteredDataset {
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
     FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    Map<Map<String, String>, Map<String, TimeSeriesBuffer>> resultMap = getTimeSeries(query, scanner);
 
     incrementMetric("cube.query.request.success.count", 1);
     incrementMetric("cube.query.result.size", resultMap.size());
@@ -329,14 +325,15 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
+  private Map<Map<String, String>, Map<String, TimeSeriesBuffer>> getTimeSeries(CubeQuery query,
+                                                                              FactScanner scanner) {
     // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+    Map<Map<String, String>, Map<String, TimeSeriesBuffer>> result = Maps.newHashMap();
 
     int count = 0;
+    int skipped = 0;
     while (scanner.hasNext()) {
       FactScanResult next = scanner.next();
-      incrementMetric("cube.query.scan.records.count", 1);
 
       boolean skip = false;
       // using tree map, as we are using it as a key for a map
@@ -362,66 +359,50 @@ public class DefaultCube implements Cube, MeteredDataset {
       }
 
       if (skip) {
-        incrementMetric("cube.query.scan.skipped.count", 1);
-        continue;
-      }
-
-      for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
-        if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
+        skipped++;
+      } else {
+        Map<String, TimeSeriesBuffer> measures = result.get(seriesDimensions);
+        if (measures == null) {
+          measures = Maps.newHashMap();
+          result.put(seriesDimensions, measures);
         }
-
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
-        } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
+        TimeSeriesBuffer timeSeries = measures.get(next.getMeasureName());
+        if (timeSeries == null) {
+          timeSeries = new TimeSeriesBuffer(query.getMeasurements().get(next.getMeasureName()), query.getLimit());
+          measures.put(next.getMeasureName(), timeSeries);
+        }
+        for (TimeValue timeValue : next) {
+          timeSeries.add(timeValue.getTimestamp(), timeValue.getValue());
         }
       }
+
       if (++count >= MAX_RECORDS_TO_SCAN) {
         break;
       }
     }
+
+    incrementMetric("cube.query.scan.records.count", count);
+    incrementMetric("cube.query.scan.skipped.count", skipped);
     return result;
   }
 
   private Collection<TimeSeries> convertToQueryResult(CubeQuery query,
-                                                      Table<Map<String, String>, String,
-                                                        Map<Long, Long>> resultTable) {
+                                                      Map<Map<String, String>,
+                                                        Map<String, TimeSeriesBuffer>> resultMap) {
 
     List<TimeSeries> result = Lists.newArrayList();
     // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
+    for (Map.Entry<Map<String, String>, Map<String, TimeSeriesBuffer>> row : resultMap.entrySet()) {
       // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
+      for (Map.Entry<String, TimeSeriesBuffer> measureEntry : row.getValue().entrySet()) {
         // generating time series for a grouping and a measure
         int count = 0;
-        List<TimeValue> timeValues = Lists.newArrayList();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
-        }
-        Collections.sort(timeValues);
-        PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-          new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
-        List<TimeValue> resultTimeValues = Lists.newArrayList();
+        List<TimeValue> timeValues = measureEntry.getValue().getTimeValues();
+        Iterator<TimeValue> timeValueItor =
+          new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator();
+        List<TimeValue> resultTimeValues = Lists.newArrayListWithExpectedSize(timeValues.size());
         while (timeValueItor.hasNext()) {
-          TimeValue timeValue = timeValueItor.next();
-          resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
+          resultTimeValues.add(timeValueItor.next());
           if (++count >= query.getLimit()) {
             break;
           }
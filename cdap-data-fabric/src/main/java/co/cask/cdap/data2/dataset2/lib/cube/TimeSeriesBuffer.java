@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the data points of one time series of a cube query result into primitive arrays, aggregating the values
+ * of data points with the same timestamp with the {@link AggregationFunction} of the query.
+ * <p>
+ * Data points can be added in any order. Points that arrive in timestamp order are aggregated or appended in place;
+ * out of order points are appended and the arrays are sorted and merged when they are full. Since the query result
+ * only contains the first {@code limit} data points of a series, points are dropped as soon as it is known that
+ * there are at least {@code limit} earlier points, which bounds the memory used by a series.
+ */
+final class TimeSeriesBuffer {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final AggregationFunction function;
+  private final int limit;
+
+  private long[] timestamps;
+  private long[] values;
+  private int size;
+  private boolean sorted;
+  // data points with a timestamp larger than this can be dropped, as there are enough earlier points
+  private long cutoff;
+
+  TimeSeriesBuffer(AggregationFunction function, int limit) {
+    this.function = function;
+    // the query result always contains at least one data point, even with a limit of zero
+    this.limit = Math.max(1, limit);
+    this.timestamps = new long[Math.min(INITIAL_CAPACITY, this.limit)];
+    this.values = new long[timestamps.length];
+    this.sorted = true;
+    this.cutoff = Long.MAX_VALUE;
+  }
+
+  /**
+   * Adds a data point.
+   */
+  void add(long timestamp, long value) {
+    if (timestamp > cutoff) {
+      return;
+    }
+    if (size > 0) {
+      long last = timestamps[size - 1];
+      if (timestamp == last) {
+        values[size - 1] = aggregate(values[size - 1], value);
+        return;
+      }
+      if (sorted && timestamp > last && size >= limit) {
+        // there are enough earlier points already
+        cutoff = last;
+        return;
+      }
+      sorted = sorted && timestamp > last;
+    }
+
+    if (size == timestamps.length) {
+      compact();
+      if (timestamp > cutoff) {
+        return;
+      }
+      if (size > timestamps.length / 2) {
+        timestamps = Arrays.copyOf(timestamps, timestamps.length * 2);
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      if (size > 0 && timestamp <= timestamps[size - 1]) {
+        sorted = false;
+      }
+    }
+    timestamps[size] = timestamp;
+    values[size] = value;
+    size++;
+  }
+
+  /**
+   * Returns the data points sorted by timestamp, with at most {@code limit} elements.
+   */
+  List<TimeValue> getTimeValues() {
+    compact();
+    List<TimeValue> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(new TimeValue(timestamps[i], values[i]));
+    }
+    return result;
+  }
+
+  /**
+   * Sorts the data points by timestamp, aggregates the ones with the same timestamp and drops those
+   * beyond the limit.
+   */
+  private void compact() {
+    if (!sorted) {
+      // stable sort, so that points with the same timestamp are aggregated in the order they were added
+      mergeSort(timestamps, values, new long[size], new long[size], 0, size);
+      int newSize = 0;
+      for (int i = 0; i < size; i++) {
+        if (newSize > 0 && timestamps[newSize - 1] == timestamps[i]) {
+          values[newSize - 1] = aggregate(values[newSize - 1], values[i]);
+        } else {
+          timestamps[newSize] = timestamps[i];
+          values[newSize] = values[i];
+          newSize++;
+        }
+      }
+      size = newSize;
+      sorted = true;
+    }
+    if (size >= limit) {
+      size = limit;
+      cutoff = Math.min(cutoff, timestamps[size - 1]);
+    }
+  }
+
+  private long aggregate(long current, long value) {
+    switch (function) {
+      case SUM:
+        return current + value;
+      case MAX:
+        return Math.max(current, value);
+      case MIN:
+        return Math.min(current, value);
+      case LATEST:
+        return value;
+      default:
+        // should never happen: developer error
+        throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+  }
+
+  /**
+   * Stable merge sort of the range [from, to) of the given parallel arrays by the first array.
+   */
+  private static void mergeSort(long[] keys, long[] values, long[] keysBuffer, long[] valuesBuffer, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(keys, values, keysBuffer, valuesBuffer, from, mid);
+    mergeSort(keys, values, keysBuffer, valuesBuffer, mid, to);
+    if (keys[mid - 1] <= keys[mid]) {
+      // already in order
+      return;
+    }
+    System.arraycopy(keys, from, keysBuffer, from, to - from);
+    System.arraycopy(values, from, valuesBuffer, from, to - from);
+    int left = from;
+    int right = mid;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < mid && keysBuffer[left] <= keysBuffer[right])) {
+        keys[i] = keysBuffer[left];
+        values[i] = valuesBuffer[left++];
+      } else {
+        keys[i] = keysBuffer[right];
+        values[i] = valuesBuffer[right++];
+      }
+    }
+  }
+}
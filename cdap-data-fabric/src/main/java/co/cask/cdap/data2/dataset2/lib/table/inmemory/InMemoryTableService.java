@@ -35,62 +35,82 @@ import java.util.Comparator;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nullable;
 
 /**
  * Holds all in-memory tables for {@link InMemoryTable}.
+ * <p>
+ * Tables are independent of each other: every table has its own lock for whole-table operations (truncate,
+ * prefix delete) and a fixed set of striped row locks, so that writers to different tables or to rows that
+ * fall into different stripes do not block each other.
  */
-// todo: use locks instead of synchronize
 // todo: consider using SortedMap instead of NavigableMap in APIs
 public class InMemoryTableService {
-  private static Map<String, ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>>> tables =
-    Maps.newHashMap();
+  private static final ConcurrentMap<String, TableData> tables = new ConcurrentHashMap<>();
 
-  public static synchronized boolean exists(String tableName) {
+  public static boolean exists(String tableName) {
     return tables.containsKey(tableName);
   }
 
-  public static synchronized void create(String tableName) {
+  public static void create(String tableName) {
     if (!tables.containsKey(tableName)) {
-      tables.put(tableName, new ConcurrentSkipListMap<byte[],
-        NavigableMap<byte[], NavigableMap<Long, Update>>>(Bytes.BYTES_COMPARATOR));
+      tables.putIfAbsent(tableName, new TableData());
     }
   }
 
-  public static synchronized void truncate(String tableName) {
-    tables.get(tableName).clear();
+  public static void truncate(String tableName) {
+    TableData table = tables.get(tableName);
+    table.tableLock.writeLock().lock();
+    try {
+      table.rows.clear();
+    } finally {
+      table.tableLock.writeLock().unlock();
+    }
   }
 
-  public static synchronized void drop(String tableName) {
+  public static void drop(String tableName) {
     tables.remove(tableName);
   }
 
-  public static synchronized void reset() {
+  public static void reset() {
     tables.clear();
   }
 
   // no nulls
-  public static synchronized void merge(String tableName,
-                                        SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
-                                        long version) {
+  public static void merge(String tableName,
+                           SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
+                           long version) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    TableData table = tables.get(tableName);
     SortedMap<byte[], ? extends SortedMap<byte[], Update>> changesCopy = deepCopyUpdates(changes);
-    for (Map.Entry<byte[], ? extends SortedMap<byte[], Update>> change : changesCopy.entrySet()) {
-      merge(table, change.getKey(), change.getValue(), version);
+    table.tableLock.readLock().lock();
+    try {
+      for (Map.Entry<byte[], ? extends SortedMap<byte[], Update>> change : changesCopy.entrySet()) {
+        Lock rowLock = table.getRowLock(change.getKey()).writeLock();
+        rowLock.lock();
+        try {
+          merge(table.rows, change.getKey(), change.getValue(), version);
+        } finally {
+          rowLock.unlock();
+        }
+      }
+    } finally {
+      table.tableLock.readLock().unlock();
     }
   }
 
+  // must be called while holding the write lock of the row
   private static void merge(ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table,
                             byte[] row, Map<byte[], Update> changes, long version) {
     // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
+    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = getOrCreateRow(table, row);
     // now merge the changes into the row, one by one
     for (Map.Entry<byte[], Update> keyVal : changes.entrySet()) {
       // create the column in the row if it does not exist
@@ -107,118 +127,164 @@ public class InMemoryTableService {
 
   // todo: remove it from here: only used by "system" metrics table, which should be revised
   @Deprecated
-  public static synchronized Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
+  public static Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
     Map<byte[], Long> resultMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
-    // now increment each column, one by one
-    long versionForWrite = System.currentTimeMillis();
-    for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
-      IncrementValue increment = new IncrementValue(inc.getValue());
-      // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(inc.getKey());
-      Update last = null;
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(inc.getKey(), colMap);
-      } else {
-        last = colMap.lastEntry().getValue();
+    TableData table = tables.get(tableName);
+    table.tableLock.readLock().lock();
+    Lock rowLock = table.getRowLock(row).writeLock();
+    rowLock.lock();
+    try {
+      // get the correct row from the table, create it if it doesn't exist
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = getOrCreateRow(table.rows, row);
+      // now increment each column, one by one
+      long versionForWrite = System.currentTimeMillis();
+      for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
+        IncrementValue increment = new IncrementValue(inc.getValue());
+        // create the column in the row if it does not exist
+        NavigableMap<Long, Update> colMap = rowMap.get(inc.getKey());
+        Update last = null;
+        if (colMap == null) {
+          colMap = Maps.newTreeMap();
+          rowMap.put(inc.getKey(), colMap);
+        } else {
+          last = colMap.lastEntry().getValue();
+        }
+        Update merged = Updates.mergeUpdates(last, increment);
+        // put into the column with given version
+        long newValue = Bytes.toLong(merged.getBytes());
+        resultMap.put(inc.getKey(), newValue);
+        colMap.put(versionForWrite, merged);
       }
-      Update merged = Updates.mergeUpdates(last, increment);
-      // put into the column with given version
-      long newValue = Bytes.toLong(merged.getBytes());
-      resultMap.put(inc.getKey(), newValue);
-      colMap.put(versionForWrite, merged);
+    } finally {
+      rowLock.unlock();
+      table.tableLock.readLock().unlock();
     }
     return resultMap;
   }
 
-  public static synchronized boolean swap(String tableName, byte[] row, byte[] column,
-                                          byte[] oldValue, byte[] newValue) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    Update existingValue = null;
-    if (rowMap != null) {
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap != null) {
-        existingValue = columnMap.lastEntry().getValue();
-      }
-    }
-    // verify existing value matches
-    if (oldValue == null && existingValue != null) {
-      return false;
-    }
-    if (oldValue != null && (existingValue == null || !Bytes.equals(oldValue, existingValue.getBytes()))) {
-      return false;
-    }
-    // write new value
-    if (newValue == null) {
+  public static boolean swap(String tableName, byte[] row, byte[] column,
+                             byte[] oldValue, byte[] newValue) {
+    TableData table = tables.get(tableName);
+    table.tableLock.readLock().lock();
+    Lock rowLock = table.getRowLock(row).writeLock();
+    rowLock.lock();
+    try {
+      // get the correct row from the table, create it if it doesn't exist
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.rows.get(row);
+      Update existingValue = null;
       if (rowMap != null) {
-        rowMap.remove(column);
+        NavigableMap<Long, Update> columnMap = rowMap.get(column);
+        if (columnMap != null) {
+          existingValue = columnMap.lastEntry().getValue();
+        }
       }
-    } else {
-      if (rowMap == null) {
-        rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        table.put(row, rowMap);
+      // verify existing value matches
+      if (oldValue == null && existingValue != null) {
+        return false;
       }
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap == null) {
-        columnMap = Maps.newTreeMap();
-        rowMap.put(column, columnMap);
+      if (oldValue != null && (existingValue == null || !Bytes.equals(oldValue, existingValue.getBytes()))) {
+        return false;
       }
-      PutValue newPut = new PutValue(newValue);
-      columnMap.put(System.currentTimeMillis(), newPut);
+      // write new value
+      if (newValue == null) {
+        if (rowMap != null) {
+          rowMap.remove(column);
+        }
+      } else {
+        if (rowMap == null) {
+          rowMap = getOrCreateRow(table.rows, row);
+        }
+        NavigableMap<Long, Update> columnMap = rowMap.get(column);
+        if (columnMap == null) {
+          columnMap = Maps.newTreeMap();
+          rowMap.put(column, columnMap);
+        }
+        PutValue newPut = new PutValue(newValue);
+        columnMap.put(System.currentTimeMillis(), newPut);
+      }
+      return true;
+    } finally {
+      rowLock.unlock();
+      table.tableLock.readLock().unlock();
     }
-    return true;
   }
 
-  public static synchronized void undo(String tableName,
-                                       NavigableMap<byte[], NavigableMap<byte[], Update>> changes,
-                                       long version) {
+  public static void undo(String tableName,
+                          NavigableMap<byte[], NavigableMap<byte[], Update>> changes,
+                          long version) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
-      byte[] row = change.getKey();
-      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-      if (rowMap != null) {
-        for (byte[] column : change.getValue().keySet()) {
-          NavigableMap<Long, Update> values = rowMap.get(column);
-          values.remove(version);
+    TableData table = tables.get(tableName);
+    table.tableLock.readLock().lock();
+    try {
+      for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
+        byte[] row = change.getKey();
+        Lock rowLock = table.getRowLock(row).writeLock();
+        rowLock.lock();
+        try {
+          NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.rows.get(row);
+          if (rowMap != null) {
+            for (byte[] column : change.getValue().keySet()) {
+              NavigableMap<Long, Update> values = rowMap.get(column);
+              values.remove(version);
+            }
+          }
+        } finally {
+          rowLock.unlock();
         }
       }
+    } finally {
+      table.tableLock.readLock().unlock();
     }
   }
 
-  public static synchronized void delete(String tableName, Iterable<byte[]> rows) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    for (byte[] row : rows) {
-      table.remove(row);
+  public static void delete(String tableName, Iterable<byte[]> rows) {
+    TableData table = tables.get(tableName);
+    table.tableLock.readLock().lock();
+    try {
+      for (byte[] row : rows) {
+        Lock rowLock = table.getRowLock(row).writeLock();
+        rowLock.lock();
+        try {
+          table.rows.remove(row);
+        } finally {
+          rowLock.unlock();
+        }
+      }
+    } finally {
+      table.tableLock.readLock().unlock();
     }
   }
 
-  public static synchronized void deleteColumns(String tableName, byte[] row, byte[] column) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.get(row);
-    columnValues.remove(column);
+  public static void deleteColumns(String tableName, byte[] row, byte[] column) {
+    TableData table = tables.get(tableName);
+    table.tableLock.readLock().lock();
+    Lock rowLock = table.getRowLock(row).writeLock();
+    rowLock.lock();
+    try {
+      NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.rows.get(row);
+      columnValues.remove(column);
+    } finally {
+      rowLock.unlock();
+      table.tableLock.readLock().unlock();
+    }
   }
 
-  public static synchronized void delete(String tableName, byte[] rowPrefix) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    if (rowPrefix.length == 0) {
-      table.clear();
-    } else {
-      byte[] rowAfter = rowAfterPrefix(rowPrefix);
-      if (rowAfter == null) {
-        table.tailMap(rowPrefix).clear();
+  public static void delete(String tableName, byte[] rowPrefix) {
+    TableData table = tables.get(tableName);
+    table.tableLock.writeLock().lock();
+    try {
+      if (rowPrefix.length == 0) {
+        table.rows.clear();
       } else {
-        table.subMap(rowPrefix, rowAfter).clear();
+        byte[] rowAfter = rowAfterPrefix(rowPrefix);
+        if (rowAfter == null) {
+          table.rows.tailMap(rowPrefix).clear();
+        } else {
+          table.rows.subMap(rowPrefix, rowAfter).clear();
+        }
       }
+    } finally {
+      table.tableLock.writeLock().unlock();
     }
   }
 
@@ -239,23 +305,30 @@ public class InMemoryTableService {
     return null;
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
-                                                                                  byte[] row,
-                                                                                  @Nullable Transaction tx) {
+  public static NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
+                                                                     byte[] row,
+                                                                     @Nullable Transaction tx) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+    TableData table = tables.get(tableName);
     Preconditions.checkArgument(table != null, "table not found: " + tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    return deepCopy(Updates.rowToBytes(getVisible(rowMap, tx)));
+    Lock rowLock = table.getRowLock(row).readLock();
+    rowLock.lock();
+    try {
+      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.rows.get(row);
+      return deepCopy(Updates.rowToBytes(getVisible(rowMap, tx)));
+    } finally {
+      rowLock.unlock();
+    }
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
-                             getRowRange(String tableName,
-                                         byte[] startRow,
-                                         byte[] stopRow,
-                                         @Nullable Transaction tx) {
+  public static NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
+                getRowRange(String tableName,
+                            byte[] startRow,
+                            byte[] stopRow,
+                            @Nullable Transaction tx) {
     // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> tableData = tables.get(tableName);
+    TableData table = tables.get(tableName);
+    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> tableData = table.rows;
     NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rows;
     if (startRow == null && stopRow == null) {
       rows = tableData;
@@ -269,19 +342,38 @@ public class InMemoryTableService {
 
     NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> result =
       Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    // the skip list iterator is weakly consistent; each row is copied under its own read lock
     for (Map.Entry<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rowMap : rows.entrySet()) {
-      NavigableMap<byte[], NavigableMap<Long, Update>> columns =
-        tx == null ? rowMap.getValue() : getVisible(rowMap.getValue(), tx);
-      result.put(copy(rowMap.getKey()), deepCopy(Updates.rowToBytes(columns)));
+      Lock rowLock = table.getRowLock(rowMap.getKey()).readLock();
+      rowLock.lock();
+      try {
+        NavigableMap<byte[], NavigableMap<Long, Update>> columns =
+          tx == null ? rowMap.getValue() : getVisible(rowMap.getValue(), tx);
+        result.put(copy(rowMap.getKey()), deepCopy(Updates.rowToBytes(columns)));
+      } finally {
+        rowLock.unlock();
+      }
     }
 
     return result;
   }
 
-  public static synchronized Collection<String> list() {
+  public static Collection<String> list() {
     return ImmutableList.copyOf(tables.keySet());
   }
 
+  // must be called while holding the write lock of the row
+  private static NavigableMap<byte[], NavigableMap<Long, Update>> getOrCreateRow(
+    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table, byte[] row) {
+
+    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
+    if (rowMap == null) {
+      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      table.put(row, rowMap);
+    }
+    return rowMap;
+  }
+
   private static NavigableMap<byte[], NavigableMap<Long, Update>> getVisible(
     NavigableMap<byte[], NavigableMap<Long, Update>> rowMap, final Transaction tx) {
 
@@ -365,4 +457,33 @@ public class InMemoryTableService {
       return Longs.compare(right, left);
     }
   };
+
+  /**
+   * Data and locks of a single in-memory table. Row maps are plain {@link java.util.TreeMap}s, hence all
+   * access to a row must hold the corresponding stripe lock. Operations on individual rows hold the read lock
+   * of {@link #tableLock}, operations that remove arbitrary row ranges hold its write lock.
+   */
+  private static final class TableData {
+    // must be a power of two
+    private static final int ROW_LOCK_STRIPES = 64;
+
+    private final ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rows =
+      new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    private final ReadWriteLock tableLock = new ReentrantReadWriteLock();
+    private final ReadWriteLock[] rowLocks = new ReadWriteLock[ROW_LOCK_STRIPES];
+
+    TableData() {
+      for (int i = 0; i < rowLocks.length; i++) {
+        rowLocks[i] = new ReentrantReadWriteLock();
+      }
+    }
+
+    ReadWriteLock getRowLock(byte[] row) {
+      int hash = Bytes.hashCode(row);
+      // spread the bits, the same way as HashMap does, so that rows differing only in high bits use different stripes
+      hash ^= (hash >>> 20) ^ (hash >>> 12);
+      hash ^= (hash >>> 7) ^ (hash >>> 4);
+      return rowLocks[hash & (ROW_LOCK_STRIPES - 1)];
+    }
+  }
 }
@@ -0,0 +1,326 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.WriteBatch;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * Performs the read-modify-write operations (increment and swap) of a LevelDB table with group commit.
+ * <p>
+ * Callers enqueue their request and then compete for the commit lock. The thread that gets the lock drains
+ * pending requests (its own included), applies them in order against the table plus the changes of the
+ * requests before it in the same batch, and writes all resulting changes with a single {@link WriteBatch}.
+ * Threads that were blocked on the lock while their request was committed by another thread simply return
+ * the result. There is one instance per table, shared by all {@link LevelDBTableCore}s of that table.
+ */
+final class LevelDBGroupCommitWriter {
+
+  private final String tableName;
+  private final LevelDBTableService service;
+  private final LevelDBTableCore core;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final Queue<Request<?>> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final Lock commitLock = new ReentrantLock();
+
+  // statistics since the last call to getAndResetStats()
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicInteger maxBatch = new AtomicInteger();
+
+  LevelDBGroupCommitWriter(String tableName, LevelDBTableService service,
+                           int maxBatchSize, long maxDelay, TimeUnit unit) throws IOException {
+    this.tableName = tableName;
+    this.service = service;
+    this.core = new LevelDBTableCore(tableName, service);
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = unit.toNanos(maxDelay);
+  }
+
+  /**
+   * Increments the given columns of a row and returns the new values.
+   */
+  Map<byte[], Long> increment(final byte[] row, final Map<byte[], Long> increments) throws IOException {
+    return submit(new Request<Map<byte[], Long>>() {
+      @Override
+      Map<byte[], Long> apply(Batch batch) throws IOException {
+        Map<byte[], Long> result = batch.computeIncrements(row, increments);
+        for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+          batch.put(row, entry.getKey(), Bytes.toBytes(entry.getValue()));
+        }
+        return result;
+      }
+    });
+  }
+
+  /**
+   * Increments the given columns of multiple rows.
+   */
+  void increment(final NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    submit(new Request<Void>() {
+      @Override
+      Void apply(Batch batch) throws IOException {
+        // compute everything before applying anything, so that a failed request leaves no partial changes
+        Map<byte[], Map<byte[], Long>> results = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+          results.put(row.getKey(), batch.computeIncrements(row.getKey(), row.getValue()));
+        }
+        for (Map.Entry<byte[], Map<byte[], Long>> row : results.entrySet()) {
+          for (Map.Entry<byte[], Long> entry : row.getValue().entrySet()) {
+            batch.put(row.getKey(), entry.getKey(), Bytes.toBytes(entry.getValue()));
+          }
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Compares the latest value of a column with the expected value and, if they match, replaces it with the new
+   * value. A {@code null} new value deletes the column.
+   */
+  boolean swap(final byte[] row, final byte[] column,
+               @Nullable final byte[] oldValue, @Nullable final byte[] newValue) throws IOException {
+    return submit(new Request<Boolean>() {
+      @Override
+      Boolean apply(Batch batch) throws IOException {
+        byte[] existing = batch.get(row, column);
+        if (oldValue == null && existing != null) {
+          return false;
+        }
+        if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+          return false;
+        }
+        batch.put(row, column, newValue);
+        return true;
+      }
+    });
+  }
+
+  /**
+   * Returns the statistics collected since the last call of this method and resets them.
+   */
+  LevelDBTableService.CommitStats getAndResetStats() {
+    return new LevelDBTableService.CommitStats(batches.getAndSet(0), requests.getAndSet(0),
+                                               TimeUnit.NANOSECONDS.toMillis(waitNanos.getAndSet(0)),
+                                               maxBatch.getAndSet(0));
+  }
+
+  private <T> T submit(Request<T> request) throws IOException {
+    pending.add(request);
+    pendingCount.incrementAndGet();
+
+    commitLock.lock();
+    try {
+      // requests are committed in FIFO order, so this terminates once the own request was drained
+      while (!request.future.isDone()) {
+        commitPending();
+      }
+    } finally {
+      commitLock.unlock();
+    }
+
+    try {
+      return request.future.get();
+    } catch (InterruptedException e) {
+      // cannot happen, the future is done already
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Drains and commits one batch of pending requests. Must be called while holding the commit lock.
+   */
+  private void commitPending() throws IOException {
+    if (maxDelayNanos > 0) {
+      // linger for a little while to give concurrent callers a chance to join the batch
+      long deadline = System.nanoTime() + maxDelayNanos;
+      long remaining = maxDelayNanos;
+      while (pendingCount.get() < maxBatchSize && remaining > 0) {
+        LockSupport.parkNanos(Math.min(remaining, TimeUnit.MICROSECONDS.toNanos(100)));
+        remaining = deadline - System.nanoTime();
+      }
+    }
+
+    List<Request<?>> requestBatch = Lists.newArrayListWithExpectedSize(Math.min(maxBatchSize, pendingCount.get()));
+    Request<?> request;
+    while (requestBatch.size() < maxBatchSize && (request = pending.poll()) != null) {
+      pendingCount.decrementAndGet();
+      requestBatch.add(request);
+    }
+    if (requestBatch.isEmpty()) {
+      return;
+    }
+
+    Batch batch = new Batch();
+    List<Request<?>> applied = Lists.newArrayListWithExpectedSize(requestBatch.size());
+    for (Request<?> req : requestBatch) {
+      try {
+        req.applyToBatch(batch);
+        applied.add(req);
+      } catch (Throwable t) {
+        req.future.setException(t);
+      }
+    }
+
+    try {
+      batch.write();
+    } catch (Throwable t) {
+      for (Request<?> req : applied) {
+        req.future.setException(t);
+      }
+      return;
+    }
+
+    long now = System.nanoTime();
+    long totalWait = 0;
+    for (Request<?> req : applied) {
+      totalWait += now - req.submitTime;
+      req.complete();
+    }
+    batches.incrementAndGet();
+    requests.addAndGet(requestBatch.size());
+    waitNanos.addAndGet(totalWait);
+    int size = requestBatch.size();
+    int max = maxBatch.get();
+    while (size > max && !maxBatch.compareAndSet(max, size)) {
+      max = maxBatch.get();
+    }
+  }
+
+  /**
+   * The changes of all requests in one batch. Reads go through the changes of earlier requests in the batch
+   * before they fall back to the table.
+   */
+  private final class Batch {
+    // a null value denotes a deleted column
+    private final NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+
+    @Nullable
+    byte[] get(byte[] row, byte[] column) throws IOException {
+      NavigableMap<byte[], byte[]> rowChanges = changes.get(row);
+      if (rowChanges != null && rowChanges.containsKey(column)) {
+        return rowChanges.get(column);
+      }
+      return core.getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+    }
+
+    Map<byte[], Long> computeIncrements(byte[] row, Map<byte[], Long> increments) throws IOException {
+      NavigableMap<byte[], byte[]> rowChanges = changes.get(row);
+      NavigableMap<byte[], byte[]> existing =
+        core.getRow(row, increments.keySet().toArray(new byte[increments.size()][]), null, null, -1, null);
+      Map<byte[], Long> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
+        byte[] existingBytes = rowChanges != null && rowChanges.containsKey(increment.getKey())
+          ? rowChanges.get(increment.getKey()) : existing.get(increment.getKey());
+        long existingValue = 0L;
+        if (existingBytes != null) {
+          if (existingBytes.length != Bytes.SIZEOF_LONG) {
+            throw new NumberFormatException("Attempted to increment a value that is not convertible to long," +
+                                              " row: " + Bytes.toStringBinary(row) +
+                                              " column: " + Bytes.toStringBinary(increment.getKey()));
+          }
+          existingValue = Bytes.toLong(existingBytes);
+        }
+        result.put(increment.getKey(), existingValue + increment.getValue());
+      }
+      return result;
+    }
+
+    void put(byte[] row, byte[] column, @Nullable byte[] value) {
+      NavigableMap<byte[], byte[]> rowChanges = changes.get(row);
+      if (rowChanges == null) {
+        rowChanges = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        changes.put(row, rowChanges);
+      }
+      rowChanges.put(column, value);
+    }
+
+    void write() throws IOException {
+      if (changes.isEmpty()) {
+        return;
+      }
+      DB db = service.getTable(tableName);
+      long version = System.currentTimeMillis();
+      WriteBatch writeBatch = db.createWriteBatch();
+      try (DBIterator iterator = db.iterator()) {
+        for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> row : changes.entrySet()) {
+          for (Map.Entry<byte[], byte[]> column : row.getValue().entrySet()) {
+            if (column.getValue() == null) {
+              LevelDBTableCore.addToDeleteBatch(writeBatch, iterator, row.getKey(), column.getKey());
+            } else {
+              writeBatch.put(LevelDBTableCore.createPutKey(row.getKey(), column.getKey(), version), column.getValue());
+            }
+          }
+        }
+      }
+      db.write(writeBatch, service.getWriteOptions());
+    }
+  }
+
+  /**
+   * A pending increment or swap.
+   *
+   * @param <T> type of the result
+   */
+  private abstract static class Request<T> {
+    private final long submitTime = System.nanoTime();
+    private final SettableFuture<T> future = SettableFuture.create();
+    private T result;
+
+    /**
+     * Applies this request to the given batch and returns the result to report once the batch is written.
+     */
+    abstract T apply(Batch batch) throws IOException;
+
+    void applyToBatch(Batch batch) throws IOException {
+      result = apply(batch);
+    }
+
+    void complete() {
+      future.set(result);
+    }
+  }
+}
@@ -24,7 +24,6 @@ import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
@@ -38,7 +37,6 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -92,69 +90,20 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
-    }
-    return true;
-  }
-
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
-    }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
+  /**
+   * Compares and swaps the latest value of a column. Concurrent swaps and increments on the same table are
+   * committed together by the table's {@link LevelDBGroupCommitWriter}.
+   */
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    return service.getGroupCommitWriter(tableName).swap(row, column, oldValue, newValue);
   }
 
-
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
-      }
-      resultMap.put(row.getKey(), replacing);
-    }
-    persist(resultMap, System.currentTimeMillis());
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    return service.getGroupCommitWriter(tableName).increment(row, increments);
   }
 
-  private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
-    NavigableMap<byte[], byte[]> existing =
-      getRow(row, increments.keySet().toArray(new byte[increments.size()][]), null, null, -1, null);
-    Map<byte[], Long> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
-      long existingValue = 0L;
-      byte[] existingBytes = existing.get(increment.getKey());
-      if (existingBytes != null) {
-        if (existingBytes.length != Bytes.SIZEOF_LONG) {
-          throw new NumberFormatException("Attempted to increment a value that is not convertible to long," +
-                                            " row: " + Bytes.toStringBinary(row) +
-                                            " column: " + Bytes.toStringBinary(increment.getKey()));
-        }
-        existingValue = Bytes.toLong(existingBytes);
-      }
-      long newValue = existingValue + increment.getValue();
-      result.put(increment.getKey(), newValue);
-    }
-    return result;
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    service.getGroupCommitWriter(tableName).increment(updates);
   }
 
   public void persist(Map<byte[], ? extends Map<byte[], byte[]>> changes, long version) throws IOException {
@@ -449,7 +398,7 @@ public class LevelDBTableCore {
    * Helper to add deletes to a batch.  The expected use case is for the caller to be iterating
    * through leveldb keys in sorted order, collecting key values to delete in batch.
    */
-  private void addToDeleteBatch(WriteBatch batch, DBIterator iterator, byte[] row, byte[] column) {
+  static void addToDeleteBatch(WriteBatch batch, DBIterator iterator, byte[] row, byte[] column) {
     byte[] endKey = createStartKey(row, Bytes.add(column, new byte[] { 0 }));
     iterator.seek(createStartKey(row, column));
     while (iterator.hasNext()) {
@@ -546,7 +495,7 @@ public class LevelDBTableCore {
 
   // ------- helpers to create the keys for writes and scans ----------
 
-  private static byte[] createPutKey(byte[] rowKey, byte[] columnKey, long version) {
+  static byte[] createPutKey(byte[] rowKey, byte[] columnKey, long version) {
     return new KeyValue(rowKey, DATA_COLFAM, columnKey, version, KeyValue.Type.Put).getKey();
   }
 
@@ -43,6 +43,7 @@ import java.net.URLEncoder;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -58,8 +59,11 @@ public class LevelDBTableService {
   private long cacheSize;
   private String basePath;
   private WriteOptions writeOptions;
+  private int commitBatchSize = Constants.DEFAULT_DATA_LEVELDB_COMMIT_BATCH_SIZE;
+  private long commitMaxDelayMicros = Constants.DEFAULT_DATA_LEVELDB_COMMIT_MAX_DELAY_US;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, LevelDBGroupCommitWriter> commitWriters = Maps.newConcurrentMap();
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -89,6 +93,12 @@ public class LevelDBTableService {
     cacheSize = config.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE);
     writeOptions = new WriteOptions().sync(
       config.getBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, Constants.DEFAULT_DATA_LEVELDB_FSYNC));
+    commitBatchSize = config.getInt(Constants.CFG_DATA_LEVELDB_COMMIT_BATCH_SIZE,
+                                    Constants.DEFAULT_DATA_LEVELDB_COMMIT_BATCH_SIZE);
+    Preconditions.checkArgument(commitBatchSize > 0, "%s must be positive.",
+                                Constants.CFG_DATA_LEVELDB_COMMIT_BATCH_SIZE);
+    commitMaxDelayMicros = config.getLong(Constants.CFG_DATA_LEVELDB_COMMIT_MAX_DELAY_US,
+                                          Constants.DEFAULT_DATA_LEVELDB_COMMIT_MAX_DELAY_US);
   }
 
   /**
@@ -96,6 +106,7 @@ public class LevelDBTableService {
    */
   public void clearTables() {
     tables.clear();
+    commitWriters.clear();
   }
 
   public Collection<String> list() throws Exception {
@@ -134,6 +145,21 @@ public class LevelDBTableService {
     return builder.build();
   }
 
+  /**
+   * Gets the group commit statistics of all tables and resets them.
+   * @return map of table name -> group commit stats since the last call of this method
+   */
+  public Map<TableId, CommitStats> getAndResetCommitStats() {
+    ImmutableMap.Builder<TableId, CommitStats> builder = ImmutableMap.builder();
+    for (Map.Entry<String, LevelDBGroupCommitWriter> entry : commitWriters.entrySet()) {
+      CommitStats stats = entry.getValue().getAndResetStats();
+      if (stats.getBatches() > 0) {
+        builder.put(LevelDBNameConverter.from(entry.getKey()), stats);
+      }
+    }
+    return builder.build();
+  }
+
   // todo: use Guava's utils instead when we switch to v15+
   private static long getSize(File f) {
     if (f.isFile()) {
@@ -170,6 +196,22 @@ public class LevelDBTableService {
     return db;
   }
 
+  /**
+   * Returns the writer that commits increments and swaps of the given table in groups.
+   */
+  LevelDBGroupCommitWriter getGroupCommitWriter(String tableName) throws IOException {
+    LevelDBGroupCommitWriter writer = commitWriters.get(tableName);
+    if (writer == null) {
+      writer = new LevelDBGroupCommitWriter(tableName, this, commitBatchSize,
+                                            commitMaxDelayMicros, TimeUnit.MICROSECONDS);
+      LevelDBGroupCommitWriter existing = commitWriters.putIfAbsent(tableName, writer);
+      if (existing != null) {
+        writer = existing;
+      }
+    }
+    return writer;
+  }
+
   public void ensureTableExists(String tableName) throws IOException {
     DB db = tables.get(tableName);
     if (db == null) {
@@ -220,6 +262,7 @@ public class LevelDBTableService {
   }
 
   public void dropTable(String name) throws IOException {
+    commitWriters.remove(name);
     DB db = tables.remove(name);
     if (db != null) {
       db.close();
@@ -280,4 +323,49 @@ public class LevelDBTableService {
       return diskSizeBytes;
     }
   }
+
+  /**
+   * Represents the group commit stats of a LevelDB table over a period of time.
+   */
+  public static final class CommitStats {
+    private final long batches;
+    private final long requests;
+    private final long totalWaitMillis;
+    private final int maxBatchSize;
+
+    public CommitStats(long batches, long requests, long totalWaitMillis, int maxBatchSize) {
+      this.batches = batches;
+      this.requests = requests;
+      this.totalWaitMillis = totalWaitMillis;
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return number of write batches committed
+     */
+    public long getBatches() {
+      return batches;
+    }
+
+    /**
+     * @return number of increment and swap requests committed
+     */
+    public long getRequests() {
+      return requests;
+    }
+
+    /**
+     * @return sum of the times that the committed requests waited from submission to commit
+     */
+    public long getTotalWaitMillis() {
+      return totalWaitMillis;
+    }
+
+    /**
+     * @return size of the largest batch committed
+     */
+    public int getMaxBatchSize() {
+      return maxBatchSize;
+    }
+  }
 }
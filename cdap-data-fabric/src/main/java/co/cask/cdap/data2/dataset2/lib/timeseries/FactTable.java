@@ -25,7 +25,6 @@ import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
-import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
@@ -61,21 +60,6 @@ public final class FactTable implements Closeable {
   private static final int MAX_RECORDS_TO_SCAN_DURING_SEARCH = 10 * 1000 * 1000;
   private static final int MAX_SCANS_DURING_SEARCH = 10 * 1000;
 
-  private static final Function<byte[], Long> BYTES_TO_LONG = new Function<byte[], Long>() {
-    @Override
-    public Long apply(byte[] input) {
-      return Bytes.toLong(input);
-    }
-  };
-
-  private static final Function<NavigableMap<byte[], byte[]>, NavigableMap<byte[], Long>>
-    TRANSFORM_MAP_BYTE_ARRAY_TO_LONG = new Function<NavigableMap<byte[], byte[]>, NavigableMap<byte[], Long>>() {
-    @Override
-    public NavigableMap<byte[], Long> apply(NavigableMap<byte[], byte[]> input) {
-      return Maps.transformValues(input, BYTES_TO_LONG);
-    }
-  };
-
   private final MetricsTable timeSeriesTable;
   private final EntityTable entityTable;
   private final FactCodec codec;
@@ -85,6 +69,9 @@ public final class FactTable implements Closeable {
 
   private final String putCountMetric;
   private final String incrementCountMetric;
+  private final String measurementCountMetric;
+  private final String cellCountMetric;
+  private final String coalesceRatioMetric;
 
   @Nullable
   private MetricsCollector metrics;
@@ -112,6 +99,9 @@ public final class FactTable implements Closeable {
     this.rollTime = rollTime;
     this.putCountMetric = "factTable." + resolution + ".put.count";
     this.incrementCountMetric = "factTable." + resolution + ".increment.count";
+    this.measurementCountMetric = "factTable." + resolution + ".measurement.count";
+    this.cellCountMetric = "factTable." + resolution + ".cell.count";
+    this.coalesceRatioMetric = "factTable." + resolution + ".coalesce.ratio.percent";
   }
 
   public void setMetricsCollector(MetricsCollector metrics) {
@@ -119,34 +109,49 @@ public final class FactTable implements Closeable {
   }
 
   public void add(List<Fact> facts) {
-    // Simply collecting all rows/cols/values that need to be put to the underlying table.
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    // Collecting all rows/cols/values that need to be written to the underlying table. Measurements that fall into
+    // the same cell are coalesced before touching the table: counters are summed up and the last gauge wins.
+    NavigableMap<byte[], NavigableMap<byte[], Long>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    int measurementCount = 0;
+    int cellCount = 0;
     for (Fact fact : facts) {
       for (Measurement measurement : fact.getMeasurements()) {
         byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
         byte[] column = codec.createColumn(fact.getTimestamp());
 
+        NavigableMap<byte[], Long> row;
         if (MeasureType.COUNTER == measurement.getType()) {
-          inc(incrementsTable, rowKey, column, measurement.getValue());
+          row = getOrCreateRow(incrementsTable, rowKey);
+          Long oldValue = row.get(column);
+          if (oldValue == null) {
+            row.put(column, measurement.getValue());
+            cellCount++;
+          } else {
+            row.put(column, oldValue + measurement.getValue());
+          }
         } else {
-          set(gaugesTable, rowKey, column, Bytes.toBytes(measurement.getValue()));
+          row = getOrCreateRow(gaugesTable, rowKey);
+          if (row.put(column, measurement.getValue()) == null) {
+            cellCount++;
+          }
         }
+        measurementCount++;
       }
     }
 
-    NavigableMap<byte[], NavigableMap<byte[], Long>> convertedIncrementsTable =
-      Maps.transformValues(incrementsTable, TRANSFORM_MAP_BYTE_ARRAY_TO_LONG);
-
-    NavigableMap<byte[], NavigableMap<byte[], Long>> convertedGaugesTable =
-      Maps.transformValues(gaugesTable, TRANSFORM_MAP_BYTE_ARRAY_TO_LONG);
-
     // todo: replace with single call, to be able to optimize rpcs in underlying table
-    timeSeriesTable.put(convertedGaugesTable);
-    timeSeriesTable.increment(convertedIncrementsTable);
+    timeSeriesTable.put(gaugesTable);
+    timeSeriesTable.increment(incrementsTable);
     if (metrics != null) {
-      metrics.increment(putCountMetric, convertedGaugesTable.size());
-      metrics.increment(incrementCountMetric, convertedIncrementsTable.size());
+      metrics.increment(putCountMetric, gaugesTable.size());
+      metrics.increment(incrementCountMetric, incrementsTable.size());
+      metrics.increment(measurementCountMetric, measurementCount);
+      metrics.increment(cellCountMetric, cellCount);
+      if (measurementCount > 0) {
+        // percentage of measurements that were merged into other measurements instead of being written separately
+        metrics.gauge(coalesceRatioMetric, (long) (measurementCount - cellCount) * 100 / measurementCount);
+      }
     }
   }
 
@@ -450,41 +455,14 @@ public final class FactTable implements Closeable {
 
   // todo: shouldn't we aggregate "before" writing to FactTable? We could do it really efficient outside
   //       also: the underlying datasets will do aggregation in memory anyways
-  private static void inc(NavigableMap<byte[], NavigableMap<byte[], byte[]>> incrementsTable,
-                   byte[] rowKey, byte[] column, long value) {
-    byte[] oldValue = get(incrementsTable, rowKey, column);
-    long newValue = value;
-    if (oldValue != null) {
-      if (Bytes.SIZEOF_LONG == oldValue.length) {
-        newValue = Bytes.toLong(oldValue) + value;
-      } else if (Bytes.SIZEOF_INT == oldValue.length) {
-        // In 2.4 and older versions we stored it as int
-        newValue = Bytes.toInt(oldValue) + value;
-      } else {
-        // should NEVER happen, unless the table is screwed up manually
-        throw new IllegalStateException(
-          String.format("Could not parse measure @row %s @column %s value %s as int or long",
-                        Bytes.toStringBinary(rowKey), Bytes.toStringBinary(column), Bytes.toStringBinary(oldValue)));
-      }
-
-    }
-    set(incrementsTable, rowKey, column, Bytes.toBytes(newValue));
-  }
-
-  private static byte[] get(NavigableMap<byte[], NavigableMap<byte[], byte[]>> table, byte[] row, byte[] column) {
-    NavigableMap<byte[], byte[]> rowMap = table.get(row);
-    return rowMap == null ? null : rowMap.get(column);
-  }
-
-  private static void set(NavigableMap<byte[], NavigableMap<byte[], byte[]>> table,
-                          byte[] row, byte[] column, byte[] value) {
-    NavigableMap<byte[], byte[]> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
+  private static NavigableMap<byte[], Long> getOrCreateRow(NavigableMap<byte[], NavigableMap<byte[], Long>> table,
+                                                          byte[] rowKey) {
+    NavigableMap<byte[], Long> row = table.get(rowKey);
+    if (row == null) {
+      row = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      table.put(rowKey, row);
     }
-
-    rowMap.put(column, value);
+    return row;
   }
 
   private String toPrettyLog(byte[] key) {
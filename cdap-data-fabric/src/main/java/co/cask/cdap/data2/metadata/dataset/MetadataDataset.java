@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.AbstractDataset;
 import co.cask.cdap.api.dataset.lib.IndexedTable;
 import co.cask.cdap.api.dataset.table.Delete;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
@@ -52,6 +53,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
@@ -70,6 +72,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
@@ -86,6 +89,8 @@ public class MetadataDataset extends AbstractDataset {
   private static final String HISTORY_COLUMN = "h"; // column for metadata history
   private static final String VALUE_COLUMN = "v";  // column for metadata value
   private static final String TAGS_SEPARATOR = ",";
+  // number of metadata rows to read with one batched get when resolving search hits
+  private static final int SEARCH_BATCH_GET_SIZE = 1000;
 
   // Fuzzy key is of form <row key, key mask>. We want to compare row keys.
   private static final Comparator<ImmutablePair<byte[], byte[]>> FUZZY_KEY_COMPARATOR =
@@ -567,7 +572,7 @@ public class MetadataDataset extends AbstractDataset {
 
   private SearchResults searchByDefaultIndex(String namespaceId, String searchQuery,
                                              Set<MetadataSearchTargetType> types) {
-    List<MetadataEntry> results = new ArrayList<>();
+    List<SearchHit> hits = new ArrayList<>();
     for (String searchTerm : getSearchTerms(namespaceId, searchQuery)) {
       Scanner scanner;
       if (searchTerm.endsWith("*")) {
@@ -582,20 +587,20 @@ public class MetadataDataset extends AbstractDataset {
       try {
         Row next;
         while ((next = scanner.next()) != null) {
-          processRow(results, next, DEFAULT_INDEX_COLUMN, types);
+          processRow(hits, next, DEFAULT_INDEX_COLUMN, types);
         }
       } finally {
         scanner.close();
       }
     }
     // cursors are currently not supported for default indexes
-    return new SearchResults(results, Collections.<String>emptyList());
+    return new SearchResults(resolveHits(hits), Collections.<String>emptyList());
   }
 
   private SearchResults searchByCustomIndex(String namespaceId, Set<MetadataSearchTargetType> types,
                                             SortInfo sortInfo, int offset, int limit, int numCursors,
                                             @Nullable String cursor) {
-    List<MetadataEntry> results = new ArrayList<>();
+    List<SearchHit> hits = new ArrayList<>();
     String indexColumn = getIndexColumn(sortInfo.getSortBy(), sortInfo.getSortOrder());
     // we want to return the first chunk of 'limit' elements after offset
     // in addition, we want to pre-fetch 'numCursors' chunks of size 'limit'
@@ -622,8 +627,8 @@ public class MetadataDataset extends AbstractDataset {
           if (count++ < offset) {
             continue;
           }
-          processRow(results, next, indexColumn, types);
-          if (results.size() % limit == mod && results.size() > limit) {
+          processRow(hits, next, indexColumn, types);
+          if (hits.size() % limit == mod && hits.size() > limit) {
             // add the cursor, with the namespace removed.
             String cursorWithNamespace = Bytes.toString(next.get(indexColumn));
             cursors.add(cursorWithNamespace.substring(cursorWithNamespace.indexOf(KEYVALUE_SEPARATOR) + 1));
@@ -631,11 +636,11 @@ public class MetadataDataset extends AbstractDataset {
         }
       }
     }
-    return new SearchResults(results, cursors);
+    return new SearchResults(resolveHits(hits), cursors);
   }
 
-  private void processRow(List<MetadataEntry> results, Row rowToProcess, String indexColumn,
-                             Set<MetadataSearchTargetType> entityFilter) {
+  private void processRow(List<SearchHit> hits, Row rowToProcess, String indexColumn,
+                          Set<MetadataSearchTargetType> entityFilter) {
     String rowValue = rowToProcess.getString(indexColumn);
     if (rowValue == null) {
       return;
@@ -652,8 +657,47 @@ public class MetadataDataset extends AbstractDataset {
 
     NamespacedEntityId targetId = MdsKey.getNamespacedIdFromKey(targetType, rowKey);
     String key = MdsKey.getMetadataKey(targetType, rowKey);
-    MetadataEntry entry = getMetadata(targetId, key);
-    results.add(entry);
+    hits.add(new SearchHit(targetId, key));
+  }
+
+  /**
+   * Reads the {@link MetadataEntry} for each of the given search hits. Every distinct metadata row is read only
+   * once, with batched gets, even if multiple search terms hit it. The returned list has one entry per hit, in
+   * the order of the hits, because the number of hits per entity is used for weighting the search results.
+   */
+  private List<MetadataEntry> resolveHits(List<SearchHit> hits) {
+    // key of the metadata value row -> resolved entry, null if the row has no value
+    Map<byte[], MetadataEntry> resolved = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    List<SearchHit> toResolve = new ArrayList<>();
+    for (SearchHit hit : hits) {
+      if (!resolved.containsKey(hit.rowKey)) {
+        resolved.put(hit.rowKey, null);
+        toResolve.add(hit);
+      }
+    }
+
+    byte[] valueColumn = Bytes.toBytes(VALUE_COLUMN);
+    for (List<SearchHit> batch : Lists.partition(toResolve, SEARCH_BATCH_GET_SIZE)) {
+      List<Get> gets = new ArrayList<>(batch.size());
+      for (SearchHit hit : batch) {
+        gets.add(new Get(hit.rowKey, valueColumn));
+      }
+      List<Row> rows = indexedTable.get(gets);
+      for (int i = 0; i < batch.size(); i++) {
+        SearchHit hit = batch.get(i);
+        byte[] value = rows.get(i).get(valueColumn);
+        // the value can be null when all tags were removed one by one; the row still exists in that case
+        if (value != null) {
+          resolved.put(hit.rowKey, new MetadataEntry(hit.targetId, hit.key, Bytes.toString(value)));
+        }
+      }
+    }
+
+    List<MetadataEntry> results = new ArrayList<>(hits.size());
+    for (SearchHit hit : hits) {
+      results.add(resolved.get(hit.rowKey));
+    }
+    return results;
   }
 
   /**
@@ -881,4 +925,19 @@ public class MetadataDataset extends AbstractDataset {
   Scanner searchByIndex(String indexColumn, String value) {
     return indexedTable.readByIndex(Bytes.toBytes(indexColumn), Bytes.toBytes(value));
   }
+
+  /**
+   * An index hit of a search, identifying the metadata value row to read.
+   */
+  private static final class SearchHit {
+    private final NamespacedEntityId targetId;
+    private final String key;
+    private final byte[] rowKey;
+
+    SearchHit(NamespacedEntityId targetId, String key) {
+      this.targetId = targetId;
+      this.key = key;
+      this.rowKey = MdsKey.getMDSValueKey(targetId, key).getKey();
+    }
+  }
 }
@@ -91,6 +91,21 @@ public class LevelDBDatasetMetricsReporter extends AbstractScheduledService impl
     if (tableStats.size() > 0) {
       report(tableStats);
     }
+    reportCommitStats(ldbService.getAndResetCommitStats());
+  }
+
+  private void reportCommitStats(Map<TableId, LevelDBTableService.CommitStats> commitStats) {
+    for (Map.Entry<TableId, LevelDBTableService.CommitStats> statEntry : commitStats.entrySet()) {
+      // group commit stats are emitted per table, including system tables such as the metrics tables
+      MetricsContext collector =
+        metricsService.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, statEntry.getKey().getNamespace(),
+                                                  Constants.Metrics.Tag.DATASET, statEntry.getKey().getTableName()));
+      LevelDBTableService.CommitStats stats = statEntry.getValue();
+      collector.increment("dataset.leveldb.commit.batches", stats.getBatches());
+      collector.increment("dataset.leveldb.commit.requests", stats.getRequests());
+      collector.increment("dataset.leveldb.commit.wait.ms", stats.getTotalWaitMillis());
+      collector.gauge("dataset.leveldb.commit.batch.size.max", stats.getMaxBatchSize());
+    }
   }
 
   private void report(Map<TableId, LevelDBTableService.TableStats> datasetStat) throws DatasetManagementException {
@@ -19,6 +19,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.queue.QueueName;
 import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.common.utils.Threads;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
 import co.cask.cdap.data2.queue.DequeueStrategy;
@@ -29,9 +30,11 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TxConstants;
@@ -47,6 +50,11 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -64,6 +72,8 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
   // Multiple of batches to fetch per scan.
   // Number of rows to scan = max(MIN_FETCH_ROWS, dequeueBatchSize * groupSize * PREFETCH_BATCHES)
   private static final int PREFETCH_BATCHES = 10;
+  // Maximum multiple of the number of rows to scan when the batch size adapts to the queue backlog.
+  private static final int MAX_FETCH_SCALE = 8;
 
   private static final Function<SimpleQueueEntry, byte[]> ENTRY_TO_BYTE_ARRAY =
     new Function<SimpleQueueEntry, byte[]>() {
@@ -83,6 +93,15 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
   // Maximum amount of time spent in dequeue to avoid transaction timeout.
   private final long maxDequeueMillis;
 
+  // Whether to scan for the next batch of entries in background while the current batch is being processed.
+  private final boolean prefetchEnabled;
+  private ThreadPoolExecutor prefetchExecutor;
+  private Future<List<ImmutablePair<byte[], Map<byte[], byte[]>>>> prefetch;
+  // The largest row key that has been scanned into the entry cache. Only rows after it can be prefetched.
+  private byte[] maxScannedRow;
+  // Multiple of the number of rows to scan. It adapts to the queue backlog and the processing time of entries.
+  private int fetchScale = 1;
+
   private byte[] scanStartRow;
   private boolean committed;
   protected Transaction transaction;
@@ -117,6 +136,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
                                 "Invalid value for %s", QueueConstants.ConfigKeys.DEQUEUE_TX_PERCENT);
     long txTimeout = TimeUnit.SECONDS.toMillis(cConf.getLong(TxConstants.Manager.CFG_TX_TIMEOUT));
     this.maxDequeueMillis = txTimeout * dequeuePercent / 100;
+    this.prefetchEnabled = cConf.getBoolean(QueueConstants.ConfigKeys.DEQUEUE_PREFETCH, false);
   }
 
   @Override
@@ -209,6 +229,21 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     // No-op by default.
   }
 
+  /**
+   * Stops the background scanning of queue entries. Sub-classes should call this method before releasing
+   * resources used by {@link #getScanner(byte[], byte[], int)}.
+   */
+  protected void stopPrefetch() {
+    if (prefetch != null) {
+      prefetch.cancel(false);
+      prefetch = null;
+    }
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdown();
+      prefetchExecutor = null;
+    }
+  }
+
   private DequeueResult<byte[]> performDequeue(int maxBatchSize) throws IOException {
     Preconditions.checkArgument(maxBatchSize > 0, "Batch size must be > 0.");
 
@@ -316,21 +351,33 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     long readPointer = transaction.getReadPointer();
 
     // Scan the table for queue entries.
-    int numRows = Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES);
-    QueueScanner scanner = getScanner(scanStartRow,
-                                      QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction),
-                                      numRows);
+    int numRows = Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES) * fetchScale;
+    byte[] stopRow = QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction);
+
+    // Use the prefetched entries if there are any. They are the rows after the ones that were already scanned.
+    QueueScanner scanner = takePrefetch();
+    boolean prefetched = scanner != null;
+    if (scanner == null) {
+      scanner = getScanner(scanStartRow, stopRow, numRows);
+    }
+
+    byte[] lastRow = null;
+    boolean reachedEnd = false;
+    boolean skippedInProgress = false;
     try {
       // Try fill up the cache
-      boolean firstScannedRow = true;
+      // The scan start row can only be advanced by a scan that starts from it
+      boolean firstScannedRow = !prefetched;
       while (entryCache.size() < numRows) {
         ImmutablePair<byte[], Map<byte[], byte[]>> entry = scanner.next();
         if (entry == null) {
           // No more result, breaking out.
+          reachedEnd = true;
           break;
         }
 
         byte[] rowKey = entry.getFirst();
+        lastRow = rowKey;
         if (excludeRows.contains(rowKey)) {
           continue;
         }
@@ -348,10 +395,12 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
         // If writes later than the reader pointer, abort the loop, as entries that comes later are all uncommitted.
         // this is probably not needed due to the limit of the scan to the stop row, but to be safe...
         if (writePointer > readPointer) {
+          reachedEnd = true;
           break;
         }
         // If the write is in the excluded list, ignore it.
         if (transaction.isExcluded(writePointer)) {
+          skippedInProgress = true;
           continue;
         }
 
@@ -380,6 +429,113 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     } finally {
       scanner.close();
     }
+
+    if (!prefetchEnabled) {
+      return;
+    }
+    if (lastRow != null && (maxScannedRow == null || Bytes.compareTo(lastRow, maxScannedRow) > 0)) {
+      maxScannedRow = lastRow;
+    }
+
+    // Adapt the number of rows to scan. Scan more if there is backlog in the queue and the entries are processed
+    // faster than they are prefetched, so that each scan round trip is amortized over more entries.
+    // Scan less when reaching the end of the queue.
+    if (!reachedEnd && !prefetched) {
+      fetchScale = Math.min(MAX_FETCH_SCALE, fetchScale * 2);
+    } else if (reachedEnd && entryCache.size() < numRows / 2) {
+      fetchScale = Math.max(1, fetchScale / 2);
+    }
+
+    // Entries skipped because of in progress transactions can only be picked up by scanning from the start row again,
+    // hence only prefetch if nothing was skipped. Also, a transaction that was in progress may not have persisted
+    // its entries yet, which would then be written before the largest scanned row and be missed by prefetching.
+    // Hence only prefetch if the largest scanned row was written before the earliest in progress transaction.
+    if (!reachedEnd && !skippedInProgress && maxScannedRow != null
+      && QueueEntryRow.getWritePointer(maxScannedRow, queueRowPrefix.length) < transaction.getFirstInProgress()) {
+      startPrefetch(numRows);
+    }
+  }
+
+  /**
+   * Starts scanning for the rows after the largest scanned row in background.
+   */
+  private void startPrefetch(final int numRows) throws IOException {
+    long writePointer = QueueEntryRow.getWritePointer(maxScannedRow, queueRowPrefix.length);
+    int counter = Bytes.toInt(maxScannedRow, maxScannedRow.length - Ints.BYTES, Ints.BYTES);
+    byte[] startRow = getNextRow(Arrays.copyOf(maxScannedRow, maxScannedRow.length), writePointer, counter);
+
+    // The scanner may filter out the entries that are excluded by the current transaction (e.g. the HBase
+    // DequeueFilter does so on the region server), while the rows are consumed by a later transaction, in which
+    // those entries can be visible. Hence only prefetch the rows written before the earliest in progress transaction.
+    long stopWritePointer = Math.min(transaction.getReadPointer() + 1, transaction.getFirstInProgress());
+    byte[] stopRow = Bytes.add(queueRowPrefix, Bytes.toBytes(stopWritePointer));
+
+    // Create the scanner in the caller thread, as it may need to access states of this consumer.
+    final QueueScanner scanner = getScanner(startRow, stopRow, numRows);
+    if (prefetchExecutor == null) {
+      String threadName = "queue-prefetch-" + queueName.getSimpleName() + "-%d";
+      prefetchExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                Threads.createDaemonThreadFactory(threadName));
+      prefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+    prefetch = prefetchExecutor.submit(new Callable<List<ImmutablePair<byte[], Map<byte[], byte[]>>>>() {
+      @Override
+      public List<ImmutablePair<byte[], Map<byte[], byte[]>>> call() throws Exception {
+        List<ImmutablePair<byte[], Map<byte[], byte[]>>> rows = Lists.newArrayListWithCapacity(numRows);
+        try {
+          ImmutablePair<byte[], Map<byte[], byte[]>> row = scanner.next();
+          while (row != null && rows.size() < numRows) {
+            rows.add(row);
+            row = scanner.next();
+          }
+        } finally {
+          scanner.close();
+        }
+        return rows;
+      }
+    });
+  }
+
+  /**
+   * Returns a {@link QueueScanner} over the prefetched rows or {@code null} if there is no prefetched row.
+   */
+  @Nullable
+  private QueueScanner takePrefetch() {
+    if (prefetch == null) {
+      return null;
+    }
+    Future<List<ImmutablePair<byte[], Map<byte[], byte[]>>>> future = prefetch;
+    prefetch = null;
+
+    // If the prefetch is not completed yet, entries are processed faster than they are fetched.
+    if (!future.isDone()) {
+      fetchScale = Math.min(MAX_FETCH_SCALE, fetchScale * 2);
+    }
+
+    final List<ImmutablePair<byte[], Map<byte[], byte[]>>> rows;
+    try {
+      rows = Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      // Fallback to normal scan
+      LOG.warn("Failed to prefetch entries from queue {}", queueName, e.getCause());
+      return null;
+    }
+    if (rows.isEmpty()) {
+      return null;
+    }
+
+    final Iterator<ImmutablePair<byte[], Map<byte[], byte[]>>> iterator = rows.iterator();
+    return new QueueScanner() {
+      @Override
+      public ImmutablePair<byte[], Map<byte[], byte[]>> next() throws IOException {
+        return iterator.hasNext() ? iterator.next() : null;
+      }
+
+      @Override
+      public void close() throws IOException {
+        // no-op
+      }
+    };
   }
 
   private byte[] encodeStateColumn(ConsumerEntryState state) {
@@ -29,6 +29,7 @@ public final class QueueConstants {
     public static final String QUEUE_TABLE_COPROCESSOR_DIR = "data.queue.table.coprocessor.dir";
     public static final String QUEUE_TABLE_PRESPLITS = "data.queue.table.presplits";
     public static final String DEQUEUE_TX_PERCENT = "data.queue.dequeue.tx.percent";
+    public static final String DEQUEUE_PREFETCH = "data.queue.dequeue.prefetch";
   }
 
   // This is a hardcoded value for the row key distributor bucket size before CDAP-1946
@@ -36,6 +36,7 @@ import co.cask.cdap.data2.transaction.queue.AbstractQueueAdmin;
 import co.cask.cdap.data2.transaction.queue.QueueConfigurer;
 import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
+import co.cask.cdap.data2.transaction.stream.hbase.HBaseStreamConsumerTableAdmin;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.data2.util.hbase.HTableDescriptorBuilder;
@@ -259,6 +260,13 @@ public class HBaseQueueAdmin extends AbstractQueueAdmin implements ProgramContex
           }
           upgrade(tableId, properties);
           LOG.info("Upgraded queue table: {}", tableId);
+        } else if (isStreamConsumerTable(tableId)) {
+          LOG.info("Upgrading stream consumer table: {}", tableId);
+          try (AbstractHBaseDataSetAdmin dsAdmin = new HBaseStreamConsumerTableAdmin(tableId, hConf, cConf, tableUtil,
+                                                                                     locationFactory)) {
+            dsAdmin.upgrade();
+          }
+          LOG.info("Upgraded stream consumer table: {}", tableId);
         } else if (isStateStoreTable(tableId)) {
           stateStoreTableIds.add(tableId);
         }
@@ -471,6 +479,17 @@ public class HBaseQueueAdmin extends AbstractQueueAdmin implements ProgramContex
     return false;
   }
 
+  /**
+   * @param tableId TableId being checked
+   * @return true if the given table stores the consuming states of the consumers of a stream
+   */
+  private boolean isStreamConsumerTable(TableId tableId) {
+    // Stream consumer tables are named as system.stream.[stream].[app].[flow], see AbstractStreamFileConsumerFactory
+    String tableName = tableId.getTableName();
+    String prefix = NamespaceId.SYSTEM.getNamespace() + "." + QueueConstants.QueueType.STREAM.toString() + ".";
+    return tableName.startsWith(prefix) && tableName.split("\\.").length > 4;
+  }
+
   private boolean isStateStoreTable(TableId tableId) {
     return tableId.getTableName().equals(getConfigTableName());
   }
@@ -147,6 +147,7 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
       return;
     }
     closed = true;
+    stopPrefetch();
     Closeables.closeQuietly(queueStrategy);
     Closeables.closeQuietly(stateStore);
     Closeables.closeQuietly(hTable);
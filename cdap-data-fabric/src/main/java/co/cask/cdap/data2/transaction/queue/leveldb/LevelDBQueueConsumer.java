@@ -83,6 +83,7 @@ public final class LevelDBQueueConsumer extends AbstractQueueConsumer {
 
   @Override
   public void close() throws IOException {
+    stopPrefetch();
     try {
       if (transaction != null) {
         // Use whatever last transaction for eviction.
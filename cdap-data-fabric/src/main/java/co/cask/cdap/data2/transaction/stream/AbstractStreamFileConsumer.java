@@ -54,6 +54,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -154,6 +155,12 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
 
   private final StreamConsumerState consumerState;
   private final List<StreamEventOffset> eventCache;
+
+  // Reusable lists for collecting a batch of entries to claim
+  private final List<StreamEventOffset> claimEvents;
+  private final List<byte[]> claimRows;
+  private final List<byte[]> claimStates;
+
   private Transaction transaction;
   private List<PollStreamEvent> polledEvents;
   private long nextPersistStateTime;
@@ -192,6 +199,9 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     this.entryStatesScanCompleted = Sets.newTreeSet(ROW_PREFIX_COMPARATOR);
 
     this.eventCache = Lists.newArrayList();
+    this.claimEvents = Lists.newArrayList();
+    this.claimRows = Lists.newArrayList();
+    this.claimStates = Lists.newArrayList();
     this.consumerState = beginConsumerState;
     this.lastPersistedState = new StreamConsumerState(beginConsumerState);
     this.stateColumnName = Bytes.add(QueueEntryRow.STATE_COLUMN_PREFIX, Bytes.toBytes(consumerConfig.getGroupId()));
@@ -203,6 +213,26 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
 
   protected abstract boolean claimFifoEntry(byte[] row, byte[] value, byte[] oldValue) throws IOException;
 
+  /**
+   * Claims a batch of entries for FIFO consumer. Sub-classes can override this method to claim entries with
+   * fewer calls to the backing store. The default implementation calls
+   * {@link #claimFifoEntry(byte[], byte[], byte[])} for each of the entries.
+   *
+   * @param rows row keys of the entries to claim
+   * @param value the state value to write for the claimed entries
+   * @param oldValues the expected current state values of the entries, in the same order as the row keys
+   * @return a {@link BitSet} that has bit {@code i} set if the entry of {@code rows.get(i)} is claimed
+   */
+  protected BitSet claimFifoEntries(List<byte[]> rows, byte[] value, List<byte[]> oldValues) throws IOException {
+    BitSet claimed = new BitSet(rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      if (claimFifoEntry(rows.get(i), value, oldValues.get(i))) {
+        claimed.set(i);
+      }
+    }
+    return claimed;
+  }
+
   protected abstract void updateState(Iterable<byte[]> rows, int size, byte[] value) throws IOException;
 
   protected abstract void undoState(Iterable<byte[]> rows, int size) throws IOException;
@@ -451,14 +481,43 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     Iterator<? extends StreamEventOffset> iterator = Iterators.consumingIterator(source.iterator());
     int eventsClaimed = 0;
     while (result.size() < maxEvents && iterator.hasNext()) {
-      StreamEventOffset event = iterator.next();
-      byte[] stateRow = claimEntry(event.getOffset(), stateContent);
-      if (stateRow == null) {
-        continue;
+      // Collect entries that are not known to be skipped, up to the number of events still needed,
+      // and claim them as one batch.
+      int batchSize = maxEvents - result.size();
+      claimEvents.clear();
+      claimRows.clear();
+      claimStates.clear();
+      while (claimRows.size() < batchSize && iterator.hasNext()) {
+        StreamEventOffset event = iterator.next();
+        byte[] row = getStateRow(event.getOffset());
+        SortedMap<byte[], byte[]> rowStates = getInitRowStates(row);
+
+        // See if the entry should be ignored. If it is in the rowStates with null value, then it should be ignored.
+        byte[] rowState = rowStates.get(row);
+        if (rowStates.containsKey(row) && rowState == null) {
+          continue;
+        }
+        claimEvents.add(event);
+        claimRows.add(row);
+        claimStates.add(rowState);
+      }
+
+      // Only need to claim entry if FIFO and group size > 1
+      // For Hash, RR and FIFO with group size == 1, no need to claim and check,
+      // as it's already handled by the readFilter
+      BitSet claimed = null;
+      if (!claimRows.isEmpty() && consumerConfig.getDequeueStrategy() == DequeueStrategy.FIFO
+        && consumerConfig.getGroupSize() > 1) {
+        claimed = claimFifoEntries(claimRows, stateContent, claimStates);
+      }
+      for (int i = 0; i < claimRows.size(); i++) {
+        if (claimed == null || claimed.get(i)) {
+          result.add(new PollStreamEvent(claimEvents.get(i), claimRows.get(i)));
+          eventsClaimed++;
+        }
       }
-      result.add(new PollStreamEvent(event, stateRow));
-      eventsClaimed++;
     }
+    claimEvents.clear();
     return eventsClaimed;
   }
 
@@ -492,32 +551,13 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
   }
 
   /**
-   * Try to claim a stream event offset.
-   *
-   * @return The row key for writing to the state table if successfully claimed or {@code null} if not claimed.
+   * Returns the state table row key for the given stream event offset.
    */
-  private byte[] claimEntry(StreamFileOffset offset, byte[] claimedStateContent) throws IOException {
+  private byte[] getStateRow(StreamFileOffset offset) throws IOException {
     ByteArrayDataOutput out = ByteStreams.newDataOutput(50);
     out.writeLong(consumerConfig.getGroupId());
     StreamUtils.encodeOffset(out, offset);
-    byte[] row = out.toByteArray();
-
-    SortedMap<byte[], byte[]> rowStates = getInitRowStates(row);
-
-    // See if the entry should be ignored. If it is in the rowStates with null value, then it should be ignored.
-    byte[] rowState = rowStates.get(row);
-    if (rowStates.containsKey(row) && rowState == null) {
-      return null;
-    }
-
-    // Only need to claim entry if FIFO and group size > 1
-    if (consumerConfig.getDequeueStrategy() == DequeueStrategy.FIFO && consumerConfig.getGroupSize() > 1) {
-      return claimFifoEntry(row, claimedStateContent, rowState) ? row : null;
-    }
-
-    // For Hash, RR and FIFO with group size == 1, no need to claim and check,
-    // as it's already handled by the readFilter
-    return row;
+    return out.toByteArray();
   }
 
   /**
@@ -528,6 +568,8 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
    * the stream file).
    * However, due to memory limit, scanning is done progressively until it sees an entry with state value
    * written with transaction write pointer later than the this consumer starts.
+   * Once a scan reaches the end of the stream file, the cached states are used for all later polls without
+   * scanning the state table again.
    *
    * @param row the entry row key.
    */
@@ -554,14 +596,17 @@ public abstract class AbstractStreamFileConsumer implements StreamConsumer {
     try (StateScanner scanner = scanStates(row, stopRow)) {
       // Scan until MAX_SCAN_ROWS or exhausted the scanner
       int rowCached = 0;
-      while (scanner.nextStateRow() && rowCached < MAX_SCAN_ROWS) {
+      boolean hasMore = scanner.nextStateRow();
+      while (hasMore && rowCached < MAX_SCAN_ROWS) {
         if (storeInitState(scanner.getRow(), scanner.getState(), rowStates)) {
           rowCached++;
         }
+        hasMore = scanner.nextStateRow();
       }
 
-      // If no row is cached, no need to scan again, as they'll be inserted after this consumer starts
-      if (rowCached == 0) {
+      // If no row is cached or the scanner is exhausted, no need to scan again,
+      // as rows not yet seen will be inserted after this consumer starts
+      if (rowCached == 0 || !hasMore) {
         entryStatesScanCompleted.add(row);
       }
     }
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.transaction.stream.hbase;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data2.dataset2.lib.hbase.AbstractHBaseDataSetAdmin;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
+import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
+import co.cask.cdap.data2.util.TableId;
+import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
+import co.cask.cdap.data2.util.hbase.HTableDescriptorBuilder;
+import co.cask.cdap.hbase.wd.AbstractRowKeyDistributor;
+import co.cask.cdap.hbase.wd.RowKeyDistributorByHashPrefix;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Coprocessor;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.twill.filesystem.Location;
+import org.apache.twill.filesystem.LocationFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admin for the HBase table that stores the consuming states of stream consumers.
+ */
+public final class HBaseStreamConsumerTableAdmin extends AbstractHBaseDataSetAdmin {
+
+  private final LocationFactory locationFactory;
+
+  public HBaseStreamConsumerTableAdmin(TableId tableId, Configuration hConf, CConfiguration cConf,
+                                       HBaseTableUtil tableUtil, LocationFactory locationFactory) {
+    super(tableId, hConf, cConf, tableUtil);
+    this.locationFactory = locationFactory;
+  }
+
+  @Override
+  public void create() throws IOException {
+    int splits = cConf.getInt(Constants.Stream.CONSUMER_TABLE_PRESPLITS);
+    AbstractRowKeyDistributor distributor = new RowKeyDistributorByHashPrefix(
+      new RowKeyDistributorByHashPrefix.OneByteSimpleHash(splits));
+
+    byte[][] splitKeys = HBaseTableUtil.getSplitKeys(splits, splits, distributor);
+
+    HTableDescriptorBuilder htd = tableUtil.buildHTableDescriptor(tableId);
+
+    HColumnDescriptor hcd = new HColumnDescriptor(QueueEntryRow.COLUMN_FAMILY);
+    hcd.setMaxVersions(1);
+
+    htd.addFamily(hcd);
+    htd.setValue(QueueConstants.DISTRIBUTOR_BUCKETS, Integer.toString(splits));
+
+    // Add the coprocessor for claiming entries in batches
+    CoprocessorJar coprocessorJar = createCoprocessorJar();
+    for (Class<? extends Coprocessor> coprocessor : coprocessorJar.getCoprocessors()) {
+      addCoprocessor(htd, coprocessor, coprocessorJar.getJarLocation(), coprocessorJar.getPriority(coprocessor));
+    }
+
+    try (HBaseAdmin admin = new HBaseAdmin(hConf)) {
+      tableUtil.createTableIfNotExists(admin, tableId, htd.build(), splitKeys,
+                                       QueueConstants.MAX_CREATE_TABLE_WAIT, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  protected CoprocessorJar createCoprocessorJar() throws IOException {
+    List<Class<? extends Coprocessor>> coprocessors =
+      ImmutableList.<Class<? extends Coprocessor>>of(tableUtil.getStreamConsumerClaimObserverClassForVersion());
+
+    Location jarDir = locationFactory.create(cConf.get(QueueConstants.ConfigKeys.QUEUE_TABLE_COPROCESSOR_DIR,
+                                                       QueueConstants.DEFAULT_QUEUE_TABLE_COPROCESSOR_DIR));
+    Location jarFile = HBaseTableUtil.createCoProcessorJar(QueueConstants.QueueType.STREAM.toString(),
+                                                           jarDir, coprocessors);
+    return new CoprocessorJar(coprocessors, jarFile);
+  }
+
+  @Override
+  protected boolean needsUpdate(HTableDescriptor tableDescriptor) {
+    return false;
+  }
+}
@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.data2.transaction.stream.hbase;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.ReadFilter;
@@ -32,6 +33,7 @@ import co.cask.cdap.hbase.wd.AbstractRowKeyDistributor;
 import co.cask.cdap.hbase.wd.DistributedScanner;
 import co.cask.cdap.proto.id.StreamId;
 import com.google.common.collect.Lists;
+import org.apache.hadoop.hbase.client.Append;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
@@ -41,6 +43,8 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Threads;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
@@ -56,25 +60,35 @@ import javax.annotation.concurrent.NotThreadSafe;
 @NotThreadSafe
 public final class HBaseStreamFileConsumer extends AbstractStreamFileConsumer {
 
+  /**
+   * Attribute of the {@link Append} operations that claim entries, carrying the expected current state value.
+   * The claim is performed by the stream consumer claim coprocessor.
+   */
+  public static final String CLAIM_EXPECTED_STATE = "cdap.stream.claim";
+
   private final HBaseTableUtil tableUtil;
   private final HTable hTable;
   private final AbstractRowKeyDistributor keyDistributor;
   private final ExecutorService scanExecutor;
+  private final boolean batchClaim;
 
   /**
    * Constructor.
+   *
+   * @param batchClaim {@code true} to claim entries in batches, which requires the claim coprocessor on the table
    */
   public HBaseStreamFileConsumer(CConfiguration cConf, StreamConfig streamConfig,
                                  ConsumerConfig consumerConfig, HBaseTableUtil tableUtil, HTable hTable,
                                  FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader,
                                  StreamConsumerStateStore stateStore, StreamConsumerState beginConsumerState,
                                  @Nullable ReadFilter extraFilter,
-                                 AbstractRowKeyDistributor keyDistributor) {
+                                 AbstractRowKeyDistributor keyDistributor, boolean batchClaim) {
     super(cConf, streamConfig, consumerConfig, reader, stateStore, beginConsumerState, extraFilter);
     this.tableUtil = tableUtil;
     this.hTable = hTable;
     this.keyDistributor = keyDistributor;
     this.scanExecutor = createScanExecutor(streamConfig.getStreamId());
+    this.batchClaim = batchClaim;
   }
 
   @Override
@@ -90,6 +104,39 @@ public final class HBaseStreamFileConsumer extends AbstractStreamFileConsumer {
     return hTable.checkAndPut(put.getRow(), QueueEntryRow.COLUMN_FAMILY, stateColumnName, oldValue, put);
   }
 
+  @Override
+  protected BitSet claimFifoEntries(List<byte[]> rows, byte[] value, List<byte[]> oldValues) throws IOException {
+    if (!batchClaim) {
+      return super.claimFifoEntries(rows, value, oldValues);
+    }
+
+    // Claims all entries with one batch call. The claim coprocessor performs a check-and-put for each append.
+    List<Append> appends = Lists.newArrayListWithCapacity(rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      Append append = new Append(keyDistributor.getDistributedKey(rows.get(i)));
+      append.add(QueueEntryRow.COLUMN_FAMILY, stateColumnName, value);
+      byte[] oldValue = oldValues.get(i);
+      append.setAttribute(CLAIM_EXPECTED_STATE, oldValue == null ? Bytes.EMPTY_BYTE_ARRAY : oldValue);
+      appends.add(append);
+    }
+
+    Object[] results = new Object[appends.size()];
+    try {
+      hTable.batch(appends, results);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while claiming entries of stream " + getStreamId());
+    }
+
+    BitSet claimed = new BitSet(rows.size());
+    for (int i = 0; i < results.length; i++) {
+      if (results[i] instanceof Result && !((Result) results[i]).isEmpty()) {
+        claimed.set(i);
+      }
+    }
+    return claimed;
+  }
+
   @Override
   protected void updateState(Iterable<byte[]> rows, int size, byte[] value) throws IOException {
     List<Put> puts = Lists.newArrayListWithCapacity(size);
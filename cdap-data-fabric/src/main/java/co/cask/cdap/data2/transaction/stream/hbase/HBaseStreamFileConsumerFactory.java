@@ -23,7 +23,6 @@ import co.cask.cdap.data.stream.StreamEventOffset;
 import co.cask.cdap.data.stream.StreamFileOffset;
 import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.transaction.queue.QueueConstants;
-import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.stream.AbstractStreamFileConsumerFactory;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
@@ -33,38 +32,40 @@ import co.cask.cdap.data2.transaction.stream.StreamConsumerStateStore;
 import co.cask.cdap.data2.transaction.stream.StreamConsumerStateStoreFactory;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
-import co.cask.cdap.data2.util.hbase.HTableDescriptorBuilder;
 import co.cask.cdap.hbase.wd.AbstractRowKeyDistributor;
 import co.cask.cdap.hbase.wd.RowKeyDistributorByHashPrefix;
 import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.twill.filesystem.LocationFactory;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
  * A {@link co.cask.cdap.data2.transaction.stream.StreamConsumerFactory} that reads from stream file
  * and uses HBase as the store for consumer process states.
  */
-public final class HBaseStreamFileConsumerFactory extends AbstractStreamFileConsumerFactory {
+public class HBaseStreamFileConsumerFactory extends AbstractStreamFileConsumerFactory {
 
   private final HBaseTableUtil tableUtil;
   private final CConfiguration cConf;
   private final Configuration hConf;
+  private final LocationFactory locationFactory;
 
   @Inject
   HBaseStreamFileConsumerFactory(StreamAdmin streamAdmin, StreamConsumerStateStoreFactory stateStoreFactory,
-                                 CConfiguration cConf, Configuration hConf, HBaseTableUtil tableUtil) {
+                                 CConfiguration cConf, Configuration hConf, HBaseTableUtil tableUtil,
+                                 LocationFactory locationFactory) {
     super(cConf, streamAdmin, stateStoreFactory);
     this.hConf = hConf;
     this.cConf = cConf;
     this.tableUtil = tableUtil;
+    this.locationFactory = locationFactory;
   }
 
   @Override
@@ -73,33 +74,25 @@ public final class HBaseStreamFileConsumerFactory extends AbstractStreamFileCons
                                   FileReader<StreamEventOffset, Iterable<StreamFileOffset>> reader,
                                   @Nullable ReadFilter extraFilter) throws IOException {
 
-    int splits = cConf.getInt(Constants.Stream.CONSUMER_TABLE_PRESPLITS);
-    AbstractRowKeyDistributor distributor = new RowKeyDistributorByHashPrefix(
-      new RowKeyDistributorByHashPrefix.OneByteSimpleHash(splits));
-
-    byte[][] splitKeys = HBaseTableUtil.getSplitKeys(splits, splits, distributor);
-
     TableId hBaseTableId = tableUtil.createHTableId(new NamespaceId(tableId.getNamespace()), tableId.getTableName());
-    HTableDescriptorBuilder htd = tableUtil.buildHTableDescriptor(hBaseTableId);
-
-    HColumnDescriptor hcd = new HColumnDescriptor(QueueEntryRow.COLUMN_FAMILY);
-    hcd.setMaxVersions(1);
-
-    htd.addFamily(hcd);
-    htd.setValue(QueueConstants.DISTRIBUTOR_BUCKETS, Integer.toString(splits));
-
-    try (HBaseAdmin admin = new HBaseAdmin(hConf)) {
-      tableUtil.createTableIfNotExists(admin, hBaseTableId, htd.build(), splitKeys,
-                                       QueueConstants.MAX_CREATE_TABLE_WAIT, TimeUnit.MILLISECONDS);
+    HBaseStreamConsumerTableAdmin tableAdmin = new HBaseStreamConsumerTableAdmin(hBaseTableId, hConf, cConf,
+                                                                                 tableUtil, locationFactory);
+    if (!tableAdmin.exists()) {
+      tableAdmin.create();
     }
 
-    HTable hTable = tableUtil.createHTable(hConf, hBaseTableId);
+    HTable hTable = createHTable(hBaseTableId);
     hTable.setWriteBufferSize(Constants.Stream.HBASE_WRITE_BUFFER_SIZE);
     hTable.setAutoFlush(false);
 
+    // Tables created before the claim coprocessor was introduced only get it when CDAP is upgraded
+    HTableDescriptor tableDescriptor = hTable.getTableDescriptor();
+    boolean batchClaim =
+      tableDescriptor.hasCoprocessor(tableUtil.getStreamConsumerClaimObserverClassForVersion().getName());
+
     return new HBaseStreamFileConsumer(cConf, streamConfig, consumerConfig, tableUtil, hTable, reader,
                                        stateStore, beginConsumerState, extraFilter,
-                                       createKeyDistributor(hTable.getTableDescriptor()));
+                                       createKeyDistributor(tableDescriptor), batchClaim);
   }
 
   @Override
@@ -112,6 +105,11 @@ public final class HBaseStreamFileConsumerFactory extends AbstractStreamFileCons
     }
   }
 
+  @VisibleForTesting
+  HTable createHTable(TableId hBaseTableId) throws IOException {
+    return tableUtil.createHTable(hConf, hBaseTableId);
+  }
+
   /**
    * Creates a {@link AbstractRowKeyDistributor} based on the meta data in the given {@link HTableDescriptor}.
    */
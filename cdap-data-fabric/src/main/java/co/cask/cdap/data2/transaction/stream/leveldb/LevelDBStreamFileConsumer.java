@@ -35,6 +35,8 @@ import org.apache.tephra.Transaction;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import javax.annotation.Nullable;
@@ -90,6 +92,33 @@ public final class LevelDBStreamFileConsumer extends AbstractStreamFileConsumer
     }
   }
 
+  @Override
+  protected BitSet claimFifoEntries(List<byte[]> rows, byte[] value, List<byte[]> oldValues) throws IOException {
+    BitSet claimed = new BitSet(rows.size());
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+
+    // Check all entries and write the claimed ones with a single persist call
+    synchronized (dbLock) {
+      for (int i = 0; i < rows.size(); i++) {
+        byte[] row = rows.get(i);
+        Map<byte[], byte[]> values =
+          tableCore.getRow(row, new byte[][] { stateColumnName }, null, null, -1, Transaction.ALL_VISIBLE_LATEST);
+        if (!Arrays.equals(values.get(stateColumnName), oldValues.get(i))) {
+          continue;
+        }
+        NavigableMap<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        columns.put(stateColumnName, value);
+        changes.put(row, columns);
+        claimed.set(i);
+      }
+
+      if (!changes.isEmpty()) {
+        tableCore.persist(changes, KeyValue.LATEST_TIMESTAMP);
+      }
+    }
+    return claimed;
+  }
+
   @Override
   protected void updateState(Iterable<byte[]> rows, int size, byte[] value) throws IOException {
     NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
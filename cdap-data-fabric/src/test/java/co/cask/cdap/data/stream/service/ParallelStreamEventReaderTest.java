@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data.stream.service;
+
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.security.DefaultImpersonator;
+import co.cask.cdap.common.security.Impersonator;
+import co.cask.cdap.data.file.FileReader;
+import co.cask.cdap.data.file.ReadFilter;
+import co.cask.cdap.data.stream.StreamEventOffset;
+import co.cask.cdap.data.stream.StreamFileOffset;
+import co.cask.cdap.data.stream.StreamFileType;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.apache.twill.filesystem.LocationFactory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link ParallelStreamEventReader}.
+ */
+public class ParallelStreamEventReaderTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  // Duration of each partition in seconds
+  private static final long PARTITION_DURATION = 10L;
+  private static final int EVENTS_PER_PARTITION = 1000;
+  private static final int PARTITIONS = 5;
+
+  private static final Impersonator IMPERSONATOR = new DefaultImpersonator(CConfiguration.create(), null, null);
+
+  private static LocationFactory locationFactory;
+  private static ExecutorService executor;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    locationFactory = new LocalLocationFactory(TMP_FOLDER.newFolder());
+    // Fewer threads than partitions, so that the reader has to start reading partitions as earlier ones are done
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterClass
+  public static void finish() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testReadInOrder() throws Exception {
+    TestReaderFactory readerFactory = new TestReaderFactory(-1);
+    List<StreamEvent> events = readAll(readerFactory, 0L, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    Assert.assertEquals(PARTITIONS * EVENTS_PER_PARTITION, events.size());
+    for (int i = 0; i < events.size(); i++) {
+      Assert.assertEquals(getTimestamp(i / EVENTS_PER_PARTITION, i % EVENTS_PER_PARTITION),
+                          events.get(i).getTimestamp());
+    }
+    Assert.assertEquals(PARTITIONS, readerFactory.created.get());
+    Assert.assertEquals(PARTITIONS, readerFactory.closed.get());
+  }
+
+  @Test
+  public void testTimeRange() throws Exception {
+    // Starts in the middle of the second partition and ends in the middle of the fourth partition
+    long startTime = getTimestamp(1, 100);
+    long endTime = getTimestamp(3, 50);
+    List<StreamEvent> events = readAll(new TestReaderFactory(-1), startTime, endTime, Integer.MAX_VALUE);
+
+    Assert.assertEquals((EVENTS_PER_PARTITION - 100) + EVENTS_PER_PARTITION + 50, events.size());
+    Assert.assertEquals(startTime, events.get(0).getTimestamp());
+    long lastTimestamp = -1L;
+    for (StreamEvent event : events) {
+      Assert.assertTrue(event.getTimestamp() > lastTimestamp);
+      Assert.assertTrue(event.getTimestamp() < endTime);
+      lastTimestamp = event.getTimestamp();
+    }
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    TestReaderFactory readerFactory = new TestReaderFactory(2);
+    ParallelStreamEventReader reader = createReader(readerFactory, 0L, Long.MAX_VALUE, Integer.MAX_VALUE);
+    List<StreamEvent> events = new ArrayList<>();
+    try {
+      while (reader.read(events, 100) >= 0) {
+        // Keep reading until failure
+      }
+      Assert.fail("Expected failure when reading the third partition");
+    } catch (IOException e) {
+      // Expected. All events before the failed partition are read.
+      Assert.assertEquals(2 * EVENTS_PER_PARTITION, events.size());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    TestReaderFactory readerFactory = new TestReaderFactory(-1);
+    ParallelStreamEventReader reader = createReader(readerFactory, 0L, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    // Only read a few events. The prefetch tasks are left blocked on full buffers, since each partition has more
+    // events than the buffer can hold.
+    List<StreamEvent> events = new ArrayList<>();
+    Assert.assertEquals(10, reader.read(events, 10));
+    reader.close();
+
+    // Prefetch tasks should stop and close their readers, leaving the partitions not yet started untouched
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (readerFactory.closed.get() < readerFactory.created.get() && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+    Assert.assertEquals(readerFactory.created.get(), readerFactory.closed.get());
+    Assert.assertTrue(readerFactory.created.get() < PARTITIONS);
+  }
+
+  private List<StreamEvent> readAll(TestReaderFactory readerFactory, long startTime,
+                                    long endTime, int limit) throws Exception {
+    List<StreamEvent> events = new ArrayList<>();
+    try (ParallelStreamEventReader reader = createReader(readerFactory, startTime, endTime, limit)) {
+      while (reader.read(events, 30) >= 0) {
+        // Keep reading until all partitions are exhausted
+      }
+    }
+    return events;
+  }
+
+  private ParallelStreamEventReader createReader(TestReaderFactory readerFactory, long startTime,
+                                                 long endTime, int limit) throws IOException {
+    List<Location> partitions = new ArrayList<>();
+    for (int i = 0; i < PARTITIONS; i++) {
+      partitions.add(locationFactory.create(String.format("%d.%d", i * PARTITION_DURATION, PARTITION_DURATION)));
+    }
+    return new ParallelStreamEventReader(executor, 3, IMPERSONATOR, NamespaceId.DEFAULT, readerFactory,
+                                         partitions, startTime, endTime, limit);
+  }
+
+  /**
+   * Returns the timestamp of the given event in the given partition.
+   */
+  private static long getTimestamp(int partition, int event) {
+    return TimeUnit.SECONDS.toMillis(partition * PARTITION_DURATION) + event * 10L;
+  }
+
+  /**
+   * A {@link ParallelStreamEventReader.PartitionReaderFactory} that creates in memory readers and counts how many
+   * readers are created and closed.
+   */
+  private static final class TestReaderFactory implements ParallelStreamEventReader.PartitionReaderFactory {
+
+    private final int failPartition;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    /**
+     * @param failPartition index of the partition that fails to read or {@code -1} for no failure
+     */
+    TestReaderFactory(int failPartition) {
+      this.failPartition = failPartition;
+    }
+
+    @Override
+    public FileReader<StreamEventOffset, Iterable<StreamFileOffset>> create(Location partition) throws IOException {
+      int partitionIdx = (int) (Long.parseLong(partition.getName().substring(0, partition.getName().indexOf('.')))
+                                  / PARTITION_DURATION);
+      if (partitionIdx == failPartition) {
+        throw new IOException("Failed to open partition " + partition);
+      }
+      created.incrementAndGet();
+      return new TestFileReader(partition.append("file.0." + StreamFileType.EVENT.getSuffix()), partitionIdx, closed);
+    }
+  }
+
+  /**
+   * A {@link FileReader} that reads events of one partition from memory.
+   */
+  private static final class TestFileReader implements FileReader<StreamEventOffset, Iterable<StreamFileOffset>> {
+
+    private final StreamFileOffset offset;
+    private final int partition;
+    private final AtomicInteger closed;
+    private int next;
+
+    TestFileReader(Location eventLocation, int partition, AtomicInteger closed) {
+      this.offset = new StreamFileOffset(eventLocation, 0L, 0);
+      this.partition = partition;
+      this.closed = closed;
+    }
+
+    @Override
+    public void initialize() throws IOException {
+      // No-op
+    }
+
+    @Override
+    public int read(Collection<? super StreamEventOffset> events, int maxEvents,
+                    long timeout, TimeUnit unit) throws IOException, InterruptedException {
+      return read(events, maxEvents, timeout, unit, ReadFilter.ALWAYS_ACCEPT);
+    }
+
+    @Override
+    public int read(Collection<? super StreamEventOffset> events, int maxEvents,
+                    long timeout, TimeUnit unit, ReadFilter readFilter) throws IOException, InterruptedException {
+      if (next >= EVENTS_PER_PARTITION) {
+        return -1;
+      }
+      int count = 0;
+      while (count < maxEvents && next < EVENTS_PER_PARTITION) {
+        long timestamp = getTimestamp(partition, next++);
+        if (readFilter.acceptTimestamp(timestamp)) {
+          ByteBuffer body = Charsets.UTF_8.encode("Event " + timestamp);
+          events.add(new StreamEventOffset(new StreamEvent(ImmutableMap.<String, String>of(), body, timestamp),
+                                           new StreamFileOffset(offset, next)));
+          count++;
+        } else if (readFilter.getNextTimestampHint() == Long.MAX_VALUE) {
+          // Passed the end of the time range
+          next = EVENTS_PER_PARTITION;
+        }
+      }
+      return count;
+    }
+
+    @Override
+    public Iterable<StreamFileOffset> getPosition() {
+      return Collections.singletonList(offset);
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed.incrementAndGet();
+    }
+  }
+}
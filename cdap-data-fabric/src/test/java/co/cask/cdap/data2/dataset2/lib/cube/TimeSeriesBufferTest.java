@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for {@link TimeSeriesBuffer}.
+ */
+public class TimeSeriesBufferTest {
+
+  @Test
+  public void testAggregation() {
+    // data points of two series that are grouped together, each series in time order
+    long[][] points = {
+      {10, 1}, {20, 2}, {30, 3}, {10, 4}, {20, 5}, {40, 6}
+    };
+
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 5), new TimeValue(20, 7),
+                                         new TimeValue(30, 3), new TimeValue(40, 6)),
+                        add(new TimeSeriesBuffer(AggregationFunction.SUM, 100), points));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 4), new TimeValue(20, 5),
+                                         new TimeValue(30, 3), new TimeValue(40, 6)),
+                        add(new TimeSeriesBuffer(AggregationFunction.MAX, 100), points));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 1), new TimeValue(20, 2),
+                                         new TimeValue(30, 3), new TimeValue(40, 6)),
+                        add(new TimeSeriesBuffer(AggregationFunction.MIN, 100), points));
+    // latest added value wins
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 4), new TimeValue(20, 5),
+                                         new TimeValue(30, 3), new TimeValue(40, 6)),
+                        add(new TimeSeriesBuffer(AggregationFunction.LATEST, 100), points));
+  }
+
+  @Test
+  public void testLimit() {
+    // Add many series in reverse time order to force multiple compactions. Only the earliest points should remain.
+    TimeSeriesBuffer buffer = new TimeSeriesBuffer(AggregationFunction.SUM, 5);
+    for (int series = 0; series < 10; series++) {
+      for (int ts = 1000; ts > 0; ts--) {
+        buffer.add(ts * 10 + series, 1);
+        buffer.add(ts * 10, 1);
+      }
+    }
+
+    List<TimeValue> timeValues = buffer.getTimeValues();
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10, 11), new TimeValue(11, 1), new TimeValue(12, 1),
+                                         new TimeValue(13, 1), new TimeValue(14, 1)),
+                        timeValues);
+  }
+
+  private List<TimeValue> add(TimeSeriesBuffer buffer, long[][] points) {
+    for (long[] point : points) {
+      buffer.add(point[0], point[1]);
+    }
+    return buffer.getTimeValues();
+  }
+}
@@ -19,12 +19,21 @@ package co.cask.cdap.data2.dataset2.lib.table.inmemory;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NavigableMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -97,6 +106,59 @@ public class InMemoryTableServiceTest {
     verify123();
   }
 
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    final int threads = 8;
+    final int iterations = 1000;
+    final byte[] column = new byte[] {1};
+    InMemoryTableService.create("table1");
+    InMemoryTableService.create("table2");
+
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        final String tableName = "table" + (i % 2 + 1);
+        final byte[] row = Bytes.toBytes("row" + (i % 4));
+        final long version = i + 1;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            barrier.await();
+            for (int j = 0; j < iterations; j++) {
+              InMemoryTableService.increment(tableName, row, ImmutableMap.of(column, 1L));
+              NavigableMap<byte[], NavigableMap<byte[], Update>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+              NavigableMap<byte[], Update> rowUpdate = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+              rowUpdate.put(Bytes.toBytes(j), new PutValue(Bytes.toBytes(j)));
+              updates.put(row, rowUpdate);
+              InMemoryTableService.merge(tableName, updates, version);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // every row is incremented by exactly two threads
+    for (String tableName : new String[] {"table1", "table2"}) {
+      NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> rows =
+        InMemoryTableService.getRowRange(tableName, null, null, null);
+      Assert.assertEquals(2, rows.size());
+      for (NavigableMap<byte[], NavigableMap<Long, byte[]>> columns : rows.values()) {
+        Assert.assertEquals(iterations + 1, columns.size());
+        Assert.assertEquals(2L * iterations, Bytes.toLong(columns.get(column).firstEntry().getValue()));
+      }
+    }
+    InMemoryTableService.drop("table1");
+    InMemoryTableService.drop("table2");
+  }
+
   private void verify123() {
     NavigableMap<byte[], NavigableMap<Long, byte[]>> rowFromGet =
       InMemoryTableService.get("table", new byte[]{1}, new Transaction(1L, 2L, new long[0], new long[0], 1L));
@@ -29,6 +29,7 @@ import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -38,8 +39,17 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -112,6 +122,59 @@ public class LevelDBTableServiceTest {
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
+  @Test
+  public void testGroupCommit() throws Exception {
+    final String tableName = "cdap_default.groupcommit";
+    final int threads = 8;
+    final int iterations = 200;
+    final byte[] row = Bytes.toBytes("row");
+    final byte[] counter = Bytes.toBytes("counter");
+    final byte[] lock = Bytes.toBytes("lock");
+    service.ensureTableExists(tableName);
+
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    final AtomicInteger swapped = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            // every thread uses its own core, the group commit writer is shared through the service
+            LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+            barrier.await();
+            for (int j = 0; j < iterations; j++) {
+              table.increment(row, ImmutableMap.of(counter, 1L));
+              if (table.swap(row, lock, null, Bytes.toBytes(j))) {
+                swapped.incrementAndGet();
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+    NavigableMap<byte[], byte[]> result = table.getRow(row, new byte[][] { counter }, null, null, -1, null);
+    Assert.assertEquals((long) threads * iterations, Bytes.toLong(result.get(counter)));
+    // only the first swap against the absent column can succeed
+    Assert.assertEquals(1, swapped.get());
+
+    LevelDBTableService.CommitStats stats = service.getAndResetCommitStats().get(TableId.from("default",
+                                                                                             "groupcommit"));
+    Assert.assertNotNull(stats);
+    Assert.assertEquals(2L * threads * iterations, stats.getRequests());
+    Assert.assertTrue(stats.getBatches() <= stats.getRequests());
+    service.dropTable(tableName);
+  }
+
   private void writeSome(String tableName) throws IOException {
     LevelDBTableCore table = new LevelDBTableCore(tableName, service);
     Random r = new Random();
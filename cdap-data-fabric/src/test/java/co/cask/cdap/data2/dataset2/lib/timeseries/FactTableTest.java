@@ -22,6 +22,7 @@ import co.cask.cdap.api.dataset.lib.cube.Measurement;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import com.google.common.collect.HashBasedTable;
@@ -510,6 +511,54 @@ public class FactTableTest {
     }
   }
 
+  @Test
+  public void testCoalescing() throws Exception {
+    InMemoryTableService.create("CoalescingEntityTable");
+    InMemoryTableService.create("CoalescingDataTable");
+    int resolution = 10;
+    int rollTimebaseInterval = 2;
+
+    FactTable table = new FactTable(new InMemoryMetricsTable("CoalescingDataTable"),
+                                    new EntityTable(new InMemoryMetricsTable("CoalescingEntityTable")),
+                                    resolution, rollTimebaseInterval);
+    final Map<String, Long> metrics = Maps.newHashMap();
+    table.setMetricsCollector(new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        Long current = metrics.get(metricName);
+        metrics.put(metricName, current == null ? value : current + value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        metrics.put(metricName, value);
+      }
+    });
+
+    long ts = ((System.currentTimeMillis() / 1000) / resolution) * resolution;
+    List<DimensionValue> dimensionValues = dimValues("dim1", "value1");
+
+    // all measurements of the batch fall into the same two cells
+    List<Fact> facts = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      facts.add(new Fact(ts + i, dimensionValues, new Measurement("counter", MeasureType.COUNTER, i)));
+      facts.add(new Fact(ts + i, dimensionValues, new Measurement("gauge", MeasureType.GAUGE, i)));
+    }
+    table.add(facts);
+
+    // counters are summed up, the last gauge wins
+    Table<String, List<DimensionValue>, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("counter", dimensionValues, ImmutableList.of(new TimeValue(ts, 10)));
+    assertScan(table, expected, new FactScan(ts, ts + resolution - 1, "counter", dimensionValues));
+    expected = HashBasedTable.create();
+    expected.put("gauge", dimensionValues, ImmutableList.of(new TimeValue(ts, 4)));
+    assertScan(table, expected, new FactScan(ts, ts + resolution - 1, "gauge", dimensionValues));
+
+    Assert.assertEquals(10L, (long) metrics.get("factTable." + resolution + ".measurement.count"));
+    Assert.assertEquals(2L, (long) metrics.get("factTable." + resolution + ".cell.count"));
+    Assert.assertEquals(80L, (long) metrics.get("factTable." + resolution + ".coalesce.ratio.percent"));
+  }
+
   @Test
   public void testPreSplits() throws Exception {
     InMemoryTableService.create("presplitEntityTable");
@@ -329,6 +329,63 @@ public abstract class QueueTest {
     }
   }
 
+  @Test(timeout = TIMEOUT_MS)
+  public void testDequeueInProgressEnqueue() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(), "app",
+                                                "flow", "flowlet", "queueinprogress");
+    ConsumerConfig consumerConfig = new ConsumerConfig(0, 0, 1, DequeueStrategy.FIFO, null);
+    configureGroups(queueName, ImmutableList.of(consumerConfig));
+    try (
+      QueueProducer producer = queueClientFactory.createProducer(queueName);
+      QueueProducer inProgressProducer = queueClientFactory.createProducer(queueName);
+      QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, 1)
+    ) {
+      // Enqueue more entries than a single dequeue scans, so that the rest may be fetched in background
+      TransactionContext producerTxContext = createTxContext(producer);
+      producerTxContext.start();
+      for (int i = 0; i < 150; i++) {
+        producer.enqueue(new QueueEntry(Bytes.toBytes(i)));
+      }
+      producerTxContext.finish();
+
+      // Persist an entry without committing the transaction, followed by a committed entry
+      Transaction inProgressTx = txSystemClient.startShort();
+      inProgressProducer.startTx(inProgressTx);
+      inProgressProducer.enqueue(new QueueEntry(Bytes.toBytes(150)));
+      Assert.assertTrue(inProgressProducer.commitTx());
+
+      producerTxContext.start();
+      producer.enqueue(new QueueEntry(Bytes.toBytes(151)));
+      producerTxContext.finish();
+
+      // Dequeue while the first transaction is still in progress
+      TransactionContext consumerTxContext = createTxContext(consumer);
+      consumerTxContext.start();
+      int expected = 0;
+      for (byte[] data : consumer.dequeue(10)) {
+        Assert.assertEquals(expected++, Bytes.toInt(data));
+      }
+      consumerTxContext.finish();
+
+      // Commit the in progress transaction. Its entry should be dequeued in order.
+      Assert.assertTrue(txSystemClient.canCommit(inProgressTx, inProgressProducer.getTxChanges()));
+      Assert.assertTrue(txSystemClient.commit(inProgressTx));
+      inProgressProducer.postTxCommit();
+
+      while (expected < 152) {
+        consumerTxContext.start();
+        DequeueResult<byte[]> result = consumer.dequeue(10);
+        Assert.assertFalse(result.isEmpty());
+        for (byte[] data : result) {
+          Assert.assertEquals(expected++, Bytes.toInt(data));
+        }
+        consumerTxContext.finish();
+      }
+    }
+
+    verifyQueueIsEmpty(queueName, ImmutableList.of(consumerConfig));
+  }
+
   @Test
   public void testOneFIFOEnqueueDequeue() throws Exception {
     testOneEnqueueDequeue(DequeueStrategy.FIFO);
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.transaction.queue.hbase;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
+import org.junit.BeforeClass;
+
+/**
+ * HBase queue tests with background prefetching of queue entries.
+ */
+public abstract class HBasePrefetchQueueTest extends HBaseQueueTest {
+
+  // Shadows HBaseQueueTest.init(), hence only this one is called by JUnit
+  @BeforeClass
+  public static void init() throws Exception {
+    CConfiguration conf = CConfiguration.create();
+    conf.setBoolean(QueueConstants.ConfigKeys.DEQUEUE_PREFETCH, true);
+    init(conf);
+  }
+}
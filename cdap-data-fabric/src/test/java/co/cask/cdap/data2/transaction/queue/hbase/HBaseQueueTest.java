@@ -135,10 +135,17 @@ public abstract class HBaseQueueTest extends QueueTest {
 
   @BeforeClass
   public static void init() throws Exception {
+    init(CConfiguration.create());
+  }
+
+  /**
+   * Starts the services used by the tests with the given configuration, customized for the test HBase.
+   */
+  protected static void init(CConfiguration conf) throws Exception {
     hConf = TEST_HBASE.getConfiguration();
 
     // Customize test configuration
-    cConf = CConfiguration.create();
+    cConf = conf;
     cConf.set(Constants.Zookeeper.QUORUM, TEST_HBASE.getZkConnectionString());
     cConf.set(TxConstants.Service.CFG_DATA_TX_BIND_PORT, Integer.toString(Networks.getRandomPort()));
     cConf.set(Constants.Dataset.TABLE_PREFIX, TABLE_PREFIX);
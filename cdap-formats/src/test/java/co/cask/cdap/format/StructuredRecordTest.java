@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.format;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Map;
+
+/**
+ * Tests for {@link StructuredRecord}.
+ */
+public class StructuredRecordTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "rec",
+    Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("n", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+
+  @Test
+  public void testGetByIndex() {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("i", 1).set("s", "str").build();
+    for (int i = 0; i < SCHEMA.getFields().size(); i++) {
+      Object value = record.get(SCHEMA.getFields().get(i).getName());
+      Assert.assertEquals(value, record.get(i));
+    }
+    Assert.assertEquals(1, record.<Integer>get(0).intValue());
+    Assert.assertEquals("str", record.get(1));
+    Assert.assertNull(record.get(2));
+    Assert.assertNull(record.get("unknown"));
+  }
+
+  @Test
+  public void testSetByIndex() {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set(0, 1).set(1, "str").set(2, 3L).build();
+    Assert.assertEquals(1, record.get("i"));
+    Assert.assertEquals("str", record.get("s"));
+    Assert.assertEquals(3L, record.get("n"));
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(SCHEMA);
+    for (int idx : new int[] { -1, SCHEMA.getFields().size() }) {
+      try {
+        builder.set(idx, 1);
+        Assert.fail("Expected failure when setting field index " + idx);
+      } catch (UnexpectedFormatException e) {
+        // expected
+      }
+    }
+
+    // Non-nullable fields cannot be set to null
+    try {
+      builder.set(0, null);
+      Assert.fail("Expected failure when setting a non-nullable field to null");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    builder.set(2, null);
+
+    // Non-nullable fields must be set before building
+    builder.set(0, 1);
+    try {
+      builder.build();
+      Assert.fail("Expected failure when building without setting a non-nullable field");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    Assert.assertEquals(StructuredRecord.builder(SCHEMA).set("i", 1).set("s", "str").build(),
+                        builder.set(1, "str").build());
+  }
+
+  @Test
+  public void testBuilderReuse() {
+    StructuredRecord.Builder builder = StructuredRecord.builder(SCHEMA).set("i", 1).set("s", "first");
+    StructuredRecord first = builder.build();
+
+    // Changing the builder after build doesn't affect records already built
+    StructuredRecord second = builder.set("s", "second").set(2, 2L).build();
+    StructuredRecord third = builder.convertAndSet("i", "3").build();
+
+    Assert.assertEquals(1, first.get("i"));
+    Assert.assertEquals("first", first.get("s"));
+    Assert.assertNull(first.get("n"));
+
+    Assert.assertEquals(1, second.get("i"));
+    Assert.assertEquals("second", second.get("s"));
+    Assert.assertEquals(2L, second.get("n"));
+
+    Assert.assertEquals(3, third.get("i"));
+    Assert.assertEquals("second", third.get("s"));
+    Assert.assertEquals(2L, third.get("n"));
+
+    // Building again without changes gives an equal record
+    Assert.assertEquals(third, builder.build());
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    StructuredRecord record1 = StructuredRecord.builder(SCHEMA).set("i", 1).set("s", "str").set("n", 2L).build();
+    StructuredRecord record2 = StructuredRecord.builder(SCHEMA).set(2, 2L).set(1, "str").set(0, 1).build();
+    Assert.assertEquals(record1, record2);
+    Assert.assertEquals(record1.hashCode(), record2.hashCode());
+
+    // Different values
+    Assert.assertNotEquals(record1, StructuredRecord.builder(SCHEMA).set("i", 1).set("s", "str").build());
+    Assert.assertNotEquals(record1, StructuredRecord.builder(SCHEMA).set("i", 2).set("s", "str").set("n", 2L).build());
+
+    // Same values with a different schema
+    Schema otherSchema = Schema.recordOf("other", SCHEMA.getFields());
+    StructuredRecord other = StructuredRecord.builder(otherSchema).set("i", 1).set("s", "str").set("n", 2L).build();
+    Assert.assertNotEquals(record1, other);
+
+    Assert.assertNotEquals(record1, null);
+    Assert.assertNotEquals(record1, "str");
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    // The serialized form must stay compatible with records serialized by earlier versions
+    ObjectStreamClass streamClass = ObjectStreamClass.lookup(StructuredRecord.class);
+    Assert.assertEquals(-4648752378975451591L, streamClass.getSerialVersionUID());
+    Assert.assertEquals(2, streamClass.getFields().length);
+    Assert.assertEquals(Schema.class, streamClass.getField("schema").getType());
+    Assert.assertEquals(Map.class, streamClass.getField("fields").getType());
+
+    StructuredRecord record = StructuredRecord.builder(SCHEMA).set("i", 1).set("s", "str").build();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(record);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      StructuredRecord copy = (StructuredRecord) ois.readObject();
+      Assert.assertEquals(record, copy);
+      Assert.assertEquals("str", copy.get(1));
+      Assert.assertNull(copy.get("n"));
+    }
+  }
+}
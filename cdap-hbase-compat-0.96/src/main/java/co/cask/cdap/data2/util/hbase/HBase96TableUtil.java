@@ -20,6 +20,7 @@ import co.cask.cdap.data2.increment.hbase96.IncrementHandler;
 import co.cask.cdap.data2.transaction.coprocessor.hbase96.DefaultTransactionProcessor;
 import co.cask.cdap.data2.transaction.queue.coprocessor.hbase96.DequeueScanObserver;
 import co.cask.cdap.data2.transaction.queue.coprocessor.hbase96.HBaseQueueRegionObserver;
+import co.cask.cdap.data2.transaction.stream.coprocessor.hbase96.StreamConsumerClaimObserver;
 import co.cask.cdap.data2.util.TableId;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
@@ -257,6 +258,11 @@ public class HBase96TableUtil extends HBaseTableUtil {
     return IncrementHandler.class;
   }
 
+  @Override
+  public Class<? extends Coprocessor> getStreamConsumerClaimObserverClassForVersion() {
+    return StreamConsumerClaimObserver.class;
+  }
+
   @Override
   protected HTableNameConverter getHTableNameConverter() {
     return nameConverter;
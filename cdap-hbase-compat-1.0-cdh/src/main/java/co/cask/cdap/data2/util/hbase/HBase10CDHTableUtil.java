@@ -20,6 +20,7 @@ import co.cask.cdap.data2.increment.hbase10cdh.IncrementHandler;
 import co.cask.cdap.data2.transaction.coprocessor.hbase10cdh.DefaultTransactionProcessor;
 import co.cask.cdap.data2.transaction.queue.coprocessor.hbase10cdh.DequeueScanObserver;
 import co.cask.cdap.data2.transaction.queue.coprocessor.hbase10cdh.HBaseQueueRegionObserver;
+import co.cask.cdap.data2.transaction.stream.coprocessor.hbase10cdh.StreamConsumerClaimObserver;
 import co.cask.cdap.data2.util.TableId;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
@@ -257,6 +258,11 @@ public class HBase10CDHTableUtil extends HBaseTableUtil {
     return IncrementHandler.class;
   }
 
+  @Override
+  public Class<? extends Coprocessor> getStreamConsumerClaimObserverClassForVersion() {
+    return StreamConsumerClaimObserver.class;
+  }
+
   @Override
   protected HTableNameConverter getHTableNameConverter() {
     return nameConverter;
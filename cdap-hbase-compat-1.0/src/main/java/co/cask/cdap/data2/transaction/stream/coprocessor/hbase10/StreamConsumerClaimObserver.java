@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.transaction.stream.coprocessor.hbase10;
+
+import co.cask.cdap.data2.transaction.stream.hbase.HBaseStreamFileConsumer;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Append;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+
+import java.io.IOException;
+
+/**
+ * HBase coprocessor that claims stream entries for FIFO stream consumers.
+ *
+ * <p>A claim is sent as an {@code Append} of the new state value, flagged with the attribute
+ * {@link HBaseStreamFileConsumer#CLAIM_EXPECTED_STATE}, which carries the state value expected to be current.
+ * The coprocessor performs a check-and-put of the state value instead of the append, so that the claims of
+ * many entries can be sent in one batch call. The result contains the claimed state if the entry is claimed
+ * and is empty otherwise.</p>
+ */
+public class StreamConsumerClaimObserver extends BaseRegionObserver {
+
+  @Override
+  public Result preAppend(ObserverContext<RegionCoprocessorEnvironment> ctx, Append append) throws IOException {
+    byte[] expected = append.getAttribute(HBaseStreamFileConsumer.CLAIM_EXPECTED_STATE);
+    if (expected == null) {
+      return null;
+    }
+
+    Cell cell = append.getFamilyCellMap().firstEntry().getValue().get(0);
+    byte[] family = CellUtil.cloneFamily(cell);
+    byte[] qualifier = CellUtil.cloneQualifier(cell);
+    Put put = new Put(append.getRow());
+    put.add(family, qualifier, CellUtil.cloneValue(cell));
+
+    // An empty expected value matches a missing state, the same as a check-and-put with a null value
+    boolean claimed = ctx.getEnvironment().getRegion().checkAndMutate(append.getRow(), family, qualifier,
+                                                                      CompareFilter.CompareOp.EQUAL,
+                                                                      new BinaryComparator(expected), put, true);
+    ctx.bypass();
+    return Result.create(claimed ? new Cell[] { cell } : new Cell[0]);
+  }
+}
@@ -20,6 +20,7 @@ import co.cask.cdap.data2.increment.hbase10.IncrementHandler;
 import co.cask.cdap.data2.transaction.coprocessor.hbase10.DefaultTransactionProcessor;
 import co.cask.cdap.data2.transaction.queue.coprocessor.hbase10.DequeueScanObserver;
 import co.cask.cdap.data2.transaction.queue.coprocessor.hbase10.HBaseQueueRegionObserver;
+import co.cask.cdap.data2.transaction.stream.coprocessor.hbase10.StreamConsumerClaimObserver;
 import co.cask.cdap.data2.util.TableId;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
@@ -261,6 +262,11 @@ public class HBase10TableUtil extends HBaseTableUtil {
     return IncrementHandler.class;
   }
 
+  @Override
+  public Class<? extends Coprocessor> getStreamConsumerClaimObserverClassForVersion() {
+    return StreamConsumerClaimObserver.class;
+  }
+
   @Override
   protected HTableNameConverter getHTableNameConverter() {
     return nameConverter;
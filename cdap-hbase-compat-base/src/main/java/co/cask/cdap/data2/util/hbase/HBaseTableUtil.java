@@ -757,6 +757,7 @@ public abstract class HBaseTableUtil {
   public abstract Class<? extends Coprocessor> getQueueRegionObserverClassForVersion();
   public abstract Class<? extends Coprocessor> getDequeueScanObserverClassForVersion();
   public abstract Class<? extends Coprocessor> getIncrementHandlerClassForVersion();
+  public abstract Class<? extends Coprocessor> getStreamConsumerClaimObserverClassForVersion();
 
   protected abstract HTableNameConverter getHTableNameConverter();
 
@@ -162,7 +162,7 @@ public class AbstractAuthorizationService extends AbstractScheduledService {
     Map<EntityId, Set<Action>> result = new HashMap<>();
     Set<Privilege> privileges = privilegesFetcher.listPrivileges(principal);
     if (privileges == null) {
-      return result;
+      return new PrivilegeIndex(result);
     }
 
     for (Privilege privilege : privileges) {
@@ -174,7 +174,8 @@ public class AbstractAuthorizationService extends AbstractScheduledService {
       actions.add(privilege.getAction());
     }
 
-    return result;
+    // Build the index together with the privileges, so that it is computed once per cache refresh
+    return new PrivilegeIndex(result);
   }
 
   protected Map<EntityId, Set<Action>> getPrivileges(Principal principal) throws Exception {
@@ -19,7 +19,6 @@ package co.cask.cdap.security.authorization;
 import co.cask.cdap.api.Predicate;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.proto.id.EntityId;
-import co.cask.cdap.proto.id.ParentedId;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
@@ -67,7 +66,7 @@ public class DefaultAuthorizationEnforcementService extends AbstractAuthorizatio
       return;
     }
 
-    doEnforce(entity, principal, actions, true);
+    doEnforce(entity, principal, actions);
   }
 
   @Override
@@ -76,16 +75,13 @@ public class DefaultAuthorizationEnforcementService extends AbstractAuthorizatio
       return ALLOW_ALL;
     }
     Map<EntityId, Set<Action>> privileges = getPrivileges(principal);
-    final Set<EntityId> allowedEntities = privileges != null ? privileges.keySet() : Collections.<EntityId>emptySet();
+    final PrivilegeIndex privilegeIndex =
+      PrivilegeIndex.of(privileges != null ? privileges : Collections.<EntityId, Set<Action>>emptyMap());
 
     return new Predicate<EntityId>() {
       @Override
       public boolean apply(EntityId entityId) {
-        boolean parentPassed = false;
-        if (entityId instanceof ParentedId) {
-          parentPassed = apply(((ParentedId) entityId).getParent());
-        }
-        return (parentPassed || allowedEntities.contains(entityId));
+        return privilegeIndex.isVisible(entityId);
       }
     };
   }
@@ -94,31 +90,20 @@ public class DefaultAuthorizationEnforcementService extends AbstractAuthorizatio
     return securityEnabled && authorizationEnabled;
   }
 
-  private boolean doEnforce(EntityId entity, Principal principal,
-                            Set<Action> actions, boolean exceptionOnFailure) throws Exception {
-    if (entity instanceof ParentedId) {
-      if (doEnforce(((ParentedId) entity).getParent(), principal, actions, false)) {
-        return true;
-      }
+  private void doEnforce(EntityId entity, Principal principal, Set<Action> actions) throws Exception {
+    // The requested actions are granted if they are all granted on the entity or on one of its ancestors
+    PrivilegeIndex privilegeIndex = PrivilegeIndex.of(getPrivileges(principal));
+    if (privilegeIndex.isAuthorized(entity, actions)) {
+      LOG.trace("Enforcing actions {} on {} for {} succeeded", actions, entity, principal);
+      return;
     }
 
-    Set<Action> allowedActions = getPrivileges(principal).get(entity);
+    Set<Action> allowedActions = privilegeIndex.get(entity);
     LOG.trace("Enforcing actions {} on {} for {}. Allowed actions are {}", actions, entity, principal, allowedActions);
     if (allowedActions == null) {
-      if (exceptionOnFailure) {
-        throw new UnauthorizedException(principal, actions, entity);
-      }
-      return false;
-    }
-
-    // Check for the specific actions requested
-    if (allowedActions.containsAll(actions)) {
-      return true;
-    }
-    if (exceptionOnFailure) {
-      throw new UnauthorizedException(principal, Sets.difference(actions, allowedActions), entity);
+      throw new UnauthorizedException(principal, actions, entity);
     }
-    return false;
+    throw new UnauthorizedException(principal, Sets.difference(actions, allowedActions), entity);
   }
 
   @Override
@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.security.authorization;
+
+import co.cask.cdap.proto.id.EntityId;
+import co.cask.cdap.proto.security.Action;
+import com.google.common.collect.ForwardingMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable map of privileges of a principal, together with a prefix tree of the privileges organized by the
+ * entity hierarchy. Since privileges on an entity are inherited by its descendants, an authorization check on an
+ * entity is answered by a single descent from the root of the tree along the hierarchy of the entity.
+ */
+final class PrivilegeIndex extends ForwardingMap<EntityId, Set<Action>> {
+
+  private final Map<EntityId, Set<Action>> privileges;
+  private final Node root;
+
+  /**
+   * Returns a {@link PrivilegeIndex} for the given privileges. If the given map is already a {@link PrivilegeIndex},
+   * it is returned as is.
+   */
+  static PrivilegeIndex of(Map<EntityId, Set<Action>> privileges) {
+    if (privileges instanceof PrivilegeIndex) {
+      return (PrivilegeIndex) privileges;
+    }
+    return new PrivilegeIndex(privileges);
+  }
+
+  PrivilegeIndex(Map<EntityId, Set<Action>> privileges) {
+    this.privileges = Collections.unmodifiableMap(new HashMap<>(privileges));
+    this.root = new Node();
+    for (Map.Entry<EntityId, Set<Action>> entry : this.privileges.entrySet()) {
+      Node node = root;
+      for (EntityId entityId : entry.getKey().getHierarchy()) {
+        node = node.addChild(entityId);
+      }
+      node.actions = entry.getValue();
+    }
+  }
+
+  @Override
+  protected Map<EntityId, Set<Action>> delegate() {
+    return privileges;
+  }
+
+  /**
+   * Returns whether all the given actions are granted on the given entity or on one of its ancestors.
+   */
+  boolean isAuthorized(EntityId entity, Set<Action> actions) {
+    Node node = root;
+    for (EntityId entityId : entity.getHierarchy()) {
+      node = node.getChild(entityId);
+      if (node == null) {
+        return false;
+      }
+      if (node.actions != null && node.actions.containsAll(actions)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether there is any privilege on the given entity or on one of its ancestors.
+   */
+  boolean isVisible(EntityId entity) {
+    Node node = root;
+    for (EntityId entityId : entity.getHierarchy()) {
+      node = node.getChild(entityId);
+      if (node == null) {
+        return false;
+      }
+      if (node.actions != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A node in the prefix tree, which represents an entity.
+   */
+  private static final class Node {
+    private Map<EntityId, Node> children;
+    // Actions granted on the entity, or null if there is no privilege on it
+    private Set<Action> actions;
+
+    Node addChild(EntityId entityId) {
+      if (children == null) {
+        children = new HashMap<>();
+      }
+      Node child = children.get(entityId);
+      if (child == null) {
+        child = new Node();
+        children.put(entityId, child);
+      }
+      return child;
+    }
+
+    @Nullable
+    Node getChild(EntityId entityId) {
+      return children == null ? null : children.get(entityId);
+    }
+  }
+}
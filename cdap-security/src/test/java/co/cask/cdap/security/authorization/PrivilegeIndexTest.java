@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.security.authorization;
+
+import co.cask.cdap.proto.id.ApplicationId;
+import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.EntityId;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.ProgramId;
+import co.cask.cdap.proto.security.Action;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for {@link PrivilegeIndex}.
+ */
+public class PrivilegeIndexTest {
+
+  private static final NamespaceId NS1 = new NamespaceId("ns1");
+  private static final NamespaceId NS2 = new NamespaceId("ns2");
+
+  @Test
+  public void testIsAuthorized() {
+    ApplicationId app = NS2.app("app");
+    ProgramId worker = app.worker("worker");
+    DatasetId ds = NS2.dataset("ds");
+
+    Map<EntityId, Set<Action>> privileges = new HashMap<>();
+    privileges.put(NS1, EnumSet.of(Action.READ, Action.WRITE));
+    privileges.put(app, EnumSet.of(Action.READ));
+    privileges.put(worker, EnumSet.of(Action.EXECUTE));
+    PrivilegeIndex index = new PrivilegeIndex(privileges);
+
+    // Actions on a namespace are inherited by the entities in it
+    Assert.assertTrue(index.isAuthorized(NS1, EnumSet.of(Action.READ, Action.WRITE)));
+    Assert.assertTrue(index.isAuthorized(NS1.app("app").worker("worker"), EnumSet.of(Action.WRITE)));
+    Assert.assertFalse(index.isAuthorized(NS1.dataset("ds"), EnumSet.of(Action.ADMIN)));
+
+    // Actions need to be granted all together on the same entity
+    Assert.assertTrue(index.isAuthorized(worker, EnumSet.of(Action.READ)));
+    Assert.assertTrue(index.isAuthorized(worker, EnumSet.of(Action.EXECUTE)));
+    Assert.assertFalse(index.isAuthorized(worker, EnumSet.of(Action.READ, Action.EXECUTE)));
+    Assert.assertFalse(index.isAuthorized(NS2, EnumSet.of(Action.READ)));
+    Assert.assertFalse(index.isAuthorized(ds, EnumSet.of(Action.READ)));
+    Assert.assertFalse(index.isAuthorized(new NamespaceId("ns3"), EnumSet.of(Action.READ)));
+
+    Assert.assertEquals(EnumSet.of(Action.EXECUTE), index.get(worker));
+    Assert.assertNull(index.get(ds));
+  }
+
+  @Test
+  public void testIsVisible() {
+    ApplicationId app = NS2.app("app");
+    Map<EntityId, Set<Action>> privileges = new HashMap<>();
+    privileges.put(NS1, EnumSet.of(Action.READ));
+    privileges.put(app, EnumSet.of(Action.ADMIN));
+    PrivilegeIndex index = new PrivilegeIndex(privileges);
+
+    Assert.assertTrue(index.isVisible(NS1));
+    Assert.assertTrue(index.isVisible(NS1.dataset("ds")));
+    Assert.assertTrue(index.isVisible(app));
+    Assert.assertTrue(index.isVisible(app.flow("flow")));
+    // Privileges on an entity do not make its parent or siblings visible
+    Assert.assertFalse(index.isVisible(NS2));
+    Assert.assertFalse(index.isVisible(NS2.app("app2")));
+    Assert.assertFalse(index.isVisible(NS2.dataset("ds")));
+
+    PrivilegeIndex empty = PrivilegeIndex.of(Collections.<EntityId, Set<Action>>emptyMap());
+    Assert.assertTrue(empty.isEmpty());
+    Assert.assertFalse(empty.isVisible(NS1));
+    Assert.assertSame(empty, PrivilegeIndex.of(empty));
+  }
+}
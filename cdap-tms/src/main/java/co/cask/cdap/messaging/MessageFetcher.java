@@ -22,6 +22,7 @@ import co.cask.cdap.messaging.data.RawMessage;
 import org.apache.tephra.Transaction;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -39,6 +40,9 @@ public abstract class MessageFetcher {
   // by default there is virtually no limit
   private int limit = Integer.MAX_VALUE;
 
+  // by default a fetch returns immediately, even if there is no message available
+  private long maxWaitMillis;
+
   /**
    * Setup the message fetching starting point based on the given message id. Calling this method
    * will clear the start time set by the {@link #setStartTime(long)} method.
@@ -96,6 +100,29 @@ public abstract class MessageFetcher {
     return this;
   }
 
+  /**
+   * Sets the maximum time to wait for messages to become available if there is no message to fetch when
+   * {@link #fetch()} is called. If it is positive, the fetch blocks until new messages are committed to the topic
+   * or the time expires, in which case an empty iterator is returned. By default, this is set to {@code 0},
+   * which means the fetch never waits.
+   * <p>
+   * The wait is ended by messages being written to the topic, transactional or not, since they are visible to
+   * fetches without transaction right away. It has no effect on fetches with a transaction set through
+   * {@link #setTransaction(Transaction)}, because messages published after the transaction started never
+   * become visible to it. Such fetches always return right away.
+   *
+   * @param maxWait maximum time to wait
+   * @param unit unit of the maximum time to wait
+   * @return this instance
+   */
+  public MessageFetcher setMaxWait(long maxWait, TimeUnit unit) {
+    if (maxWait < 0) {
+      throw new IllegalArgumentException("Invalid message fetching maximum wait time. Wait time must be >= 0");
+    }
+    this.maxWaitMillis = unit.toMillis(maxWait);
+    return this;
+  }
+
   @Nullable
   protected byte[] getStartOffset() {
     return startOffset;
@@ -119,6 +146,10 @@ public abstract class MessageFetcher {
     return limit;
   }
 
+  protected long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
   /**
    * Returns a {@link CloseableIterator} that iterates over messages fetched from the messaging system.
    *
@@ -23,6 +23,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /**
@@ -56,6 +58,12 @@ public final class Schemas {
      */
     public static final class ConsumeRequest {
       public static final Schema SCHEMA = loadSchema(ConsumeRequest.class);
+
+      /**
+       * Schema used by clients that don't support long polling. It is the same as {@link #SCHEMA} without
+       * the last field, maxWaitMillis.
+       */
+      public static final Schema SCHEMA_WITHOUT_MAX_WAIT = removeField(SCHEMA, "maxWaitMillis");
     }
 
     /**
@@ -70,6 +78,22 @@ public final class Schemas {
     // protect the constructor
   }
 
+  /**
+   * Creates a copy of the given record {@link Schema} without the given field.
+   */
+  private static Schema removeField(Schema schema, String fieldName) {
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      if (!field.name().equals(fieldName)) {
+        // A field can only belong to one schema, hence it has to be copied
+        fields.add(new Schema.Field(field.name(), field.schema(), field.doc(), field.defaultValue()));
+      }
+    }
+    Schema result = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+    result.setFields(fields);
+    return result;
+  }
+
   /**
    * Creates a {@link Schema} instance based on the given class name.
    */
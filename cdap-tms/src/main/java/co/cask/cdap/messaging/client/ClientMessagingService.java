@@ -429,6 +429,9 @@ public final class ClientMessagingService implements MessagingService {
       }
       record.put("inclusive", isIncludeStart());
       record.put("limit", getLimit());
+      if (getMaxWaitMillis() > 0) {
+        record.put("maxWaitMillis", getMaxWaitMillis());
+      }
 
       if (getTransaction() != null) {
         record.put("transaction", ByteBuffer.wrap(TRANSACTION_CODEC.encode(getTransaction())));
@@ -439,7 +442,9 @@ public final class ClientMessagingService implements MessagingService {
       URL url = createURL(createTopicPath(topicId) + "/poll");
       final HttpURLConnection urlConn = (HttpURLConnection)  url.openConnection();
       urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
-      urlConn.setReadTimeout(HTTP_REQUEST_CONFIG.getReadTimeout());
+      // With long polling, the server may hold the response for up to the max wait time before sending anything
+      urlConn.setReadTimeout((int) Math.min(Integer.MAX_VALUE,
+                                            HTTP_REQUEST_CONFIG.getReadTimeout() + getMaxWaitMillis()));
       urlConn.setRequestMethod("POST");
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
       urlConn.setDoInput(true);
@@ -34,20 +34,15 @@ import co.cask.http.BodyProducer;
 import co.cask.http.HttpResponder;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.inject.Inject;
-import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryData;
 import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.io.Encoder;
-import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
-import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
@@ -60,6 +55,7 @@ import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -76,11 +72,13 @@ public final class FetchHandler extends AbstractHttpHandler {
 
   private final MessagingService messagingService;
   private int messageChunkSize;
+  private long maxPollWaitMillis;
 
   @Inject
   FetchHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.maxPollWaitMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_MAX_POLL_WAIT_MS);
   }
 
   @POST
@@ -97,12 +95,10 @@ public final class FetchHandler extends AbstractHttpHandler {
     }
 
     // Decode the poll request
-    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ChannelBufferInputStream(request.getContent()),
-                                                               null);
-    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
+    GenericRecord fetchRequest = decodeConsumeRequest(request.getContent());
 
     // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    CloseableIterator<RawMessage> iterator = fetchMessages(fetchRequest, topicId);
     try {
       responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
                             ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "avro/binary"));
@@ -112,6 +108,29 @@ public final class FetchHandler extends AbstractHttpHandler {
     }
   }
 
+  /**
+   * Decodes a consume request into a record of the {@link Schemas.V1.ConsumeRequest#SCHEMA}. The request is
+   * written either with that schema or, by older clients, with
+   * {@link Schemas.V1.ConsumeRequest#SCHEMA_WITHOUT_MAX_WAIT}.
+   * Since the binary encoding of the latter is a prefix of the former, the request is first decoded with the
+   * schema without the last field. If there is content left, the request is decoded again with the full schema.
+   */
+  static GenericRecord decodeConsumeRequest(ChannelBuffer content) throws IOException {
+    int readerIndex = content.readerIndex();
+    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ChannelBufferInputStream(content), null);
+    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA_WITHOUT_MAX_WAIT,
+                                                                      Schemas.V1.ConsumeRequest.SCHEMA);
+    GenericRecord record = datumReader.read(null, decoder);
+    if (!content.readable()) {
+      return record;
+    }
+
+    content.readerIndex(readerIndex);
+    decoder = DecoderFactory.get().directBinaryDecoder(new ChannelBufferInputStream(content), decoder);
+    datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
+    return datumReader.read(record, decoder);
+  }
+
   /**
    * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
    */
@@ -138,6 +157,12 @@ public final class FetchHandler extends AbstractHttpHandler {
       fetcher.setLimit(limit);
     }
 
+    Long maxWaitMillis = (Long) fetchRequest.get("maxWaitMillis");
+    if (maxWaitMillis != null) {
+      // Long polling occupies a handler thread, hence cap the time that a single request can wait
+      fetcher.setMaxWait(Math.min(maxWaitMillis, maxPollWaitMillis), TimeUnit.MILLISECONDS);
+    }
+
     ByteBuffer encodedTx = (ByteBuffer) fetchRequest.get("transaction");
     if (encodedTx != null) {
       fetcher.setTransaction(TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx)));
@@ -150,38 +175,27 @@ public final class FetchHandler extends AbstractHttpHandler {
    * A {@link BodyProducer} to encode and send back messages.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
    * all messages in memory before sending out.
+   * <p>
+   * Each chunk is a composite {@link ChannelBuffer} that wraps the id and payload byte arrays of the messages
+   * as they are returned from the {@link MessageFetcher}, interleaved with slices of a small array holding the
+   * Avro encoded array block count and byte lengths. This avoids copying message payloads into an intermediate
+   * encoding buffer. The encoding is the Avro binary encoding of the {@link Schemas.V1.ConsumeResponse} schema,
+   * which is an array of records with the {@code bytes} fields {@code id} and {@code payload}.
    */
   private static class MessagesBodyProducer extends BodyProducer {
 
+    // Maximum size of a zig-zag varint encoded long
+    private static final int MAX_LONG_SIZE = 10;
+
     private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
-    private final ChannelBuffer chunk;
-    private final Encoder encoder;
-    private final GenericRecord messageRecord;
-    private final DatumWriter<GenericRecord> messageWriter;
-    private boolean arrayStarted;
     private boolean arrayEnded;
 
     MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
       this.iterator = iterator;
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
-      this.chunk = ChannelBuffers.dynamicBuffer(messageChunkSize);
-      this.encoder = EncoderFactory.get().directBinaryEncoder(new ChannelBufferOutputStream(chunk), null);
-
-      // These are for writing individual message (response is an array of messages)
-      this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
-      this.messageWriter = new GenericDatumWriter<GenericRecord>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType()) {
-        @Override
-        protected void writeBytes(Object datum, Encoder out) throws IOException {
-          if (datum instanceof byte[]) {
-            out.writeBytes((byte[]) datum);
-          } else {
-            super.writeBytes(datum, out);
-          }
-        }
-      };
     }
 
     @Override
@@ -191,44 +205,48 @@ public final class FetchHandler extends AbstractHttpHandler {
         return ChannelBuffers.EMPTY_BUFFER;
       }
 
-      chunk.clear();
-
-      if (!arrayStarted) {
-        arrayStarted = true;
-        encoder.writeArrayStart();
-      }
-
-      // Try to buffer up to buffer size
+      // Try to buffer up to buffer size. The chunk always contains at least one message if there is any,
+      // hence a message larger than the chunk size is sent in a chunk of its own.
       int size = 0;
       messages.clear();
       while (iterator.hasNext() && size < messageChunkSize) {
         RawMessage message = iterator.next();
         messages.add(message);
-
-        // Avro encodes bytes as (len + bytes), hence adding 8 to cater for the length of the id and payload
-        // Straightly speaking it can be up to 9 bytes each (hence 18 bytes),
-        // but we don't expect id and payload of such size
-        size += message.getId().length + message.getPayload().length + 8;
+        size += message.getId().length + message.getPayload().length;
       }
+      boolean lastChunk = !iterator.hasNext();
+
+      // All the varints of this chunk are encoded into one array, which is only referenced by this chunk:
+      // the array block count, the lengths of the id and payload of each message and the array end marker.
+      byte[] header = new byte[MAX_LONG_SIZE * (2 * messages.size() + 1) + 1];
+      int headerPos = 0;
+      List<ChannelBuffer> buffers = new ArrayList<>(messages.size() * 4 + 2);
 
-      encoder.setItemCount(messages.size());
+      if (!messages.isEmpty()) {
+        headerPos = appendLong(buffers, header, headerPos, messages.size());
+      }
       for (RawMessage message : messages) {
-        encoder.startItem();
-
-        // Write individual message (array element) with DatumWrite.
-        // This provides greater flexibility on schema evolution.
-        // The response will likely always be an array, but the element schema can evolve.
-        messageRecord.put("id", message.getId());
-        messageRecord.put("payload", message.getPayload());
-        messageWriter.write(messageRecord, encoder);
+        headerPos = appendLong(buffers, header, headerPos, message.getId().length);
+        buffers.add(ChannelBuffers.wrappedBuffer(message.getId()));
+        headerPos = appendLong(buffers, header, headerPos, message.getPayload().length);
+        buffers.add(ChannelBuffers.wrappedBuffer(message.getPayload()));
       }
-
-      if (!iterator.hasNext()) {
+      if (lastChunk) {
         arrayEnded = true;
-        encoder.writeArrayEnd();
+        appendLong(buffers, header, headerPos, 0L);
       }
 
-      return chunk;
+      return ChannelBuffers.wrappedBuffer(true, buffers.toArray(new ChannelBuffer[buffers.size()]));
+    }
+
+    /**
+     * Encodes the given value into the header array at the given position, adds a buffer wrapping the encoded
+     * bytes to the given list, and returns the position after the encoded value.
+     */
+    private int appendLong(List<ChannelBuffer> buffers, byte[] header, int pos, long value) {
+      int len = BinaryData.encodeLong(value, header, pos);
+      buffers.add(ChannelBuffers.wrappedBuffer(header, pos, len));
+      return pos + len;
     }
 
     @Override
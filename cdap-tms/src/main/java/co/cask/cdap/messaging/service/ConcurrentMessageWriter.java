@@ -22,7 +22,10 @@ import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -31,7 +34,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -48,20 +54,29 @@ import javax.annotation.concurrent.ThreadSafe;
  * <pre>
  * 1. Constructs a PendingStoreRequest locally and enqueue it to a ConcurrentLinkedQueue.
  * 2. Use CAS to set an AtomicBoolean flag to true.
- * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
- * 4. Provides an Iterator of PendingStoreRequest, which consumes from the ConcurrentLinkedQueue mentioned in step 1.
- * 5. The message table store method will consume the Iterator until it is empty
- * 6. Set the state of each PendingStoreRequest that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-8.
+ * 4. Optionally waits for the linger time, until the queue contains the maximum batch size of requests.
+ * 5. Provides an Iterator of at most maximum batch size PendingStoreRequest, taken from the ConcurrentLinkedQueue
+ *    mentioned in step 1.
+ * 6. The message table store method will consume the Iterator until it is empty
+ * 7. Set the state of each PendingStoreRequest that are written to COMPLETED (succeed/failure), which unparks the
+ *    thread waiting for it.
+ * 8. Set the AtomicBoolean flag back to false, then unpark the thread of the head of the queue, if there is one,
+ *    so that it can become the next writer.
+ * 9. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, park until it is unparked
+ *    and go back to step 2.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * A thread that failed to become the writer always has its request in the queue before it checked the flag,
+ * hence the writer holding the flag at that time either completes the request or wakes up its thread in step 8.
+ * This guarantees events enqueued by all threads would eventually get written and flushed,
+ * without threads spinning while waiting for the writer.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ConcurrentMessageWriter.class);
+
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
   private final PendingStoreQueue pendingStoreQueue;
@@ -77,15 +92,33 @@ final class ConcurrentMessageWriter implements Closeable {
   }
 
   /**
-   * Constructor.
+   * Constructor with unbounded batch size and no linger time.
    *
    * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, Integer.MAX_VALUE, 0L, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param maxBatchSize maximum number of {@link StoreRequest} to persist with one write
+   * @param lingerMicros maximum time in microseconds that the writer waits for more requests to arrive
+   *                     before persisting a batch that is smaller than {@code maxBatchSize}
+   * @param commitCallback an optional {@link Runnable} to call after each batch was persisted successfully
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          int maxBatchSize, long lingerMicros, @Nullable Runnable commitCallback) {
+    Preconditions.checkArgument(maxBatchSize > 0, "Maximum batch size must be positive: %s", maxBatchSize);
+    Preconditions.checkArgument(lingerMicros >= 0, "Linger time must not be negative: %s", lingerMicros);
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector, maxBatchSize,
+                                                   TimeUnit.MICROSECONDS.toNanos(lingerMicros), commitCallback);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
   }
@@ -113,7 +146,9 @@ final class ConcurrentMessageWriter implements Closeable {
 
     while (!pendingStoreRequest.isCompleted()) {
       if (!tryWrite()) {
-        Thread.yield();
+        // Either the current writer completes the request or it unparks this thread after releasing the flag.
+        // Spurious wakeups are fine since the condition is re-checked.
+        LockSupport.park(this);
       }
     }
 
@@ -148,6 +183,8 @@ final class ConcurrentMessageWriter implements Closeable {
     } finally {
       writerFlag.set(false);
     }
+    // Wake up the thread of the oldest request still in the queue so that it can become the next writer.
+    pendingStoreQueue.wakeUpNext();
     return true;
   }
 
@@ -157,9 +194,9 @@ final class ConcurrentMessageWriter implements Closeable {
       return;
     }
     // Flush everything in the queue.
-    // When this thread can grab the writer flag, all pending write requests must be completed since the closed
-    // flag was already set to false.
-    while (!tryWrite()) {
+    // When this thread can grab the writer flag and the queue is empty, all pending write requests must be
+    // completed since the closed flag was already set to true.
+    while (!tryWrite() || !pendingStoreQueue.isEmpty()) {
       Thread.yield();
     }
     messagesWriter.close();
@@ -167,18 +204,27 @@ final class ConcurrentMessageWriter implements Closeable {
 
   /**
    * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
-   * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
-   * called while holding the writer flag.
+   * Except the {@link #enqueue(PendingStoreRequest)}, {@link #wakeUpNext()} and {@link #isEmpty()} methods,
+   * all methods on this class can only be called while holding the writer flag.
    */
   private static final class PendingStoreQueue {
 
     private final MetricsCollector metricsCollector;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final Runnable commitCallback;
     private final Queue<PendingStoreRequest> writeQueue;
+    private final AtomicInteger queueSize;
     private final List<PendingStoreRequest> inflightRequests;
 
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
+    private PendingStoreQueue(MetricsCollector metricsCollector, int maxBatchSize, long lingerNanos,
+                              @Nullable Runnable commitCallback) {
       this.metricsCollector = metricsCollector;
+      this.maxBatchSize = maxBatchSize;
+      this.lingerNanos = lingerNanos;
+      this.commitCallback = commitCallback;
       this.writeQueue = new ConcurrentLinkedQueue<>();
+      this.queueSize = new AtomicInteger();
       this.inflightRequests = new ArrayList<>(100);
     }
 
@@ -187,32 +233,72 @@ final class ConcurrentMessageWriter implements Closeable {
      */
     void enqueue(PendingStoreRequest storeRequest) {
       writeQueue.add(storeRequest);
+      queueSize.incrementAndGet();
     }
 
     /**
-     * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
+     * Unparks the thread that enqueued the oldest {@link PendingStoreRequest} in the queue, if there is one.
+     */
+    void wakeUpNext() {
+      PendingStoreRequest request = writeQueue.peek();
+      if (request != null) {
+        request.wakeUpWaiter();
+      }
+    }
+
+    boolean isEmpty() {
+      return writeQueue.isEmpty();
+    }
+
+    /**
+     * Persists up to the maximum batch size of {@link PendingStoreRequest} currently in the queue
+     * with the given writer.
      */
     void persist(StoreRequestWriter<?> writer) {
-      // Capture all current events.
+      if (lingerNanos > 0) {
+        // Give more requests a chance to join the batch. The writer flag is being held, so no other thread will
+        // write in the meantime.
+        long deadline = System.nanoTime() + lingerNanos;
+        long remaining = lingerNanos;
+        while (queueSize.get() < maxBatchSize && remaining > 0) {
+          LockSupport.parkNanos(this, remaining);
+          remaining = deadline - System.nanoTime();
+        }
+      }
+
+      // Capture the current events, up to the max batch size.
       // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
       // The number of requests in the queue is bounded by the number of threads that call this method.
       // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
       // the thread pool size used by the http service.
+      metricsCollector.gauge("persist.queue.size", queueSize.get());
       inflightRequests.clear();
-      PendingStoreRequest request = writeQueue.poll();
+      PendingStoreRequest request = inflightRequests.size() < maxBatchSize ? writeQueue.poll() : null;
       while (request != null) {
+        queueSize.decrementAndGet();
         inflightRequests.add(request);
-        request = writeQueue.poll();
+        request = inflightRequests.size() < maxBatchSize ? writeQueue.poll() : null;
       }
 
-      metricsCollector.gauge("persist.queue.size", inflightRequests.size());
+      if (inflightRequests.isEmpty()) {
+        return;
+      }
+      metricsCollector.gauge("persist.batch.size", inflightRequests.size());
 
       try {
         writer.write(inflightRequests.iterator());
-        completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
+        return;
+      }
+      completeAll(null);
+      if (commitCallback != null) {
+        try {
+          commitCallback.run();
+        } catch (Throwable t) {
+          LOG.warn("Exception raised from the commit callback", t);
+        }
       }
     }
 
@@ -221,11 +307,16 @@ final class ConcurrentMessageWriter implements Closeable {
      * This method must be called while holding the writer flag.
      */
     void completeAll(@Nullable Throwable failureCause) {
+      long now = System.nanoTime();
+      long maxCommitNanos = 0L;
       Iterator<PendingStoreRequest> iterator = inflightRequests.iterator();
       while (iterator.hasNext()) {
-        iterator.next().completed(failureCause);
+        PendingStoreRequest request = iterator.next();
+        maxCommitNanos = Math.max(maxCommitNanos, now - request.getEnqueueNanos());
+        request.completed(failureCause);
         iterator.remove();
       }
+      metricsCollector.gauge("persist.commit.time.us", TimeUnit.NANOSECONDS.toMicros(maxCommitNanos));
     }
   }
 
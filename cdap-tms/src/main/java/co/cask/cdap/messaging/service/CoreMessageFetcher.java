@@ -29,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -44,17 +45,51 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final TopicMessageNotifier messageNotifier;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     TopicMessageNotifier messageNotifier) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.messageNotifier = messageNotifier;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long maxWaitMillis = getMaxWaitMillis();
+    // With a transaction, messages written after the transaction started are not visible, hence there is
+    // nothing to wait for. The notifier is also not told about transaction commits.
+    if (maxWaitMillis <= 0 || getTransaction() != null) {
+      return doFetch();
+    }
+
+    // Long polling. Keep fetching whenever new messages were committed to the topic, until there is
+    // something to return or the wait time expired.
+    TopicId topicId = topicMetadata.getTopicId();
+    long deadline = System.currentTimeMillis() + maxWaitMillis;
+    while (true) {
+      // Get the generation before fetching, so that a commit happened during the fetch will end the wait
+      long generation = messageNotifier.getGeneration(topicId);
+      CloseableIterator<RawMessage> iterator = doFetch();
+      long remaining = deadline - System.currentTimeMillis();
+      if (iterator.hasNext() || remaining <= 0) {
+        return iterator;
+      }
+      iterator.close();
+
+      try {
+        messageNotifier.await(topicId, generation, remaining, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for messages in topic " + topicId);
+      }
+    }
+  }
+
+  private CloseableIterator<RawMessage> doFetch() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
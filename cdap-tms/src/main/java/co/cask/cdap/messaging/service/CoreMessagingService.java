@@ -74,6 +74,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final LoadingCache<TopicId, ConcurrentMessageWriter> payloadTableWriterCache;
   private final TimeProvider timeProvider;
   private final MetricsContext metricsContext;
+  private final TopicMessageNotifier messageNotifier;
 
   @Inject
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -86,6 +87,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
                        MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.tableFactory = tableFactory;
+    this.messageNotifier = new TopicMessageNotifier();
     this.topicCache = createTopicCache();
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
@@ -122,6 +124,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       topicCache.invalidate(topicId);
       messageTableWriterCache.invalidate(topicId);
       payloadTableWriterCache.invalidate(topicId);
+      messageNotifier.remove(topicId);
     }
   }
 
@@ -156,7 +159,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       public PayloadTable get() throws IOException {
         return createPayloadTable(metadata);
       }
-    });
+    }, messageNotifier);
   }
 
   @Nullable
@@ -239,7 +242,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
    * @return a {@link LoadingCache} for
    */
   private LoadingCache<TopicId, ConcurrentMessageWriter> createTableWriterCache(final boolean messageTable,
-                                                                                CConfiguration cConf) {
+                                                                                final CConfiguration cConf) {
     long expireSecs = cConf.getLong(Constants.MessagingSystem.TABLE_CACHE_EXPIRATION_SECONDS);
 
     return CacheBuilder.newBuilder()
@@ -259,7 +262,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       })
       .build(new CacheLoader<TopicId, ConcurrentMessageWriter>() {
         @Override
-        public ConcurrentMessageWriter load(TopicId topicId) throws Exception {
+        public ConcurrentMessageWriter load(final TopicId topicId) throws Exception {
           TopicMetadata metadata = getTopic(topicId);
           StoreRequestWriter<?> messagesWriter = messageTable
             ? new MessageTableStoreRequestWriter(createMessageTable(metadata), timeProvider)
@@ -270,7 +273,19 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, writerMetricsContext);
+          // Only messages written to the message table are visible to consumers. Payloads stored to the
+          // payload table become visible through the transactional publish of the message table entry.
+          Runnable commitCallback = !messageTable ? null : new Runnable() {
+            @Override
+            public void run() {
+              messageNotifier.notifyCommitted(topicId);
+            }
+          };
+
+          return new ConcurrentMessageWriter(
+            messagesWriter, writerMetricsContext,
+            cConf.getInt(Constants.MessagingSystem.STORE_WRITER_MAX_BATCH_SIZE),
+            cConf.getLong(Constants.MessagingSystem.STORE_WRITER_LINGER_MICROS), commitCallback);
         }
       });
   }
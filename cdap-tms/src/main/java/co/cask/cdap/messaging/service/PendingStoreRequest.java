@@ -19,6 +19,7 @@ package co.cask.cdap.messaging.service;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
 
+import java.util.concurrent.locks.LockSupport;
 import javax.annotation.Nullable;
 
 /**
@@ -28,8 +29,10 @@ final class PendingStoreRequest extends StoreRequest {
 
   private final StoreRequest originalRequest;
   private final TopicMetadata metadata;
+  private final Thread waiter;
+  private final long enqueueNanos;
 
-  private boolean completed;
+  private volatile boolean completed;
   private long startTimestamp;
   private long endTimestamp;
   private int startSequenceId;
@@ -41,12 +44,28 @@ final class PendingStoreRequest extends StoreRequest {
           originalRequest.getTransactionWritePointer());
     this.originalRequest = originalRequest;
     this.metadata = topicMetadata;
+    this.waiter = Thread.currentThread();
+    this.enqueueNanos = System.nanoTime();
   }
 
   TopicMetadata getTopicMetadata() {
     return metadata;
   }
 
+  /**
+   * Returns the value of {@link System#nanoTime()} when this request was created.
+   */
+  long getEnqueueNanos() {
+    return enqueueNanos;
+  }
+
+  /**
+   * Wakes up the thread that created this request if it is parked, waiting for this request to complete.
+   */
+  void wakeUpWaiter() {
+    LockSupport.unpark(waiter);
+  }
+
   boolean isCompleted() {
     return completed;
   }
@@ -64,8 +83,10 @@ final class PendingStoreRequest extends StoreRequest {
   }
 
   void completed(@Nullable Throwable failureCause) {
-    completed = true;
     this.failureCause = failureCause;
+    // the volatile write publishes all the fields set by the writer thread to the waiting thread
+    completed = true;
+    wakeUpWaiter();
   }
 
   void setStartTimestamp(long startTimestamp) {
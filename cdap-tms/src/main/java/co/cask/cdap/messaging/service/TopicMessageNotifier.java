@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.proto.id.TopicId;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Keeps a generation number per topic that is incremented every time new messages are committed to the
+ * message table of the topic. It is used by long-polling message fetches to wait for new messages
+ * instead of repeatedly scanning an idle topic.
+ */
+@ThreadSafe
+final class TopicMessageNotifier {
+
+  private final ConcurrentMap<TopicId, Generation> generations = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current generation of the given topic. The value should be taken before fetching messages, so that
+   * a commit that happens concurrently to the fetch will not be missed by a following {@link #await} call.
+   */
+  long getGeneration(TopicId topicId) {
+    return getOrCreate(topicId).get();
+  }
+
+  /**
+   * Signals that new messages were committed to the given topic and wakes up all threads waiting on it.
+   */
+  void notifyCommitted(TopicId topicId) {
+    Generation generation = generations.get(topicId);
+    // If nobody ever asked for the generation of the topic, there cannot be anyone waiting on it.
+    if (generation != null) {
+      generation.increment();
+    }
+  }
+
+  /**
+   * Waits until the generation of the given topic becomes different from the given one or the timeout expires.
+   *
+   * @return {@code true} if the generation changed; {@code false} if the timeout expired
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  boolean await(TopicId topicId, long generation, long timeout, TimeUnit unit) throws InterruptedException {
+    return getOrCreate(topicId).await(generation, unit.toNanos(timeout));
+  }
+
+  /**
+   * Removes the state of the given topic. It is called when the topic is deleted.
+   */
+  void remove(TopicId topicId) {
+    Generation generation = generations.remove(topicId);
+    if (generation != null) {
+      // Wake up waiters so that they can find out the topic is gone
+      generation.increment();
+    }
+  }
+
+  private Generation getOrCreate(TopicId topicId) {
+    Generation generation = generations.get(topicId);
+    if (generation == null) {
+      generation = new Generation();
+      Generation existing = generations.putIfAbsent(topicId, generation);
+      if (existing != null) {
+        generation = existing;
+      }
+    }
+    return generation;
+  }
+
+  /**
+   * A monotonically increasing counter that threads can wait on for change.
+   */
+  private static final class Generation {
+    private long value;
+
+    synchronized long get() {
+      return value;
+    }
+
+    synchronized void increment() {
+      value++;
+      notifyAll();
+    }
+
+    synchronized boolean await(long generation, long timeoutNanos) throws InterruptedException {
+      long deadline = System.nanoTime() + timeoutNanos;
+      long remaining = timeoutNanos;
+      while (value == generation && remaining > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        remaining = deadline - System.nanoTime();
+      }
+      return value != generation;
+    }
+  }
+}
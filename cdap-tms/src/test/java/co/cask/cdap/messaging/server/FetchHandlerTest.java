@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.messaging.server;
+
+import co.cask.cdap.messaging.Schemas;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link FetchHandler}.
+ */
+public class FetchHandlerTest {
+
+  @Test
+  public void testDecodeConsumeRequest() throws IOException {
+    // Request from a client that doesn't support long polling
+    GenericRecord request = new GenericData.Record(Schemas.V1.ConsumeRequest.SCHEMA_WITHOUT_MAX_WAIT);
+    request.put("startFrom", 1234L);
+    request.put("inclusive", false);
+    request.put("limit", 10);
+    GenericRecord decoded = FetchHandler.decodeConsumeRequest(
+      ChannelBuffers.wrappedBuffer(encode(request, Schemas.V1.ConsumeRequest.SCHEMA_WITHOUT_MAX_WAIT)));
+    Assert.assertEquals(1234L, decoded.get("startFrom"));
+    Assert.assertEquals(false, decoded.get("inclusive"));
+    Assert.assertEquals(10, decoded.get("limit"));
+    Assert.assertNull(decoded.get("transaction"));
+    Assert.assertNull(decoded.get("maxWaitMillis"));
+
+    // Request with the max wait time
+    request = new GenericData.Record(Schemas.V1.ConsumeRequest.SCHEMA);
+    request.put("startFrom", 1234L);
+    request.put("inclusive", true);
+    request.put("maxWaitMillis", 5000L);
+    decoded = FetchHandler.decodeConsumeRequest(
+      ChannelBuffers.wrappedBuffer(encode(request, Schemas.V1.ConsumeRequest.SCHEMA)));
+    Assert.assertEquals(1234L, decoded.get("startFrom"));
+    Assert.assertEquals(true, decoded.get("inclusive"));
+    Assert.assertNull(decoded.get("limit"));
+    Assert.assertEquals(5000L, decoded.get("maxWaitMillis"));
+
+    // Request with the full schema, but without the max wait time
+    request.put("maxWaitMillis", null);
+    decoded = FetchHandler.decodeConsumeRequest(
+      ChannelBuffers.wrappedBuffer(encode(request, Schemas.V1.ConsumeRequest.SCHEMA)));
+    Assert.assertEquals(1234L, decoded.get("startFrom"));
+    Assert.assertNull(decoded.get("maxWaitMillis"));
+  }
+
+  private byte[] encode(GenericRecord record, Schema schema) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Encoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    new GenericDatumWriter<GenericRecord>(schema).write(record, encoder);
+    return os.toByteArray();
+  }
+}
@@ -36,6 +36,7 @@ import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.inject.AbstractModule;
@@ -56,6 +57,10 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link MessagingHttpService}.
@@ -403,6 +408,57 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topicId);
   }
 
+  @Test
+  public void testLongPoll() throws Exception {
+    final TopicId topicId = new NamespaceId("ns1").topic("testLongPoll");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Fetching from an empty topic should wait for the max wait time and then return nothing
+    Stopwatch stopwatch = new Stopwatch().start();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                        .setMaxWait(500, TimeUnit.MILLISECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() >= 500);
+
+    // Publish a message while a long poll is waiting, the poll should return it before the max wait time
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      executor.schedule(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          client.publish(StoreRequestBuilder.of(topicId).addPayloads("m1").build());
+          return null;
+        }
+      }, 500, TimeUnit.MILLISECONDS);
+
+      stopwatch.reset().start();
+      List<RawMessage> messages = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                          .setMaxWait(20, TimeUnit.SECONDS).fetch()) {
+        Iterators.addAll(messages, iterator);
+      }
+      Assert.assertTrue(stopwatch.elapsedMillis() < TimeUnit.SECONDS.toMillis(20));
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m1", Bytes.toString(messages.get(0).getPayload()));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Fetching with a transaction never waits, since messages published later are not visible to the transaction
+    stopwatch.reset().start();
+    Transaction transaction = new Transaction(3L, 3L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                        .setStartMessage(messages.get(0).getId(), false)
+                                                        .setTransaction(transaction)
+                                                        .setMaxWait(20, TimeUnit.SECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() < TimeUnit.SECONDS.toMillis(20));
+
+    client.deleteTopic(topicId);
+  }
+
   @Test
   public void testPayloadTable() throws Exception {
     // This test is to verify storing transaction messages to the payload table
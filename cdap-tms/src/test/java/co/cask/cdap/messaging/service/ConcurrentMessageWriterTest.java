@@ -37,6 +37,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -46,6 +47,7 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
@@ -268,6 +270,54 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testBoundedBatchSize() throws InterruptedException {
+    int threadCount = 10;
+    final int requestPerThread = 10;
+    final int maxBatchSize = 3;
+
+    final TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    final TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(), 5L);
+
+    // Records the largest batch size reported by the writer
+    final AtomicLong largestBatch = new AtomicLong();
+    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        // no-op
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        if ("persist.batch.size".equals(metricName) && value > largestBatch.get()) {
+          largestBatch.set(value);
+        }
+      }
+    }, maxBatchSize, 1000L, null);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < requestPerThread; i++) {
+              writer.persist(new TestStoreRequest(topicId, Collections.singletonList(Integer.toString(i))), metadata);
+            }
+          } catch (Exception e) {
+            LOG.error("Exception raised when persisting.", e);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    Assert.assertEquals(threadCount * requestPerThread, testWriter.getMessages().get(topicId).size());
+    Assert.assertTrue(largestBatch.get() > 0 && largestBatch.get() <= maxBatchSize);
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
@@ -47,6 +47,8 @@ public final class LoggingConfiguration {
   public static final String KAFKA_PRODUCER_TYPE = "kafka.producer.type";
   public static final String KAFKA_PROCUDER_BUFFER_MS = "kafka.producer.buffer.ms";
   public static final String LOG_CLEANUP_RUN_INTERVAL_MINS = "log.cleanup.run.interval.mins";
+  public static final String LOG_READ_PREFETCH_FILES = "log.read.prefetch.files";
+  public static final String LOG_READ_THREADS = "log.read.threads";
 
   // Constants
   // Table used to store log metadata
@@ -57,6 +59,8 @@ public final class LoggingConfiguration {
   public static final long DEFAULT_KAFKA_PROCUDER_BUFFER_MS = 1000;
   public static final String DEFAULT_NUM_PARTITIONS = "10";
   public static final int DEFAULT_LOG_CLEANUP_RUN_INTERVAL_MINS = 24 * 60;
+  public static final int DEFAULT_LOG_READ_PREFETCH_FILES = 4;
+  public static final int DEFAULT_LOG_READ_THREADS = 32;
 
   public static final long DEFAULT_LOG_SAVER_EVENT_BUCKET_INTERVAL_MS = 1 * 1000;
   public static final long DEFAULT_LOG_SAVER_MAXIMUM_INMEMORY_EVENT_BUCKETS = 4;
@@ -23,6 +23,8 @@ import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.common.security.Impersonator;
 import co.cask.cdap.logging.filter.Filter;
 import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.logging.write.FileMetaDataManager;
+import co.cask.cdap.logging.write.LogFileIndex;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -38,11 +40,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * Reads log events from an Avro file.
@@ -207,9 +211,17 @@ public class AvroFileReader {
       List<LogEvent> logSegment;
       int count = 0;
 
-      // Calculate skipLen based on fileLength
       long length = file.length();
       LOG.trace("Got file length {}", length);
+
+      LogFileIndex index = loadIndex(file, namespaceId, impersonator);
+      if (index != null && index.size() > 0) {
+        count = readIndexedSegments(dataFileReader, index, length, logFilter, fromTimeMs, maxEvents, logSegments);
+        int skip = count >= maxEvents ? count - maxEvents : 0;
+        return Lists.newArrayList(Iterables.skip(Iterables.concat(Lists.reverse(logSegments)), skip));
+      }
+
+      // Calculate skipLen based on fileLength
       long skipLen = length / 10;
       if (skipLen > DEFAULT_SKIP_LEN || skipLen <= 0) {
         skipLen = DEFAULT_SKIP_LEN;
@@ -257,6 +269,73 @@ public class AvroFileReader {
     }
   }
 
+  /**
+   * Reads the blocks between index entries backward, starting from the last entry with timestamp smaller than or
+   * equal to fromTimeMs, until maxEvents are collected or the beginning of the file is reached.
+   *
+   * @return number of log events read into the given list of segments
+   */
+  private int readIndexedSegments(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index, long length,
+                                  Filter logFilter, long fromTimeMs, int maxEvents,
+                                  List<List<LogEvent>> logSegments) throws IOException {
+    // Position of the first block in the file, which may be before the first index entry
+    long dataStart = dataFileReader.previousSync();
+    int count = 0;
+
+    // Entry -1 represents the blocks before the first index entry
+    for (int entry = index.floorEntry(fromTimeMs); entry >= -1 && count < maxEvents; entry--) {
+      // Entries before the floor entry can still have larger timestamps if events were appended late
+      if (entry >= 0 && index.getTimestamp(entry) > fromTimeMs) {
+        continue;
+      }
+      long startPosition = entry < 0 ? dataStart : index.getPosition(entry);
+      // Index entries beyond the file length seen by the reader are not readable yet
+      if (startPosition >= length || (entry < 0 && startPosition >= index.getPosition(0))) {
+        continue;
+      }
+      long endPosition = entry + 1 < index.size() ? index.getPosition(entry + 1) : -1;
+      if (endPosition >= length) {
+        endPosition = -1;
+      }
+
+      dataFileReader.seek(startPosition);
+      List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+      if (!logSegment.isEmpty()) {
+        logSegments.add(logSegment);
+        count += logSegment.size();
+      }
+      LOG.trace("Read logevents {} from position {} to endPosition {} using index", count, startPosition,
+                endPosition);
+    }
+    return count;
+  }
+
+  /**
+   * Loads the time index of the given log file.
+   *
+   * @return the index or {@code null} if the file does not have an index or failed to load it
+   */
+  @Nullable
+  private LogFileIndex loadIndex(final Location file, NamespaceId namespaceId, Impersonator impersonator) {
+    try {
+      return impersonator.doAs(namespaceId, new Callable<LogFileIndex>() {
+        @Override
+        public LogFileIndex call() throws Exception {
+          Location indexLocation = FileMetaDataManager.getIndexLocation(file);
+          if (!indexLocation.exists()) {
+            return null;
+          }
+          try (InputStream input = indexLocation.getInputStream()) {
+            return LogFileIndex.read(input);
+          }
+        }
+      });
+    } catch (Exception e) {
+      LOG.warn("Failed to load index for log file {}. Scanning the file instead.", file, e);
+      return null;
+    }
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
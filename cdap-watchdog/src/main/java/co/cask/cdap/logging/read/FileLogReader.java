@@ -29,13 +29,16 @@ import co.cask.cdap.logging.serialize.LogSchema;
 import co.cask.cdap.logging.write.FileMetaDataManager;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import org.apache.avro.Schema;
+import org.apache.twill.common.Threads;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +49,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Reads log events from a file.
@@ -56,6 +63,8 @@ public class FileLogReader implements LogReader {
   private final FileMetaDataManager fileMetaDataManager;
   private final Schema schema;
   private final Impersonator impersonator;
+  private final int prefetchFiles;
+  private final ExecutorService prefetchExecutor;
 
   @Inject
   public FileLogReader(CConfiguration cConf, FileMetaDataManager fileMetaDataManager, Impersonator impersonator) {
@@ -70,6 +79,17 @@ public class FileLogReader implements LogReader {
       LOG.error("Got exception", e);
       throw Throwables.propagate(e);
     }
+
+    this.prefetchFiles = cConf.getInt(LoggingConfiguration.LOG_READ_PREFETCH_FILES,
+                                      LoggingConfiguration.DEFAULT_LOG_READ_PREFETCH_FILES);
+    int threads = cConf.getInt(LoggingConfiguration.LOG_READ_THREADS, LoggingConfiguration.DEFAULT_LOG_READ_THREADS);
+    // Use a direct hand off queue so that files are read by the caller when all threads are busy,
+    // instead of waiting behind reads of other requests.
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                                         new SynchronousQueue<Runnable>(),
+                                                         Threads.createDaemonThreadFactory("log-reader-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    this.prefetchExecutor = executor;
   }
 
   @Override
@@ -185,46 +205,21 @@ public class FileLogReader implements LogReader {
         };
       }
 
-      List<Location> filesInRange = getFilesInRange(sortedFiles, fromTimeMs, toTimeMs);
+      NavigableMap<Long, Location> filesInRange = getFileMapInRange(sortedFiles, fromTimeMs, toTimeMs);
 
       final AvroFileReader avroFileReader = new AvroFileReader(schema);
-      final Iterator<Location> filesIter = filesInRange.iterator();
       final NamespaceId namespaceId = LoggingContextHelper.getNamespaceId(loggingContext);
 
-      CloseableIterator closeableIterator = new CloseableIterator() {
-        private CloseableIterator<LogEvent> curr = null;
-
-        @Override
-        public void close() {
-          if (curr != null) {
-            curr.close();
-          }
-        }
-
-        @Override
-        public boolean hasNext() {
-          return filesIter.hasNext();
-        }
-
+      // Files are read ahead concurrently and merged in timestamp order
+      return new PrefetchingLogEventIterator(prefetchExecutor, prefetchFiles, filesInRange.entrySet(),
+                                             new Function<Location, CloseableIterator<LogEvent>>() {
         @Override
-        public CloseableIterator<LogEvent> next() {
-          if (curr != null) {
-            curr.close();
-          }
-          Location file = filesIter.next();
+        public CloseableIterator<LogEvent> apply(Location file) {
           LOG.trace("Reading file {}", file);
-          curr = avroFileReader.readLog(file, logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE,
+          return avroFileReader.readLog(file, logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE,
                                         namespaceId, impersonator);
-          return curr;
-        }
-
-        @Override
-        public void remove() {
-          throw new UnsupportedOperationException("Remove not supported");
         }
-      };
-
-      return concat(closeableIterator);
+      });
     } catch (Throwable e) {
       LOG.error("Got exception: ", e);
       throw Throwables.propagate(e);
@@ -309,6 +304,15 @@ public class FileLogReader implements LogReader {
 
   @VisibleForTesting
   static List<Location> getFilesInRange(NavigableMap<Long, Location> sortedFiles, long fromTimeMs, long toTimeMs) {
+    return ImmutableList.copyOf(getFileMapInRange(sortedFiles, fromTimeMs, toTimeMs).values());
+  }
+
+  /**
+   * Same as {@link #getFilesInRange(NavigableMap, long, long)}, except that it returns the files together with
+   * their start time.
+   */
+  private static NavigableMap<Long, Location> getFileMapInRange(NavigableMap<Long, Location> sortedFiles,
+                                                                long fromTimeMs, long toTimeMs) {
     // Get a list of files to read based on fromMillis and toMillis.
     // Each file is associated with the time of the first log message in it.
     // Let c be the file with the largest timestamp smaller than readRange.getFromMillis().
@@ -321,9 +325,9 @@ public class FileLogReader implements LogReader {
       // deleted, in case of old program runs. For such requests both the start and toTimeMs
       // will fall outside the range sortedFiles. In that case return empty list.
       if (start > toTimeMs) {
-        return ImmutableList.of();
+        return ImmutableSortedMap.<Long, Location>of();
       }
     }
-    return ImmutableList.copyOf(sortedFiles.subMap(start, toTimeMs).values());
+    return sortedFiles.subMap(start, true, toTimeMs, false);
   }
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.read;
+
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link CloseableIterator} that reads log events from multiple log files. Up to a given number of files are
+ * read ahead concurrently, each of them into a bounded buffer, and the events are merged in timestamp order.
+ * If the executor has no thread available for reading ahead, the file is read by the caller thread instead.
+ */
+final class PrefetchingLogEventIterator extends AbstractCloseableIterator<LogEvent> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PrefetchingLogEventIterator.class);
+
+  // Maximum number of event batches prefetched for each file and the size of each batch
+  private static final int MAX_PREFETCH_BATCHES = 4;
+  private static final int BATCH_SIZE = 256;
+  private static final long POLL_MILLIS = 100L;
+
+  // Marker for the end of events of a file
+  private static final List<LogEvent> END_OF_FILE = new ArrayList<>(0);
+
+  // Orders files by the timestamp of their current events. Ties are broken by the file order.
+  private static final Comparator<FileFetch> HEAD_COMPARATOR = new Comparator<FileFetch>() {
+    @Override
+    public int compare(FileFetch fetch1, FileFetch fetch2) {
+      int cmp = Long.compare(fetch1.head.getLoggingEvent().getTimeStamp(),
+                             fetch2.head.getLoggingEvent().getTimeStamp());
+      return cmp != 0 ? cmp : Integer.compare(fetch1.order, fetch2.order);
+    }
+  };
+
+  private final Executor executor;
+  private final int prefetchFiles;
+  private final Function<Location, CloseableIterator<LogEvent>> fileReader;
+  private final List<FileFetch> fetches;
+  private final PriorityQueue<FileFetch> merging;
+  private int nextMerge;
+  private int nextStart;
+  private int finished;
+
+  /**
+   * Creates an iterator and starts reading ahead the first files.
+   *
+   * @param executor {@link Executor} for running the read ahead tasks
+   * @param prefetchFiles maximum number of files to be read ahead concurrently
+   * @param files the files to read from, as entries from the time of the first event in the file to the file,
+   *              ordered by time
+   * @param fileReader function for opening an iterator over the events in a file that matches the read request
+   */
+  PrefetchingLogEventIterator(Executor executor, int prefetchFiles, Iterable<Map.Entry<Long, Location>> files,
+                              Function<Location, CloseableIterator<LogEvent>> fileReader) {
+    this.executor = executor;
+    this.prefetchFiles = Math.max(1, prefetchFiles);
+    this.fileReader = fileReader;
+    this.fetches = Lists.newArrayList();
+    for (Map.Entry<Long, Location> entry : files) {
+      fetches.add(new FileFetch(fetches.size(), entry.getKey(), entry.getValue()));
+    }
+    this.merging = new PriorityQueue<>(Math.max(1, fetches.size()), HEAD_COMPARATOR);
+    startFetches();
+  }
+
+  @Override
+  protected LogEvent computeNext() {
+    // Files are ordered by the time of their first events, hence a file only needs to be merged once the
+    // smallest event timestamp among the merging files reaches the time of the file.
+    while (nextMerge < fetches.size()
+      && (merging.isEmpty() || merging.peek().getTimestamp() >= fetches.get(nextMerge).startTime)) {
+      addToMerge(fetches.get(nextMerge++));
+    }
+
+    FileFetch fetch = merging.poll();
+    if (fetch == null) {
+      return endOfData();
+    }
+    LogEvent event = fetch.head;
+    addToMerge(fetch);
+    return event;
+  }
+
+  @Override
+  public void close() {
+    for (FileFetch fetch : fetches) {
+      fetch.cancel();
+    }
+    merging.clear();
+  }
+
+  /**
+   * Advances the given file to its next event and puts it in the merging queue. If the file has no more events,
+   * starts reading ahead the next file.
+   */
+  private void addToMerge(FileFetch fetch) {
+    fetch.start();
+    if (fetch.advance()) {
+      merging.add(fetch);
+    } else {
+      finished++;
+      startFetches();
+    }
+  }
+
+  private void startFetches() {
+    while (nextStart < fetches.size() && nextStart < finished + prefetchFiles) {
+      fetches.get(nextStart++).start();
+    }
+  }
+
+  /**
+   * Reads events of a batch from the given iterator.
+   */
+  private static List<LogEvent> readBatch(Iterator<LogEvent> iterator) {
+    List<LogEvent> events = new ArrayList<>(BATCH_SIZE);
+    while (events.size() < BATCH_SIZE && iterator.hasNext()) {
+      events.add(iterator.next());
+    }
+    return events;
+  }
+
+  /**
+   * Task for reading events from one file into a bounded buffer.
+   */
+  private final class FileFetch implements Runnable {
+
+    private final int order;
+    private final long startTime;
+    private final Location file;
+    private final BlockingQueue<List<LogEvent>> batches;
+    private volatile boolean cancelled;
+
+    // Following fields are only accessed by the caller thread
+    private boolean started;
+    private CloseableIterator<LogEvent> directIterator;
+    private Iterator<LogEvent> batch;
+    private LogEvent head;
+
+    FileFetch(int order, long startTime, Location file) {
+      this.order = order;
+      this.startTime = startTime;
+      this.file = file;
+      this.batches = new ArrayBlockingQueue<>(MAX_PREFETCH_BATCHES);
+    }
+
+    /**
+     * Starts reading ahead the file if it is not yet started.
+     */
+    void start() {
+      if (started) {
+        return;
+      }
+      started = true;
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        LOG.trace("No thread available for reading ahead log file {}. Reading it directly.", file);
+        directIterator = fileReader.apply(file);
+      }
+    }
+
+    @Override
+    public void run() {
+      try (CloseableIterator<LogEvent> iterator = fileReader.apply(file)) {
+        while (!cancelled && iterator.hasNext()) {
+          if (!put(readBatch(iterator))) {
+            return;
+          }
+        }
+      } catch (Throwable t) {
+        LOG.warn("Got exception reading log file {}", file, t);
+      }
+      try {
+        put(END_OF_FILE);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Moves to the next event of the file.
+     *
+     * @return {@code true} if there is a next event, {@code false} if the end of file is reached
+     */
+    boolean advance() {
+      while (batch == null || !batch.hasNext()) {
+        List<LogEvent> next = take();
+        if (next == END_OF_FILE) {
+          head = null;
+          return false;
+        }
+        batch = next.iterator();
+      }
+      head = batch.next();
+      return true;
+    }
+
+    long getTimestamp() {
+      return head.getLoggingEvent().getTimeStamp();
+    }
+
+    void cancel() {
+      cancelled = true;
+      // Free up the buffer so that the task can find out about the cancellation sooner
+      batches.clear();
+      if (directIterator != null) {
+        directIterator.close();
+        directIterator = null;
+      }
+    }
+
+    /**
+     * Puts a batch of events to the buffer, waiting for space if necessary.
+     *
+     * @return {@code true} if the batch was added, {@code false} if this task is cancelled
+     */
+    private boolean put(List<LogEvent> events) throws InterruptedException {
+      while (!batches.offer(events, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (cancelled) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Takes the next batch of events, either from the buffer or directly from the file.
+     */
+    private List<LogEvent> take() {
+      if (directIterator != null) {
+        if (directIterator.hasNext()) {
+          return readBatch(directIterator);
+        }
+        directIterator.close();
+        directIterator = null;
+        return END_OF_FILE;
+      }
+      if (cancelled) {
+        return END_OF_FILE;
+      }
+      try {
+        return batches.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Throwables.propagate(e);
+      }
+    }
+  }
+}
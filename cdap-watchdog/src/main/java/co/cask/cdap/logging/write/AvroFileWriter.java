@@ -42,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Helper class that manages writing of KafkaLogEvent to Avro files. The events are written into appropriate files
@@ -110,6 +111,11 @@ public final class AvroFileWriter implements Closeable, Flushable {
     AvroFile avroFile = getAvroFile(loggingContext, timestamp);
     avroFile = rotateFile(avroFile, loggingContext, timestamp);
 
+    long minTimestamp = timestamp;
+    for (LogWriteEvent e : events) {
+      minTimestamp = Math.min(minTimestamp, e.getLogEvent().getTimeStamp());
+    }
+    avroFile.index(minTimestamp);
     for (LogWriteEvent e : events) {
       avroFile.append(e);
     }
@@ -254,6 +260,10 @@ public final class AvroFileWriter implements Closeable, Flushable {
         if (avroFile.getLocation().exists()) {
           avroFile.getLocation().delete();
         }
+        Location indexLocation = FileMetaDataManager.getIndexLocation(avroFile.getLocation());
+        if (indexLocation.exists()) {
+          indexLocation.delete();
+        }
       }
     } catch (IOException e) {
       LOG.error("Error while closing and deleting file {}", avroFile.getLocation(), e);
@@ -270,6 +280,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
     private final Location location;
     private FSDataOutputStream outputStream;
     private DataFileWriter<GenericRecord> dataFileWriter;
+    private LogFileIndex.Writer indexWriter;
     private long createTime;
     private boolean isOpen = false;
 
@@ -289,6 +300,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
         this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
         this.dataFileWriter.create(schema, this.outputStream);
         this.dataFileWriter.setSyncInterval(syncIntervalBytes);
+        this.indexWriter = openIndex();
         this.createTime = System.currentTimeMillis();
         // Sync the file as soon as it is created, otherwise a zero length Avro file can get created on OOM
         sync();
@@ -316,6 +328,38 @@ public final class AvroFileWriter implements Closeable, Flushable {
       }
     }
 
+    /**
+     * Prepares for appending events with the given minimum timestamp. The current block is ended and the position
+     * of the next block is recorded in the index if the last indexed block is at least sync interval bytes away,
+     * or if the events are older than the timestamp of the last index entry. The latter keeps the timestamp of
+     * each entry not larger than any event it covers, so that late events are not skipped by readers.
+     * Failure in writing the index only disables indexing, since readers fall back to scanning the log file for the
+     * part not covered by the index.
+     */
+    void index(long minTimestamp) throws IOException {
+      if (indexWriter == null) {
+        return;
+      }
+      long lastPosition = indexWriter.getLastPosition();
+      if (lastPosition >= 0 && minTimestamp >= indexWriter.getLastTimestamp()
+        && getPos() - lastPosition < syncIntervalBytes) {
+        return;
+      }
+      long position;
+      try {
+        position = dataFileWriter.sync();
+      } catch (Exception e) {
+        close();
+        throw new IOException("Exception while syncing file " + location, e);
+      }
+      try {
+        indexWriter.append(minTimestamp, position);
+      } catch (IOException e) {
+        LOG.warn("Failed to write index for file {}. Stop indexing the file.", location, e);
+        closeIndex();
+      }
+    }
+
     public long getPos() throws IOException {
       try {
         return outputStream.getPos();
@@ -337,6 +381,8 @@ public final class AvroFileWriter implements Closeable, Flushable {
         close();
         throw new IOException("Exception while flushing file " + location, e);
       }
+      // The index is flushed after the log file, so that it never refers to a block that is not visible yet
+      flushIndex();
     }
 
     public void sync() throws IOException {
@@ -347,6 +393,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
         close();
         throw new IOException("Exception while syncing file " + location, e);
       }
+      flushIndex();
     }
 
     @Override
@@ -363,10 +410,48 @@ public final class AvroFileWriter implements Closeable, Flushable {
           dataFileWriter.close();
         }
       } finally {
-        if (outputStream != null) {
-          outputStream.close();
+        try {
+          if (outputStream != null) {
+            outputStream.close();
+          }
+        } finally {
+          closeIndex();
         }
       }
     }
+
+    @Nullable
+    private LogFileIndex.Writer openIndex() {
+      try {
+        return new LogFileIndex.Writer(FileMetaDataManager.getIndexLocation(location));
+      } catch (IOException e) {
+        LOG.warn("Failed to create index for file {}. The file will not be indexed.", location, e);
+        return null;
+      }
+    }
+
+    private void flushIndex() {
+      if (indexWriter == null) {
+        return;
+      }
+      try {
+        indexWriter.flush();
+      } catch (IOException e) {
+        LOG.warn("Failed to flush index for file {}. Stop indexing the file.", location, e);
+        closeIndex();
+      }
+    }
+
+    private void closeIndex() {
+      if (indexWriter == null) {
+        return;
+      }
+      try {
+        indexWriter.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close index for file {}", location, e);
+      }
+      indexWriter = null;
+    }
   }
 }
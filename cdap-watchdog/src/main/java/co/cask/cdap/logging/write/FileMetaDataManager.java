@@ -21,6 +21,7 @@ import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.io.Processor;
 import co.cask.cdap.common.io.RootLocationFactory;
 import co.cask.cdap.common.logging.LoggingContext;
@@ -42,6 +43,7 @@ import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -60,6 +62,7 @@ public final class FileMetaDataManager {
   private static final byte[] ROW_KEY_PREFIX = Bytes.toBytes(200);
   private static final byte[] ROW_KEY_PREFIX_END = Bytes.toBytes(201);
   private static final NavigableMap<?, ?> EMPTY_MAP = Maps.unmodifiableNavigableMap(new TreeMap());
+  private static final String INDEX_FILE_SUFFIX = ".idx";
 
   private final RootLocationFactory rootLocationFactory;
   private final NamespacedLocationFactory namespacedLocationFactory;
@@ -84,6 +87,21 @@ public final class FileMetaDataManager {
     this.impersonator = impersonator;
   }
 
+  /**
+   * Returns the location of the time index file that is written along with the given log file. The index lives
+   * in the same directory as the log file.
+   *
+   * @param location log file.
+   * @return location of the index file, which may not exist.
+   */
+  public static Location getIndexLocation(Location location) throws IOException {
+    Location parent = Locations.getParent(location);
+    if (parent == null) {
+      throw new IOException("Log file " + location + " does not have a parent directory");
+    }
+    return parent.append(location.getName() + INDEX_FILE_SUFFIX);
+  }
+
   /**
    * Persists meta data associated with a log file.
    *
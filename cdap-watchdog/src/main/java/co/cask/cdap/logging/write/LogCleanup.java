@@ -309,6 +309,10 @@ public final class LogCleanup implements Runnable {
         if (location.exists()) {
           LOG.info("Deleting log file {}", location);
           location.delete();
+          Location indexLocation = FileMetaDataManager.getIndexLocation(location);
+          if (indexLocation.exists()) {
+            indexLocation.delete();
+          }
           parentDirs.put(namespacedBaseDir, getParent(location));
         }
         return null;
@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Longs;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.twill.filesystem.Location;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A time index of an Avro log file. It contains (timestamp, position) pairs in increasing position order, where
+ * each position is the start of an Avro block in the log file. The timestamp is not larger than the time of any
+ * event from that position up to the position of the next entry. Timestamps are not necessarily in increasing order,
+ * since events that arrive late start a new entry with an earlier timestamp.
+ * The index is written next to the log file by {@link AvroFileWriter} and is used by readers to locate blocks
+ * by time without scanning the log file.
+ *
+ * The index file has the format:
+ *
+ * <pre>
+ * {@code
+ *
+ * index = magic (timestamp position)*
+ * magic = 'L' 'I' '1'
+ * timestamp = 8 bytes long
+ * position = 8 bytes long
+ * }
+ * </pre>
+ *
+ * An incomplete trailing entry, which can be seen while the index is being written, is ignored.
+ */
+public final class LogFileIndex {
+
+  private static final byte[] INDEX_MAGIC_HEADER = {'L', 'I', '1'};
+  private static final int ENTRY_SIZE = Longs.BYTES * 2;
+
+  // Parallel arrays for holding timestamps and corresponding positions in the index.
+  private final long[] timestamps;
+  private final long[] positions;
+
+  /**
+   * Reads the index from the given input.
+   *
+   * @throws IOException if failed to read or the input is not a log file index
+   */
+  public static LogFileIndex read(InputStream input) throws IOException {
+    byte[] content = ByteStreams.toByteArray(input);
+    if (content.length < INDEX_MAGIC_HEADER.length
+      || !Arrays.equals(Arrays.copyOf(content, INDEX_MAGIC_HEADER.length), INDEX_MAGIC_HEADER)) {
+      throw new IOException("Unsupported index file format. Expected magic bytes as 'L' 'I' '1'");
+    }
+
+    int size = (content.length - INDEX_MAGIC_HEADER.length) / ENTRY_SIZE;
+    long[] timestamps = new long[size];
+    long[] positions = new long[size];
+    int offset = INDEX_MAGIC_HEADER.length;
+    for (int i = 0; i < size; i++) {
+      timestamps[i] = Bytes.toLong(content, offset);
+      positions[i] = Bytes.toLong(content, offset + Longs.BYTES);
+      offset += ENTRY_SIZE;
+    }
+    return new LogFileIndex(timestamps, positions);
+  }
+
+  private LogFileIndex(long[] timestamps, long[] positions) {
+    this.timestamps = timestamps;
+    this.positions = positions;
+  }
+
+  /**
+   * Returns number of entries in the index.
+   */
+  public int size() {
+    return timestamps.length;
+  }
+
+  /**
+   * Returns the log file position of the given entry.
+   */
+  public long getPosition(int entry) {
+    return positions[entry];
+  }
+
+  /**
+   * Returns the timestamp of the given entry.
+   */
+  public long getTimestamp(int entry) {
+    return timestamps[entry];
+  }
+
+  /**
+   * Finds the last entry that has timestamp smaller than or equal to the given timestamp. Events after the position
+   * of that entry all have larger timestamps.
+   *
+   * @param timestamp log event timestamp to search for
+   * @return the entry number or {@code -1} if every entry in the index has a larger timestamp
+   */
+  public int floorEntry(long timestamp) {
+    // Timestamps are not sorted, hence cannot use binary search
+    int entry = timestamps.length - 1;
+    while (entry >= 0 && timestamps[entry] > timestamp) {
+      entry--;
+    }
+    return entry;
+  }
+
+  /**
+   * Writer for appending entries to a log file index.
+   */
+  static final class Writer implements Closeable {
+
+    private final FSDataOutputStream output;
+    private long lastTimestamp = Long.MAX_VALUE;
+    private long lastPosition = -1L;
+
+    Writer(Location location) throws IOException {
+      this.output = new FSDataOutputStream(location.getOutputStream(), null);
+      try {
+        output.write(INDEX_MAGIC_HEADER);
+      } catch (IOException e) {
+        output.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Returns the log file position of the last entry written or {@code -1} if nothing has been written.
+     */
+    long getLastPosition() {
+      return lastPosition;
+    }
+
+    /**
+     * Returns the timestamp of the last entry written or {@link Long#MAX_VALUE} if nothing has been written.
+     */
+    long getLastTimestamp() {
+      return lastTimestamp;
+    }
+
+    /**
+     * Appends an entry to the index. Entries that would break the position order are dropped. The caller must only
+     * append an entry at a position past the events of the previous entry.
+     */
+    void append(long timestamp, long position) throws IOException {
+      if (position <= lastPosition) {
+        return;
+      }
+      output.writeLong(timestamp);
+      output.writeLong(position);
+      lastTimestamp = timestamp;
+      lastPosition = position;
+    }
+
+    /**
+     * Makes entries written so far visible to readers.
+     */
+    void flush() throws IOException {
+      output.hflush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+}
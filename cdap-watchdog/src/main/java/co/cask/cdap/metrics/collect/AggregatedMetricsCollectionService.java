@@ -33,9 +33,13 @@ import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -51,7 +55,12 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   private static final long CACHE_EXPIRE_MINUTES = 1;
 
   private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  // Emitters of each set of tags. Entries are not expired by the map itself, but by the emitting thread,
+  // which knows when the emitters of a set of tags were last updated.
+  private final ConcurrentMap<Map<String, String>, ContextEmitters> emitters;
+  // Emitters removed by the last emission, which are emitted one more time to pick up updates that raced with
+  // the removal. Only accessed by the emitting thread.
+  private List<ContextEmitters> retiredEmitters;
 
   private ScheduledExecutorService executorService;
 
@@ -59,25 +68,8 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
     this.collectors = CacheBuilder.newBuilder()
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
       .build(createCollectorLoader());
-
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this.emitters = new ConcurrentHashMap<>();
+    this.retiredEmitters = new ArrayList<>();
   }
 
   /**
@@ -145,20 +137,42 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   }
 
   private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+    final long now = System.nanoTime();
+    final long expireNanos = TimeUnit.MINUTES.toNanos(CACHE_EXPIRE_MINUTES);
+    final Iterator<ContextEmitters> retiredIterator = retiredEmitters.iterator();
+    final Iterator<ContextEmitters> iterator = emitters.values().iterator();
+    retiredEmitters = new ArrayList<>();
+
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
-        while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
+        while (retiredIterator.hasNext() || iterator.hasNext()) {
+          ContextEmitters contextEmitters;
+          if (retiredIterator.hasNext()) {
+            contextEmitters = retiredIterator.next();
+          } else {
+            contextEmitters = iterator.next();
+            if (!contextEmitters.isUpdated() && now - contextEmitters.lastUpdated > expireNanos) {
+              // Nothing was updated for a while, remove the emitters. Contexts still referencing them
+              // will get a new instance on the next update.
+              contextEmitters.retired = true;
+              emitters.remove(contextEmitters.tags, contextEmitters);
+              retiredEmitters.add(contextEmitters);
+              continue;
+            }
+          }
+
+          // skip without emitting anything if there was no update since the last emission
+          if (!contextEmitters.resetUpdated()) {
+            continue;
+          }
+          contextEmitters.lastUpdated = now;
+
+          Collection<AggregatedMetricsEmitter> metricEmitters = contextEmitters.emitters.values();
           // +1 because we add extra metric about how many metric values did we emit in this context (see below)
           List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
-          for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
+          for (AggregatedMetricsEmitter emitter : metricEmitters) {
+            MetricValue metricValue = emitter.emit();
             // skip increment by 0
             if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
               continue;
@@ -175,13 +189,28 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
 
           LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          return new MetricValues(contextEmitters.tags, timestamp, metricValues);
         }
         return endOfData();
       }
     };
   }
 
+  /**
+   * Returns the {@link ContextEmitters} for the given set of tags, creating one if there is none.
+   */
+  private ContextEmitters getContextEmitters(Map<String, String> tags) {
+    ContextEmitters contextEmitters = emitters.get(tags);
+    if (contextEmitters == null) {
+      contextEmitters = new ContextEmitters(tags);
+      ContextEmitters existing = emitters.putIfAbsent(tags, contextEmitters);
+      if (existing != null) {
+        contextEmitters = existing;
+      }
+    }
+    return contextEmitters;
+  }
+
   private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
     return new CacheLoader<Map<String, String>, MetricsContext>() {
       @Override
@@ -194,6 +223,8 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   private final class MetricsContextImpl implements MetricsContext {
 
     private final Map<String, String> tags;
+    // emitters of the tags, resolved once so that updates don't need to look up by the tags
+    private volatile ContextEmitters contextEmitters;
 
     private MetricsContextImpl(final Map<String, String> tags) {
       this.tags = ImmutableMap.copyOf(tags);
@@ -201,12 +232,25 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      ContextEmitters contextEmitters = getContextEmitters();
+      contextEmitters.getEmitter(metricName).increment(value);
+      contextEmitters.markUpdated();
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      ContextEmitters contextEmitters = getContextEmitters();
+      contextEmitters.getEmitter(metricName).gauge(value);
+      contextEmitters.markUpdated();
+    }
+
+    private ContextEmitters getContextEmitters() {
+      ContextEmitters contextEmitters = this.contextEmitters;
+      if (contextEmitters == null || contextEmitters.retired) {
+        contextEmitters = AggregatedMetricsCollectionService.this.getContextEmitters(tags);
+        this.contextEmitters = contextEmitters;
+      }
+      return contextEmitters;
     }
 
     @Override
@@ -233,4 +277,56 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
       return collectors.getUnchecked(allTags);
     }
   }
+
+  /**
+   * The {@link AggregatedMetricsEmitter}s of one set of tags.
+   */
+  private static final class ContextEmitters {
+
+    private final Map<String, String> tags;
+    private final ConcurrentMap<String, AggregatedMetricsEmitter> emitters = new ConcurrentHashMap<>();
+    // set after every update, cleared by the emitting thread right before it emits
+    private volatile boolean updated;
+    // set by the emitting thread when these emitters are removed due to inactivity
+    private volatile boolean retired;
+    // time in nanoseconds of the last emission that had updates, only accessed by the emitting thread
+    private long lastUpdated = System.nanoTime();
+
+    ContextEmitters(Map<String, String> tags) {
+      this.tags = tags;
+    }
+
+    AggregatedMetricsEmitter getEmitter(String metricName) {
+      AggregatedMetricsEmitter emitter = emitters.get(metricName);
+      if (emitter == null) {
+        emitter = new AggregatedMetricsEmitter(metricName);
+        AggregatedMetricsEmitter existing = emitters.putIfAbsent(metricName, emitter);
+        if (existing != null) {
+          emitter = existing;
+        }
+      }
+      return emitter;
+    }
+
+    void markUpdated() {
+      // Must be called after the update of the emitter, so that an update is either picked up by the
+      // emission that resets this flag, or causes the flag to be set again.
+      // Only write when needed to avoid invalidating the cache line on every update.
+      if (!updated) {
+        updated = true;
+      }
+    }
+
+    boolean isUpdated() {
+      return updated;
+    }
+
+    boolean resetUpdated() {
+      if (!updated) {
+        return false;
+      }
+      updated = false;
+      return true;
+    }
+  }
 }
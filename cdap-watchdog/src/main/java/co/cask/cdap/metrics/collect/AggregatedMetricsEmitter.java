@@ -22,19 +22,31 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ * <p>
+ * Increments go to a single {@link AtomicLong} as long as there is no contention on it. Once a compare-and-set
+ * fails, increments are spread over a set of striped cells (selected by thread id) to avoid multiple threads
+ * contending on the same cache line, and the cells are summed up when the value is emitted.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
+  // number of striped cells, a power of two that is at least the number of processors
+  private static final int STRIPES = getStripes();
+  // number of longs between two cells, so that each cell sits in its own cache line
+  private static final int CELL_PADDING = 8;
+
   private final String name;
   // metric value
   private final AtomicLong value;
   // specifies if the metric type is gauge or counter
   private final AtomicBoolean gaugeUsed;
+  // striped cells, created lazily on the first contention
+  private volatile AtomicLongArray cells;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -47,20 +59,61 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      long current = this.value.get();
+      if (this.value.compareAndSet(current, current + value)) {
+        return;
+      }
+      cells = getOrCreateCells();
+    }
+    cells.addAndGet(cellIndex(), value);
   }
 
-
   @Override
   public MetricValue emit() {
     // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
+    long value = this.value.getAndSet(0) + drainCells();
     MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
     return new MetricValue(name, type, value);
   }
 
   public void gauge(long value) {
+    // discard increments made before the gauge, the same as setting a single value would do
+    drainCells();
     this.value.set(value);
     this.gaugeUsed.set(true);
   }
+
+  /**
+   * Resets all striped cells to zero and returns the sum of their values.
+   */
+  private long drainCells() {
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      return 0L;
+    }
+    long sum = 0L;
+    for (int i = 0; i < cells.length(); i += CELL_PADDING) {
+      sum += cells.getAndSet(i, 0L);
+    }
+    return sum;
+  }
+
+  private synchronized AtomicLongArray getOrCreateCells() {
+    if (cells == null) {
+      cells = new AtomicLongArray(STRIPES * CELL_PADDING);
+    }
+    return cells;
+  }
+
+  private static int getStripes() {
+    int processors = Math.min(64, Runtime.getRuntime().availableProcessors());
+    int stripes = Integer.highestOneBit(processors);
+    return stripes < processors ? stripes << 1 : stripes;
+  }
+
+  private static int cellIndex() {
+    return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * CELL_PADDING;
+  }
 }
@@ -24,12 +24,16 @@ import co.cask.cdap.api.metrics.MetricDataQuery;
 import co.cask.cdap.api.metrics.MetricSearchQuery;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.utils.TimeMathParser;
 import co.cask.cdap.proto.MetricQueryRequest;
 import co.cask.cdap.proto.MetricQueryResult;
 import co.cask.cdap.proto.MetricTagValue;
+import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
@@ -82,6 +86,7 @@ public class MetricsHandler extends AbstractHttpHandler {
   private static final String ANY_TAG_VALUE = "*";
 
   private final MetricStore metricStore;
+  private final MetricsQueryCache queryCache;
 
   private static final Map<String, String> tagNameToHuman;
   private static final Map<String, String> humanToTagName;
@@ -126,8 +131,20 @@ public class MetricsHandler extends AbstractHttpHandler {
   }
 
   @Inject
-  public MetricsHandler(MetricStore metricStore) {
+  public MetricsHandler(CConfiguration cConf, MetricStore metricStore,
+                        @Nullable MetricsCollectionService metricsCollectionService) {
     this.metricStore = metricStore;
+    MetricsContext metricsContext = metricsCollectionService == null ? null : metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS));
+    long maxDataPoints = cConf.getLong(Constants.Metrics.QUERY_CACHE_MAX_DATA_POINTS,
+                                       Constants.Metrics.DEFAULT_QUERY_CACHE_MAX_DATA_POINTS);
+    long closedDelaySeconds = cConf.getLong(Constants.Metrics.QUERY_CACHE_CLOSED_DELAY_SECONDS,
+                                            Constants.Metrics.DEFAULT_QUERY_CACHE_CLOSED_DELAY_SECONDS);
+    long ttlSeconds = cConf.getLong(Constants.Metrics.QUERY_CACHE_TTL_SECONDS,
+                                    Constants.Metrics.DEFAULT_QUERY_CACHE_TTL_SECONDS);
+    this.queryCache = new MetricsQueryCache(metricStore, maxDataPoints, closedDelaySeconds, ttlSeconds,
+                                            metricsContext);
   }
 
   @POST
@@ -338,7 +355,7 @@ public class MetricsHandler extends AbstractHttpHandler {
                                                 timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
                                                 tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
                                                 timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+    Collection<MetricTimeSeries> queryResult = queryCache.query(query);
 
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
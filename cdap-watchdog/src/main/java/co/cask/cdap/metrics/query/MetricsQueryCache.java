@@ -0,0 +1,373 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.metrics.query;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.metrics.store.DefaultMetricStore;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Read-through cache of {@link MetricStore#query(MetricDataQuery)} results.
+ * <p>
+ * Results are cached per normalized query without its time range. A cache entry holds the data points of a time
+ * range that is closed, i.e. all of its resolution buckets ended at least {@code closedDelaySeconds} ago, so that
+ * their values are not expected to change anymore. A query that starts within the cached range only reads the
+ * part of its time range after it from the store, and the cached range is extended to cover the newly closed
+ * buckets. This serves dashboards polling the same sliding time window with a small scan at the end of the window.
+ * <p>
+ * Data points are served from the cache for at most {@code ttlSeconds} after they were read from the store, even if
+ * the cached range keeps being extended. This bounds how long data points arriving later than the closed delay
+ * are not seen. The whole cache is invalidated when the {@link DefaultMetricStore#DELETE_TIME_METRIC} gauge changes,
+ * which is updated by every delete done through a {@link DefaultMetricStore} in any process. The gauge is read from
+ * the store at most once every {@link #DELETE_CHECK_INTERVAL_SECONDS}, which bounds how long deleted data is seen.
+ * <p>
+ * Queries with an interpolator, aggregate (totals) queries and queries whose limit could truncate the result are
+ * not cached, as their results cannot be assembled from parts of the time range.
+ */
+@ThreadSafe
+class MetricsQueryCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsQueryCache.class);
+
+  static final long DELETE_CHECK_INTERVAL_SECONDS = 5L;
+  private static final MetricDataQuery DELETE_TIME_QUERY = new MetricDataQuery(
+    0, 0, DefaultMetricStore.TOTALS_RESOLUTION, DefaultMetricStore.DELETE_TIME_METRIC, AggregationFunction.LATEST,
+    DefaultMetricStore.DELETE_TIME_TAGS, ImmutableList.<String>of());
+
+  private final MetricStore metricStore;
+  private final long closedDelaySeconds;
+  private final long ttlSeconds;
+  // null if caching is disabled
+  @Nullable
+  private final Cache<QueryKey, Entry> cache;
+  @Nullable
+  private final MetricsContext metricsContext;
+  // The delete time read from the store when it was last checked
+  private volatile long deleteTime = Long.MIN_VALUE;
+  private long deleteCheckTimeSeconds = Long.MIN_VALUE;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param metricStore the store to query
+   * @param maxDataPoints maximum number of data points held by the cache; {@code 0} disables caching
+   * @param closedDelaySeconds number of seconds after the end of a resolution bucket until its value
+   *                           is considered final
+   * @param ttlSeconds maximum number of seconds data points are served from the cache after they were read
+   *                   from the store
+   * @param metricsContext context to emit cache metrics to, or {@code null} to not emit metrics
+   */
+  MetricsQueryCache(MetricStore metricStore, long maxDataPoints, long closedDelaySeconds, long ttlSeconds,
+                    @Nullable MetricsContext metricsContext) {
+    this.metricStore = metricStore;
+    this.closedDelaySeconds = closedDelaySeconds;
+    this.ttlSeconds = ttlSeconds;
+    this.metricsContext = metricsContext;
+    this.cache = maxDataPoints <= 0 ? null : CacheBuilder.newBuilder()
+      .maximumWeight(maxDataPoints)
+      .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+      .weigher(new Weigher<QueryKey, Entry>() {
+        @Override
+        public int weigh(QueryKey key, Entry entry) {
+          return entry.weight;
+        }
+      })
+      .<QueryKey, Entry>build();
+  }
+
+  /**
+   * Executes the given query, using cached results for the closed part of its time range if possible.
+   */
+  Collection<MetricTimeSeries> query(MetricDataQuery query) {
+    if (cache == null || !isCacheable(query)) {
+      return metricStore.query(query);
+    }
+
+    long now = currentTimeSeconds();
+    long deleteTime = checkDeleteTime(now);
+    int resolution = query.getResolution();
+    // timestamp of the last resolution bucket that is closed
+    long closedTs = (now - closedDelaySeconds) / resolution * resolution - resolution;
+
+    QueryKey key = new QueryKey(query);
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null && now - entry.readTimeSeconds >= ttlSeconds) {
+      cache.invalidate(key);
+      entry = null;
+    }
+    Collection<MetricTimeSeries> result;
+    long readTimeSeconds = now;
+    if (entry != null && entry.startTs <= query.getStartTs() && entry.endTs >= query.getStartTs()) {
+      // the cached range covers the beginning of the query, only query the part after it
+      long tailStartTs = entry.endTs + 1;
+      if (tailStartTs > query.getEndTs()) {
+        increment("query.cache.hit.count");
+        return entry.getTimeSeries(query.getStartTs(), query.getEndTs());
+      }
+      increment("query.cache.partial.hit.count");
+      // the extended entry contains data points read at the time of the cached entry
+      readTimeSeconds = entry.readTimeSeconds;
+      Collection<MetricTimeSeries> tail = metricStore.query(withTimeRange(query, tailStartTs, query.getEndTs()));
+      result = merge(entry.getTimeSeries(query.getStartTs(), entry.endTs), tail);
+    } else {
+      increment("query.cache.miss.count");
+      result = metricStore.query(query);
+    }
+
+    // cache the closed part of the result, unless a delete was seen during the query, which may or may not
+    // be reflected in the result
+    long endTs = Math.min(query.getEndTs(), closedTs);
+    if (endTs >= query.getStartTs() && deleteTime == this.deleteTime) {
+      Entry newEntry = new Entry(query.getStartTs(), endTs, readTimeSeconds, result);
+      if (entry == null || newEntry.endTs > entry.endTs || newEntry.startTs != entry.startTs) {
+        cache.put(key, newEntry);
+      }
+    }
+    return result;
+  }
+
+  @VisibleForTesting
+  long currentTimeSeconds() {
+    return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+  }
+
+  /**
+   * Reads the time of the latest delete from the store if it was not read in the last
+   * {@link #DELETE_CHECK_INTERVAL_SECONDS}, and drops all cached results if it changed.
+   *
+   * @return the latest delete time known
+   */
+  private synchronized long checkDeleteTime(long now) {
+    if (deleteCheckTimeSeconds != Long.MIN_VALUE && now - deleteCheckTimeSeconds < DELETE_CHECK_INTERVAL_SECONDS) {
+      return deleteTime;
+    }
+    long time = readDeleteTime();
+    if (time != deleteTime) {
+      cache.invalidateAll();
+      deleteTime = time;
+    }
+    deleteCheckTimeSeconds = now;
+    return time;
+  }
+
+  /**
+   * Returns the value of the {@link DefaultMetricStore#DELETE_TIME_METRIC} gauge or {@code 0} if there is none.
+   */
+  private long readDeleteTime() {
+    for (MetricTimeSeries series : metricStore.query(DELETE_TIME_QUERY)) {
+      for (TimeValue timeValue : series.getTimeValues()) {
+        return timeValue.getValue();
+      }
+    }
+    return 0L;
+  }
+
+  private boolean isCacheable(MetricDataQuery query) {
+    if (query.getResolution() == Integer.MAX_VALUE || query.getInterpolator() != null) {
+      return false;
+    }
+    // the limit must not cut off any data point of the time range
+    long points = (query.getEndTs() - query.getStartTs()) / query.getResolution() + 1;
+    return query.getLimit() >= points;
+  }
+
+  private void increment(String metricName) {
+    if (metricsContext != null) {
+      metricsContext.increment(metricName, 1L);
+    }
+  }
+
+  private MetricDataQuery withTimeRange(MetricDataQuery query, long startTs, long endTs) {
+    return new MetricDataQuery(startTs, endTs, query.getResolution(), query.getLimit(), query.getMetrics(),
+                               query.getSliceByTags(), query.getGroupByTags(), query.getInterpolator());
+  }
+
+  /**
+   * Merges the time series of two consecutive time ranges.
+   */
+  private Collection<MetricTimeSeries> merge(Collection<MetricTimeSeries> head, Collection<MetricTimeSeries> tail) {
+    Map<SeriesKey, List<TimeValue>> merged = Maps.newLinkedHashMap();
+    for (MetricTimeSeries series : head) {
+      merged.put(new SeriesKey(series), Lists.newArrayList(series.getTimeValues()));
+    }
+    for (MetricTimeSeries series : tail) {
+      SeriesKey seriesKey = new SeriesKey(series);
+      List<TimeValue> timeValues = merged.get(seriesKey);
+      if (timeValues == null) {
+        merged.put(seriesKey, Lists.newArrayList(series.getTimeValues()));
+      } else {
+        timeValues.addAll(series.getTimeValues());
+      }
+    }
+
+    List<MetricTimeSeries> result = Lists.newArrayListWithCapacity(merged.size());
+    for (Map.Entry<SeriesKey, List<TimeValue>> entry : merged.entrySet()) {
+      result.add(new MetricTimeSeries(entry.getKey().metricName, entry.getKey().tagValues, entry.getValue()));
+    }
+    return result;
+  }
+
+  /**
+   * A {@link MetricDataQuery} without its time range and limit, with all collections in a canonical order.
+   * The limit is left out since only queries whose limit doesn't affect the result are cached.
+   */
+  private static final class QueryKey {
+    private final int resolution;
+    private final Map<String, AggregationFunction> metrics;
+    private final Map<String, String> sliceByTags;
+    private final List<String> groupByTags;
+    private final int hashCode;
+
+    QueryKey(MetricDataQuery query) {
+      this.resolution = query.getResolution();
+      this.metrics = Maps.newTreeMap();
+      this.metrics.putAll(query.getMetrics());
+      // slice tags can have null values, meaning any value, which ImmutableMap doesn't allow
+      this.sliceByTags = Maps.newTreeMap();
+      this.sliceByTags.putAll(query.getSliceByTags());
+      List<String> groupBy = Lists.newArrayList(query.getGroupByTags());
+      Collections.sort(groupBy);
+      this.groupByTags = ImmutableList.copyOf(groupBy);
+      this.hashCode = Objects.hashCode(resolution, metrics, sliceByTags, groupByTags);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      QueryKey other = (QueryKey) o;
+      return resolution == other.resolution
+        && metrics.equals(other.metrics)
+        && sliceByTags.equals(other.sliceByTags)
+        && groupByTags.equals(other.groupByTags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Identifies a time series in a query result.
+   */
+  private static final class SeriesKey {
+    private final String metricName;
+    private final Map<String, String> tagValues;
+
+    SeriesKey(MetricTimeSeries series) {
+      this.metricName = series.getMetricName();
+      this.tagValues = series.getTagValues();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey) o;
+      return metricName.equals(other.metricName) && tagValues.equals(other.tagValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(metricName, tagValues);
+    }
+  }
+
+  /**
+   * The cached time series of a query for a closed time range. Immutable.
+   */
+  private static final class Entry {
+    private final long startTs;
+    private final long endTs;
+    // time in seconds when the oldest data points of this entry were read from the store
+    private final long readTimeSeconds;
+    private final List<MetricTimeSeries> timeSeries;
+    private final int weight;
+
+    Entry(long startTs, long endTs, long readTimeSeconds, Collection<MetricTimeSeries> result) {
+      this.startTs = startTs;
+      this.endTs = endTs;
+      this.readTimeSeconds = readTimeSeconds;
+      this.timeSeries = ImmutableList.copyOf(filter(result, startTs, endTs));
+      int weight = 0;
+      for (MetricTimeSeries series : timeSeries) {
+        // count the series itself too, so that series without data points are not free
+        weight += series.getTimeValues().size() + 1;
+      }
+      this.weight = weight;
+      LOG.trace("Caching {} data points of range [{}, {}]", weight, startTs, endTs);
+    }
+
+    /**
+     * Returns the cached time series restricted to the given time range.
+     */
+    List<MetricTimeSeries> getTimeSeries(long startTs, long endTs) {
+      if (startTs <= this.startTs && endTs >= this.endTs) {
+        return timeSeries;
+      }
+      return filter(timeSeries, startTs, endTs);
+    }
+
+    private static List<MetricTimeSeries> filter(Collection<MetricTimeSeries> timeSeries, long startTs, long endTs) {
+      List<MetricTimeSeries> result = Lists.newArrayListWithCapacity(timeSeries.size());
+      for (MetricTimeSeries series : timeSeries) {
+        List<TimeValue> timeValues = Lists.newArrayList();
+        for (TimeValue timeValue : series.getTimeValues()) {
+          if (timeValue.getTimestamp() >= startTs && timeValue.getTimestamp() <= endTs) {
+            timeValues.add(timeValue);
+          }
+        }
+        if (!timeValues.isEmpty()) {
+          result.add(new MetricTimeSeries(series.getMetricName(), series.getTagValues(), timeValues));
+        }
+      }
+      return result;
+    }
+  }
+}
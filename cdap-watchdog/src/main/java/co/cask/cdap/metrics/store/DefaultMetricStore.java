@@ -42,6 +42,7 @@ import co.cask.cdap.data2.dataset2.lib.cube.DefaultAggregation;
 import co.cask.cdap.data2.dataset2.lib.cube.DefaultCube;
 import co.cask.cdap.data2.dataset2.lib.cube.FactTableSupplier;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
@@ -57,6 +58,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -66,6 +68,12 @@ public class DefaultMetricStore implements MetricStore {
   public static final int TOTALS_RESOLUTION = Integer.MAX_VALUE;
   static final Map<String, Aggregation> AGGREGATIONS;
 
+  // Gauge holding the time in milliseconds of the latest delete, for invalidating query results cached in any process
+  private static final String DELETE_TIME_MEASURE = "metrics.store.delete.time";
+  public static final String DELETE_TIME_METRIC = "system." + DELETE_TIME_MEASURE;
+  public static final Map<String, String> DELETE_TIME_TAGS =
+    ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace());
+
   private static final String BY_NAMESPACE = "namespace";
   private static final String BY_APP = "app";
   private static final String BY_FLOW = "flow";
@@ -300,11 +308,24 @@ public class DefaultMetricStore implements MetricStore {
       CubeDeleteQuery query = new CubeDeleteQuery(0, timestamp, resolution, Maps.<String, String>newHashMap());
       cube.get().delete(query);
     }
+    recordDeleteTime();
   }
 
   @Override
   public void delete(MetricDeleteQuery query) throws Exception {
     cube.get().delete(buildCubeDeleteQuery(query));
+    recordDeleteTime();
+  }
+
+  /**
+   * Records the time of a delete in the {@link #DELETE_TIME_METRIC} gauge after the delete is done. Results of
+   * queries done before the gauge changes may contain deleted data.
+   */
+  private void recordDeleteTime() throws Exception {
+    long now = System.currentTimeMillis();
+    // The system scope is added as the prefix of the measure name by add()
+    add(new MetricValues(DELETE_TIME_TAGS, DELETE_TIME_MEASURE, TimeUnit.MILLISECONDS.toSeconds(now), now,
+                         MetricType.GAUGE));
   }
 
   @Override
@@ -16,7 +16,12 @@
 
 package co.cask.cdap.logging.read;
 
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import org.apache.twill.filesystem.LocalLocationFactory;
 import org.apache.twill.filesystem.Location;
@@ -25,9 +30,16 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class FileLogReaderTest {
   @Rule
@@ -85,4 +97,65 @@ public class FileLogReaderTest {
                                          base.append("28")),
                         FileLogReader.getFilesInRange(sortedFiles, 25, 32));
   }
+
+  @Test
+  public void testPrefetchMerge() throws Exception {
+    Location base = new LocalLocationFactory().create(tempFolder.newFolder().toURI());
+    final Map<Location, List<Long>> fileEvents = ImmutableMap.<Location, List<Long>>of(
+      base.append("10"), ImmutableList.of(10L, 12L, 20L),
+      base.append("15"), ImmutableList.of(15L, 16L, 30L),
+      base.append("25"), ImmutableList.of(25L, 26L),
+      base.append("40"), ImmutableList.of(40L, 40L));
+    NavigableMap<Long, Location> sortedFiles = new TreeMap<>();
+    for (Location file : fileEvents.keySet()) {
+      sortedFiles.put(Long.parseLong(file.getName()), file);
+    }
+
+    Function<Location, CloseableIterator<LogEvent>> fileReader = new Function<Location, CloseableIterator<LogEvent>>() {
+      @Override
+      public CloseableIterator<LogEvent> apply(final Location file) {
+        final Iterator<Long> timestamps = fileEvents.get(file).iterator();
+        return new AbstractCloseableIterator<LogEvent>() {
+          @Override
+          protected LogEvent computeNext() {
+            if (!timestamps.hasNext()) {
+              return endOfData();
+            }
+            ch.qos.logback.classic.spi.LoggingEvent event = new ch.qos.logback.classic.spi.LoggingEvent();
+            event.setTimeStamp(timestamps.next());
+            event.setMessage(file.getName());
+            return new LogEvent(event, new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, event.getTimeStamp()));
+          }
+
+          @Override
+          public void close() {
+            // no-op
+          }
+        };
+      }
+    };
+
+    // Use a single thread, so that some files are read by the caller thread
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+    try {
+      List<String> events = new ArrayList<>();
+      try (CloseableIterator<LogEvent> iterator = new PrefetchingLogEventIterator(executor, 2, sortedFiles.entrySet(),
+                                                                                  fileReader)) {
+        while (iterator.hasNext()) {
+          ILoggingEvent event = iterator.next().getLoggingEvent();
+          events.add(event.getTimeStamp() + ":" + event.getMessage());
+        }
+      }
+      Assert.assertEquals(ImmutableList.of("10:10", "12:10", "15:15", "16:15", "20:10", "25:25",
+                                           "26:25", "30:15", "40:40", "40:40"), events);
+
+      // Closing the iterator before reaching the end should stop reading
+      try (CloseableIterator<LogEvent> iterator = new PrefetchingLogEventIterator(executor, 4, sortedFiles.entrySet(),
+                                                                                  fileReader)) {
+        Assert.assertEquals(10L, iterator.next().getLoggingEvent().getTimeStamp());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import com.google.common.io.ByteStreams;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Tests for {@link LogFileIndex}.
+ */
+public class LogFileIndexTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testIndex() throws Exception {
+    Location base = new LocalLocationFactory().create(tempFolder.newFolder().toURI());
+    Location logFile = base.append("1000.avro");
+    Location indexLocation = FileMetaDataManager.getIndexLocation(logFile);
+    Assert.assertEquals("1000.avro.idx", indexLocation.getName());
+
+    try (LogFileIndex.Writer writer = new LogFileIndex.Writer(indexLocation)) {
+      writer.append(1000L, 100L);
+      writer.append(1000L, 200L);
+      writer.append(2000L, 300L);
+      // Entries with earlier timestamps are kept for late events
+      writer.append(1500L, 400L);
+      Assert.assertEquals(1500L, writer.getLastTimestamp());
+      // Out of order positions are dropped
+      writer.append(2500L, 300L);
+      writer.append(3000L, 500L);
+      Assert.assertEquals(500L, writer.getLastPosition());
+      Assert.assertEquals(3000L, writer.getLastTimestamp());
+    }
+
+    // Simulate an incomplete trailing entry, which is ignored when reading
+    byte[] content;
+    try (InputStream input = indexLocation.getInputStream()) {
+      content = ByteStreams.toByteArray(input);
+    }
+    try (OutputStream output = indexLocation.getOutputStream()) {
+      output.write(content);
+      output.write(new byte[] {0, 0, 0, 0, 0});
+    }
+
+    LogFileIndex index;
+    try (InputStream input = indexLocation.getInputStream()) {
+      index = LogFileIndex.read(input);
+    }
+    Assert.assertEquals(5, index.size());
+    Assert.assertEquals(-1, index.floorEntry(999L));
+    Assert.assertEquals(1, index.floorEntry(1000L));
+    Assert.assertEquals(1, index.floorEntry(1499L));
+    // Late entry is found even though an earlier entry has a larger timestamp
+    Assert.assertEquals(3, index.floorEntry(1500L));
+    Assert.assertEquals(3, index.floorEntry(2999L));
+    Assert.assertEquals(4, index.floorEntry(Long.MAX_VALUE));
+    Assert.assertEquals(100L, index.getPosition(0));
+    Assert.assertEquals(300L, index.getPosition(2));
+    Assert.assertEquals(400L, index.getPosition(3));
+    Assert.assertEquals(1500L, index.getTimestamp(3));
+    Assert.assertEquals(500L, index.getPosition(4));
+  }
+}
@@ -26,11 +26,18 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -155,6 +162,64 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+
+    final AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService() {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+
+      @Override
+      protected Scheduler scheduler() {
+        return Scheduler.newFixedRateSchedule(0, 100, TimeUnit.MILLISECONDS);
+      }
+    };
+    service.startAndWait();
+
+    final int threads = 8;
+    final int increments = 100000;
+    final CyclicBarrier barrier = new CyclicBarrier(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        final int threadId = i;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            // half of the threads share one context instance, the other half gets it from the service every time
+            MetricsContext context = service.getContext(EMPTY_TAGS);
+            barrier.await();
+            for (int j = 0; j < increments; j++) {
+              if (threadId % 2 == 0) {
+                context.increment(METRIC, 1);
+              } else {
+                service.getContext(EMPTY_TAGS).increment(METRIC, 1);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+      // stopping flushes the remaining metrics
+      service.stopAndWait();
+    }
+
+    long total = 0;
+    for (MetricValues metricValues : published) {
+      total += getMetricValue(metricValues.getMetrics(), METRIC);
+    }
+    Assert.assertEquals((long) threads * increments, total);
+  }
+
   private void verifyCounterMetricsValue(MetricValues metricValues) {
     Assert.assertNotNull(metricValues);
     Map<String, String> tags = metricValues.getTags();
@@ -0,0 +1,273 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.metrics.query;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricDeleteQuery;
+import co.cask.cdap.api.metrics.MetricSearchQuery;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.metrics.store.DefaultMetricStore;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for {@link MetricsQueryCache}.
+ */
+public class MetricsQueryCacheTest {
+
+  private static final int RESOLUTION = 60;
+  private static final Map<String, AggregationFunction> METRICS = ImmutableMap.of("system.reads",
+                                                                                  AggregationFunction.SUM);
+  private static final Map<String, String> TAGS = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "ns");
+
+  @Test
+  public void testCache() {
+    TestMetricStore store = new TestMetricStore();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 1000, 0, 3600, null) {
+      @Override
+      long currentTimeSeconds() {
+        return 10000;
+      }
+    };
+
+    // first query is a miss
+    MetricDataQuery query = createQuery(6000, 9000, 100);
+    Assert.assertEquals(store.compute(query), cache.query(query));
+    Assert.assertEquals(ImmutableList.of(6000L, 9000L), store.getAndClearQueriedRanges());
+
+    // same query is served from the cache
+    Assert.assertEquals(store.compute(query), cache.query(query));
+    Assert.assertTrue(store.getAndClearQueriedRanges().isEmpty());
+
+    // a query on a moved time window only needs to read the tail of the time range
+    query = createQuery(6060, 9120, 100);
+    Assert.assertEquals(store.compute(query), cache.query(query));
+    Assert.assertEquals(ImmutableList.of(9001L, 9120L), store.getAndClearQueriedRanges());
+
+    // a query beginning before the cached range cannot use it
+    query = createQuery(5940, 9120, 100);
+    Assert.assertEquals(store.compute(query), cache.query(query));
+    Assert.assertEquals(ImmutableList.of(5940L, 9120L), store.getAndClearQueriedRanges());
+
+    // a query whose limit truncates the result is not cached
+    query = createQuery(5940, 9120, 10);
+    cache.query(query);
+    Assert.assertEquals(ImmutableList.of(5940L, 9120L), store.getAndClearQueriedRanges());
+  }
+
+  @Test
+  public void testOpenRange() {
+    TestMetricStore store = new TestMetricStore();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 1000, 120, 3600, null) {
+      @Override
+      long currentTimeSeconds() {
+        return 10000;
+      }
+    };
+
+    // the last closed bucket is (10000 - 120) / 60 * 60 - 60 = 9780
+    MetricDataQuery query = createQuery(9000, 10000, 100);
+    Assert.assertEquals(store.compute(query), cache.query(query));
+    Assert.assertEquals(ImmutableList.of(9000L, 10000L), store.getAndClearQueriedRanges());
+
+    // the open part is read again
+    Assert.assertEquals(store.compute(query), cache.query(query));
+    Assert.assertEquals(ImmutableList.of(9781L, 10000L), store.getAndClearQueriedRanges());
+  }
+
+  @Test
+  public void testTTL() {
+    TestMetricStore store = new TestMetricStore();
+    final AtomicLong now = new AtomicLong(10000);
+    MetricsQueryCache cache = new MetricsQueryCache(store, 1000, 0, 300, null) {
+      @Override
+      long currentTimeSeconds() {
+        return now.get();
+      }
+    };
+
+    MetricDataQuery query = createQuery(6000, 9000, 100);
+    cache.query(query);
+    Assert.assertEquals(ImmutableList.of(6000L, 9000L), store.getAndClearQueriedRanges());
+
+    // extending the cached range doesn't extend the time the data read first is served from the cache
+    now.set(10200);
+    query = createQuery(6060, 9120, 100);
+    Assert.assertEquals(store.compute(query), cache.query(query));
+    Assert.assertEquals(ImmutableList.of(9001L, 9120L), store.getAndClearQueriedRanges());
+
+    now.set(10300);
+    Assert.assertEquals(store.compute(query), cache.query(query));
+    Assert.assertEquals(ImmutableList.of(6060L, 9120L), store.getAndClearQueriedRanges());
+  }
+
+  @Test
+  public void testInvalidateOnDelete() {
+    TestMetricStore store = new TestMetricStore();
+    final AtomicLong now = new AtomicLong(10000);
+    MetricsQueryCache cache = new MetricsQueryCache(store, 1000, 0, 3600, null) {
+      @Override
+      long currentTimeSeconds() {
+        return now.get();
+      }
+    };
+
+    MetricDataQuery query = createQuery(6000, 9000, 100);
+    cache.query(query);
+    cache.query(query);
+    Assert.assertEquals(ImmutableList.of(6000L, 9000L), store.getAndClearQueriedRanges());
+    Assert.assertEquals(1, store.getAndClearDeleteTimeReads());
+
+    // a delete done by another process is seen once the delete time is checked again
+    store.setDeleteTime(1000L);
+    now.addAndGet(MetricsQueryCache.DELETE_CHECK_INTERVAL_SECONDS - 1);
+    cache.query(query);
+    Assert.assertTrue(store.getAndClearQueriedRanges().isEmpty());
+    Assert.assertEquals(0, store.getAndClearDeleteTimeReads());
+
+    now.addAndGet(1);
+    cache.query(query);
+    Assert.assertEquals(ImmutableList.of(6000L, 9000L), store.getAndClearQueriedRanges());
+    Assert.assertEquals(1, store.getAndClearDeleteTimeReads());
+    cache.query(query);
+    Assert.assertTrue(store.getAndClearQueriedRanges().isEmpty());
+
+    // the cache is not invalidated if the delete time didn't change
+    now.addAndGet(MetricsQueryCache.DELETE_CHECK_INTERVAL_SECONDS);
+    cache.query(query);
+    Assert.assertTrue(store.getAndClearQueriedRanges().isEmpty());
+    Assert.assertEquals(1, store.getAndClearDeleteTimeReads());
+  }
+
+  private MetricDataQuery createQuery(long startTs, long endTs, int limit) {
+    return new MetricDataQuery(startTs, endTs, RESOLUTION, limit, METRICS, TAGS, ImmutableList.<String>of(), null);
+  }
+
+  /**
+   * A {@link MetricStore} that returns a series with one data point per resolution bucket, whose value is
+   * derived from the timestamp, and records the queried time ranges.
+   */
+  private static final class TestMetricStore implements MetricStore {
+
+    private final List<Long> queriedRanges = Lists.newArrayList();
+    private long deleteTime;
+    private int deleteTimeReads;
+
+    /**
+     * Sets the value of the delete time gauge, as if a delete was done by another process.
+     */
+    void setDeleteTime(long deleteTime) {
+      this.deleteTime = deleteTime;
+    }
+
+    int getAndClearDeleteTimeReads() {
+      int result = deleteTimeReads;
+      deleteTimeReads = 0;
+      return result;
+    }
+
+    List<Long> getAndClearQueriedRanges() {
+      List<Long> result = ImmutableList.copyOf(queriedRanges);
+      queriedRanges.clear();
+      return result;
+    }
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      if (query.getMetrics().containsKey(DefaultMetricStore.DELETE_TIME_METRIC)) {
+        deleteTimeReads++;
+        if (deleteTime == 0L) {
+          return ImmutableList.of();
+        }
+        return ImmutableList.of(new MetricTimeSeries(DefaultMetricStore.DELETE_TIME_METRIC,
+                                                     DefaultMetricStore.DELETE_TIME_TAGS,
+                                                     ImmutableList.of(new TimeValue(0L, deleteTime))));
+      }
+      queriedRanges.add(query.getStartTs());
+      queriedRanges.add(query.getEndTs());
+      return compute(query);
+    }
+
+    /**
+     * Returns the result of the given query without recording it.
+     */
+    Collection<MetricTimeSeries> compute(MetricDataQuery query) {
+      List<TimeValue> timeValues = Lists.newArrayList();
+      long ts = (query.getStartTs() + RESOLUTION - 1) / RESOLUTION * RESOLUTION;
+      for (; ts <= query.getEndTs(); ts += RESOLUTION) {
+        timeValues.add(new TimeValue(ts, ts / RESOLUTION));
+      }
+      return ImmutableList.of(new MetricTimeSeries("system.reads", TAGS, timeValues));
+    }
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}